@@ -1526,6 +1526,11 @@ void* TaskWorkerPool::_report_olap_table_worker_thread_callback(void* arg_this)
     request.__isset.tablets = true;
     AgentStatus status = PALO_SUCCESS;
 
+    // tablets of the last report accepted by master, the base of delta report.
+    // last_accepted_version is -1 if master does not accept delta report based on it.
+    std::map<TTabletId, TTablet> last_tablets;
+    int64_t last_accepted_version = -1;
+
 #ifndef BE_TEST
     while (true) {
 #endif
@@ -1533,10 +1538,13 @@ void* TaskWorkerPool::_report_olap_table_worker_thread_callback(void* arg_this)
                 worker_pool_this->_master_info,
                 &_master_service_client_cache);
         request.tablets.clear();
+        request.removed_tablets.clear();
 
-        request.__set_report_version(_s_report_version);
+        int64_t report_version = _s_report_version;
+        request.__set_report_version(report_version);
+        std::map<TTabletId, TTablet> tablets;
         OLAPStatus report_all_tablets_info_status =
-                worker_pool_this->_command_executor->report_all_tablets_info(&request.tablets);
+                worker_pool_this->_command_executor->report_all_tablets_info(&tablets);
         if (report_all_tablets_info_status != OLAP_SUCCESS) {
             OLAP_LOG_WARNING("report get all tablets info failed. status: %d",
                              report_all_tablets_info_status);
@@ -1548,6 +1556,29 @@ void* TaskWorkerPool::_report_olap_table_worker_thread_callback(void* arg_this)
 #endif
         }
 
+        if (last_accepted_version >= 0) {
+            // only report tablets changed since the last accepted report
+            for (auto& tablet : tablets) {
+                auto last = last_tablets.find(tablet.first);
+                if (last == last_tablets.end() || !(last->second == tablet.second)) {
+                    request.tablets[tablet.first] = tablet.second;
+                }
+            }
+            for (auto& tablet : last_tablets) {
+                if (tablets.find(tablet.first) == tablets.end()) {
+                    request.removed_tablets.insert(tablet.first);
+                }
+            }
+            request.__set_delta_tablets(true);
+            request.__set_base_tablet_report_version(last_accepted_version);
+            request.__isset.removed_tablets = true;
+        } else {
+            request.tablets = tablets;
+            request.__set_delta_tablets(false);
+            request.__isset.base_tablet_report_version = false;
+            request.__isset.removed_tablets = false;
+        }
+
         TMasterResult result;
         status = worker_pool_this->_master_client->report(request, &result);
 
@@ -1558,6 +1589,16 @@ void* TaskWorkerPool::_report_olap_table_worker_thread_callback(void* arg_this)
             OLAP_LOG_WARNING("finish report olap table failed. status: %d", status);
         }
 
+        if (status == PALO_SUCCESS && result.__isset.accepted_tablet_report_version
+                && result.accepted_tablet_report_version == report_version) {
+            last_tablets.swap(tablets);
+            last_accepted_version = report_version;
+        } else {
+            // send full report next time
+            last_tablets.clear();
+            last_accepted_version = -1;
+        }
+
 #ifndef BE_TEST
         sleep(config::report_olap_table_interval_seconds);
     }
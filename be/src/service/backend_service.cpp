@@ -111,6 +111,23 @@ void BackendService::exec_plan_fragment(TExecPlanFragmentResult& return_val,
     start_plan_fragment_execution(params).set_t_status(&return_val);
 }
 
+void BackendService::exec_plan_fragments(TExecPlanFragmentsResult& return_val,
+                                         const std::vector<TExecPlanFragmentParams>& params) {
+    return_val.__isset.status_list = true;
+    for (const TExecPlanFragmentParams& param : params) {
+        LOG(INFO) << "exec_plan_fragments() instance_id=" << param.params.fragment_instance_id
+            << " coord=" << param.coord << " backend#=" << param.backend_num;
+        VLOG_ROW << "exec_plan_fragments params is "
+                << apache::thrift::ThriftDebugString(param).c_str();
+        Status status = start_plan_fragment_execution(param);
+        return_val.status_list.emplace_back();
+        status.to_thrift(&return_val.status_list.back());
+        if (!status.ok()) {
+            break;
+        }
+    }
+}
+
 Status BackendService::start_plan_fragment_execution(const TExecPlanFragmentParams& exec_params) {
     if (!exec_params.fragment.__isset.output_sink) {
         return Status("missing sink in plan fragment");
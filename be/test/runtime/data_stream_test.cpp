@@ -61,6 +61,10 @@ public:
     virtual void exec_plan_fragment(
             TExecPlanFragmentResult& return_val, const TExecPlanFragmentParams& params) {}
 
+    virtual void exec_plan_fragments(
+            TExecPlanFragmentsResult& return_val,
+            const std::vector<TExecPlanFragmentParams>& params) {}
+
     virtual void cancel_plan_fragment(
             TCancelPlanFragmentResult& return_val, const TCancelPlanFragmentParams& params) {}
 
@@ -142,6 +142,8 @@ public class Analyzer {
     }
     public boolean setHasPlanHints() { return globalState.hasPlanHints = true; }
     public boolean hasPlanHints() { return globalState.hasPlanHints; }
+    public void setHasNondeterministicFunction() { globalState.hasNondeterministicFunction = true; }
+    public boolean hasNondeterministicFunction() { return globalState.hasNondeterministicFunction; }
     public void setIsWithClause() { isWithClause_ = true; }
     public boolean isWithClause() { return isWithClause_; }
 
@@ -165,6 +167,10 @@ public class Analyzer {
         // True if at least one of the analyzers belongs to a subquery.
         public boolean containsSubquery = false;
 
+        // True if the statement, including views it reads, calls a function whose result is not determined
+        // by its arguments, e.g. now() or rand(). Its result can not be cached.
+        public boolean hasNondeterministicFunction = false;
+
         // all registered conjuncts (map from id to Predicate)
         private final Map<ExprId, Expr> conjuncts = Maps.newHashMap();
 
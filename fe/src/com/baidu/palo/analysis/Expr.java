@@ -1156,7 +1156,16 @@ abstract public class Expr extends TreeNode<Expr> implements ParseNode, Cloneabl
         // Preconditions.checkState(PrimitiveType.isImplicitCast(type, targetType), "cast %s to %s", this.type, targetType);
         // TODO(zc): use implicit cast
         Preconditions.checkState(Type.canCastTo(this.type, targetType), "cast %s to %s", this.type, targetType);
-        return uncheckedCastTo(targetType);
+        return bindConverted(this, uncheckedCastTo(targetType));
+    }
+
+    // Literal converted from literal of a statement parameter is bound to the same parameter, see LiteralParam.
+    private static Expr bindConverted(Expr expr, Expr converted) {
+        if (converted != expr && expr instanceof LiteralExpr && converted instanceof LiteralExpr
+                && ((LiteralExpr) expr).getParam() != null) {
+            ((LiteralExpr) converted).setParam(((LiteralExpr) expr).getParam());
+        }
+        return converted;
     }
 
     /**
@@ -1200,7 +1209,7 @@ abstract public class Expr extends TreeNode<Expr> implements ParseNode, Cloneabl
     public void uncheckedCastChild(Type targetType, int childIndex)
             throws AnalysisException {
         Expr child = getChild(childIndex);
-        Expr newChild = child.uncheckedCastTo(targetType);
+        Expr newChild = bindConverted(child, child.uncheckedCastTo(targetType));
         setChild(childIndex, newChild);
     }
 
@@ -62,6 +62,13 @@ public class FunctionCallExpr extends Expr {
                     .add("stddev").add("stddev_val").add("stddev_samp")
                     .add("variance").add("variance_pop").add("variance_pop").add("var_samp").add("var_pop").build();
 
+    // functions whose result is not determined by their arguments
+    private static final ImmutableSet<String> NONDETERMINISTIC_FUNCTION_SET =
+            new ImmutableSortedSet.Builder(String.CASE_INSENSITIVE_ORDER)
+                    .add("now").add("curdate").add("curtime").add("current_date").add("current_time")
+                    .add("current_timestamp").add("localtime").add("localtimestamp").add("sysdate")
+                    .add("utc_timestamp").add("rand").add("random").add("uuid").build();
+
     public void setIsAnalyticFnCall(boolean v) {
         isAnalyticFnCall = v;
     }
@@ -391,6 +398,11 @@ public class FunctionCallExpr extends Expr {
 
     @Override
     public void analyzeImpl(Analyzer analyzer) throws AnalysisException {
+        // unix_timestamp() without argument returns the current time
+        if (NONDETERMINISTIC_FUNCTION_SET.contains(fnName.getFunction())
+                || (fnName.getFunction().equalsIgnoreCase("unix_timestamp") && children.isEmpty())) {
+            analyzer.setHasNondeterministicFunction();
+        }
         if (isMergeAggFn) {
             // This is the function call expr after splitting up to a merge aggregation.
             // The function has already been analyzed so just do the minimal sanity
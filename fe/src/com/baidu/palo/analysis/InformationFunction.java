@@ -53,6 +53,8 @@ public class InformationFunction extends Expr {
 
     @Override
     protected void analyzeImpl(Analyzer analyzer) throws AnalysisException {
+        // value depends on the session
+        analyzer.setHasNondeterministicFunction();
         if (funcType.equalsIgnoreCase("DATABASE")) {
             type = Type.VARCHAR;
             strValue = analyzer.getDefaultDb();
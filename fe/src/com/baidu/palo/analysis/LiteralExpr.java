@@ -25,25 +25,84 @@ import com.baidu.palo.catalog.Type;
 import com.baidu.palo.common.AnalysisException;
 import com.baidu.palo.common.NotImplementedException;
 import com.baidu.palo.common.io.Writable;
+import com.baidu.palo.thrift.TExpr;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Set;
 
 public abstract class LiteralExpr extends Expr {
     private static final Logger LOG = LogManager.getLogger(LiteralExpr.class);
 
+    // literals serialized to thrift by this thread while tracing, see startTrace()
+    private static final ThreadLocal<Set<LiteralExpr>> tracedLiterals = new ThreadLocal<Set<LiteralExpr>>();
+
+    // parameter of statement this literal is bound to, null if it is not from a literal token
+    protected LiteralParam param;
+
     public LiteralExpr() {
         numDistinctValues = 1;
     }
 
     protected LiteralExpr(LiteralExpr other) {
         super(other);
+        setParam(other.param);
+    }
+
+    public LiteralParam getParam() {
+        return param;
+    }
+
+    public void setParam(LiteralParam param) {
+        this.param = param;
+        if (param != null) {
+            param.bind(this);
+        }
+    }
+
+    // Change value of this literal to that of a literal of the same class, used when the plan is reused with
+    // other parameters. Value of all literals is carried by write() and readFields().
+    public void copyValue(LiteralExpr other) {
+        Preconditions.checkArgument(other.getClass() == getClass());
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            other.write(new DataOutputStream(bytes));
+            readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        } catch (IOException e) {
+            // never happens in memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Record literals serialized by treeToThrift() in this thread until stopTrace().
+    public static void startTrace() {
+        tracedLiterals.set(Sets.<LiteralExpr>newIdentityHashSet());
+    }
+
+    public static Set<LiteralExpr> stopTrace() {
+        Set<LiteralExpr> literals = tracedLiterals.get();
+        tracedLiterals.remove();
+        return literals;
+    }
+
+    @Override
+    protected void treeToThriftHelper(TExpr container) {
+        Set<LiteralExpr> literals = tracedLiterals.get();
+        if (literals != null) {
+            literals.add(this);
+        }
+        super.treeToThriftHelper(container);
     }
 
     public static LiteralExpr create(String value, Type type) throws AnalysisException {
@@ -0,0 +1,153 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package com.baidu.palo.analysis;
+
+import com.baidu.palo.catalog.Type;
+import com.baidu.palo.common.AnalysisException;
+import com.baidu.palo.common.NotImplementedException;
+
+import com.google.common.collect.Sets;
+
+import java_cup.runtime.Symbol;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+/*
+ * A literal token of statement, which is a parameter of the plan if the plan is reused by statements differing
+ * only in literals, see PlanCache. The literal created from the token by parser, and the copies and conversions of
+ * it made by analysis, are bound to the parameter, so that they can be changed to the value of the token at the same
+ * position of another statement.
+ */
+public class LiteralParam {
+    // position of the token
+    private final int line;
+    private final int column;
+    // sign of the literal is swapped by parser, e.g. '-1'
+    private boolean isNegative = false;
+    // compared by identity, equals() of literal compares value
+    private final Set<LiteralExpr> literals = Sets.newIdentityHashSet();
+
+    public LiteralParam(int line, int column) {
+        this.line = line;
+        this.column = column;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public boolean isNegative() {
+        return isNegative;
+    }
+
+    public void swapSign() {
+        isNegative = !isNegative;
+    }
+
+    public Set<LiteralExpr> getLiterals() {
+        return literals;
+    }
+
+    void bind(LiteralExpr literal) {
+        literals.add(literal);
+    }
+
+    void unbind(LiteralExpr literal) {
+        literals.remove(literal);
+        literal.param = null;
+    }
+
+    public static boolean isLiteralToken(int tokenId) {
+        return tokenId == SqlParserSymbols.INTEGER_LITERAL || tokenId == SqlParserSymbols.LARGE_INTEGER_LITERAL
+                || tokenId == SqlParserSymbols.FLOATINGPOINT_LITERAL || tokenId == SqlParserSymbols.DECIMAL_LITERAL
+                || tokenId == SqlParserSymbols.STRING_LITERAL;
+    }
+
+    // Create the literal of a literal token as parser does.
+    public static LiteralExpr createLiteral(Symbol token) throws AnalysisException {
+        switch (token.sym) {
+            case SqlParserSymbols.INTEGER_LITERAL:
+                return new IntLiteral((Long) token.value);
+            case SqlParserSymbols.LARGE_INTEGER_LITERAL:
+                return new LargeIntLiteral((String) token.value);
+            case SqlParserSymbols.FLOATINGPOINT_LITERAL:
+                return new FloatLiteral((Double) token.value);
+            case SqlParserSymbols.DECIMAL_LITERAL:
+                return new DecimalLiteral((BigDecimal) token.value);
+            case SqlParserSymbols.STRING_LITERAL:
+                return new StringLiteral((String) token.value);
+            default:
+                throw new AnalysisException("not a literal token: " + token.sym);
+        }
+    }
+
+    // Create the literal of token for this parameter, with sign swapped if the bound one is.
+    public LiteralExpr createLiteralOf(Symbol token) throws AnalysisException {
+        LiteralExpr literal = createLiteral(token);
+        if (isNegative) {
+            try {
+                literal.swapSign();
+            } catch (NotImplementedException e) {
+                throw new AnalysisException(e.getMessage());
+            }
+        }
+        return literal;
+    }
+
+    // Convert value to the type of literal as analysis does. Return null if the result is not a literal of the same
+    // class and type, or it can not be converted.
+    public static LiteralExpr convert(LiteralExpr value, LiteralExpr literal) {
+        Expr converted = value.clone();
+        // the copy is not a literal of statement
+        if (value.getParam() != null) {
+            value.getParam().unbind((LiteralExpr) converted);
+        }
+        if (!converted.getType().equals(literal.getType())) {
+            if (!Type.canCastTo(converted.getType(), literal.getType())) {
+                return null;
+            }
+            try {
+                converted = converted.castTo(literal.getType());
+            } catch (AnalysisException e) {
+                return null;
+            }
+        }
+        if (converted.getClass() != literal.getClass() || !converted.getType().equals(literal.getType())) {
+            return null;
+        }
+        return (LiteralExpr) converted;
+    }
+
+    // Return true if the literals are of the same value after one is converted to the type of the other.
+    public static boolean isSameValue(LiteralExpr literal, LiteralExpr other) {
+        LiteralExpr converted = convert(literal, other);
+        if (converted != null && converted.compareLiteral(other) == 0) {
+            return true;
+        }
+        converted = convert(other, literal);
+        return converted != null && converted.compareLiteral(literal) == 0;
+    }
+}
@@ -1086,6 +1086,33 @@ public class SelectStmt extends QueryStmt {
         }
     }
 
+    // Sql of this statement with the given conjuncts removed from where clause, which is not changed.
+    public String toSqlWithoutConjuncts(List<Expr> removedConjuncts) {
+        if (whereClause == null || removedConjuncts.isEmpty()) {
+            return toSql();
+        }
+        List<Expr> conjuncts = Lists.newArrayList();
+        for (Expr conjunct : whereClause.getConjuncts()) {
+            boolean removed = false;
+            for (Expr removedConjunct : removedConjuncts) {
+                removed |= conjunct == removedConjunct;
+            }
+            if (!removed) {
+                conjuncts.add(conjunct);
+            }
+        }
+        Expr origWhereClause = whereClause;
+        String origSqlString = sqlString_;
+        whereClause = CompoundPredicate.createConjunctivePredicate(conjuncts);
+        sqlString_ = null;
+        try {
+            return toSql();
+        } finally {
+            whereClause = origWhereClause;
+            sqlString_ = origSqlString;
+        }
+    }
+
     @Override
     public String toSql() {
         if (sqlString_ != null) {
@@ -65,6 +65,8 @@ public class SysVariableDesc extends Expr {
 
     @Override
     public void analyzeImpl(Analyzer analyzer) throws AnalysisException {
+        // value depends on the session
+        analyzer.setHasNondeterministicFunction();
         VariableMgr.fillValue(analyzer.getContext().getSessionVariable(), this);
     }
 
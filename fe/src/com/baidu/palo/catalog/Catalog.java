@@ -95,6 +95,7 @@ import com.baidu.palo.common.Pair;
 import com.baidu.palo.common.io.Text;
 import com.baidu.palo.common.util.Daemon;
 import com.baidu.palo.common.util.KuduUtil;
+import com.baidu.palo.common.util.Metrics;
 import com.baidu.palo.common.util.PrintableMap;
 import com.baidu.palo.common.util.PropertyAnalyzer;
 import com.baidu.palo.common.util.Util;
@@ -104,6 +105,7 @@ import com.baidu.palo.ha.HAProtocol;
 import com.baidu.palo.ha.MasterInfo;
 import com.baidu.palo.journal.JournalCursor;
 import com.baidu.palo.journal.JournalEntity;
+import com.baidu.palo.journal.JournalPrefetcher;
 import com.baidu.palo.journal.bdbje.Timestamp;
 import com.baidu.palo.load.DeleteInfo;
 import com.baidu.palo.load.ExportChecker;
@@ -118,10 +120,12 @@ import com.baidu.palo.master.Checkpoint;
 import com.baidu.palo.master.MetaHelper;
 import com.baidu.palo.persist.ClusterInfo;
 import com.baidu.palo.persist.DatabaseInfo;
+import com.baidu.palo.persist.DbImageSections;
 import com.baidu.palo.persist.DropInfo;
 import com.baidu.palo.persist.DropLinkDbAndUpdateDbInfo;
 import com.baidu.palo.persist.DropPartitionInfo;
 import com.baidu.palo.persist.EditLog;
+import com.baidu.palo.persist.LazyDbImage;
 import com.baidu.palo.persist.LinkDbInfo;
 import com.baidu.palo.persist.ModifyPartitionInfo;
 import com.baidu.palo.persist.PartitionPersistInfo;
@@ -156,6 +160,9 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
+import com.google.common.io.CountingInputStream;
+
+import io.dropwizard.metrics.Gauge;
 import com.sleepycat.je.rep.InsufficientLogException;
 import com.sleepycat.je.rep.NetworkRestore;
 import com.sleepycat.je.rep.NetworkRestoreConfig;
@@ -177,6 +184,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
 import java.net.HttpURLConnection;
 import java.net.InetAddress;
 import java.net.URL;
@@ -189,6 +198,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -197,9 +207,14 @@ public class Catalog {
     private static final Logger LOG = LogManager.getLogger(Catalog.class);
     // 0 ~ 9999 used for qe
     public static final long NEXT_ID_INIT_VALUE = 10000;
+    // estimated ratio of memory used by a database to its size in image
+    private static final int LAZY_DB_MEMORY_EXPANSION = 4;
+    private static final int MAX_MEMORY_USAGE_RATE = 90;
     private static final int HTTP_TIMEOUT_SECOND = 5;
     private static final int STATE_CHANGE_CHECK_INTERVAL_MS = 100;
     private static final int REPLAY_INTERVAL_MS = 1;
+    private static final String REPLAY_LAG_JOURNAL_GAUGE_NAME = "journal.replay_lag_num";
+    private static final String REPLAY_LAG_MS_GAUGE_NAME = "journal.replay_lag_ms";
     public static final String BDB_DIR = Config.meta_dir + "/bdb";
     public static final String IMAGE_DIR = Config.meta_dir + "/image";
 
@@ -211,6 +226,10 @@ public class Catalog {
 
     private Map<Long, Database> idToDb;
     private Map<String, Database> nameToDb;
+    // db sections of image not deserialized yet. only used by checkpoint catalog, see LazyDbImage
+    private LazyDbImage lazyDbImage;
+    // reads journals ahead of replay, created on first replay, see replayJournal()
+    private JournalPrefetcher journalPrefetcher;
 
     private Map<Long, Cluster> idToCluster;
     private Map<String, Cluster> nameToCluster;
@@ -255,9 +274,17 @@ public class Catalog {
     private int clusterId;
     private long replayedJournalId; // For checkpoint and observer memory
                                     // replayed marker
+    // the max journal id seen by replayer, only used to calculate replay lag
+    private volatile long replayToJournalId;
+
+    // partition id -> storage medium, see getPartitionIdToStorageMediumMap()
+    private volatile Map<Long, TStorageMedium> partitionIdToStorageMedium;
+    private long storageMediumMapRefreshTime = 0;
+    private final Object storageMediumMapLock = new Object();
 
     private static Catalog CHECKPOINT = null;
     private static long checkpointThreadId = -1;
+    private static final ThreadLocal<Boolean> CHECKPOINT_HELPER_THREAD = new ThreadLocal<Boolean>();
     private Checkpoint checkpointer;
     private Pair<String, Integer> helperNode = null;
     private Pair<String, Integer> selfNode = null;
@@ -313,8 +340,9 @@ public class Catalog {
     }
 
     private Catalog() {
-        this.idToDb = new HashMap<Long, Database>();
-        this.nameToDb = new HashMap<String, Database>();
+        // db maps are modified with catalog write lock, and read without any lock
+        this.idToDb = new ConcurrentHashMap<Long, Database>();
+        this.nameToDb = new ConcurrentHashMap<String, Database>();
         this.load = new Load();
         this.exportMgr = new ExportMgr();
         this.clone = new Clone();
@@ -415,7 +443,18 @@ public class Catalog {
     }
 
     public static final boolean isCheckpointThread() {
-        return Thread.currentThread().getId() == checkpointThreadId;
+        return Thread.currentThread().getId() == checkpointThreadId
+                || CHECKPOINT_HELPER_THREAD.get() != null;
+    }
+
+    // Threads which do part of work for checkpoint thread, such as loading or saving image in parallel,
+    // should set this flag so that they visit checkpoint catalog.
+    public static void setCheckpointHelperThread(boolean isHelper) {
+        if (isHelper) {
+            CHECKPOINT_HELPER_THREAD.set(Boolean.TRUE);
+        } else {
+            CHECKPOINT_HELPER_THREAD.remove();
+        }
     }
 
     public void readLock() {
@@ -881,7 +920,8 @@ public class Catalog {
         replayedJournalId = storage.getImageSeq();
         LOG.info("start load image from {}. is ckpt: {}", curFile.getAbsolutePath(), Catalog.isCheckpointThread());
         long loadImageStartTime = System.currentTimeMillis();
-        DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(curFile)));
+        CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(curFile)));
+        DataInputStream dis = new DataInputStream(counter);
 
         long checksum = 0;
         try {
@@ -891,7 +931,12 @@ public class Catalog {
                 checksum = loadFrontends(dis, checksum);
             }
             checksum = Catalog.getCurrentSystemInfo().loadBackends(dis, checksum);
-            checksum = loadDb(dis, checksum);
+            if (isCheckpointThread() && Config.checkpoint_lazy_load_db
+                    && Catalog.getCurrentCatalogJournalVersion() >= FeMetaVersion.VERSION_34) {
+                checksum = loadDbLazily(dis, counter, curFile, checksum);
+            } else {
+                checksum = loadDb(dis, checksum);
+            }
             // ATTN: this should be done after load Db, and before loadAlterJob
             recreateTabletInvertIndex();
 
@@ -997,6 +1042,19 @@ public class Catalog {
     public long loadDb(DataInputStream dis, long checksum) throws IOException, DdlException {
         int dbCount = dis.readInt();
         checksum ^= dbCount;
+        if (Catalog.getCurrentCatalogJournalVersion() >= FeMetaVersion.VERSION_33) {
+            // databases are deserialized in parallel
+            for (Database db : new DbImageSections().load(dis, dbCount)) {
+                checksum ^= db.getId();
+                idToDb.put(db.getId(), db);
+                nameToDb.put(db.getName(), db);
+                if (db.getDbState() == DbState.LINK) {
+                    nameToDb.put(db.getAttachDb(), db);
+                }
+            }
+            return checksum;
+        }
+
         for (long i = 0; i < dbCount; ++i) {
             Database db = new Database();
             db.readFields(dis);
@@ -1011,6 +1069,78 @@ public class Catalog {
         return checksum;
     }
 
+    private long loadDbLazily(DataInputStream dis, CountingInputStream counter, File imageFile, long checksum)
+            throws IOException {
+        int dbCount = dis.readInt();
+        checksum ^= dbCount;
+        lazyDbImage = new LazyDbImage(imageFile);
+        return lazyDbImage.loadIndex(dis, counter, dbCount, checksum);
+    }
+
+    // Deserialize db from lazy image when it is visited the first time.
+    // Only checkpoint thread visits checkpoint catalog, so db maps are modified without catalog lock.
+    private void loadLazyDb(long dbId) {
+        if (lazyDbImage == null || !lazyDbImage.contains(dbId)) {
+            return;
+        }
+        try {
+            Database db = lazyDbImage.load(dbId);
+            idToDb.put(db.getId(), db);
+            nameToDb.put(db.getName(), db);
+            if (db.getDbState() == DbState.LINK) {
+                nameToDb.put(db.getAttachDb(), db);
+            }
+        } catch (IOException e) {
+            // replay swallows exceptions, record it so that the new image will not be saved
+            LOG.warn("failed to load db {} from image", dbId, e);
+            lazyDbImage.setError(e);
+        }
+    }
+
+    private void loadLazyDb(String dbName) {
+        if (lazyDbImage == null) {
+            return;
+        }
+        Long dbId = lazyDbImage.getDbId(dbName);
+        if (dbId != null) {
+            loadLazyDb(dbId);
+        }
+    }
+
+    private void loadAllLazyDbs() {
+        if (lazyDbImage == null || lazyDbImage.size() == 0) {
+            return;
+        }
+        // objects in memory are several times larger than serialized data
+        MemoryUsage memoryUsage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long needMemory = lazyDbImage.getDataSize() * LAZY_DB_MEMORY_EXPANSION;
+        if (memoryUsage.getMax() * MAX_MEMORY_USAGE_RATE / 100 < memoryUsage.getUsed() + needMemory) {
+            LOG.warn("memory is not enough to load all {} dbs of image. used {} bytes, need {} bytes",
+                     lazyDbImage.size(), memoryUsage.getUsed(), needMemory);
+            lazyDbImage.setError(new IOException("memory is not enough to load all dbs"));
+            return;
+        }
+        LOG.info("load all {} dbs from image", lazyDbImage.size());
+        for (long dbId : lazyDbImage.getDbIds()) {
+            loadLazyDb(dbId);
+        }
+    }
+
+    public void closeLazyDbImage() {
+        if (lazyDbImage != null) {
+            lazyDbImage.close();
+            lazyDbImage = null;
+        }
+    }
+
+    // Stop the journal prefetch thread, called when the checkpoint catalog is destroyed.
+    public synchronized void closeJournalPrefetcher() {
+        if (journalPrefetcher != null) {
+            journalPrefetcher.close();
+            journalPrefetcher = null;
+        }
+    }
+
     public long loadLoadJob(DataInputStream dis, long checksum) throws IOException, DdlException {
         // load jobs
         int jobSize = dis.readInt();
@@ -1350,22 +1480,22 @@ public class Catalog {
     }
 
     public long saveDb(DataOutputStream dos, long checksum) throws IOException {
-        int dbCount = idToDb.size() - nameToCluster.keySet().size();
-        checksum ^= dbCount;
-        dos.writeInt(dbCount);
+        // databases of clusters(information_schema) have ids less than NEXT_ID_INIT_VALUE, and are not saved
+        List<Database> dbs = Lists.newArrayList();
         for (Map.Entry<Long, Database> entry : idToDb.entrySet()) {
-            long dbId = entry.getKey();
-            if (dbId >= NEXT_ID_INIT_VALUE) {
-                checksum ^= dbId;
-                Database db = entry.getValue();
-                db.readLock();
-                try {
-                    db.write(dos);
-                } finally {
-                    db.readUnlock();
-                }
+            if (entry.getKey() >= NEXT_ID_INIT_VALUE) {
+                dbs.add(entry.getValue());
             }
         }
+        int dbCount = dbs.size() + (lazyDbImage == null ? 0 : lazyDbImage.size());
+        checksum ^= dbCount;
+        dos.writeInt(dbCount);
+        // databases are serialized in parallel
+        checksum = new DbImageSections().save(dos, dbs, checksum);
+        if (lazyDbImage != null) {
+            // databases not changed since the last image
+            checksum = lazyDbImage.save(dos, checksum);
+        }
         return checksum;
     }
 
@@ -1586,6 +1716,20 @@ public class Catalog {
             return;
         }
 
+        // replay lag, in number of journals and in ms since the last timestamp journal of master
+        Metrics.registerGauge(REPLAY_LAG_JOURNAL_GAUGE_NAME, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return Math.max(0L, replayToJournalId - replayedJournalId);
+            }
+        });
+        Metrics.registerGauge(REPLAY_LAG_MS_GAUGE_NAME, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return synchronizedTimeMs == 0 ? 0L : System.currentTimeMillis() - synchronizedTimeMs;
+            }
+        });
+
         replayer = new Daemon() {
             protected void runOneCycle() {
                 boolean err = false;
@@ -1748,31 +1892,25 @@ public class Catalog {
         if (toJournalId == -1) {
             toJournalId = getMaxJournalId();
         }
+        replayToJournalId = Math.max(replayToJournalId, toJournalId);
         if (toJournalId <= replayedJournalId) {
             return false;
         }
 
         LOG.info("replayed journal id is {}, replay to journal id is {}", replayedJournalId, toJournalId);
-        JournalCursor cursor = editLog.read(replayedJournalId + 1, toJournalId);
-        if (cursor == null) {
-            LOG.warn("failed to get cursor from {} to {}", replayedJournalId + 1, toJournalId);
-            return false;
-        }
-
         long startTime = System.currentTimeMillis();
         boolean hasLog = false;
-        while (true) {
-            JournalEntity entity = cursor.next();
-            if (entity == null) {
+        // journals may be replayed in several rounds, see JournalPrefetcher
+        while (replayedJournalId < toJournalId) {
+            JournalCursor cursor = editLog.read(replayedJournalId + 1, toJournalId);
+            if (cursor == null) {
+                LOG.warn("failed to get cursor from {} to {}", replayedJournalId + 1, toJournalId);
                 break;
             }
-            hasLog = true;
-            EditLog.loadJournal(this, entity);
-            replayedJournalId++;
-            LOG.debug("journal {} replayed.", replayedJournalId);
-            if (!isMaster) {
-                journalObservable.notifyObservers(replayedJournalId);
+            if (replayJournal(cursor) == 0) {
+                break;
             }
+            hasLog = true;
         }
         long cost = System.currentTimeMillis() - startTime;
         if (cost >= 1000) {
@@ -1782,6 +1920,52 @@ public class Catalog {
         return hasLog;
     }
 
+    // Replay journals from cursor, return the number of replayed journals.
+    // If journal_prefetch_queue_size > 0, journals are read and deserialized by another thread,
+    // and observers are notified once per batch instead of once per journal.
+    private int replayJournal(JournalCursor cursor) {
+        JournalPrefetcher prefetcher = null;
+        if (Config.journal_prefetch_queue_size > 0) {
+            if (journalPrefetcher == null) {
+                journalPrefetcher = new JournalPrefetcher(Config.journal_prefetch_queue_size);
+                journalPrefetcher.start();
+            }
+            prefetcher = journalPrefetcher;
+            prefetcher.prefetch(cursor);
+        }
+
+        int replayedNum = 0;
+        long notifiedJournalId = replayedJournalId;
+        try {
+            while (true) {
+                JournalEntity entity = prefetcher == null ? cursor.next() : prefetcher.next();
+                if (entity == null) {
+                    break;
+                }
+                if (lazyDbImage != null && !LazyDbImage.isLazySafe(entity.getOpCode())) {
+                    loadAllLazyDbs();
+                }
+                EditLog.loadJournal(this, entity);
+                replayedJournalId++;
+                replayedNum++;
+                LOG.debug("journal {} replayed.", replayedJournalId);
+                if (!isMaster && (prefetcher == null || !prefetcher.hasReady()
+                        || replayedJournalId - notifiedJournalId >= Config.journal_replay_notify_batch_size)) {
+                    journalObservable.notifyObservers(replayedJournalId);
+                    notifiedJournalId = replayedJournalId;
+                }
+            }
+        } finally {
+            if (prefetcher != null) {
+                prefetcher.finish();
+            }
+        }
+        if (!isMaster && notifiedJournalId < replayedJournalId) {
+            journalObservable.notifyObservers(replayedJournalId);
+        }
+        return replayedNum;
+    }
+
     public void createTimePrinter() {
         if (!isMaster) {
             return;
@@ -1971,9 +2155,9 @@ public class Catalog {
                 db.writeUnlock();
             }
 
-            // 3. remove db from catalog
-            idToDb.remove(db.getId());
+            // 3. remove db from catalog, by name first for lookups without lock
             nameToDb.remove(db.getName());
+            idToDb.remove(db.getId());
             final Cluster cluster = nameToCluster.get(db.getClusterName());
             cluster.removeDb(dbName, db.getId());
             editLog.logDropDb(dbName);
@@ -2045,8 +2229,8 @@ public class Catalog {
                 // cause this db cannot recover any more
             }
 
-            nameToDb.put(db.getName(), db);
             idToDb.put(db.getId(), db);
+            nameToDb.put(db.getName(), db);
         } finally {
             writeUnlock();
         }
@@ -2185,8 +2369,8 @@ public class Catalog {
             db.setNameWithLock(newDbName);
 
             // 2. add to meta. check again
-            nameToDb.remove(dbName);
             nameToDb.put(newDbName, db);
+            nameToDb.remove(dbName);
 
             DatabaseInfo dbInfo = new DatabaseInfo(dbName, newDbName, -1L);
             editLog.logDatabaseRename(dbInfo);
@@ -2206,8 +2390,8 @@ public class Catalog {
             final Cluster cluster = nameToCluster.get(db.getClusterName());
             cluster.removeDb(db.getName(), db.getId());
             cluster.addDb(newDbName, db.getId());
-            nameToDb.remove(dbName);
             nameToDb.put(newDbName, db);
+            nameToDb.remove(dbName);
         } finally {
             writeUnlock();
         }
@@ -2284,6 +2468,8 @@ public class Catalog {
         Map<Long, Short> indexIdToShortKeyColumnCount = null;
         Map<Long, TStorageType> indexIdToStorageType = null;
         Set<String> bfColumns = null;
+        // backends of each bucket if the table is colocated
+        List<List<Long>> bucketBackends = null;
 
         String partitionName = singlePartitionDesc.getPartitionName();
 
@@ -2369,6 +2555,13 @@ public class Catalog {
             indexIdToSchema = olapTable.getCopiedIndexIdToSchema();
             bfColumns = olapTable.getCopiedBfColumns();
 
+            if (olapTable.getColocateGroup() != null && !isRestore) {
+                if (distributionInfo.getBucketNum() != defaultDistributionInfo.getBucketNum()) {
+                    throw new DdlException("Cannot assign different bucket num to partition of colocate table");
+                }
+                bucketBackends = ColocateGroup.getBucketBackends(db, olapTable.getColocateGroup());
+            }
+
         } catch (AnalysisException e) {
             throw new DdlException(e.getMessage());
         } finally {
@@ -2401,7 +2594,7 @@ public class Catalog {
                                                              dataProperty.getStorageMedium(),
                                                              singlePartitionDesc.getReplicationNum(),
                                                              versionInfo, bfColumns, olapTable.getBfFpp(),
-                                                             tabletIdSet, isRestore);
+                                                             tabletIdSet, bucketBackends, isRestore);
 
             // check again
             db.writeLock();
@@ -2644,6 +2837,7 @@ public class Catalog {
         // date property
         if (newDataProperty != null) {
             partitionInfo.setDataProperty(partition.getId(), newDataProperty);
+            updatePartitionStorageMedium(partition.getId(), newDataProperty);
             LOG.debug("modify partition[{}-{}-{}] data property to {}", db.getId(), olapTable.getId(), partitionName,
                     newDataProperty.toString());
         }
@@ -2669,6 +2863,7 @@ public class Catalog {
             PartitionInfo partitionInfo = olapTable.getPartitionInfo();
             if (info.getDataProperty() != null) {
                 partitionInfo.setDataProperty(info.getPartitionId(), info.getDataProperty());
+                updatePartitionStorageMedium(info.getPartitionId(), info.getDataProperty());
             }
             if (info.getReplicationNum() != (short) -1) {
                 partitionInfo.setReplicationNum(info.getPartitionId(), info.getReplicationNum());
@@ -2692,6 +2887,7 @@ public class Catalog {
                                                  Set<String> bfColumns,
                                                  double bfFpp,
                                                  Set<Long> tabletIdSet,
+                                                 List<List<Long>> bucketBackends,
                                                  boolean isRestore) throws DdlException {
         // create base index first. use table id as base index id
         long baseIndexId = tableId;
@@ -2730,7 +2926,7 @@ public class Catalog {
             int schemaHash = indexIdToSchemaHash.get(indexId);
             TabletMeta tabletMeta = new TabletMeta(dbId, tableId, partitionId, indexId, schemaHash);
             createTablets(clusterName, index, ReplicaState.NORMAL, distributionInfo, version, versionHash,
-                    replicationNum, tabletMeta, tabletIdSet);
+                    replicationNum, tabletMeta, tabletIdSet, bucketBackends);
 
             boolean ok = false;
             String errMsg = null;
@@ -2899,6 +3095,19 @@ public class Catalog {
             throw new DdlException(e.getMessage());
         }
 
+        // analyze colocate group
+        try {
+            String colocateGroup = PropertyAnalyzer.analyzeColocate(properties);
+            if (colocateGroup != null && !isRestore) {
+                if (distributionInfo.getType() != DistributionInfoType.HASH) {
+                    throw new DdlException("Colocate table must be hash distributed");
+                }
+                olapTable.setColocateGroup(colocateGroup);
+            }
+        } catch (AnalysisException e) {
+            throw new DdlException(e.getMessage());
+        }
+
         // set index schema
         int schemaVersion = 0;
         try {
@@ -2952,6 +3161,11 @@ public class Catalog {
                 }
                 partitionInfo.setReplicationNum(partitionId, replicationNum);
 
+                List<List<Long>> bucketBackends = null;
+                if (olapTable.getColocateGroup() != null) {
+                    bucketBackends = getColocateBucketBackends(db, olapTable, replicationNum);
+                }
+
                 // create partition
                 Partition partition = createPartitionWithIndices(db.getClusterName(), db.getId(),
                                                                  olapTable.getId(),
@@ -2965,7 +3179,7 @@ public class Catalog {
                                                                  dataProperty.getStorageMedium(),
                                                                  replicationNum,
                                                                  versionInfo, bfColumns, bfFpp,
-                                                                 tabletIdSet, isRestore);
+                                                                 tabletIdSet, bucketBackends, isRestore);
                 olapTable.addPartition(partition);
             } else if (partitionInfo.getType() == PartitionType.RANGE) {
                 try {
@@ -2984,7 +3198,12 @@ public class Catalog {
 
                 // this is a 2-level partitioned tables
                 RangePartitionInfo rangePartitionInfo = (RangePartitionInfo) partitionInfo;
+                List<List<Long>> bucketBackends = null;
                 for (Map.Entry<String, Long> entry : partitionNameToId.entrySet()) {
+                    if (olapTable.getColocateGroup() != null && bucketBackends == null) {
+                        bucketBackends = getColocateBucketBackends(db, olapTable,
+                                partitionInfo.getReplicationNum(entry.getValue()));
+                    }
                     DataProperty dataProperty = rangePartitionInfo.getDataProperty(entry.getValue());
                     Partition partition = createPartitionWithIndices(db.getClusterName(), db.getId(), olapTable.getId(),
                                                                      entry.getValue(), entry.getKey(),
@@ -2996,7 +3215,7 @@ public class Catalog {
                                                                      dataProperty.getStorageMedium(),
                                                                      partitionInfo.getReplicationNum(entry.getValue()),
                                                                      versionInfo, bfColumns, bfFpp,
-                                                                     tabletIdSet, isRestore);
+                                                                     tabletIdSet, bucketBackends, isRestore);
                     olapTable.addPartition(partition);
                 }
             } else {
@@ -3229,6 +3448,12 @@ public class Catalog {
                 sb.append(Joiner.on(", ").join(olapTable.getCopiedBfColumns())).append("\"");
             }
 
+            // colocate group, not kept when restored
+            if (olapTable.getColocateGroup() != null && !separatePartition) {
+                sb.append(",\n \"").append(PropertyAnalyzer.PROPERTIES_COLOCATE_WITH).append("\" = \"");
+                sb.append(olapTable.getColocateGroup()).append("\"");
+            }
+
             if (separatePartition) {
                 // 3. version info
                 sb.append(",\n \"").append(PropertyAnalyzer.PROPERTIES_VERSION_INFO).append("\" = \"");
@@ -3367,6 +3592,7 @@ public class Catalog {
     }
 
     public void replayCreateTable(String dbName, Table table) {
+        loadLazyDb(dbName);
         Database db = this.nameToDb.get(dbName);
         db.createTableWithLock(table, true, false);
 
@@ -3397,9 +3623,31 @@ public class Catalog {
 
     }
 
+    // Backends of each bucket of a new colocate table, by the layout of its group,
+    // or newly chosen if it is the first table of the group.
+    private List<List<Long>> getColocateBucketBackends(Database db, OlapTable olapTable, short replicationNum)
+            throws DdlException {
+        String colocateGroup = olapTable.getColocateGroup();
+        db.readLock();
+        try {
+            List<OlapTable> groupTables = ColocateGroup.getGroupTables(db, colocateGroup);
+            if (!groupTables.isEmpty()) {
+                ColocateGroup.checkCompatible(groupTables.get(0), olapTable.getDefaultDistributionInfo());
+                List<List<Long>> bucketBackends = ColocateGroup.getBucketBackends(db, colocateGroup);
+                if (bucketBackends != null) {
+                    return bucketBackends;
+                }
+            }
+        } finally {
+            db.readUnlock();
+        }
+        return ColocateGroup.chooseBucketBackends(db.getClusterName(),
+                olapTable.getDefaultDistributionInfo().getBucketNum(), replicationNum);
+    }
+
     private void createTablets(String clusterName, MaterializedIndex index, ReplicaState replicaState,
             DistributionInfo distributionInfo, long version, long versionHash, short replicationNum,
-            TabletMeta tabletMeta, Set<Long> tabletIdSet) throws DdlException {
+            TabletMeta tabletMeta, Set<Long> tabletIdSet, List<List<Long>> bucketBackends) throws DdlException {
         Preconditions.checkArgument(replicationNum > 0);
 
         DistributionInfoType distributionInfoType = distributionInfo.getType();
@@ -3412,9 +3660,33 @@ public class Catalog {
                 index.addTablet(tablet, tabletMeta);
                 tabletIdSet.add(tablet.getId());
 
-                // create replicas for tablet with random chosen backends
-                List<Long> chosenBackendIds = Catalog.getCurrentSystemInfo().seqChooseBackendIds(replicationNum, true,
-                        true, clusterName);
+                // create replicas for tablet with random chosen backends,
+                // or on the backends of the same bucket if the table is colocated
+                List<Long> chosenBackendIds = null;
+                if (bucketBackends != null) {
+                    chosenBackendIds = Lists.newArrayList(bucketBackends.get(i));
+                    if (chosenBackendIds.size() > replicationNum) {
+                        throw new DdlException("Replication num of colocate table must be "
+                                + chosenBackendIds.size());
+                    }
+                    if (chosenBackendIds.size() < replicationNum) {
+                        // replicas of the bucket are being repaired, complete it with other backends,
+                        // CloneChecker will align them later
+                        List<Long> otherBackendIds = Catalog.getCurrentSystemInfo().seqChooseBackendIds(
+                                replicationNum, true, true, clusterName);
+                        if (otherBackendIds == null) {
+                            throw new DdlException("Failed to find enough alive backends. need: " + replicationNum);
+                        }
+                        for (long backendId : otherBackendIds) {
+                            if (chosenBackendIds.size() < replicationNum && !chosenBackendIds.contains(backendId)) {
+                                chosenBackendIds.add(backendId);
+                            }
+                        }
+                    }
+                } else {
+                    chosenBackendIds = Catalog.getCurrentSystemInfo().seqChooseBackendIds(replicationNum, true,
+                            true, clusterName);
+                }
                 if (chosenBackendIds == null) {
                     throw new DdlException("Failed to find enough alive backends. need: " + replicationNum);
                 }
@@ -3633,30 +3905,22 @@ public class Catalog {
         return this.clusterId;
     }
 
+    // lookups of db do not take catalog lock, so that queries are not blocked by DDL.
     public Database getDb(String name) {
-        readLock();
-        try {
-            if (nameToDb.containsKey(name)) {
-                return nameToDb.get(name);
-            } else if (name.equalsIgnoreCase(InfoSchemaDb.getDatabaseName())) {
-                return nameToDb.get(InfoSchemaDb.getDatabaseName());
-            }
+        if (name == null) {
             return null;
-        } finally {
-            readUnlock();
         }
+        loadLazyDb(name);
+        Database db = nameToDb.get(name);
+        if (db == null && name.equalsIgnoreCase(InfoSchemaDb.getDatabaseName())) {
+            db = nameToDb.get(InfoSchemaDb.getDatabaseName());
+        }
+        return db;
     }
 
     public Database getDb(long dbId) {
-        readLock();
-        try {
-            if (idToDb.containsKey(dbId)) {
-                return idToDb.get(dbId);
-            }
-            return null;
-        } finally {
-            readUnlock();
-        }
+        loadLazyDb(dbId);
+        return idToDb.get(dbId);
     }
 
     public EditLog getEditLog() {
@@ -3671,13 +3935,11 @@ public class Catalog {
     }
 
     public List<String> getDbNames() {
-        readLock();
-        try {
-            List<String> dbNames = Lists.newArrayList(nameToDb.keySet());
-            return dbNames;
-        } finally {
-            readUnlock();
+        List<String> dbNames = Lists.newArrayList(nameToDb.keySet());
+        if (lazyDbImage != null) {
+            dbNames.addAll(lazyDbImage.getDbNames());
         }
+        return dbNames;
     }
 
 
@@ -3696,16 +3958,43 @@ public class Catalog {
     } 
 
     public List<Long> getDbIds() {
-        readLock();
-        try {
-            List<Long> dbIds = Lists.newArrayList(idToDb.keySet());
-            return dbIds;
-        } finally {
-            readUnlock();
+        List<Long> dbIds = Lists.newArrayList(idToDb.keySet());
+        if (lazyDbImage != null) {
+            dbIds.addAll(lazyDbImage.getDbIds());
         }
+        return dbIds;
     }
 
-    public HashMap<Long, TStorageMedium> getPartitionIdToStorageMediumMap() {
+    /*
+     * Return partition id -> storage medium, shared by tablet reports of all backends.
+     * The map is rebuilt by walking all partitions at most once every storage_medium_map_refresh_interval_second,
+     * and partitions whose data property is modified are updated in place between refreshes.
+     * Partitions created since the last refresh are not in the map, their tablets are not checked for migration
+     * until next refresh.
+     */
+    public Map<Long, TStorageMedium> getPartitionIdToStorageMediumMap() {
+        long now = System.currentTimeMillis();
+        synchronized (storageMediumMapLock) {
+            if (partitionIdToStorageMedium == null
+                    || now - storageMediumMapRefreshTime >= Config.storage_medium_map_refresh_interval_second * 1000L) {
+                partitionIdToStorageMedium = new ConcurrentHashMap<Long, TStorageMedium>(
+                        buildPartitionIdToStorageMediumMap());
+                storageMediumMapRefreshTime = now;
+            }
+            return partitionIdToStorageMedium;
+        }
+    }
+
+    // update cached storage medium of partition when its data property is modified.
+    private void updatePartitionStorageMedium(long partitionId, DataProperty dataProperty) {
+        Map<Long, TStorageMedium> storageMediumMap = partitionIdToStorageMedium;
+        if (storageMediumMap != null) {
+            storageMediumMap.put(partitionId, dataProperty.getStorageMedium());
+        }
+    }
+
+    // walk all partitions, and change SSD partitions whose cooldown time is expired to HDD.
+    private HashMap<Long, TStorageMedium> buildPartitionIdToStorageMediumMap() {
         HashMap<Long, TStorageMedium> storageMediumMap = new HashMap<Long, TStorageMedium>();
 
         // record partition which need to change storage medium
@@ -4107,10 +4396,7 @@ public class Catalog {
             throw new DdlException("Table name[" + newTableName + "] is already used");
         }
 
-        table.setName(newTableName);
-
-        db.dropTable(tableName);
-        db.createTable(table);
+        db.renameTable(tableName, newTableName);
 
         TableInfo tableInfo = TableInfo.createForTableRename(db.getId(), table.getId(), newTableName);
         editLog.logTableRename(tableInfo);
@@ -4127,9 +4413,7 @@ public class Catalog {
         try {
             OlapTable table = (OlapTable) db.getTable(tableId);
             String tableName = table.getName();
-            db.dropTable(tableName);
-            table.setName(newTableName);
-            db.createTable(table);
+            db.renameTable(tableName, newTableName);
 
             LOG.info("replay rename table[{}] to {}", tableName, newTableName);
         } finally {
@@ -0,0 +1,132 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.catalog;
+
+import com.baidu.palo.catalog.DistributionInfo.DistributionInfoType;
+import com.baidu.palo.catalog.Replica.ReplicaState;
+import com.baidu.palo.common.DdlException;
+
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * Tables of a colocate group (table property 'colocate_with') in a db are hash distributed by the same
+ * number of buckets on columns of the same types, and replicas of the tablets with the same bucket
+ * sequence, in all partitions and indexes of all tables of the group, are placed on the same backends.
+ * So a join of two tables of a group on their distribution columns can be done bucket by bucket locally.
+ *
+ * The placement of the group follows its first table (the one with the smallest id): replicas of bucket i
+ * are expected on the backends of tablet i of the base index of its first partition. New partitions are
+ * created by this layout, and CloneChecker moves replicas back to it after backends change.
+ */
+public class ColocateGroup {
+
+    // Tables of the group in db, ordered by id. Caller should hold the db lock.
+    public static List<OlapTable> getGroupTables(Database db, String group) {
+        List<OlapTable> tables = Lists.newArrayList();
+        if (group == null) {
+            return tables;
+        }
+        for (Table table : db.getTables()) {
+            if (table.getType() == Table.TableType.OLAP && group.equals(((OlapTable) table).getColocateGroup())) {
+                tables.add((OlapTable) table);
+            }
+        }
+        Collections.sort(tables, new Comparator<OlapTable>() {
+            @Override
+            public int compare(OlapTable t1, OlapTable t2) {
+                return Long.compare(t1.getId(), t2.getId());
+            }
+        });
+        return tables;
+    }
+
+    // Bucket sequence -> backends expected to have replicas of the bucket, or null if the group is empty.
+    // Caller should hold the db lock.
+    public static List<List<Long>> getBucketBackends(Database db, String group) {
+        List<OlapTable> tables = getGroupTables(db, group);
+        if (tables.isEmpty()) {
+            return null;
+        }
+        Partition firstPartition = null;
+        for (Partition partition : tables.get(0).getPartitions()) {
+            if (firstPartition == null || partition.getId() < firstPartition.getId()) {
+                firstPartition = partition;
+            }
+        }
+        if (firstPartition == null) {
+            return null;
+        }
+
+        List<List<Long>> bucketBackends = Lists.newArrayList();
+        for (Tablet tablet : firstPartition.getBaseIndex().getTablets()) {
+            List<Long> backendIds = Lists.newArrayList();
+            for (Replica replica : tablet.getReplicas()) {
+                if (replica.getState() != ReplicaState.CLONE) {
+                    backendIds.add(replica.getBackendId());
+                }
+            }
+            bucketBackends.add(backendIds);
+        }
+        return bucketBackends;
+    }
+
+    // Choose backends of every bucket for the first table of a group.
+    public static List<List<Long>> chooseBucketBackends(String clusterName, int bucketNum, short replicationNum)
+            throws DdlException {
+        List<List<Long>> bucketBackends = Lists.newArrayList();
+        for (int i = 0; i < bucketNum; i++) {
+            List<Long> backendIds = Catalog.getCurrentSystemInfo().seqChooseBackendIds(replicationNum, true,
+                    true, clusterName);
+            if (backendIds == null) {
+                throw new DdlException("Failed to find enough alive backends. need: " + replicationNum);
+            }
+            bucketBackends.add(backendIds);
+        }
+        return bucketBackends;
+    }
+
+    // Check a table with the distribution can join the group of firstTable.
+    public static void checkCompatible(OlapTable firstTable, DistributionInfo distributionInfo)
+            throws DdlException {
+        DistributionInfo groupDistributionInfo = firstTable.getDefaultDistributionInfo();
+        if (distributionInfo.getType() != DistributionInfoType.HASH
+                || groupDistributionInfo.getType() != DistributionInfoType.HASH
+                || !((HashDistributionInfo) groupDistributionInfo).isColocateCompatible(
+                        (HashDistributionInfo) distributionInfo)) {
+            throw new DdlException("Distribution of colocate table must be the same as table "
+                    + firstTable.getName() + ": " + groupDistributionInfo.toSql());
+        }
+    }
+
+    // Whether rows of the two tables with the same distribution values are in buckets of the same sequence.
+    public static boolean isColocateCompatible(OlapTable table1, OlapTable table2) {
+        if (table1.getColocateGroup() == null || !table1.getColocateGroup().equals(table2.getColocateGroup())) {
+            return false;
+        }
+        DistributionInfo info1 = table1.getDefaultDistributionInfo();
+        DistributionInfo info2 = table2.getDefaultDistributionInfo();
+        return info1.getType() == DistributionInfoType.HASH && info2.getType() == DistributionInfoType.HASH
+                && ((HashDistributionInfo) info1).isColocateCompatible((HashDistributionInfo) info2);
+    }
+}
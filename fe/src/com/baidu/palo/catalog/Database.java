@@ -25,14 +25,16 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 import java.util.zip.Adler32;
 
 import org.apache.logging.log4j.LogManager;
@@ -48,7 +50,9 @@ import com.baidu.palo.common.FeMetaVersion;
 import com.baidu.palo.common.Pair;
 import com.baidu.palo.common.io.Text;
 import com.baidu.palo.common.io.Writable;
+import com.baidu.palo.common.util.BucketHistogram;
 import com.baidu.palo.common.util.DebugUtil;
+import com.baidu.palo.common.util.Metrics;
 import com.baidu.palo.persist.CreateTableInfo;
 import com.baidu.palo.system.SystemInfoService;
 import com.google.common.base.Preconditions;
@@ -68,6 +72,12 @@ import com.google.common.base.Preconditions;
  */
 public class Database extends MetaObject implements Writable {
     private static final Logger LOG = LogManager.getLogger(Database.class);
+    // time to wait for readLock() and writeLock() of all databases, in microseconds.
+    // only waits of locks which are not free at once are recorded, so the uncontended path is not timed.
+    private static final BucketHistogram READ_LOCK_WAIT_HISTOGRAM = (BucketHistogram) Metrics.getMetric(
+            Metrics.MetricType.BUCKET_HISTOGRAM, "db_lock.read_wait_us");
+    private static final BucketHistogram WRITE_LOCK_WAIT_HISTOGRAM = (BucketHistogram) Metrics.getMetric(
+            Metrics.MetricType.BUCKET_HISTOGRAM, "db_lock.write_wait_us");
 
     // empirical value.
     // assume that the time a lock is held by thread is less then 100ms
@@ -77,8 +87,13 @@ public class Database extends MetaObject implements Writable {
     private String name;
     private String clusterName;
     private ReentrantReadWriteLock rwLock;
+    // Only used to validate optimistic reads. It is write locked while rwLock's write lock is held,
+    // so optimistic readers can find out whether db is modified during their reading.
+    private final StampedLock versionLock = new StampedLock();
+    private long versionStamp;
 
-    // table family group map
+    // table family group map.
+    // modified with db write lock, and can be read without lock.
     private Map<Long, Table> idToTable;
     private Map<String, Table> nameToTable;
 
@@ -103,8 +118,8 @@ public class Database extends MetaObject implements Writable {
             this.name = "";
         }
         this.rwLock = new ReentrantReadWriteLock(true);
-        this.idToTable = new HashMap<Long, Table>();
-        this.nameToTable = new HashMap<String, Table>();
+        this.idToTable = new ConcurrentHashMap<Long, Table>();
+        this.nameToTable = new ConcurrentHashMap<String, Table>();
         this.dataQuotaBytes = FeConstants.default_db_data_quota_bytes;
         this.dbState = DbState.NORMAL;
         this.attachDbName = "";
@@ -121,7 +136,12 @@ public class Database extends MetaObject implements Writable {
     }
 
     public void readLock() {
+        if (tryLockAtOnce(this.rwLock.readLock())) {
+            return;
+        }
+        long start = System.nanoTime();
         this.rwLock.readLock().lock();
+        READ_LOCK_WAIT_HISTOGRAM.update((System.nanoTime() - start) / 1000);
     }
 
     public boolean tryReadLock(long timeout, TimeUnit unit) {
@@ -138,12 +158,32 @@ public class Database extends MetaObject implements Writable {
     }
 
     public void writeLock() {
-        this.rwLock.writeLock().lock();
+        if (!tryLockAtOnce(this.rwLock.writeLock())) {
+            long start = System.nanoTime();
+            this.rwLock.writeLock().lock();
+            WRITE_LOCK_WAIT_HISTOGRAM.update((System.nanoTime() - start) / 1000);
+        }
+        onWriteLocked();
+    }
+
+    // tryLock() without timeout barges in even if other threads are waiting, while a zero timeout one
+    // honors fairness of the lock.
+    private static boolean tryLockAtOnce(Lock lock) {
+        try {
+            return lock.tryLock(0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
     public boolean tryWriteLock(long timeout, TimeUnit unit) {
         try {
-            return this.rwLock.writeLock().tryLock(timeout, unit);
+            if (this.rwLock.writeLock().tryLock(timeout, unit)) {
+                onWriteLocked();
+                return true;
+            }
+            return false;
         } catch (InterruptedException e) {
             LOG.warn("failed to try write lock at db[" + id + "]", e);
             return false;
@@ -151,9 +191,30 @@ public class Database extends MetaObject implements Writable {
     }
 
     public void writeUnlock() {
+        if (this.rwLock.getWriteHoldCount() == 1) {
+            versionLock.unlockWrite(versionStamp);
+        }
         this.rwLock.writeLock().unlock();
     }
 
+    private void onWriteLocked() {
+        // write lock is reentrant, only the outermost one changes version
+        if (this.rwLock.getWriteHoldCount() == 1) {
+            // never blocks, since there is no other writer and readers are all optimistic
+            versionStamp = versionLock.writeLock();
+        }
+    }
+
+    // Return a stamp for reading db without lock, or 0 if db is being written.
+    public long tryOptimisticRead() {
+        return versionLock.tryOptimisticRead();
+    }
+
+    // Return true if db is not written since the stamp is returned by tryOptimisticRead().
+    public boolean validate(long stamp) {
+        return stamp != 0 && versionLock.validate(stamp);
+    }
+
     public boolean isWriteLockHeldByCurrentThread() {
         return this.rwLock.writeLock().isHeldByCurrentThread();
     }
@@ -299,6 +360,17 @@ public class Database extends MetaObject implements Writable {
         }
     }
 
+    // The table is found by the new name before it is removed by the old one, so lookups without lock
+    // always find it by one of them.
+    public void renameTable(String tableName, String newTableName) {
+        Table table = this.nameToTable.get(tableName);
+        if (table != null) {
+            table.setName(newTableName);
+            this.nameToTable.put(newTableName, table);
+            this.nameToTable.remove(tableName);
+        }
+    }
+
     public List<Table> getTables() {
         List<Table> tables = new ArrayList<Table>(idToTable.values());
         return tables;
@@ -318,10 +390,10 @@ public class Database extends MetaObject implements Writable {
     }
 
     public Table getTable(String tableName) {
-        if (nameToTable.containsKey(tableName)) {
-            return nameToTable.get(tableName);
+        if (tableName == null) {
+            return null;
         }
-        return null;
+        return nameToTable.get(tableName);
     }
 
     public Table getTable(long tableId) {
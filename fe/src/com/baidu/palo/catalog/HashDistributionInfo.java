@@ -100,6 +100,20 @@ public class HashDistributionInfo extends DistributionInfo {
                 && distributionColumns.equals(hashDistributionInfo.distributionColumns);
     }
 
+    // Tables with the same bucket num and distribution column types put rows with the same distribution
+    // values into buckets of the same sequence, so their buckets can be placed together.
+    public boolean isColocateCompatible(HashDistributionInfo other) {
+        if (bucketNum != other.bucketNum || distributionColumns.size() != other.distributionColumns.size()) {
+            return false;
+        }
+        for (int i = 0; i < distributionColumns.size(); i++) {
+            if (!distributionColumns.get(i).getColumnType().equals(other.distributionColumns.get(i).getColumnType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public DistributionDesc toDistributionDesc() {
         List<String> distriColNames = Lists.newArrayList();
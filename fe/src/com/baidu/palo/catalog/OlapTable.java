@@ -101,6 +101,9 @@ public class OlapTable extends Table {
     private Set<String> bfColumns;
     private double bfFpp;
 
+    // name of the colocate group in the db, null if not colocated with other tables
+    private String colocateGroup;
+
     public OlapTable() {
         // for persist
         super(TableType.OLAP);
@@ -407,6 +410,14 @@ public class OlapTable extends Table {
         this.bfFpp = bfFpp;
     }
 
+    public String getColocateGroup() {
+        return colocateGroup;
+    }
+
+    public void setColocateGroup(String colocateGroup) {
+        this.colocateGroup = colocateGroup;
+    }
+
     public TTableDescriptor toThrift() {
         TOlapTable tOlapTable = new TOlapTable(getName());
         TTableDescriptor tTableDescriptor = new TTableDescriptor(id, TTableType.OLAP_TABLE,
@@ -647,6 +658,14 @@ public class OlapTable extends Table {
             }
             out.writeDouble(bfFpp);
         }
+
+        // colocate group
+        if (colocateGroup == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            Text.writeString(out, colocateGroup);
+        }
     }
 
     @Override
@@ -728,6 +747,12 @@ public class OlapTable extends Table {
                 bfFpp = in.readDouble();
             }
         }
+
+        if (Catalog.getCurrentCatalogJournalVersion() >= FeMetaVersion.VERSION_35) {
+            if (in.readBoolean()) {
+                colocateGroup = Text.readString(in);
+            }
+        }
     }
 
     public boolean equals(Table table) {
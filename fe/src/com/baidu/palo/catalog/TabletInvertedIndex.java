@@ -20,6 +20,7 @@
 
 package com.baidu.palo.catalog;
 
+import com.baidu.palo.common.collections.LongObjectHashMap;
 import com.baidu.palo.thrift.TStorageMedium;
 import com.baidu.palo.thrift.TTablet;
 import com.baidu.palo.thrift.TTabletInfo;
@@ -28,13 +29,11 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Table;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -52,7 +51,7 @@ public class TabletInvertedIndex {
     private ReentrantReadWriteLock lock;
 
     // tablet id -> tablet meta
-    private Map<Long, TabletMeta> tabletMetaMap;
+    private LongObjectHashMap<TabletMeta> tabletMetaMap;
     
     /*
      *  we use this to save memory.
@@ -65,15 +64,19 @@ public class TabletInvertedIndex {
      */
     private Table<Long, Long, TabletMeta> tabletMetaTable;
     
-    // tablet id -> (backend id -> replica)
-    private Table<Long, Long, Replica> replicaMetaTable;
+    /*
+     * backend id -> (tablet id -> replica)
+     * replicas are grouped by backend, so tablet report walks the replicas of one backend directly.
+     * maps with primitive keys are used since there may be tens of millions of replicas.
+     */
+    private LongObjectHashMap<LongObjectHashMap<Replica>> backendReplicas;
 
     public TabletInvertedIndex() {
         lock = new ReentrantReadWriteLock();
 
-        tabletMetaMap = Maps.newHashMap();
+        tabletMetaMap = new LongObjectHashMap<TabletMeta>();
         tabletMetaTable = HashBasedTable.create();
-        replicaMetaTable = HashBasedTable.create();
+        backendReplicas = new LongObjectHashMap<LongObjectHashMap<Replica>>();
     }
 
     private final void readLock() {
@@ -92,60 +95,42 @@ public class TabletInvertedIndex {
         this.lock.writeLock().unlock();
     }
 
-    public void tabletReport(long backendId, Map<Long, TTablet> backendTablets,
-                             final HashMap<Long, TStorageMedium> storageMediumMap,
-                             ListMultimap<Long, Long> tabletSyncMap,
-                             ListMultimap<Long, Long> tabletDeleteFromMeta,
-                             Set<Long> foundTabletsWithValidSchema,
-                             Map<Long, TTabletInfo> foundTabletsWithInvalidSchema,
-                             ListMultimap<TStorageMedium, Long> tabletMigrationMap) {
+    public void tabletReport(final long backendId, final Map<Long, TTablet> backendTablets,
+                             final Map<Long, TStorageMedium> storageMediumMap,
+                             final ListMultimap<Long, Long> tabletSyncMap,
+                             final ListMultimap<Long, Long> tabletDeleteFromMeta,
+                             final Set<Long> foundTabletsWithValidSchema,
+                             final Map<Long, TTabletInfo> foundTabletsWithInvalidSchema,
+                             final ListMultimap<TStorageMedium, Long> tabletMigrationMap) {
 
         long start = 0L;
         readLock();
         try {
             LOG.info("begin to do tablet diff with backend[{}]. num: {}", backendId, backendTablets.size());
             start = System.currentTimeMillis();
-            Map<Long, Replica> replicaMetaWithBackend = replicaMetaTable.column(backendId);
+            LongObjectHashMap<Replica> replicaMetaWithBackend = backendReplicas.get(backendId);
             if (replicaMetaWithBackend != null) {
                 // traverse replicas in meta with this backend
-                for (Map.Entry<Long, Replica> entry : replicaMetaWithBackend.entrySet()) {
-                    long tabletId = entry.getKey();
-                    Preconditions.checkState(tabletMetaMap.containsKey(tabletId));
-                    TabletMeta tabletMeta = tabletMetaMap.get(tabletId);
+                replicaMetaWithBackend.forEach(new LongObjectHashMap.EntryVisitor<Replica>() {
+                    @Override
+                    public void visit(long tabletId, Replica replica) {
+                        TabletMeta tabletMeta = tabletMetaMap.get(tabletId);
+                        Preconditions.checkState(tabletMeta != null);
 
-                    if (backendTablets.containsKey(tabletId)) {
                         TTablet backendTablet = backendTablets.get(tabletId);
-                        Replica replica = entry.getValue();
-                        for (TTabletInfo backendTabletInfo : backendTablet.getTablet_infos()) {
-                            if (tabletMeta.containsSchemaHash(backendTabletInfo.getSchema_hash())) {
-                                foundTabletsWithValidSchema.add(tabletId);
-                                // 1. (intersection)
-                                if (checkSync(replica, backendTabletInfo.getVersion(),
-                                              backendTabletInfo.getVersion_hash())) {
-                                    // need sync
-                                    tabletSyncMap.put(tabletMeta.getDbId(), tabletId);
-                                }
-
-                                // check if need migration
-                                long partitionId = tabletMeta.getPartitionId();
-                                TStorageMedium storageMedium = storageMediumMap.get(partitionId);
-                                if (storageMedium != null && backendTabletInfo.isSetStorage_medium()) {
-                                    if (storageMedium != backendTabletInfo.getStorage_medium()) {
-                                        tabletMigrationMap.put(storageMedium, tabletId);
-                                    }
-                                }
-                            } else {
-                                // tablet with invalid schemahash
-                                foundTabletsWithInvalidSchema.put(tabletId, backendTabletInfo);
-                            }
-                        } // end for be tablet info
-                    } else {
-                        // 2. (meta - be)
-                        // may need delete from meta
-                        LOG.debug("backend[{}] does not report tablet[{}-{}]", backendId, tabletId, tabletMeta);
-                        tabletDeleteFromMeta.put(tabletMeta.getDbId(), tabletId);
+                        if (backendTablet != null) {
+                            // 1. (intersection)
+                            diffTablet(tabletId, tabletMeta, replica, backendTablet,
+                                       storageMediumMap, tabletSyncMap, foundTabletsWithValidSchema,
+                                       foundTabletsWithInvalidSchema, tabletMigrationMap);
+                        } else {
+                            // 2. (meta - be)
+                            // may need delete from meta
+                            LOG.debug("backend[{}] does not report tablet[{}-{}]", backendId, tabletId, tabletMeta);
+                            tabletDeleteFromMeta.put(tabletMeta.getDbId(), tabletId);
+                        }
                     }
-                } // end for replicaMetaWithBackend
+                }); // end for replicaMetaWithBackend
             }
         } finally {
             readUnlock();
@@ -158,13 +143,94 @@ public class TabletInvertedIndex {
                  tabletMigrationMap.size(), (end - start));
     }
 
-    public long getDbId(long tabletId) {
+    /*
+     * Same as tabletReport(), but only diff the tablets changed or removed since the last report,
+     * instead of all replicas of the backend.
+     * Tablets not in 'changedTablets' are treated as unchanged, only 'removedTabletIds' may be
+     * deleted from meta.
+     */
+    public void tabletDeltaReport(long backendId, Map<Long, TTablet> changedTablets, Set<Long> removedTabletIds,
+                                  final Map<Long, TStorageMedium> storageMediumMap,
+                                  ListMultimap<Long, Long> tabletSyncMap,
+                                  ListMultimap<Long, Long> tabletDeleteFromMeta,
+                                  Set<Long> foundTabletsWithValidSchema,
+                                  Map<Long, TTabletInfo> foundTabletsWithInvalidSchema,
+                                  ListMultimap<TStorageMedium, Long> tabletMigrationMap) {
+        long start = System.currentTimeMillis();
         readLock();
         try {
-            if (tabletMetaMap.containsKey(tabletId)) {
-                return tabletMetaMap.get(tabletId).getDbId();
+            LongObjectHashMap<Replica> replicaMetaWithBackend = backendReplicas.get(backendId);
+            if (replicaMetaWithBackend == null) {
+                replicaMetaWithBackend = new LongObjectHashMap<Replica>();
+            }
+            for (Map.Entry<Long, TTablet> entry : changedTablets.entrySet()) {
+                long tabletId = entry.getKey();
+                Replica replica = replicaMetaWithBackend.get(tabletId);
+                if (replica == null) {
+                    // (be - meta), handled by caller
+                    continue;
+                }
+                diffTablet(tabletId, tabletMetaMap.get(tabletId), replica, entry.getValue(),
+                           storageMediumMap, tabletSyncMap, foundTabletsWithValidSchema,
+                           foundTabletsWithInvalidSchema, tabletMigrationMap);
+            }
+
+            for (Long tabletId : removedTabletIds) {
+                if (!replicaMetaWithBackend.containsKey(tabletId)) {
+                    continue;
+                }
+                TabletMeta tabletMeta = tabletMetaMap.get(tabletId);
+                LOG.debug("backend[{}] removes tablet[{}-{}]", backendId, tabletId, tabletMeta);
+                tabletDeleteFromMeta.put(tabletMeta.getDbId(), tabletId);
             }
-            return NOT_EXIST_VALUE;
+        } finally {
+            readUnlock();
+        }
+
+        long end = System.currentTimeMillis();
+        LOG.info("finished to do tablet delta diff with backend[{}]. changed: {}. removed: {}. sync: {}. metaDel: {}."
+                         + " foundValid: {}. foundInvalid: {}. migration: {}. cost: {} ms",
+                 backendId, changedTablets.size(), removedTabletIds.size(), tabletSyncMap.size(),
+                 tabletDeleteFromMeta.size(), foundTabletsWithValidSchema.size(), foundTabletsWithInvalidSchema.size(),
+                 tabletMigrationMap.size(), (end - start));
+    }
+
+    // diff one tablet which exists both in meta and backend
+    private void diffTablet(long tabletId, TabletMeta tabletMeta, Replica replica, TTablet backendTablet,
+                            Map<Long, TStorageMedium> storageMediumMap,
+                            ListMultimap<Long, Long> tabletSyncMap,
+                            Set<Long> foundTabletsWithValidSchema,
+                            Map<Long, TTabletInfo> foundTabletsWithInvalidSchema,
+                            ListMultimap<TStorageMedium, Long> tabletMigrationMap) {
+        for (TTabletInfo backendTabletInfo : backendTablet.getTablet_infos()) {
+            if (tabletMeta.containsSchemaHash(backendTabletInfo.getSchema_hash())) {
+                foundTabletsWithValidSchema.add(tabletId);
+                if (checkSync(replica, backendTabletInfo.getVersion(),
+                              backendTabletInfo.getVersion_hash())) {
+                    // need sync
+                    tabletSyncMap.put(tabletMeta.getDbId(), tabletId);
+                }
+
+                // check if need migration
+                long partitionId = tabletMeta.getPartitionId();
+                TStorageMedium storageMedium = storageMediumMap.get(partitionId);
+                if (storageMedium != null && backendTabletInfo.isSetStorage_medium()) {
+                    if (storageMedium != backendTabletInfo.getStorage_medium()) {
+                        tabletMigrationMap.put(storageMedium, tabletId);
+                    }
+                }
+            } else {
+                // tablet with invalid schemahash
+                foundTabletsWithInvalidSchema.put(tabletId, backendTabletInfo);
+            }
+        } // end for be tablet info
+    }
+
+    public long getDbId(long tabletId) {
+        readLock();
+        try {
+            TabletMeta tabletMeta = tabletMetaMap.get(tabletId);
+            return tabletMeta == null ? NOT_EXIST_VALUE : tabletMeta.getDbId();
         } finally {
             readUnlock();
         }
@@ -173,10 +239,8 @@ public class TabletInvertedIndex {
     public long getTableId(long tabletId) {
         readLock();
         try {
-            if (tabletMetaMap.containsKey(tabletId)) {
-                return tabletMetaMap.get(tabletId).getTableId();
-            }
-            return NOT_EXIST_VALUE;
+            TabletMeta tabletMeta = tabletMetaMap.get(tabletId);
+            return tabletMeta == null ? NOT_EXIST_VALUE : tabletMeta.getTableId();
         } finally {
             readUnlock();
         }
@@ -185,10 +249,8 @@ public class TabletInvertedIndex {
     public long getPartitionId(long tabletId) {
         readLock();
         try {
-            if (tabletMetaMap.containsKey(tabletId)) {
-                return tabletMetaMap.get(tabletId).getPartitionId();
-            }
-            return NOT_EXIST_VALUE;
+            TabletMeta tabletMeta = tabletMetaMap.get(tabletId);
+            return tabletMeta == null ? NOT_EXIST_VALUE : tabletMeta.getPartitionId();
         } finally {
             readUnlock();
         }
@@ -197,10 +259,8 @@ public class TabletInvertedIndex {
     public long getIndexId(long tabletId) {
         readLock();
         try {
-            if (tabletMetaMap.containsKey(tabletId)) {
-                return tabletMetaMap.get(tabletId).getIndexId();
-            }
-            return NOT_EXIST_VALUE;
+            TabletMeta tabletMeta = tabletMetaMap.get(tabletId);
+            return tabletMeta == null ? NOT_EXIST_VALUE : tabletMeta.getIndexId();
         } finally {
             readUnlock();
         }
@@ -210,10 +270,8 @@ public class TabletInvertedIndex {
         // always get old schema hash(as effective one)
         readLock();
         try {
-            if (tabletMetaMap.containsKey(tabletId)) {
-                return tabletMetaMap.get(tabletId).getOldSchemaHash();
-            }
-            return NOT_EXIST_VALUE;
+            TabletMeta tabletMeta = tabletMetaMap.get(tabletId);
+            return tabletMeta == null ? NOT_EXIST_VALUE : tabletMeta.getOldSchemaHash();
         } finally {
             readUnlock();
         }
@@ -256,13 +314,20 @@ public class TabletInvertedIndex {
         }
     }
 
-    public void deleteTablet(long tabletId) {
+    public void deleteTablet(final long tabletId) {
         if (Catalog.isCheckpointThread()) {
             return;
         }
         writeLock();
         try {
-            replicaMetaTable.rowMap().remove(tabletId);
+            // replicas of a tablet are on a few backends, but there is no index from tablet to backends.
+            // number of backends is small, so just try all of them.
+            backendReplicas.forEach(new LongObjectHashMap.EntryVisitor<LongObjectHashMap<Replica>>() {
+                @Override
+                public void visit(long backendId, LongObjectHashMap<Replica> replicas) {
+                    replicas.remove(tabletId);
+                }
+            });
             TabletMeta tabletMeta = tabletMetaMap.remove(tabletId);
             if (tabletMeta != null) {
                 tabletMetaTable.remove(tabletMeta.getPartitionId(), tabletMeta.getIndexId());
@@ -279,7 +344,12 @@ public class TabletInvertedIndex {
         writeLock();
         try {
             Preconditions.checkState(tabletMetaMap.containsKey(tabletId));
-            replicaMetaTable.put(tabletId, replica.getBackendId(), replica);
+            LongObjectHashMap<Replica> replicas = backendReplicas.get(replica.getBackendId());
+            if (replicas == null) {
+                replicas = new LongObjectHashMap<Replica>();
+                backendReplicas.put(replica.getBackendId(), replicas);
+            }
+            replicas.put(tabletId, replica);
         } finally {
             writeUnlock();
         }
@@ -292,14 +362,13 @@ public class TabletInvertedIndex {
         writeLock();
         try {
             Preconditions.checkState(tabletMetaMap.containsKey(tabletId));
-            // Preconditions.checkState(replicaMetaTable.containsRow(tabletId));
-            if (replicaMetaTable.containsRow(tabletId)) {
-                replicaMetaTable.remove(tabletId, backendId);
+            LongObjectHashMap<Replica> replicas = backendReplicas.get(backendId);
+            if (replicas != null && replicas.remove(tabletId) != null) {
                 LOG.debug("delete tablet[{}] in backend[{}]", tabletId, backendId);
             } else {
                 // this may happend when fe restart after tablet is empty(bug cause)
                 // add log instead of assertion to observe
-                LOG.error("tablet[{}] contains no replica in inverted index", tabletId);
+                LOG.error("tablet[{}] contains no replica of backend[{}] in inverted index", tabletId, backendId);
             }
         } finally {
             writeUnlock();
@@ -352,9 +421,11 @@ public class TabletInvertedIndex {
         List<Long> tabletIds = Lists.newArrayList();
         readLock();
         try {
-            Map<Long, Replica> replicaMetaWithBackend = replicaMetaTable.column(backendId);
+            LongObjectHashMap<Replica> replicaMetaWithBackend = backendReplicas.get(backendId);
             if (replicaMetaWithBackend != null) {
-                tabletIds.addAll(replicaMetaWithBackend.keySet());
+                for (long tabletId : replicaMetaWithBackend.keys()) {
+                    tabletIds.add(tabletId);
+                }
             }
         } finally {
             readUnlock();
@@ -365,7 +436,7 @@ public class TabletInvertedIndex {
     public int getTabletNumByBackendId(long backendId) {
         readLock();
         try {
-            Map<Long, Replica> replicaMetaWithBackend = replicaMetaTable.column(backendId);
+            LongObjectHashMap<Replica> replicaMetaWithBackend = backendReplicas.get(backendId);
             if (replicaMetaWithBackend != null) {
                 return replicaMetaWithBackend.size();
             }
@@ -381,7 +452,7 @@ public class TabletInvertedIndex {
         try {
             tabletMetaMap.clear();
             tabletMetaTable.clear();
-            replicaMetaTable.clear();
+            backendReplicas.clear();
         } finally {
             writeUnlock();
         }
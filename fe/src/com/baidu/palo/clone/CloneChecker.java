@@ -33,6 +33,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.baidu.palo.catalog.Catalog;
+import com.baidu.palo.catalog.ColocateGroup;
 import com.baidu.palo.catalog.DataProperty;
 import com.baidu.palo.catalog.Database;
 import com.baidu.palo.catalog.MaterializedIndex;
@@ -149,8 +150,16 @@ public class CloneChecker extends Daemon {
                 return false;
             }
 
+            // expected backends of each bucket if the table is colocated
+            List<List<Long>> bucketBackends = null;
+            if (olapTable.getColocateGroup() != null) {
+                bucketBackends = ColocateGroup.getBucketBackends(db, olapTable.getColocateGroup());
+            }
+
             boolean foundTablet = false;
+            int bucketSeq = -1;
             for (Tablet tablet : index.getTablets()) {
+                bucketSeq++;
                 List<Replica> replicas = tablet.getReplicas();
                 short onlineReplicaNum = 0;
                 long tabletSizeB = 0L;
@@ -183,6 +192,9 @@ public class CloneChecker extends Daemon {
                     foundTablet = true;
                     tabletInfo = new TabletInfo(dbId, tableId, partitionId, indexId, tabletId, replicationNum,
                             onlineReplicaNum, tabletSizeB, backendIds);
+                    if (bucketBackends != null && bucketSeq < bucketBackends.size()) {
+                        tabletInfo.setColocateBackendIds(bucketBackends.get(bucketSeq));
+                    }
                 }
             }
             if (!foundTablet) {
@@ -275,6 +287,8 @@ public class CloneChecker extends Daemon {
                 long tableId = -1L;
                 Multimap<Long, MaterializedIndex> partitionIdToIndices = LinkedHashMultimap.create();
                 Map<Long, Short> partitionIdToReplicationNumMap = new HashMap<Long, Short>();
+                // expected backends of each bucket if the table is colocated
+                List<List<Long>> bucketBackends = null;
                 db.readLock();
                 try {
                     Table table = db.getTable(tableName);
@@ -284,6 +298,9 @@ public class CloneChecker extends Daemon {
 
                     OlapTable olapTable = (OlapTable) table;
                     tableId = table.getId();
+                    if (olapTable.getColocateGroup() != null) {
+                        bucketBackends = ColocateGroup.getBucketBackends(db, olapTable.getColocateGroup());
+                    }
                     for (Partition partition : olapTable.getPartitions()) {
                         long partitionId = partition.getId();
                         for (MaterializedIndex materializedIndex : partition.getMaterializedIndices()) {
@@ -316,11 +333,15 @@ public class CloneChecker extends Daemon {
                     Map<Long, TabletInfo> cloneTabletMap = new HashMap<Long, TabletInfo>();
                     // tablets that need delete replica
                     Set<TabletInfo> deleteTabletSet = new HashSet<TabletInfo>();
+                    // tablets of colocate table with replicas out of the layout of its group
+                    List<TabletInfo> misplacedTablets = Lists.newArrayList();
                     db.readLock();
                     try {
                         long indexId = index.getId();
                         short replicationNum = partitionIdToReplicationNumMap.get(partitionId);
+                        int bucketSeq = -1;
                         for (Tablet tablet : index.getTablets()) {
+                            bucketSeq++;
                             long tabletId = tablet.getId();
                             List<Replica> replicas = tablet.getReplicas();
                             short onlineReplicaNum = 0;
@@ -350,6 +371,18 @@ public class CloneChecker extends Daemon {
                             TabletInfo tabletInfo = new TabletInfo(dbId, tableId, partitionId, indexId, tabletId,
                                     replicationNum, onlineReplicaNum, tabletSizeB, backendIds);
                             tabletInfo.setDbState(db.getDbState());
+                            boolean isMisplaced = false;
+                            if (bucketBackends != null && bucketSeq < bucketBackends.size()) {
+                                List<Long> colocateBackendIds = bucketBackends.get(bucketSeq);
+                                tabletInfo.setColocateBackendIds(colocateBackendIds);
+                                // a replica should be moved to an available backend of the colocate layout
+                                for (long backendId : colocateBackendIds) {
+                                    if (!backendIds.contains(backendId) && clusterBackendInfos.containsKey(backendId)) {
+                                        isMisplaced = true;
+                                        break;
+                                    }
+                                }
+                            }
 
                             
                             for (long backendId : backendIds) {
@@ -376,6 +409,11 @@ public class CloneChecker extends Daemon {
                             } else if (onlineReplicaNumInCluster < replicationNum 
                                     && !cloneTabletIds.contains(tabletId)) {
                                 cloneTabletMap.put(tabletId, tabletInfo);
+                            } else if (isMisplaced && replicas.size() == replicationNum
+                                    && onlineReplicaNum >= replicationNum && !cloneTabletIds.contains(tabletId)) {
+                                // clone a replica to the colocate layout first, the misplaced one is deleted
+                                // as a redundant replica after that
+                                misplacedTablets.add(tabletInfo);
                             }
                         }
                     } finally {
@@ -403,6 +441,9 @@ public class CloneChecker extends Daemon {
                         // migration
                         checkMigration(backendToTablets, clusterDistributionLevelToBackendIds,
                                 cluserCapacityLevelToBackendIds, clusterBackendInfos);
+                        // colocate
+                        checkColocateMigration(misplacedTablets, clusterDistributionLevelToBackendIds,
+                                cluserCapacityLevelToBackendIds, clusterBackendInfos);
                     } else {
                         LOG.warn("init backend distribution infos error");
                     }
@@ -579,6 +620,19 @@ public class CloneChecker extends Daemon {
         // candidate backend from which step for debug
         String step = "-1";
 
+        // replicas of colocate tables should be on the backends of the layout of the bucket
+        if (tabletInfo.getColocateBackendIds() != null) {
+            for (long backendId : tabletInfo.getColocateBackendIds()) {
+                if (!existBackendIds.contains(backendId) && backendInfos.containsKey(backendId)) {
+                    LOG.debug("select colocate backend for tablet: {}. dest backend id: {}", tabletInfo, backendId);
+                    candidateBackendInfo = backendInfos.get(backendId);
+                    candidateBackendInfo.decreaseCloneCapacityB(tabletSizeB);
+                    candidateBackendInfo.decreaseCloneReplicaNum();
+                    return backendId;
+                }
+            }
+        }
+
         if (priority == JobPriority.HIGH || priority == JobPriority.NORMAL) {
             // 1. HIGH priority
             List<Long> allBackendIds = Lists.newArrayList();
@@ -808,6 +862,32 @@ public class CloneChecker extends Daemon {
                     continue;
                 }
 
+                // delete replica out of the colocate layout
+                List<Long> colocateBackendIds = tabletInfo.getColocateBackendIds();
+                if (colocateBackendIds != null) {
+                    Replica misplacedReplica = null;
+                    for (Replica replica : replicas) {
+                        if (!colocateBackendIds.contains(replica.getBackendId())) {
+                            misplacedReplica = replica;
+                            break;
+                        }
+                    }
+                    if (misplacedReplica != null && tablet.deleteReplica(misplacedReplica)) {
+                        --deleteNum;
+                        long backendId = misplacedReplica.getBackendId();
+                        Catalog.getInstance().handleJobsWhenDeleteReplica(tableId, partitionId, indexId, tabletId,
+                                misplacedReplica.getId(), backendId);
+
+                        // write edit log
+                        ReplicaPersistInfo info = ReplicaPersistInfo.createForDelete(db.getId(), tableId, partitionId,
+                                indexId, tabletId, backendId);
+                        Catalog.getInstance().getEditLog().logDeleteReplica(info);
+
+                        LOG.info("delete replica [colocate], backendId: {}, tablet info: {}", backendId, tabletInfo);
+                        continue;
+                    }
+                }
+
                 // delete high distribution backend, order by level desc and
                 // shuffle in level
                 List<Long> backendIds = Lists.newArrayList();
@@ -868,7 +948,12 @@ public class CloneChecker extends Daemon {
         Set<TabletInfo> candidateMigrationTablets = new HashSet<TabletInfo>();
         for (long backendId : highBackendIds) {
             if (backendToTablets.containsKey(backendId)) {
-                candidateMigrationTablets.addAll(backendToTablets.get(backendId));
+                for (TabletInfo tabletInfo : backendToTablets.get(backendId)) {
+                    // replicas of colocate tables are kept by the layout of their group, not balanced
+                    if (tabletInfo.getColocateBackendIds() == null) {
+                        candidateMigrationTablets.add(tabletInfo);
+                    }
+                }
             }
         }
         if (candidateMigrationTablets.isEmpty()) {
@@ -894,6 +979,25 @@ public class CloneChecker extends Daemon {
         }
     }
 
+    private void checkColocateMigration(List<TabletInfo> misplacedTablets,
+            Map<Level, Set<Long>> distributionLevelToBackendIds, Map<Level, Set<Long>> capacityLevelToBackendIds,
+            Map<Long, BackendInfo> backendInfos) {
+        if (misplacedTablets.isEmpty()) {
+            return;
+        }
+        List<TabletInfo> migrationTablets = misplacedTablets;
+        if (misplacedTablets.size() > CHECK_TABLE_TABLET_NUM_PER_MIGRATION_CYCLE) {
+            migrationTablets = Util.sample(misplacedTablets, CHECK_TABLE_TABLET_NUM_PER_MIGRATION_CYCLE);
+            if (migrationTablets == null) {
+                return;
+            }
+        }
+        for (TabletInfo tabletInfo : migrationTablets) {
+            addCloneJob(tabletInfo, distributionLevelToBackendIds, capacityLevelToBackendIds, backendInfos,
+                    JobType.MIGRATION);
+        }
+    }
+
     private void addCloneJob(TabletInfo tabletInfo, Map<Level, Set<Long>> distributionLevelToBackendIds,
             Map<Level, Set<Long>> capacityLevelToBackendIds, Map<Long, BackendInfo> backendInfos, JobType jobType) {
         // priority
@@ -1114,6 +1218,8 @@ public class CloneChecker extends Daemon {
         private long tabletSizeB;
         private Set<Long> backendIds;
         private DbState dbState;
+        // backends expected by the colocate group layout, null if the table is not colocated
+        private List<Long> colocateBackendIds;
 
         public TabletInfo(long dbId, long tableId, long partitionId, long indexId, long tabletId, short replicationNum,
                 short onlineReplicaNum, long tabletSizeB, Set<Long> backendIds) {
@@ -1179,6 +1285,14 @@ public class CloneChecker extends Daemon {
         public void setDbState(DbState dbState) {
             this.dbState = dbState;
         }
+
+        public List<Long> getColocateBackendIds() {
+            return colocateBackendIds;
+        }
+
+        public void setColocateBackendIds(List<Long> colocateBackendIds) {
+            this.colocateBackendIds = colocateBackendIds;
+        }
     }
 
     private class BackendInfo {
@@ -43,6 +43,25 @@ public class Config extends ConfigBase {
     @ConfField public static String edit_log_type = "BDB";    // BDB, LOCAL
     @ConfField public static int edit_log_port = 9010;        // Only used when edit_log_type = "BDB
     @ConfField public static int edit_log_roll_num = 100000;
+    // If true, concurrent edit log writes are packed into one bdb transaction by a writer thread.
+    @ConfField public static boolean edit_log_group_commit = false;
+    @ConfField public static int edit_log_group_commit_max_batch = 1024;
+    // number of threads to serialize and deserialize databases in image, 0 means number of cpu cores
+    @ConfField public static int meta_image_parallelism = 0;
+    // Number of journals prefetched and deserialized ahead of replaying, 0 means no prefetch.
+    @ConfField public static int journal_prefetch_queue_size = 1024;
+    // Replay thread notifies waiting observers at least once every this number of journals.
+    @ConfField public static int journal_replay_notify_batch_size = 100;
+    /*
+     * If true, checkpoint does not deserialize all databases of the last image. Only databases touched by
+     * the journals to replay are loaded, others are copied from the last image to the new one as raw bytes.
+     * So checkpoint does not need a second copy of all metadata in memory.
+     */
+    @ConfField public static boolean checkpoint_lazy_load_db = false;
+    // If true, image is compressed by deflate when transferred between frontends.
+    @ConfField public static boolean meta_image_transfer_compress = true;
+    // Times to resume downloading image from where it is interrupted.
+    @ConfField public static int meta_image_transfer_retry_times = 3;
     @ConfField public static int meta_delay_toleration_second = 300;    // 5 min
     @ConfField public static String master_sync_policy = "WRITE_NO_SYNC"; // SYNC, NO_SYNC, WRITE_NO_SYNC
     @ConfField public static String replica_sync_policy = "WRITE_NO_SYNC"; // SYNC, NO_SYNC, WRITE_NO_SYNC
@@ -68,6 +87,14 @@ public class Config extends ConfigBase {
     @ConfField public static boolean ignore_meta_check = false;
 
     @ConfField public static int http_port = 8030;
+    // Threads and queue size of the pool running blocking http actions, see ActionDispatcher.
+    @ConfField public static int http_action_thread_num = 32;
+    @ConfField public static int http_action_queue_size = 1024;
+    // Max number of requests of one http action running or waiting in the pool, others are rejected with 503.
+    @ConfField public static int http_action_max_concurrency_per_action = 64;
+    // If true, data of http mini load is streamed to a backend through this frontend, see LoadProxyHandler.
+    // Otherwise clients are redirected to a backend.
+    @ConfField public static boolean enable_http_load_proxy = false;
     @ConfField public static int rpc_port = 9020;
     @ConfField public static int query_port = 9030;
 
@@ -86,6 +113,10 @@ public class Config extends ConfigBase {
     @ConfField public static int load_etl_thread_num_normal_priority = 10;
     @ConfField public static int load_input_size_limit_gb = 0; // GB, 0 is no limit
     @ConfField public static int load_running_job_num_limit = 0; // 0 is no limit
+    // Mini loads to the same table with the same parameters and backend, received within this window, are merged
+    // into one load job and one version. Mini load requests wait for the window. 0 is no merge.
+    @ConfField public static int mini_load_merge_window_ms = 0;
+    @ConfField public static int mini_load_merge_max_num = 100;
     @ConfField public static int tablet_delete_timeout_second = 2;
     @ConfField public static int clone_checker_interval_second = 300;
     @ConfField public static int clone_job_timeout_second = 7200; // 2h
@@ -99,6 +130,10 @@ public class Config extends ConfigBase {
     @ConfField public static int alter_delete_base_delay_second = 600; // 10min
     @ConfField public static int max_backend_down_time_second = 3600; // 1h
     @ConfField public static long storage_cooldown_second = 30 * 24 * 3600L; // 30 days
+    // Storage medium of partitions checked by tablet reports is rebuilt at most once in this interval.
+    @ConfField public static int storage_medium_map_refresh_interval_second = 60;
+    // Backends may send delta tablet reports, but master asks for a full report at least once in this interval.
+    @ConfField public static int tablet_full_report_interval_second = 600; // 10min
     @ConfField public static long catalog_trash_expire_second = 86400L; // 1day
     @ConfField public static int pull_load_task_default_timeout_second = 3600; // 1hour
     @ConfField public static long min_bytes_per_broker_scanner = 67108864L; // 64MB
@@ -121,6 +156,58 @@ public class Config extends ConfigBase {
     @ConfField public static int max_conn_per_user = 100;
     @ConfField public static int qe_query_timeout_second = 300;
     @ConfField public static long qe_slow_log_ms = 5000;
+    // If true, idle mysql connections are watched by a few selector threads instead of
+    // holding one thread each, and requests are processed by a bounded worker pool.
+    @ConfField public static boolean mysql_service_nio_enabled = false;
+    @ConfField public static int mysql_nio_io_threads_num = 4;
+    @ConfField public static int mysql_nio_worker_threads_num = 256;
+    @ConfField public static int mysql_nio_worker_queue_size = 4096;
+    // max number of statements prepared by COM_STMT_PREPARE in one connection
+    @ConfField public static int max_prepared_stmt_per_connection = 1024;
+    // max number of tablets whose last served backend is remembered for load_aware replica selection
+    @ConfField public static int replica_affinity_cache_size = 1000000;
+    // If true, the next result batch of a query is fetched from backend while the current one is sent to client.
+    @ConfField public static boolean enable_result_prefetch = true;
+    // Max number of threads prefetching result batches for all queries.
+    // A batch is fetched in the query thread if all of them are busy.
+    @ConfField public static int result_prefetch_thread_num = 64;
+    // Max number of threads sending exec_plan_fragment rpcs for all queries.
+    @ConfField public static int fragment_dispatch_thread_num = 64;
+    // Max number of exec rpcs waiting for the threads above. A query fails at once if the queue is full.
+    @ConfField public static int fragment_dispatch_queue_size = 4096;
+    // Time to wait for all fragment instances of a fragment to start.
+    @ConfField public static int fragment_dispatch_timeout_second = 10;
+    // If true, fragment instances on the same backend are started by one rpc. Only set it true after all
+    // backends are upgraded to support exec_plan_fragments, otherwise old backends are blacklisted.
+    @ConfField public static boolean enable_batch_fragment_dispatch = false;
+    // Max total size of query results cached in this frontend, see session variable query_cache_type.
+    @ConfField public static int query_cache_size_mb = 256;
+    // Result larger than this is not cached.
+    @ConfField public static int query_cache_max_entry_size_kb = 1024;
+    // Max total size of per partition query results cached in this frontend,
+    // see session variable enable_partition_cache.
+    @ConfField public static int partition_cache_size_mb = 256;
+    // If true, plans of queries are cached and reused by the same statement, see PlanCache.
+    @ConfField public static boolean enable_plan_cache = false;
+    // Max number of cached plans.
+    @ConfField public static int plan_cache_size = 1000;
+    // Cached plan is dropped after this time, so it does not keep using stale statistics.
+    @ConfField public static int plan_cache_expire_second = 600;
+    // If true, queries are admitted by QueryQueue according to the limits below, 0 means no limit.
+    @ConfField public static boolean enable_query_queue = false;
+    @ConfField public static int query_queue_max_running_num = 200;
+    @ConfField public static int query_queue_max_running_per_user = 20;
+    // Max running queries of each resource group, which is set by session variable resource_group.
+    @ConfField public static int query_queue_max_running_low = 0;
+    @ConfField public static int query_queue_max_running_normal = 0;
+    @ConfField public static int query_queue_max_running_high = 0;
+    // Max total estimated memory of running queries.
+    @ConfField public static long query_queue_mem_limit_mb = 200 * 1024;
+    // Query waiting in queue longer than this fails.
+    @ConfField public static int query_queue_timeout_second = 300;
+    // If true, queries are analyzed and planned without db read lock first, and analyzed again
+    // with lock only if some referenced db is modified meanwhile.
+    @ConfField public static boolean enable_optimistic_analysis = false;
     @ConfField public static int blacklist_backends_max_times = 6;
     @ConfField public static int meta_resource_publish_interval_ms = 60000; // 1m
     @ConfField public static int meta_publish_timeout_ms = 1000;
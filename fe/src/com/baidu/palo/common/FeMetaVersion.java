@@ -62,4 +62,16 @@ public final class FeMetaVersion {
 
     // Palo3.2
     public static final int VERSION_32 = 32;
+
+    // databases are saved as independent checksummed sections in image
+    public static final int VERSION_33 = 33;
+
+    // db sections in image carry db name, so that checkpoint can load them lazily
+    public static final int VERSION_34 = 34;
+
+    // colocate group of olap table
+    public static final int VERSION_35 = 35;
+
+    // labels of mini loads merged into a load job
+    public static final int VERSION_36 = 36;
 }
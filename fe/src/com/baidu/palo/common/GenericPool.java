@@ -22,8 +22,12 @@ package com.baidu.palo.common;
 
 import java.lang.reflect.Constructor;
 
+import com.baidu.palo.common.util.BucketHistogram;
+import com.baidu.palo.common.util.Metrics;
 import com.baidu.palo.thrift.TNetworkAddress;
 
+import io.dropwizard.metrics.Gauge;
+
 import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
@@ -42,12 +46,30 @@ public class GenericPool<VALUE extends org.apache.thrift.TServiceClient>  {
     private GenericKeyedObjectPool<TNetworkAddress, VALUE> pool;
     private String className;
     private int timeoutMs;
+    // time to borrow a client, including creating the connection if there is no idle one
+    private BucketHistogram borrowHistogram;
 
     public GenericPool(String className, GenericKeyedObjectPoolConfig config, int timeoutMs) {
         this.className = "com.baidu.palo.thrift." + className + "$Client";
         ThriftClientFactory factory = new ThriftClientFactory();
         pool = new GenericKeyedObjectPool<TNetworkAddress, VALUE>(factory, config);
         this.timeoutMs = timeoutMs;
+
+        String metricPrefix = "client_pool." + className;
+        borrowHistogram = (BucketHistogram) Metrics.getMetric(Metrics.MetricType.BUCKET_HISTOGRAM,
+                metricPrefix + ".borrow_ms");
+        Metrics.registerGauge(metricPrefix + ".active_num", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pool.getNumActive();
+            }
+        });
+        Metrics.registerGauge(metricPrefix + ".idle_num", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pool.getNumIdle();
+            }
+        });
     }
 
     public boolean reopen(VALUE object, int timeoutMs) {
@@ -81,11 +103,16 @@ public class GenericPool<VALUE extends org.apache.thrift.TServiceClient>  {
     }
 
     public VALUE borrowObject(TNetworkAddress address) throws Exception {
-        return pool.borrowObject(address);
+        long start = System.currentTimeMillis();
+        try {
+            return pool.borrowObject(address);
+        } finally {
+            borrowHistogram.update(System.currentTimeMillis() - start);
+        }
     }
 
     public VALUE borrowObject(TNetworkAddress address, int timeoutMs) throws Exception {
-        VALUE value = pool.borrowObject(address);
+        VALUE value = borrowObject(address);
         TSocket socket = (TSocket) (value.getOutputProtocol().getTransport());
         socket.setTimeout(timeoutMs);
         return value;
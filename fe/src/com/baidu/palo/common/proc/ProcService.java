@@ -45,6 +45,7 @@ public class ProcService {
         root.register("frontend", new FrontendProcNode(Catalog.getInstance()));
         root.register("brokers", Catalog.getInstance().getBrokerMgr().getProcNode());
         root.register("load_error_hub_url", new LoadErrorProcNode(Catalog.getInstance()));
+        root.register("query_queue", new QueryQueueProcNode());
     }
 
     // 通过指定的路径获得对应的PROC Node
@@ -0,0 +1,41 @@
+// Modifications copyright (C) 2017, Baidu.com, Inc.
+// Copyright 2017 The Apache Software Foundation
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+package com.baidu.palo.common.proc;
+
+import com.baidu.palo.qe.QueryQueue;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Show running and waiting queries of each user and each resource group in query queue of this frontend
+ * SHOW PROC /query_queue/
+ */
+public class QueryQueueProcNode implements ProcNodeInterface {
+    @Override
+    public ProcResult fetchResult() {
+        BaseProcResult result = new BaseProcResult();
+        result.setNames(Arrays.asList("Type", "Name", "Running", "Waiting", "RunningMemMB"));
+        for (List<String> row : QueryQueue.getInstance().getStats()) {
+            result.addRow(row);
+        }
+        return result;
+    }
+}
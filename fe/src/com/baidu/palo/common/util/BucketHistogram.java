@@ -0,0 +1,155 @@
+// Modifications copyright (C) 2017, Baidu.com, Inc.
+// Copyright 2017 The Apache Software Foundation
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+package com.baidu.palo.common.util;
+
+import io.dropwizard.metrics.Metric;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Lock-free histogram of non-negative long values, e.g. latency in ms, with log-linear buckets like HdrHistogram.
+ * Values below 16 have a bucket each, and each power of 2 range above is split into 16 buckets, so a
+ * percentile is off by at most 1/16 of its value. Values above MAX_VALUE are counted as MAX_VALUE.
+ *
+ * Bucket i (i > 0) holds values in (upper bound of bucket i-1, upper bound of bucket i], and every power of 2 is
+ * an upper bound, which makes the buckets exportable as a Prometheus histogram with power of 2 'le' labels.
+ *
+ * Unlike dropwizard histogram, it counts all values since start instead of a sample of them, and
+ * update() is a few atomic increments.
+ */
+public class BucketHistogram implements Metric {
+    public static final int MAX_POWER = 40;
+    public static final long MAX_VALUE = (1L << MAX_POWER) - 1;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_NUM = 1 << SUB_BUCKET_BITS;
+
+    // bucket 0 holds values <= 0, bucket i holds values whose (value - 1) falls in sub bucket i - 1
+    private final AtomicLongArray counts = new AtomicLongArray(subBucketIndex(MAX_VALUE - 1) + 2);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong sum = new AtomicLong(0);
+    private final AtomicLong max = new AtomicLong(0);
+
+    public void update(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        counts.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long oldMax = max.get();
+        while (value > oldMax && !max.compareAndSet(oldMax, value)) {
+            oldMax = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long num = count.get();
+        return num == 0 ? 0 : (double) sum.get() / num;
+    }
+
+    public long getP50() {
+        return getValueAtPercentile(50);
+    }
+
+    public long getP95() {
+        return getValueAtPercentile(95);
+    }
+
+    public long getP99() {
+        return getValueAtPercentile(99);
+    }
+
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+
+    // Return upper bound of the bucket holding the given percentile, 0 if there is no value.
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long accumulated = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            accumulated += counts.get(i);
+            if (accumulated >= Math.max(rank, 1)) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Number of values <= 2^power. Values are counted after the count of buckets, so the result may be a little
+    // less than getCount() even if all values are <= 2^power.
+    public long getCountAtPowerOf2(int power) {
+        int lastIndex = power >= MAX_POWER ? counts.length() - 1 : bucketIndex(1L << power);
+        long accumulated = 0;
+        for (int i = 0; i <= lastIndex; i++) {
+            accumulated += counts.get(i);
+        }
+        return accumulated;
+    }
+
+    static int bucketIndex(long value) {
+        return value <= 0 ? 0 : subBucketIndex(value - 1) + 1;
+    }
+
+    static long bucketUpperBound(int index) {
+        return index == 0 ? 0 : subBucketUpperBound(index - 1) + 1;
+    }
+
+    private static int subBucketIndex(long value) {
+        if (value < SUB_BUCKET_NUM) {
+            return (int) value;
+        }
+        int power = 63 - Long.numberOfLeadingZeros(value);
+        int shift = power - SUB_BUCKET_BITS;
+        // the highest bit of (value >> shift) is always SUB_BUCKET_NUM
+        return (power - SUB_BUCKET_BITS + 1) * SUB_BUCKET_NUM + (int) (value >> shift) - SUB_BUCKET_NUM;
+    }
+
+    private static long subBucketUpperBound(int index) {
+        if (index < SUB_BUCKET_NUM) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_NUM - 1;
+        long lower = (long) (SUB_BUCKET_NUM + index % SUB_BUCKET_NUM) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
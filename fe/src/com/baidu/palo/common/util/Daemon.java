@@ -92,6 +92,13 @@ public class Daemon extends Thread {
         
     }
 
+    /**
+     * wait before next cycle, child may override it to be woken up earlier than the interval
+     */
+    protected void waitForNextCycle(long intervalMs) throws InterruptedException {
+        Thread.sleep(intervalMs);
+    }
+
     @Override
     public void run() {
         while (!isStop.get()) {
@@ -102,7 +109,7 @@ public class Daemon extends Thread {
             }
 
             try {
-                Thread.sleep(intervalMs);
+                waitForNextCycle(intervalMs);
             } catch (InterruptedException e) {
                 LOG.error("InterruptedException: ", e);
             }
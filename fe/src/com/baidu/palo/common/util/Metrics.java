@@ -20,27 +20,41 @@
 
 package com.baidu.palo.common.util;
 
+import io.dropwizard.metrics.Counter;
+import io.dropwizard.metrics.Counting;
+import io.dropwizard.metrics.Gauge;
+import io.dropwizard.metrics.Meter;
 import io.dropwizard.metrics.Metric;
 import io.dropwizard.metrics.MetricName;
 import io.dropwizard.metrics.MetricRegistry;
+import io.dropwizard.metrics.Sampling;
+import io.dropwizard.metrics.Snapshot;
 import org.codehaus.jackson.map.ObjectMapper;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 public class Metrics {
     private static final MetricRegistry METRICS = new MetricRegistry();
+    private static final String PROMETHEUS_PREFIX = "palo_fe_";
+    private static final double[] PROMETHEUS_QUANTILES = {0.5, 0.75, 0.95, 0.99, 0.999};
     
     public enum MetricType {
         COUNTER,
         HISTOGRAM,
         METER,
-        TIMER
+        TIMER,
+        // see BucketHistogram, prefer it to HISTOGRAM in hot paths
+        BUCKET_HISTOGRAM
     }
     
     private Metrics() {
     }
 
     public static Metric getMetric(MetricType metricType, String name) {
-        if (METRICS.getMetrics().containsKey(name)) {
-            return METRICS.getMetrics().get(name);
+        Metric metric = METRICS.getMetrics().get(MetricName.build(name));
+        if (metric != null) {
+            return metric;
         } else {
             switch (metricType) {
                 case COUNTER:
@@ -51,12 +65,31 @@ public class Metrics {
                     return METRICS.meter(name);
                 case TIMER:
                     return METRICS.timer(name);
+                case BUCKET_HISTOGRAM:
+                    try {
+                        return METRICS.register(name, new BucketHistogram());
+                    } catch (IllegalArgumentException e) {
+                        // registered by another thread
+                        return METRICS.getMetrics().get(MetricName.build(name));
+                    }
                 default:
                     return null;
             }
         }
     }
     
+    // Register a gauge with given name, do nothing if the name is already registered.
+    public static <T> void registerGauge(String name, Gauge<T> gauge) {
+        if (METRICS.getMetrics().containsKey(MetricName.build(name))) {
+            return;
+        }
+        try {
+            METRICS.register(name, gauge);
+        } catch (IllegalArgumentException e) {
+            // registered by another thread
+        }
+    }
+
     public static MetricName name(Class<?> klass, String... names) {
         return MetricRegistry.name(klass, names);
     }
@@ -73,6 +106,64 @@ public class Metrics {
             return "";
         }
     }
+
+    // Metrics in Prometheus text format. Names are prefixed with 'palo_fe_', and characters not allowed are
+    // replaced with '_', eg. query_info.query_count -> palo_fe_query_info_query_count.
+    //  - counters and meters are exported as counters, numeric gauges as gauges
+    //  - dropwizard histograms and timers as summaries of their samples
+    //  - bucket histograms as histograms with power of 2 buckets
+    public static String getPrometheusStr() {
+        StringBuilder sb = new StringBuilder();
+        Map<MetricName, Metric> metrics = new TreeMap<MetricName, Metric>(METRICS.getMetrics());
+        for (Map.Entry<MetricName, Metric> entry : metrics.entrySet()) {
+            String name = toPrometheusName(entry.getKey().getKey());
+            Metric metric = entry.getValue();
+            if (metric instanceof Counter || metric instanceof Meter) {
+                appendType(sb, name, "counter");
+                sb.append(name).append(" ").append(((Counting) metric).getCount()).append("\n");
+            } else if (metric instanceof Gauge) {
+                Object value = ((Gauge<?>) metric).getValue();
+                if (value instanceof Number) {
+                    appendType(sb, name, "gauge");
+                    sb.append(name).append(" ").append(value).append("\n");
+                }
+            } else if (metric instanceof Sampling && metric instanceof Counting) {
+                Snapshot snapshot = ((Sampling) metric).getSnapshot();
+                appendType(sb, name, "summary");
+                for (double quantile : PROMETHEUS_QUANTILES) {
+                    sb.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                            .append(snapshot.getValue(quantile)).append("\n");
+                }
+                sb.append(name).append("_count ").append(((Counting) metric).getCount()).append("\n");
+            } else if (metric instanceof BucketHistogram) {
+                appendBucketHistogram(sb, name, (BucketHistogram) metric);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendBucketHistogram(StringBuilder sb, String name, BucketHistogram histogram) {
+        appendType(sb, name, "histogram");
+        // smallest power of 2 not less than max
+        int maxPower = 64 - Long.numberOfLeadingZeros(Math.max(histogram.getMax() - 1, 0));
+        for (int power = 0; power <= maxPower && power < BucketHistogram.MAX_POWER; power++) {
+            sb.append(name).append("_bucket{le=\"").append(1L << power).append("\"} ")
+                    .append(histogram.getCountAtPowerOf2(power)).append("\n");
+        }
+        // use count of buckets instead of getCount(), which may be updated later than buckets
+        long count = histogram.getCountAtPowerOf2(BucketHistogram.MAX_POWER);
+        sb.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append("\n");
+        sb.append(name).append("_sum ").append(histogram.getSum()).append("\n");
+        sb.append(name).append("_count ").append(count).append("\n");
+    }
+
+    private static void appendType(StringBuilder sb, String name, String type) {
+        sb.append("# TYPE ").append(name).append(" ").append(type).append("\n");
+    }
+
+    private static String toPrometheusName(String name) {
+        return PROMETHEUS_PREFIX + name.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
     
 //    public static void main(String[] args) throws InterruptedException, IOException {
 //        System.out.println("Hello World!");
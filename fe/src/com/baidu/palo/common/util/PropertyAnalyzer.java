@@ -64,6 +64,9 @@ public class PropertyAnalyzer {
     private static final double MAX_FPP = 0.05;
     private static final double MIN_FPP = 0.0001;
     
+    // tables with the same colocate group in a db have replicas of the same bucket on the same backends
+    public static final String PROPERTIES_COLOCATE_WITH = "colocate_with";
+
     public static final String PROPERTIES_KUDU_MASTER_ADDRS = "kudu_master_addrs";
 
     public static final String PROPERTIES_COLUMN_SEPARATOR = "column_separator";
@@ -247,6 +250,19 @@ public class PropertyAnalyzer {
         return schemaVersion;
     }
 
+    // return null if not set
+    public static String analyzeColocate(Map<String, String> properties) throws AnalysisException {
+        String colocateGroup = null;
+        if (properties != null && properties.containsKey(PROPERTIES_COLOCATE_WITH)) {
+            colocateGroup = properties.get(PROPERTIES_COLOCATE_WITH).trim();
+            if (colocateGroup.isEmpty()) {
+                throw new AnalysisException("colocate group name is empty");
+            }
+            properties.remove(PROPERTIES_COLOCATE_WITH);
+        }
+        return colocateGroup;
+    }
+
     public static Set<String> analyzeBloomFilterColumns(Map<String, String> properties, List<Column> columns)
             throws AnalysisException {
         Set<String> bfColumns = null;
@@ -0,0 +1,219 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.http;
+
+import com.baidu.palo.common.Config;
+import com.baidu.palo.common.util.Metrics;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import io.dropwizard.metrics.Counter;
+import io.dropwizard.metrics.Gauge;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.AttributeKey;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Run http actions out of netty event loop. Most actions take catalog lock, call rpc or read files, and one
+ * slow request in event loop stalls all connections served by the same event loop.
+ *  - actions which are blocking (see BaseAction.isBlocking()) run in a bounded thread pool,
+ *    trivial ones still run in event loop
+ *  - at most http_action_max_concurrency_per_action requests of one action run or wait in pool at the same time,
+ *    so one kind of slow request can not take all threads
+ *  - requests exceeding the limits are answered with 503 at once
+ * Reading of a connection is paused while its request is running in pool, so requests of one connection are
+ * still handled in order. Messages which are already read, such as body of the request, are held until the action
+ * is done, then passed to the handlers after it, which may be installed by the action to take over the connection.
+ */
+public class ActionDispatcher {
+    private static final Logger LOG = LogManager.getLogger(ActionDispatcher.class);
+
+    private static final String QUEUE_SIZE_GAUGE_NAME = "http_action.queue_size";
+    private static final String RUNNING_NUM_GAUGE_NAME = "http_action.running_num";
+    private static final String REJECTED_COUNTER_NAME = "http_action.rejected_count";
+
+    private static final ActionDispatcher INSTANCE = new ActionDispatcher();
+
+    // Set by an action which takes over reading of its connection, then auto read is not turned on again
+    // after the action is done.
+    public static final AttributeKey<Boolean> READ_TAKEN_OVER = AttributeKey.valueOf("read_taken_over");
+
+    private final ThreadPoolExecutor executor;
+    // action class -> permits of requests running or waiting in pool
+    private final ConcurrentMap<Class<?>, Semaphore> actionPermits = Maps.newConcurrentMap();
+
+    ActionDispatcher() {
+        final AtomicInteger threadIndex = new AtomicInteger(0);
+        executor = new ThreadPoolExecutor(Config.http_action_thread_num, Config.http_action_thread_num,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(Config.http_action_queue_size),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "http-action-" + threadIndex.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+
+        Metrics.registerGauge(QUEUE_SIZE_GAUGE_NAME, new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return executor.getQueue().size();
+            }
+        });
+        Metrics.registerGauge(RUNNING_NUM_GAUGE_NAME, new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return executor.getActiveCount();
+            }
+        });
+    }
+
+    public static ActionDispatcher getInstance() {
+        return INSTANCE;
+    }
+
+    // Called in event loop of the request's channel.
+    public void dispatch(final BaseAction action, final BaseRequest request) throws Exception {
+        if (!action.isBlocking()) {
+            action.handleRequest(request);
+            return;
+        }
+
+        final ChannelHandlerContext ctx = request.getContext();
+        final Semaphore permits = getPermits(action.getClass());
+        if (!permits.tryAcquire()) {
+            reject(ctx, "too many concurrent requests of " + request.getRequest().uri());
+            return;
+        }
+
+        // do not read next request of this connection until this one is done
+        ctx.channel().config().setAutoRead(false);
+        final PendingMessageHolder holder = new PendingMessageHolder();
+        ctx.pipeline().addBefore(ctx.name(), PendingMessageHolder.NAME, holder);
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        action.handleRequest(request);
+                    } catch (Throwable e) {
+                        LOG.warn("failed to handle http request: {}", request.getRequest().uri(), e);
+                        ctx.close();
+                    } finally {
+                        // responses are written without flush, which is done in channelReadComplete()
+                        // of the event loop, but it has already passed
+                        ctx.flush();
+                        permits.release();
+                        ctx.executor().execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                resumeRead(ctx, holder);
+                            }
+                        });
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            resumeRead(ctx, holder);
+            reject(ctx, "too many http requests");
+        }
+    }
+
+    // Called in event loop after the action is done.
+    private void resumeRead(ChannelHandlerContext ctx, PendingMessageHolder holder) {
+        if (ctx.pipeline().context(holder) != null) {
+            ctx.pipeline().remove(holder);
+        }
+        Boolean isTakenOver = ctx.channel().attr(READ_TAKEN_OVER).get();
+        if (isTakenOver == null || !isTakenOver) {
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    private Semaphore getPermits(Class<?> actionClass) {
+        Semaphore permits = actionPermits.get(actionClass);
+        if (permits == null) {
+            actionPermits.putIfAbsent(actionClass, new Semaphore(Config.http_action_max_concurrency_per_action));
+            permits = actionPermits.get(actionClass);
+        }
+        return permits;
+    }
+
+    private void reject(ChannelHandlerContext ctx, String msg) {
+        Counter counter = (Counter) Metrics.getMetric(Metrics.MetricType.COUNTER, REJECTED_COUNTER_NAME);
+        counter.inc();
+        LOG.warn("reject http request: {}", msg);
+
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                HttpResponseStatus.SERVICE_UNAVAILABLE, Unpooled.wrappedBuffer(msg.getBytes()));
+        response.headers().set(HttpHeaders.Names.CONTENT_TYPE, "text/plain");
+        response.headers().set(HttpHeaders.Names.CONTENT_LENGTH, response.content().readableBytes());
+        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+
+    // Holds messages read while the action of the connection is running, and passes them on when removed.
+    private static class PendingMessageHolder extends ChannelInboundHandlerAdapter {
+        private static final String NAME = "pending_message_holder";
+
+        private final List<Object> messages = Lists.newArrayList();
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            messages.add(msg);
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+            if (messages.isEmpty()) {
+                return;
+            }
+            for (Object msg : messages) {
+                ctx.fireChannelRead(msg);
+            }
+            messages.clear();
+            ctx.fireChannelReadComplete();
+        }
+    }
+}
@@ -22,11 +22,15 @@ package com.baidu.palo.http;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -64,6 +68,7 @@ import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http.ServerCookieEncoder;
 import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.stream.ChunkedFile;
+import io.netty.handler.stream.ChunkedStream;
 import io.netty.util.CharsetUtil;
 
 public abstract class BaseAction implements IAction {
@@ -87,6 +92,12 @@ public abstract class BaseAction implements IAction {
         this.qeService = qeService;
     }
 
+    // Return false if the action is trivial and never blocks, so it runs in netty event loop directly.
+    // Otherwise it runs in thread pool of ActionDispatcher.
+    public boolean isBlocking() {
+        return true;
+    }
+
     @Override
     public void handleRequest(BaseRequest request) throws Exception {
         BaseResponse response = new BaseResponse();
@@ -132,6 +143,13 @@ public abstract class BaseAction implements IAction {
 
     protected void writeFileResponse(BaseRequest request, BaseResponse response, HttpResponseStatus status,
             File resFile) {
+        writeFileResponse(request, response, status, resFile, 0, false);
+    }
+
+    // Write content of resFile from offset.
+    // If compress is true, content is compressed by deflate while sending, otherwise it is sent by zero-copy.
+    protected void writeFileResponse(BaseRequest request, BaseResponse response, HttpResponseStatus status,
+            File resFile, long offset, boolean compress) {
         HttpResponse responseObj = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
 
         if (HttpHeaders.isKeepAlive(request.getRequest())) {
@@ -147,7 +165,16 @@ public abstract class BaseAction implements IAction {
             rafFile = new RandomAccessFile(resFile, "r");
             long fileLength = 0;
             fileLength = rafFile.length();
-            response.updateHeader(HttpHeaders.Names.CONTENT_LENGTH, String.valueOf(fileLength));
+            if (offset > 0) {
+                response.updateHeader(HttpHeaders.Names.CONTENT_RANGE,
+                        "bytes " + offset + "-" + (fileLength - 1) + "/" + fileLength);
+            }
+            if (compress) {
+                response.updateHeader(HttpHeaders.Names.CONTENT_ENCODING, HttpHeaders.Values.DEFLATE);
+                HttpHeaders.setTransferEncodingChunked(responseObj);
+            } else {
+                response.updateHeader(HttpHeaders.Names.CONTENT_LENGTH, String.valueOf(fileLength - offset));
+            }
             writeCookies(response, responseObj);
             writeCustomHeaders(response, responseObj);
 
@@ -155,14 +182,32 @@ public abstract class BaseAction implements IAction {
             request.getContext().write(responseObj);
 
             // Write file
-            if (request.getContext().pipeline().get(SslHandler.class) == null) {
-                sendFileFuture = request.getContext().write(new DefaultFileRegion(rafFile.getChannel(), 0, fileLength),
+            if (compress) {
+                final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                InputStream in = new DeflaterInputStream(
+                        Channels.newInputStream(rafFile.getChannel().position(offset)), deflater) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            deflater.end();
+                        }
+                    }
+                };
+                sendFileFuture = request.getContext().writeAndFlush(
+                        new HttpChunkedInput(new ChunkedStream(in, 8192)),
+                        request.getContext().newProgressivePromise());
+                lastContentFuture = sendFileFuture;
+            } else if (request.getContext().pipeline().get(SslHandler.class) == null) {
+                sendFileFuture = request.getContext().write(
+                        new DefaultFileRegion(rafFile.getChannel(), offset, fileLength - offset),
                         request.getContext().newProgressivePromise());
                 // Write the end marker.
                 lastContentFuture = request.getContext().writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
             } else {
                 sendFileFuture = request.getContext().writeAndFlush(
-                        new HttpChunkedInput(new ChunkedFile(rafFile, 0, fileLength, 8192)),
+                        new HttpChunkedInput(new ChunkedFile(rafFile, offset, fileLength - offset, 8192)),
                         request.getContext().newProgressivePromise());
                 // HttpChunkedInput will write the end marker (LastHttpContent)
                 // for us.
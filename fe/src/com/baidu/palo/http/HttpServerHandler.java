@@ -79,7 +79,7 @@ public class HttpServerHandler extends ChannelInboundHandlerAdapter {
             if (action != null) {
                 LOG.debug("action: {} ", action.getClass().getName());
                 action.setQeService(qeService);
-                action.handleRequest(req);
+                ActionDispatcher.getInstance().dispatch(action, req);
             }
         } else {
             ReferenceCountUtil.release(msg);
@@ -25,6 +25,7 @@ import com.baidu.palo.http.BaseResponse;
 import com.baidu.palo.http.action.WebBaseAction;
 import com.baidu.palo.master.MetaHelper;
 
+import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpResponseStatus;
 
 import java.io.File;
@@ -45,6 +46,13 @@ public class MetaBaseAction extends WebBaseAction {
     }
     
     protected void writeFileResponse(BaseRequest request, BaseResponse response, File file) {
+        writeFileResponse(request, response, file, 0, false);
+    }
+
+    // Send file from offset, the whole file is sent if offset is 0. Offset out of [0, file length) is rejected
+    // with 416, except 0 for an empty file.
+    protected void writeFileResponse(BaseRequest request, BaseResponse response, File file,
+                                     long offset, boolean compress) {
         if (file == null || !file.exists()) {
             response.appendContent("File not exist.");
             writeResponse(request, response, HttpResponseStatus.NOT_FOUND);
@@ -55,7 +63,14 @@ public class MetaBaseAction extends WebBaseAction {
         response.addHeader(CONTENT_DISPOSITION, "attachment; filename=" + file.getName());
         response.addHeader(MetaHelper.X_IMAGE_SIZE, String.valueOf(file.length()));
         
-        writeFileResponse(request, response, HttpResponseStatus.OK, file);
+        if (offset == 0) {
+            writeFileResponse(request, response, HttpResponseStatus.OK, file, 0, compress);
+        } else if (offset > 0 && offset < file.length()) {
+            writeFileResponse(request, response, HttpResponseStatus.PARTIAL_CONTENT, file, offset, compress);
+        } else {
+            response.addHeader(HttpHeaders.Names.CONTENT_RANGE, "bytes */" + file.length());
+            writeResponse(request, response, HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
         return;
     }
 }
@@ -47,7 +47,6 @@ import org.apache.logging.log4j.Logger;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -56,6 +55,7 @@ public class MetaService {
 
     public static class ImageAction extends MetaBaseAction {
         private static final String VERSION = "version";
+        private static final String RANGE_PREFIX = "bytes=";
 
         public ImageAction(ActionController controller, File imageDir) {
             super(controller, imageDir);
@@ -73,7 +73,21 @@ public class MetaService {
             if (!Strings.isNullOrEmpty(strVersion)) {
                 long version = Long.parseLong(strVersion);
                 File imageFile = Storage.getImageFile(imageDir, version);
-                writeFileResponse(request, response, imageFile);
+                // client resumes an interrupted download by 'Range: bytes=<offset>-'
+                long offset = 0;
+                String range = request.getRequest().headers().get(HttpHeaders.Names.RANGE);
+                if (range != null && range.startsWith(RANGE_PREFIX) && range.endsWith("-")) {
+                    try {
+                        offset = Long.parseLong(range.substring(RANGE_PREFIX.length(), range.length() - 1));
+                    } catch (NumberFormatException e) {
+                        response.appendContent("Invalid range: " + range);
+                        writeResponse(request, response, HttpResponseStatus.BAD_REQUEST);
+                        return;
+                    }
+                }
+                String acceptEncoding = request.getRequest().headers().get(HttpHeaders.Names.ACCEPT_ENCODING);
+                boolean compress = acceptEncoding != null && acceptEncoding.contains(HttpHeaders.Values.DEFLATE);
+                writeFileResponse(request, response, imageFile, offset, compress);
             } else {
                 response.appendContent("Miss version parameter");
                 writeResponse(request, response, HttpResponseStatus.BAD_REQUEST);
@@ -187,9 +201,7 @@ public class MetaService {
                 String url = "http://" + machine + ":" + port + "/image?version=" + version;
                 String filename = Storage.IMAGE + "." + version;
                 try {
-                    OutputStream out = MetaHelper.getOutputStream(filename, dir);
-                    MetaHelper.getRemoteFile(url, TIMEOUT_SECOND * 1000, out);
-                    MetaHelper.complete(filename, dir);
+                    MetaHelper.downloadImage(url, TIMEOUT_SECOND * 1000, filename, dir);
                     writeResponse(request, response);
                 } catch (FileNotFoundException e) {
                     LOG.warn("file not found. file: {}", filename, e);
@@ -37,6 +37,11 @@ public class HealthAction extends RestBaseAction {
         controller.registerHandler(HttpMethod.GET, "/api/health", new HealthAction(controller));
     }
 
+    @Override
+    public boolean isBlocking() {
+        return false;
+    }
+
     @Override
     public void execute(BaseRequest request, BaseResponse response) {
         response.setContentType("application/json");
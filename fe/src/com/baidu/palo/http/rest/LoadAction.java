@@ -19,6 +19,7 @@
 
 package com.baidu.palo.http.rest;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
@@ -26,11 +27,13 @@ import org.apache.logging.log4j.Logger;
 
 import com.baidu.palo.catalog.Catalog;
 import com.baidu.palo.cluster.ClusterNamespace;
+import com.baidu.palo.common.Config;
 import com.baidu.palo.common.DdlException;
 import com.baidu.palo.http.ActionController;
 import com.baidu.palo.http.BaseRequest;
 import com.baidu.palo.http.BaseResponse;
 import com.baidu.palo.http.IllegalArgException;
+import com.baidu.palo.qe.BackendLoadStats;
 import com.baidu.palo.service.ExecuteEnv;
 import com.baidu.palo.system.Backend;
 import com.baidu.palo.thrift.TNetworkAddress;
@@ -62,10 +65,19 @@ public class LoadAction extends RestBaseAction {
                 "/api/{" + DB_NAME_PARAM + "}/{" + TABLE_NAME_PARAM + "}/_load", action);
     }
 
+    // Redirect only checks privilege and picks a backend, so it runs in event loop. Proxied load runs in thread
+    // pool, and the body read meanwhile is held by ActionDispatcher until LoadProxyHandler takes it over.
+    @Override
+    public boolean isBlocking() {
+        return Config.enable_http_load_proxy;
+    }
+
     @Override
     public void execute(BaseRequest request, BaseResponse response) throws DdlException {
-        // A 'Load' request must have 100-continue header
-        if (!request.getRequest().headers().contains(HttpHeaders.Names.EXPECT)) {
+        // A 'Load' request must have 100-continue header, unless it is proxied, which does not need the client
+        // to send body to another address
+        boolean isProxy = Config.enable_http_load_proxy;
+        if (!isProxy && !request.getRequest().headers().contains(HttpHeaders.Names.EXPECT)) {
             throw new DdlException("There is no 100-continue header");
         }
 
@@ -97,30 +109,62 @@ public class LoadAction extends RestBaseAction {
         }
  
         checkWritePriv(request, dbName);
-        // Try to redirect to master
-        if (redirectToMaster(request, response)) {
+        // Try to redirect to master. Multi load is managed by master, other proxied loads are sent to backend
+        // directly, backend reports them to master itself.
+        if ((!isProxy || !Strings.isNullOrEmpty(subLabel)) && redirectToMaster(request, response)) {
             return;
         }
 
-        // Choose a backend sequentially.
-        List<Long> backendIds = Catalog.getCurrentSystemInfo().seqChooseBackendIds(1, true, false, clusterName);
-        if (backendIds == null) {
-            throw new DdlException("No live backend.");
-        }
-
-        Backend backend = Catalog.getCurrentSystemInfo().getBackend(backendIds.get(0));
-        if (backend == null) {
-            throw new DdlException("No live backend.");
-        }
-
+        Backend backend = chooseBackend(clusterName);
         TNetworkAddress redirectAddr = new TNetworkAddress(backend.getHost(), backend.getHttpPort());
         if (!Strings.isNullOrEmpty(subLabel)) {
             redirectAddr = execEnv.getMultiLoadMgr().redirectAddr(dbName, label, tableName, redirectAddr);
         }
+
+        if (isProxy) {
+            if (!Strings.isNullOrEmpty(subLabel)) {
+                backend = getBackendWithHttpPort(clusterName, redirectAddr);
+            }
+            LOG.info("mini load proxied to backend: {}, label: {}", redirectAddr.toString(), label);
+            LoadProxyHandler.start(request.getContext(), request.getRequest(), backend);
+            return;
+        }
         LOG.info("mini load redirect to backend: {}, label: {}", redirectAddr.toString(), label);
 
         LOG.info("redrect address is {}, {}", backend.getHost(), backend.getHttpPort());
 
         redirectTo(request, response, redirectAddr);
     }
+
+    // Choose the available backend with the least running fragments and proxied loads, ties are broken randomly.
+    private Backend chooseBackend(String clusterName) throws DdlException {
+        List<Backend> backends = Catalog.getCurrentSystemInfo().getClusterBackends(clusterName, true);
+        Collections.shuffle(backends);
+        Backend chosenBackend = null;
+        int minLoad = Integer.MAX_VALUE;
+        for (Backend backend : backends) {
+            if (!backend.isAvailable()) {
+                continue;
+            }
+            int load = BackendLoadStats.getInstance().getInFlightFragmentNum(backend.getId())
+                    + LoadProxyHandler.getProxyingLoadNum(backend.getId());
+            if (load < minLoad) {
+                minLoad = load;
+                chosenBackend = backend;
+            }
+        }
+        if (chosenBackend == null) {
+            throw new DdlException("No live backend.");
+        }
+        return chosenBackend;
+    }
+
+    private Backend getBackendWithHttpPort(String clusterName, TNetworkAddress addr) throws DdlException {
+        for (Backend backend : Catalog.getCurrentSystemInfo().getClusterBackends(clusterName)) {
+            if (backend.getHost().equals(addr.getHostname()) && backend.getHttpPort() == addr.getPort()) {
+                return backend;
+            }
+        }
+        throw new DdlException("Backend " + addr + " does not exist.");
+    }
 }
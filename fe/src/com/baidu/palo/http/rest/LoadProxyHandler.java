@@ -0,0 +1,309 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.http.rest;
+
+import com.baidu.palo.http.ActionDispatcher;
+import com.baidu.palo.system.Backend;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Streams a mini load request to a backend, and the response of backend back to the client, for clients
+ * which can not follow a redirect with a streaming body.
+ *
+ * Auto read of the client connection is turned off. Next part of the body is read from the client only after
+ * the previous part is written to the backend, so at most one part of the body is buffered for a connection,
+ * and a slow backend slows down the client instead of filling up memory of frontend.
+ * Both connections are closed after the response is sent.
+ */
+public class LoadProxyHandler extends ChannelInboundHandlerAdapter {
+    private static final Logger LOG = LogManager.getLogger(LoadProxyHandler.class);
+    private static final String NAME = "load_proxy";
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+
+    // backend id -> number of loads being proxied to the backend
+    private static final ConcurrentMap<Long, AtomicInteger> proxyingLoadNums = Maps.newConcurrentMap();
+
+    private final HttpRequest request;
+    private final Backend backend;
+    private Channel clientChannel;
+    private Channel backendChannel;
+    // all following fields are only accessed in event loop of client channel, which backend channel shares
+    private boolean isConnected = false;
+    private boolean isClosed = false;
+    private boolean isResponseStarted = false;
+    // parts of body received before backend is connected
+    private final List<HttpContent> pendingContents = Lists.newArrayList();
+
+    private LoadProxyHandler(HttpRequest request, Backend backend) {
+        this.request = request;
+        this.backend = backend;
+    }
+
+    public static int getProxyingLoadNum(long backendId) {
+        AtomicInteger num = proxyingLoadNums.get(backendId);
+        return num == null ? 0 : num.get();
+    }
+
+    // Take over the connection of 'ctx', which has received header of 'request', and stream it to 'backend'.
+    // It may be called out of event loop, when body of request is held by ActionDispatcher until it returns.
+    public static void start(final ChannelHandlerContext ctx, HttpRequest request, Backend backend) {
+        final LoadProxyHandler handler = new LoadProxyHandler(request, backend);
+        ctx.channel().attr(ActionDispatcher.READ_TAKEN_OVER).set(true);
+        if (ctx.executor().inEventLoop()) {
+            handler.install(ctx);
+            return;
+        }
+        ctx.executor().execute(new Runnable() {
+            @Override
+            public void run() {
+                handler.install(ctx);
+            }
+        });
+    }
+
+    private void install(ChannelHandlerContext ctx) {
+        if (!ctx.channel().isActive()) {
+            // client is gone before action is done
+            return;
+        }
+        // body of request is handled by proxy handler instead of 'ctx'
+        ctx.pipeline().addBefore(ctx.name(), NAME, this);
+        connect(ctx.channel());
+    }
+
+    private static AtomicInteger getProxyingLoadCounter(long backendId) {
+        AtomicInteger num = proxyingLoadNums.get(backendId);
+        if (num == null) {
+            proxyingLoadNums.putIfAbsent(backendId, new AtomicInteger(0));
+            num = proxyingLoadNums.get(backendId);
+        }
+        return num;
+    }
+
+    private void connect(Channel channel) {
+        clientChannel = channel;
+        clientChannel.config().setAutoRead(false);
+        getProxyingLoadCounter(backend.getId()).incrementAndGet();
+
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(clientChannel.eventLoop())
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT_MS)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(new HttpClientCodec());
+                        ch.pipeline().addLast(new BackendHandler());
+                    }
+                });
+        ChannelFuture future = bootstrap.connect(backend.getHost(), backend.getHttpPort());
+        backendChannel = future.channel();
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    LOG.warn("failed to connect to backend {} to proxy load", backend.getId(), future.cause());
+                    closeWithError("failed to connect to backend " + backend.getHost());
+                    return;
+                }
+                onConnected();
+            }
+        });
+    }
+
+    private void onConnected() {
+        if (isClosed) {
+            backendChannel.close();
+            return;
+        }
+        isConnected = true;
+
+        HttpRequest backendRequest = new DefaultHttpRequest(request.protocolVersion(), request.method(),
+                                                            request.uri());
+        backendRequest.headers().set(request.headers());
+        backendRequest.headers().set(HttpHeaders.Names.HOST, backend.getHost() + ":" + backend.getHttpPort());
+        backendChannel.write(backendRequest);
+
+        boolean isLast = false;
+        for (HttpContent content : pendingContents) {
+            isLast = content instanceof LastHttpContent;
+            backendChannel.write(content);
+        }
+        pendingContents.clear();
+        backendChannel.flush();
+        if (!isLast) {
+            clientChannel.read();
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof HttpContent) || isClosed) {
+            // another request is not expected before response of this one
+            ReferenceCountUtil.release(msg);
+            return;
+        }
+
+        HttpContent content = (HttpContent) msg;
+        if (!isConnected) {
+            pendingContents.add(content);
+            return;
+        }
+
+        final boolean isLast = content instanceof LastHttpContent;
+        backendChannel.writeAndFlush(content).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if (!future.isSuccess()) {
+                    LOG.warn("failed to send load data to backend {}", backend.getId(), future.cause());
+                    closeWithError("failed to send load data to backend " + backend.getHost());
+                    return;
+                }
+                if (!isLast) {
+                    clientChannel.read();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        close();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        LOG.warn("load proxy of client {} failed", clientChannel.remoteAddress(), cause);
+        close();
+    }
+
+    private void close() {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        getProxyingLoadCounter(backend.getId()).decrementAndGet();
+        for (HttpContent content : pendingContents) {
+            ReferenceCountUtil.release(content);
+        }
+        pendingContents.clear();
+        backendChannel.close();
+        clientChannel.close();
+    }
+
+    // Reply error to client if backend has not responded yet, then close.
+    private void closeWithError(String msg) {
+        if (isClosed || isResponseStarted) {
+            close();
+            return;
+        }
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                HttpResponseStatus.BAD_GATEWAY, Unpooled.wrappedBuffer(new RestBaseResult(msg).toJson().getBytes()));
+        response.headers().set(HttpHeaders.Names.CONTENT_TYPE, "application/json");
+        response.headers().set(HttpHeaders.Names.CONTENT_LENGTH, response.content().readableBytes());
+        isResponseStarted = true;
+        clientChannel.writeAndFlush(response).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                close();
+            }
+        });
+    }
+
+    // Relays response of backend to client.
+    private class BackendHandler extends ChannelInboundHandlerAdapter {
+        // '100 Continue' before the final response
+        private boolean isInterimResponse = false;
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (isClosed) {
+                ReferenceCountUtil.release(msg);
+                return;
+            }
+
+            if (msg instanceof HttpResponse) {
+                HttpResponse response = (HttpResponse) msg;
+                isInterimResponse = response.status().code() == HttpResponseStatus.CONTINUE.code();
+                if (!isInterimResponse) {
+                    isResponseStarted = true;
+                    response.headers().set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
+                }
+            }
+
+            if (msg instanceof LastHttpContent && !isInterimResponse) {
+                clientChannel.writeAndFlush(msg).addListener(new ChannelFutureListener() {
+                    @Override
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        close();
+                    }
+                });
+                return;
+            }
+            clientChannel.writeAndFlush(msg);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            // backend closed the connection before the whole response is relayed
+            closeWithError("backend " + backend.getHost() + " closed connection");
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            LOG.warn("load proxy to backend {} failed", backend.getId(), cause);
+            closeWithError("load proxy to backend " + backend.getHost() + " failed");
+        }
+    }
+}
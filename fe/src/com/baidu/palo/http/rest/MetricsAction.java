@@ -27,18 +27,36 @@ import com.baidu.palo.http.IllegalArgException;
 
 import io.netty.handler.codec.http.HttpMethod;
 
+// Metrics in json by default, or in Prometheus text format at /metrics or with 'type=prometheus'.
 public class MetricsAction extends RestBaseAction {
+    private static final String TYPE_PARAM = "type";
+    private static final String PROMETHEUS_TYPE = "prometheus";
+    private static final String PROMETHEUS_PATH = "/metrics";
 
     public MetricsAction(ActionController controller) {
         super(controller);
     }
 
     public static void registerAction(ActionController controller) throws IllegalArgException {
-        controller.registerHandler(HttpMethod.GET, "/api/metrics", new MetricsAction(controller));
+        MetricsAction action = new MetricsAction(controller);
+        controller.registerHandler(HttpMethod.GET, "/api/metrics", action);
+        controller.registerHandler(HttpMethod.GET, PROMETHEUS_PATH, action);
     }
 
     @Override
     public void execute(BaseRequest request, BaseResponse response) {
+        String path = request.getRequest().uri();
+        int queryIndex = path.indexOf('?');
+        if (queryIndex >= 0) {
+            path = path.substring(0, queryIndex);
+        }
+        if (PROMETHEUS_PATH.equals(path) || PROMETHEUS_TYPE.equalsIgnoreCase(request.getSingleParameter(TYPE_PARAM))) {
+            response.setContentType("text/plain; version=0.0.4");
+            response.getContent().append(Metrics.getPrometheusStr());
+            sendResult(request, response);
+            return;
+        }
+
         response.setContentType("application/json");
         response.getContent().append(Metrics.getJsonStr());
         sendResult(request, response);
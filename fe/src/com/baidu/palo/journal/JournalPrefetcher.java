@@ -0,0 +1,192 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.journal;
+
+import com.baidu.palo.catalog.Catalog;
+import com.baidu.palo.persist.OperationType;
+
+import com.google.common.base.Preconditions;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Read and deserialize journals from cursor in a separate thread, so that the replay thread only applies them.
+ * One prefetcher is used by a catalog for all rounds of replay, each round reads one cursor given by prefetch()
+ * and ends with next() returning null.
+ *
+ * Journals after OP_META_VERSION must be deserialized with the new version, which is set only when the
+ * journal is applied. So prefetching stops after OP_META_VERSION, the caller should open a new cursor
+ * for the rest journals.
+ *
+ * The prefetch thread is never interrupted, for an interrupted BDB JE operation invalidates the environment.
+ * Instead it checks flags between journals, and waits on queues with timeout.
+ */
+public class JournalPrefetcher implements Runnable {
+    private static final Logger LOG = LogManager.getLogger(JournalPrefetcher.class);
+    // marks the end of journals of a cursor
+    private static final JournalEntity END = new JournalEntity();
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final long JOIN_TIMEOUT_MS = 5000;
+
+    private final BlockingQueue<JournalCursor> cursors = new ArrayBlockingQueue<JournalCursor>(1);
+    private final BlockingQueue<JournalEntity> queue;
+    // prefetch thread should visit checkpoint catalog if caller is checkpoint thread
+    private final boolean isCheckpoint;
+    private volatile boolean stopped = false;
+    // set by consumer to stop reading the current cursor
+    private volatile boolean cancelled = false;
+    // true if journals of current cursor are not all taken by next()
+    private boolean inProgress = false;
+    private Thread thread;
+
+    public JournalPrefetcher(int capacity) {
+        this.queue = new ArrayBlockingQueue<JournalEntity>(capacity);
+        this.isCheckpoint = Catalog.isCheckpointThread();
+    }
+
+    public void start() {
+        thread = new Thread(this, "journal-prefetcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Start a round of prefetching journals from cursor, the previous round must be finished.
+    public void prefetch(JournalCursor cursor) {
+        Preconditions.checkState(!inProgress, "previous cursor is not finished");
+        cancelled = false;
+        inProgress = true;
+        cursors.add(cursor);
+    }
+
+    // Return next journal, or null if there is no more journals of current cursor.
+    public JournalEntity next() {
+        if (!inProgress) {
+            return null;
+        }
+        try {
+            JournalEntity entity = queue.take();
+            if (entity == END) {
+                inProgress = false;
+                return null;
+            }
+            return entity;
+        } catch (InterruptedException e) {
+            LOG.warn("interrupted when waiting for prefetched journal", e);
+            return null;
+        }
+    }
+
+    // Return true if next() will not block.
+    public boolean hasReady() {
+        return !queue.isEmpty();
+    }
+
+    // Stop reading current cursor and discard its prefetched journals, called if replay stops early.
+    public void finish() {
+        cancelled = true;
+        while (next() != null) {
+            // discard
+        }
+    }
+
+    // Stop prefetch thread. Queue is drained so that a blocked put returns.
+    public void close() {
+        stopped = true;
+        if (thread == null) {
+            return;
+        }
+        queue.clear();
+        try {
+            thread.join(JOIN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            LOG.warn("interrupted when waiting for prefetch thread exit", e);
+        }
+        if (thread.isAlive()) {
+            LOG.warn("journal prefetch thread does not exit in {} ms", JOIN_TIMEOUT_MS);
+        }
+    }
+
+    boolean isRunning() {
+        return thread != null && thread.isAlive();
+    }
+
+    @Override
+    public void run() {
+        if (isCheckpoint) {
+            Catalog.setCheckpointHelperThread(true);
+        }
+        try {
+            while (!stopped) {
+                JournalCursor cursor = null;
+                try {
+                    cursor = cursors.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // only stopped by flag
+                }
+                if (cursor != null) {
+                    readCursor(cursor);
+                }
+            }
+        } finally {
+            if (isCheckpoint) {
+                Catalog.setCheckpointHelperThread(false);
+            }
+        }
+    }
+
+    private void readCursor(JournalCursor cursor) {
+        try {
+            while (!stopped && !cancelled) {
+                JournalEntity entity = cursor.next();
+                if (entity == null) {
+                    break;
+                }
+                if (!offer(entity)) {
+                    return;
+                }
+                if (entity.getOpCode() == OperationType.OP_META_VERSION) {
+                    break;
+                }
+            }
+        } catch (Throwable t) {
+            LOG.warn("failed to prefetch journal", t);
+        }
+        offer(END);
+    }
+
+    // Put entity to queue, return false if prefetcher is closed.
+    private boolean offer(JournalEntity entity) {
+        while (!stopped) {
+            try {
+                if (queue.offer(entity, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                // only stopped by flag
+            }
+        }
+        return false;
+    }
+}
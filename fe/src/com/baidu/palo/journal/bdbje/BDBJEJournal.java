@@ -33,6 +33,7 @@ import com.sleepycat.je.DatabaseEntry;
 import com.sleepycat.je.DatabaseException;
 import com.sleepycat.je.LockMode;
 import com.sleepycat.je.OperationStatus;
+import com.sleepycat.je.Transaction;
 import com.sleepycat.je.rep.InsufficientLogException;
 import com.sleepycat.je.rep.NetworkRestore;
 import com.sleepycat.je.rep.NetworkRestoreConfig;
@@ -188,6 +189,91 @@ public class BDBJEJournal implements Journal {
         }
     }
 
+    @Override
+    public synchronized void write(List<JournalEntity> entities) {
+        boolean onlyTimestamp = true;
+        for (JournalEntity entity : entities) {
+            short op = entity.getOpCode();
+            if (!Catalog.getInstance().canWrite() && op != OperationType.OP_META_VERSION
+                    && op != OperationType.OP_ADD_FIRST_FRONTEND) {
+                LOG.error("the canWrite flag has not set to true yet. can not write journal. will exit. op: {}", op);
+                System.exit(-1);
+            }
+            if (op != OperationType.OP_TIMESTAMP) {
+                onlyTimestamp = false;
+            }
+        }
+
+        // ids are assigned in order, all journals are in current database
+        long firstId = journalId.getAndAdd(entities.size());
+        TupleBinding<Long> idBinding = TupleBinding.getPrimitiveBinding(Long.class);
+        DatabaseEntry[] keys = new DatabaseEntry[entities.size()];
+        DatabaseEntry[] values = new DatabaseEntry[entities.size()];
+        for (int i = 0; i < entities.size(); i++) {
+            keys[i] = new DatabaseEntry();
+            idBinding.objectToEntry(firstId + i, keys[i]);
+            DataOutputBuffer buffer = new DataOutputBuffer(OUTPUT_BUFFER_INIT_SIZE);
+            try {
+                entities.get(i).write(buffer);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            values[i] = new DatabaseEntry(buffer.getData());
+        }
+
+        // Write all key value pairs to bdb in one transaction.
+        boolean writeSuccessed = false;
+        for (int i = 0; i < RETRY_TIME && !writeSuccessed; i++) {
+            Transaction txn = null;
+            try {
+                txn = bdbEnvironment.getReplicatedEnvironment().beginTransaction(null, null);
+                boolean putSuccessed = true;
+                for (int j = 0; j < keys.length; j++) {
+                    if (currentJournalDB.put(txn, keys[j], values[j]) != OperationStatus.SUCCESS) {
+                        putSuccessed = false;
+                        break;
+                    }
+                }
+                if (putSuccessed) {
+                    txn.commit();
+                    txn = null;
+                    writeSuccessed = true;
+                    LOG.debug("master write journal {} to {} finished. db name {}, current time {}",
+                              firstId, firstId + keys.length - 1, currentJournalDB.getDatabaseName(),
+                              System.currentTimeMillis());
+                }
+            } catch (DatabaseException e) {
+                LOG.error("catch an exception when writing to database. sleep and retry. journal id {} to {}",
+                          firstId, firstId + keys.length - 1, e);
+                try {
+                    Thread.sleep(5 * 1000);
+                } catch (InterruptedException e1) {
+                    e1.printStackTrace();
+                }
+            } finally {
+                if (txn != null) {
+                    try {
+                        txn.abort();
+                    } catch (DatabaseException e) {
+                        LOG.warn("abort journal transaction failed.", e);
+                    }
+                }
+            }
+        }
+
+        if (!writeSuccessed) {
+            if (onlyTimestamp) {
+                // Same as write(op, writable), do not exit if only OP_TIMESTAMP is written.
+                journalId.set(firstId);
+                LOG.warn("master can not achieve quorum. write timestamp fail. but will not exit.");
+                return;
+            }
+            LOG.error("write bdb failed. will exit. journalId:{} to {}, bdb database Name:{}",
+                      firstId, firstId + keys.length - 1, currentJournalDB.getDatabaseName());
+            System.exit(-1);
+        }
+    }
+
     @Override
     public JournalEntity read(long journalId) {
         List<Long> dbNames = bdbEnvironment.getDatabaseNames();
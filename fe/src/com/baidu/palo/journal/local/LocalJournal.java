@@ -126,6 +126,20 @@ public class LocalJournal implements Journal {
         return cursor;
     }
 
+    @Override
+    public synchronized void write(List<JournalEntity> entities) {
+        try {
+            for (JournalEntity entity : entities) {
+                outputStream.write(entity.getOpCode(), entity.getData());
+            }
+            outputStream.setReadyToFlush();
+            outputStream.flush();
+            journalId.addAndGet(entities.size());
+        } catch (IOException e) {
+            LOG.error(e);
+        }
+    }
+
     @Override
     public synchronized void write(short op, Writable writable) {
         try {
@@ -126,6 +126,7 @@ public class Load {
     private Map<Long, LoadJob> idToQuorumFinishedLoadJob; // loadJobId to quorum finished loadJob
     private Set<Long> loadingPartitionIds; // loading partition id set
     private Map<Long, Set<String>> dbToMiniLabels; // db to mini uncommit label
+    private MiniLoadMerger miniLoadMerger;
 
     private Map<Long, List<DeleteInfo>> dbToDeleteInfos; // db to delete job list
 
@@ -195,6 +196,7 @@ public class Load {
         idToQuorumFinishedLoadJob = Maps.newLinkedHashMap();
         loadingPartitionIds = Sets.newHashSet();
         dbToMiniLabels = Maps.newHashMap();
+        miniLoadMerger = new MiniLoadMerger(this);
         dbToDeleteInfos = Maps.newHashMap();
         partitionUnderDelete = Sets.newHashSet();
         idToQuorumFinishedDeleteJob = Maps.newLinkedHashMap();
@@ -220,14 +222,64 @@ public class Load {
     public boolean addLoadJob(TMiniLoadRequest request) throws DdlException {
         // get params
         String dbName = request.getDb();
-        String tableName = request.getTbl();
         String label = request.getLabel();
-        long timestamp = 0;
-        if (request.isSetTimestamp()) {
-            timestamp = request.getTimestamp();
+        long timestamp = getMiniLoadTimestamp(request);
+
+        // create load stmt, which also checks params of the request
+        LoadStmt stmt = createMiniLoadStmt(Lists.newArrayList(request));
+
+        // try to register mini label
+        if (!registerMiniLabel(dbName, label, timestamp)) {
+            return false;
+        }
+
+        try {
+            if (Config.mini_load_merge_window_ms > 0) {
+                try {
+                    FeNameFormat.checkLabel(label);
+                } catch (AnalysisException e) {
+                    throw new DdlException(e.getMessage());
+                }
+                miniLoadMerger.merge(request);
+            } else {
+                addLoadJob(stmt, EtlJobType.MINI, timestamp);
+            }
+        } finally {
+            deregisterMiniLabel(dbName, label);
+        }
+
+        return true;
+    }
+
+    // Add one load job for mini loads merged by MiniLoadMerger. They are to the same table with the same
+    // parameters, the first one names the job.
+    public void addMergedMiniLoadJob(List<TMiniLoadRequest> requests) throws DdlException {
+        TMiniLoadRequest firstRequest = requests.get(0);
+        LoadStmt stmt = createMiniLoadStmt(requests);
+        Database db = Catalog.getInstance().getDb(firstRequest.getDb());
+        if (db == null) {
+            throw new DdlException("Database[" + firstRequest.getDb() + "] does not exist");
+        }
+
+        LoadJob job = createLoadJob(stmt, EtlJobType.MINI, db, getMiniLoadTimestamp(firstRequest));
+        for (TMiniLoadRequest request : requests.subList(1, requests.size())) {
+            job.addMergedLabel(request.getLabel(), getMiniLoadTimestamp(request));
         }
+        addLoadJob(job, db);
+    }
+
+    private long getMiniLoadTimestamp(TMiniLoadRequest request) {
+        return request.isSetTimestamp() ? request.getTimestamp() : 0;
+    }
+
+    // Load stmt of mini loads with the same parameters, data of all of them is loaded by one data description.
+    private LoadStmt createMiniLoadStmt(List<TMiniLoadRequest> requests) throws DdlException {
+        // get params
+        TMiniLoadRequest request = requests.get(0);
+        String dbName = request.getDb();
+        String tableName = request.getTbl();
+        String label = request.getLabel();
         TNetworkAddress beAddr = request.getBackend();
-        String filePathsValue = request.getFiles().get(0);
         Map<String, String> params = request.getProperties();
 
         // create load stmt
@@ -236,10 +288,14 @@ public class Load {
 
         // data descriptions
         // file paths
-        if (Strings.isNullOrEmpty(filePathsValue)) {
-            throw new DdlException("File paths are not specified");
+        List<String> filePaths = Lists.newArrayList();
+        for (TMiniLoadRequest mergedRequest : requests) {
+            String filePathsValue = mergedRequest.getFiles().get(0);
+            if (Strings.isNullOrEmpty(filePathsValue)) {
+                throw new DdlException("File paths are not specified");
+            }
+            filePaths.addAll(Arrays.asList(filePathsValue.split(",")));
         }
-        List<String> filePaths = Arrays.asList(filePathsValue.split(","));
 
      // partitions | column names | separator | line delimiter
         List<String> partitionNames = null;
@@ -311,20 +367,7 @@ public class Load {
                 properties.put(LoadStmt.TIMEOUT_PROPERTY, timeout);
             }
         }
-        LoadStmt stmt = new LoadStmt(labelName, dataDescriptions, null, null, properties);
-
-        // try to register mini label
-        if (!registerMiniLabel(dbName, label, timestamp)) {
-            return false;
-        }
-
-        try {
-            addLoadJob(stmt, EtlJobType.MINI, timestamp);
-        } finally {
-            deregisterMiniLabel(dbName, label);
-        }
-
-        return true;
+        return new LoadStmt(labelName, dataDescriptions, null, null, properties);
     }
 
     public void addLoadJob(LoadStmt stmt, EtlJobType etlJobType, long timestamp) throws DdlException {
@@ -406,6 +449,7 @@ public class Load {
             writeUnlock();
         }
         LOG.info("add load job. job: {}", job);
+        LoadChecker.notifyJobReady(job.getState(), job.getId());
     }
 
     private LoadJob createLoadJob(LoadStmt stmt, EtlJobType etlJobType, 
@@ -800,6 +844,18 @@ public class Load {
         idToLoadJob.put(jobId, job);
         dbLoadJobs.add(job);
         labelLoadJobs.add(job);
+        // merged mini loads are found by their own labels
+        for (String mergedLabel : job.getAllLabels()) {
+            if (mergedLabel.equals(label)) {
+                continue;
+            }
+            List<LoadJob> mergedLabelLoadJobs = labelToLoadJobs.get(mergedLabel);
+            if (mergedLabelLoadJobs == null) {
+                mergedLabelLoadJobs = Lists.newArrayList();
+                labelToLoadJobs.put(mergedLabel, mergedLabelLoadJobs);
+            }
+            mergedLabelLoadJobs.add(job);
+        }
         
         switch (job.getState()) {
             case PENDING:
@@ -952,7 +1008,7 @@ public class Load {
                 for (LoadJob oldJob : labelLoadJobs) {
                     JobState oldJobState = oldJob.getState();
                     if (oldJobState != JobState.CANCELLED) {
-                        if (timestamp == oldJob.getTimestamp()) {
+                        if (timestamp == oldJob.getTimestamp(label)) {
                             return false;
                         } else {
                             throw new DdlException(labelUsedMsg);
@@ -1235,16 +1291,8 @@ public class Load {
                 String label = loadJob.getLabel();
                 JobState state = loadJob.getState();
                 
-                if (labelValue != null) {
-                    if (accurateMatch) {
-                        if (!label.equals(labelValue)) {
-                            continue;
-                        }
-                    } else {
-                        if (!label.contains(labelValue)) {
-                            continue;
-                        }
-                    }
+                if (labelValue != null && !matchLabel(loadJob, labelValue, accurateMatch)) {
+                    continue;
                 }
                 
                 if (states != null) {
@@ -1364,12 +1412,8 @@ public class Load {
             }
 
             for (LoadJob loadJob : loadJobs) {
-                String label = loadJob.getLabel();
-
-                if (labelValue != null) {
-                    if (!label.equals(labelValue)) {
-                        continue;
-                    }
+                if (labelValue != null && !matchLabel(loadJob, labelValue, true)) {
+                    continue;
                 }
 
                 long currJobId = loadJob.getId();
@@ -1742,24 +1786,35 @@ public class Load {
             LOG.warn("Does not find db in dbLabelToLoadJobs. DbId : {}", job.getDbId());
             return;
         }
-        jobs = dbLabelToLoadJobs.get(job.getDbId()).get(job.getLabel());
-        if (jobs == null) {
-            LOG.warn("Does not find label for db. label : {}, DbId : {}", job.getLabel(), job.getDbId());
-            return;
-        }
-        pos = 0;
-        for (LoadJob oneJob : jobs) {
-            if (oneJob.getId() == jobId) {
-                break;
+        for (String label : job.getAllLabels()) {
+            jobs = dbLabelToLoadJobs.get(job.getDbId()).get(label);
+            if (jobs == null) {
+                LOG.warn("Does not find label for db. label : {}, DbId : {}", label, job.getDbId());
+                continue;
             }
-            pos++;
+            pos = 0;
+            for (LoadJob oneJob : jobs) {
+                if (oneJob.getId() == jobId) {
+                    break;
+                }
+                pos++;
+            }
+            if (pos == jobs.size()) {
+                LOG.warn("Does not find load job for label. label : {}, DbId : {}", label, job.getDbId());
+                continue;
+            }
+            jobs.remove(pos);
+            jobs.add(pos, job);
         }
-        if (pos == jobs.size()) {
-            LOG.warn("Does not find load job for label. label : {}, DbId : {}", job.getLabel(), job.getDbId());
-            return;
+    }
+
+    private boolean matchLabel(LoadJob job, String labelValue, boolean accurateMatch) {
+        for (String label : job.getAllLabels()) {
+            if (accurateMatch ? label.equals(labelValue) : label.contains(labelValue)) {
+                return true;
+            }
         }
-        jobs.remove(pos);
-        jobs.add(pos, job);
+        return false;
     }
  
     // remove all db jobs from dbToLoadJobs and dbLabelToLoadJobs
@@ -1800,7 +1855,6 @@ public class Load {
                 if ((currentTimeMs - job.getCreateTimeMs()) / 1000 > Config.label_keep_max_second
                         && (job.getState() == JobState.FINISHED || job.getState() == JobState.CANCELLED)) {
                     long dbId = job.getDbId();
-                    String label = job.getLabel();
                     
                     // Remove job from idToLoadJob
                     iter.remove();
@@ -1817,16 +1871,18 @@ public class Load {
                     // Remove job from dbLabelToLoadJobs
                     Map<String, List<LoadJob>> mapLabelToJobs = dbLabelToLoadJobs.get(dbId);
                     if (mapLabelToJobs != null) {
-                        loadJobs = mapLabelToJobs.get(label);
-                        if (loadJobs != null) {
-                            loadJobs.remove(job);
-                            if (loadJobs.size() == 0) {
-                                mapLabelToJobs.remove(label);
-                                if (mapLabelToJobs.size() == 0) {
-                                    dbLabelToLoadJobs.remove(dbId);
+                        for (String label : job.getAllLabels()) {
+                            loadJobs = mapLabelToJobs.get(label);
+                            if (loadJobs != null) {
+                                loadJobs.remove(job);
+                                if (loadJobs.size() == 0) {
+                                    mapLabelToJobs.remove(label);
                                 }
                             }
                         }
+                        if (mapLabelToJobs.size() == 0) {
+                            dbLabelToLoadJobs.remove(dbId);
+                        }
                     }
                 }
             }
@@ -1993,6 +2049,14 @@ public class Load {
         // check current job state
         if (destState != job.getState()) {
             result = false;
+        } else {
+            // let checker of dest state handle the job at once
+            LoadChecker.notifyJobReady(destState, jobId);
+            if ((srcState == JobState.PENDING || srcState == JobState.ETL)
+                    && Config.load_running_job_num_limit > 0) {
+                // running job num decreased, more pending jobs may be submitted
+                LoadChecker.wakeUp(JobState.PENDING);
+            }
         }
         return result;
     }
@@ -32,7 +32,9 @@ import com.baidu.palo.clone.Clone;
 import com.baidu.palo.clone.CloneJob.JobPriority;
 import com.baidu.palo.clone.CloneJob.JobType;
 import com.baidu.palo.common.Config;
+import com.baidu.palo.common.util.BucketHistogram;
 import com.baidu.palo.common.util.Daemon;
+import com.baidu.palo.common.util.Metrics;
 import com.baidu.palo.load.AsyncDeleteJob.DeleteState;
 import com.baidu.palo.load.FailMsg.CancelType;
 import com.baidu.palo.load.LoadJob.EtlJobType;
@@ -56,7 +58,9 @@ import com.baidu.palo.thrift.TPriority;
 import com.baidu.palo.thrift.TPushType;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -67,6 +71,12 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+/*
+ * One checker thread for each running job state.
+ * A checker checks all jobs of its state once per interval, to handle timeout and lost events.
+ * Between intervals, it is woken up by events which may let a job make progress, e.g. a state change,
+ * a finished push task or an etl status callback, and only checks the jobs of these events.
+ */
 public class LoadChecker extends Daemon {
     private static final Logger LOG = LogManager.getLogger(LoadChecker.class);
 
@@ -75,10 +85,22 @@ public class LoadChecker extends Daemon {
     // executors for pending and etl tasks
     private static Map<JobState, Map<TPriority, MasterTaskExecutor>> executors = Maps.newHashMap();
     private JobState jobState;
+    // time of each check cycle
+    private final BucketHistogram cycleHistogram;
+
+    // protects readyJobIds and needFullCheck
+    private final Object readyLock = new Object();
+    // ids of jobs to check before next full check
+    private Set<Long> readyJobIds = Sets.newHashSet();
+    private boolean needFullCheck = true;
+    // only accessed by checker thread
+    private long lastFullCheckTimeMs = 0;
 
     private LoadChecker(JobState jobState, long intervalMs) {
         super("load checker " + jobState.name().toLowerCase(), intervalMs);
         this.jobState = jobState;
+        this.cycleHistogram = (BucketHistogram) Metrics.getMetric(Metrics.MetricType.BUCKET_HISTOGRAM,
+                "load_checker." + jobState.name().toLowerCase() + ".cycle_ms");
     }
     
     /**
@@ -112,32 +134,105 @@ public class LoadChecker extends Daemon {
             loadChecker.start();
         }
     }
+
+    /**
+     * Check the job in state 'jobState' as soon as possible, instead of waiting for next interval.
+     * Does nothing if there is no checker, e.g. on non-master frontend.
+     */
+    public static void notifyJobReady(JobState jobState, long jobId) {
+        LoadChecker checker = checkers.get(jobState);
+        if (checker == null) {
+            return;
+        }
+        synchronized (checker.readyLock) {
+            checker.readyJobIds.add(jobId);
+            checker.readyLock.notify();
+        }
+    }
+
+    /**
+     * Check all jobs in state 'jobState' as soon as possible.
+     */
+    public static void wakeUp(JobState jobState) {
+        LoadChecker checker = checkers.get(jobState);
+        if (checker == null) {
+            return;
+        }
+        synchronized (checker.readyLock) {
+            checker.needFullCheck = true;
+            checker.readyLock.notify();
+        }
+    }
+
+    @Override
+    protected void waitForNextCycle(long intervalMs) throws InterruptedException {
+        synchronized (readyLock) {
+            while (true) {
+                long waitMs = lastFullCheckTimeMs + intervalMs - System.currentTimeMillis();
+                if (waitMs <= 0) {
+                    needFullCheck = true;
+                    return;
+                }
+                if (needFullCheck || !readyJobIds.isEmpty()) {
+                    return;
+                }
+                readyLock.wait(waitMs);
+            }
+        }
+    }
     
     @Override
     protected void runOneCycle() {
-        LOG.debug("start check load jobs. job state: {}", jobState.name());
+        boolean isFullCheck;
+        Set<Long> jobIds;
+        synchronized (readyLock) {
+            isFullCheck = needFullCheck;
+            jobIds = readyJobIds;
+            readyJobIds = Sets.newHashSet();
+            needFullCheck = false;
+        }
+
+        long start = System.currentTimeMillis();
+        Load load = Catalog.getInstance().getLoadInstance();
+        List<LoadJob> jobs;
+        if (isFullCheck) {
+            LOG.debug("start check load jobs. job state: {}", jobState.name());
+            lastFullCheckTimeMs = System.currentTimeMillis();
+            jobs = load.getLoadJobs(jobState);
+        } else {
+            LOG.debug("start check ready load jobs. job state: {}, job ids: {}", jobState.name(), jobIds);
+            jobs = Lists.newArrayList();
+            for (long jobId : jobIds) {
+                LoadJob job = load.getLoadJob(jobId);
+                // job may have been moved to next state or cancelled
+                if (job != null && job.getState() == jobState) {
+                    jobs.add(job);
+                }
+            }
+        }
+
         switch (jobState) {
             case PENDING:
-                runPendingJobs();
+                runPendingJobs(jobs);
                 break;
             case ETL:
-                runEtlJobs();
+                runEtlJobs(jobs);
                 break;
             case LOADING:
-                runLoadingJobs();
+                runLoadingJobs(jobs);
                 break;
             case QUORUM_FINISHED:
-                runQuorumFinishedJobs();
+                runQuorumFinishedJobs(jobs, isFullCheck);
                 break;
             default:
                 LOG.warn("wrong job state: {}", jobState.name());
                 break;
         }
+        cycleHistogram.update(System.currentTimeMillis() - start);
     }
 
-    private void runPendingJobs() {
+    private void runPendingJobs(List<LoadJob> pendingJobs) {
         Load load = Catalog.getInstance().getLoadInstance();
-        List<LoadJob> pendingJobs = load.getLoadJobs(JobState.PENDING);
 
         // check to limit running etl job num
         int runningJobNumLimit = Config.load_running_job_num_limit;
@@ -186,8 +281,7 @@ public class LoadChecker extends Daemon {
         }
     }
 
-    private void runEtlJobs() {
-        List<LoadJob> etlJobs = Catalog.getInstance().getLoadInstance().getLoadJobs(JobState.ETL);
+    private void runEtlJobs(List<LoadJob> etlJobs) {
         for (LoadJob job : etlJobs) {
             try {
                 MasterTask task = null;
@@ -220,8 +314,7 @@ public class LoadChecker extends Daemon {
         }
     }
     
-    private void runLoadingJobs() {
-        List<LoadJob> loadingJobs = Catalog.getInstance().getLoadInstance().getLoadJobs(JobState.LOADING);
+    private void runLoadingJobs(List<LoadJob> loadingJobs) {
         for (LoadJob job : loadingJobs) {
             try {
                 LOG.info("run loading job. job: {}", job);
@@ -503,9 +596,7 @@ public class LoadChecker extends Daemon {
         return jobTotalTablets;
     }
     
-    private void runQuorumFinishedJobs() {
-        List<LoadJob> quorumFinishedJobs = Catalog.getInstance().getLoadInstance().getLoadJobs(
-                JobState.QUORUM_FINISHED);
+    private void runQuorumFinishedJobs(List<LoadJob> quorumFinishedJobs, boolean isFullCheck) {
         for (LoadJob job : quorumFinishedJobs) {
             try {
                 LOG.info("run quorum finished job. job: {}", job);
@@ -515,6 +606,11 @@ public class LoadChecker extends Daemon {
             }
         }
 
+        // async delete jobs are only checked in full check
+        if (!isFullCheck) {
+            return;
+        }
+
         // handle async delete job
         List<AsyncDeleteJob> quorumFinishedDeleteJobs =
                 Catalog.getInstance().getLoadInstance().getQuorumFinishedDeleteJobs();
@@ -30,6 +30,7 @@ import com.baidu.palo.task.PushTask;
 import com.baidu.palo.thrift.TPriority;
 import com.baidu.palo.thrift.TResourceInfo;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import org.apache.logging.log4j.LogManager;
@@ -40,6 +41,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -71,6 +73,8 @@ public class LoadJob implements Writable {
     private long dbId;
     private String label;
     long timestamp;
+    // labels of other mini loads merged into this job, and their timestamps
+    private Map<String, Long> mergedLabelToTimestamp;
     private int timeoutSecond;
     private double maxFilterRatio;
     private boolean deleteFlag;
@@ -120,6 +124,7 @@ public class LoadJob implements Writable {
         this.dbId = -1;
         this.label = label;
         this.timestamp = -1;
+        this.mergedLabelToTimestamp = Maps.newHashMap();
         this.timeoutSecond = timeoutSecond;
         this.maxFilterRatio = maxFilterRatio;
         this.deleteFlag = false;
@@ -170,6 +175,23 @@ public class LoadJob implements Writable {
     public long getTimestamp() {
         return timestamp;
     }
+
+    public void addMergedLabel(String label, long timestamp) {
+        mergedLabelToTimestamp.put(label, timestamp);
+    }
+
+    // job label and all merged labels
+    public List<String> getAllLabels() {
+        List<String> labels = Lists.newArrayList(label);
+        labels.addAll(mergedLabelToTimestamp.keySet());
+        return labels;
+    }
+
+    // timestamp of the load with given label, which is the job label or a merged label
+    public long getTimestamp(String label) {
+        Long mergedTimestamp = mergedLabelToTimestamp.get(label);
+        return mergedTimestamp == null ? timestamp : mergedTimestamp;
+    }
     
     public void setTimeoutSecond(int timeoutSecond) {
         this.timeoutSecond = timeoutSecond;
@@ -609,6 +631,12 @@ public class LoadJob implements Writable {
             out.writeBoolean(true);
             pullLoadSourceInfo.write(out);
         }
+
+        out.writeInt(mergedLabelToTimestamp.size());
+        for (Map.Entry<String, Long> entry : mergedLabelToTimestamp.entrySet()) {
+            Text.writeString(out, entry.getKey());
+            out.writeLong(entry.getValue());
+        }
     }
 
     public void readFields(DataInput in) throws IOException {
@@ -717,6 +745,14 @@ public class LoadJob implements Writable {
                 this.pullLoadSourceInfo = PullLoadSourceInfo.read(in);
             }
         }
+
+        if (version >= FeMetaVersion.VERSION_36) {
+            int mergedLabelNum = in.readInt();
+            for (int i = 0; i < mergedLabelNum; i++) {
+                String mergedLabel = Text.readString(in);
+                mergedLabelToTimestamp.put(mergedLabel, in.readLong());
+            }
+        }
     }
     
     @Override
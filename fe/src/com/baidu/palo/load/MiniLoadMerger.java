@@ -0,0 +1,164 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.load;
+
+import com.baidu.palo.common.Config;
+import com.baidu.palo.common.DdlException;
+import com.baidu.palo.thrift.TMiniLoadRequest;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Merges concurrent mini loads which one load job can do, i.e. mini loads to the same table, with files on
+ * the same backend and with the same parameters, so that they make one version instead of many small ones.
+ *
+ * The first mini load of a batch waits for Config.mini_load_merge_window_ms or until the batch is full,
+ * then adds one load job for the whole batch. Other mini loads of the batch wait until the job is added.
+ * The job is found by the label of every mini load in the batch, and all of them share its result.
+ */
+public class MiniLoadMerger {
+    private static final Logger LOG = LogManager.getLogger(MiniLoadMerger.class);
+
+    private static class Batch {
+        // guarded by MiniLoadMerger.openBatches
+        private final List<TMiniLoadRequest> requests = Lists.newArrayList();
+        // guarded by batch itself
+        private boolean isClosed = false;
+        private boolean isDone = false;
+        private String errMsg = null;
+    }
+
+    private final Load load;
+    // merge key -> batch still accepting mini loads
+    private final Map<String, Batch> openBatches = Maps.newHashMap();
+
+    public MiniLoadMerger(Load load) {
+        this.load = load;
+    }
+
+    // Returns after the load job containing this mini load is added.
+    public void merge(TMiniLoadRequest request) throws DdlException {
+        String key = getMergeKey(request);
+        Batch batch = null;
+        boolean isFirst = false;
+        synchronized (openBatches) {
+            batch = openBatches.get(key);
+            if (batch == null) {
+                batch = new Batch();
+                openBatches.put(key, batch);
+                isFirst = true;
+            }
+            batch.requests.add(request);
+            if (batch.requests.size() >= Config.mini_load_merge_max_num) {
+                openBatches.remove(key);
+                synchronized (batch) {
+                    batch.isClosed = true;
+                    batch.notifyAll();
+                }
+            }
+        }
+
+        if (isFirst) {
+            addLoadJob(key, batch);
+        } else {
+            waitLoadJob(batch);
+        }
+    }
+
+    private void addLoadJob(String key, Batch batch) throws DdlException {
+        long deadline = System.currentTimeMillis() + Config.mini_load_merge_window_ms;
+        synchronized (batch) {
+            long waitMs = deadline - System.currentTimeMillis();
+            while (!batch.isClosed && waitMs > 0) {
+                try {
+                    batch.wait(waitMs);
+                } catch (InterruptedException e) {
+                    LOG.warn("interrupted when waiting for mini loads to merge", e);
+                    break;
+                }
+                waitMs = deadline - System.currentTimeMillis();
+            }
+        }
+
+        List<TMiniLoadRequest> requests = null;
+        synchronized (openBatches) {
+            if (openBatches.get(key) == batch) {
+                openBatches.remove(key);
+            }
+            requests = Lists.newArrayList(batch.requests);
+        }
+
+        String errMsg = null;
+        try {
+            load.addMergedMiniLoadJob(requests);
+            if (requests.size() > 1) {
+                LOG.info("merge {} mini loads into load job with label {}", requests.size(),
+                         requests.get(0).getLabel());
+            }
+        } catch (DdlException e) {
+            errMsg = e.getMessage();
+            throw e;
+        } catch (RuntimeException e) {
+            errMsg = "failed to add merged mini load job: " + e.getMessage();
+            throw e;
+        } finally {
+            synchronized (batch) {
+                batch.isClosed = true;
+                batch.isDone = true;
+                batch.errMsg = errMsg;
+                batch.notifyAll();
+            }
+        }
+    }
+
+    private void waitLoadJob(Batch batch) throws DdlException {
+        synchronized (batch) {
+            while (!batch.isDone) {
+                try {
+                    batch.wait();
+                } catch (InterruptedException e) {
+                    throw new DdlException("interrupted when waiting for merged mini load job");
+                }
+            }
+            if (batch.errMsg != null) {
+                throw new DdlException(batch.errMsg);
+            }
+        }
+    }
+
+    private String getMergeKey(TMiniLoadRequest request) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(request.getCluster()).append("|").append(request.getUser()).append("|");
+        sb.append(request.getDb()).append("|").append(request.getTbl()).append("|");
+        sb.append(request.getBackend().getHostname()).append(":").append(request.getBackend().getPort());
+        // sorted, so that equal properties make equal key
+        if (request.getProperties() != null) {
+            sb.append("|").append(Maps.newTreeMap(request.getProperties()));
+        }
+        return sb.toString();
+    }
+}
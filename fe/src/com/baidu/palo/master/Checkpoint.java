@@ -33,6 +33,8 @@ import com.baidu.palo.persist.EditLog;
 import com.baidu.palo.persist.MetaCleaner;
 import com.baidu.palo.persist.Storage;
 
+import com.google.common.collect.Lists;
+
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
@@ -44,6 +46,11 @@ import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.URL;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Checkpoint daemon is running on master node. handle the checkpoint work for palo. 
@@ -100,7 +107,9 @@ public class Checkpoint extends Daemon {
             return;
         }
         
-        if (!checkMemoryEnoughToDoCheckpoint()) {
+        // in lazy mode, only databases changed since the last image are loaded into memory,
+        // and the memory is checked before loading all of them.
+        if (!Config.checkpoint_lazy_load_db && !checkMemoryEnoughToDoCheckpoint()) {
             return;
         }
        
@@ -125,32 +134,51 @@ public class Checkpoint extends Daemon {
             return;
         } finally {
             // destroy checkpoint catalog, reclaim memory
+            catalog.closeLazyDbImage();
+            catalog.closeJournalPrefetcher();
             catalog = null;
             Catalog.destroyCheckpoint(); 
         }
         
-        // push image file to all the other nodes
+        // push image file to all the other nodes in parallel
         List<InetSocketAddress> otherNodes = Catalog.getInstance().getHaProtocol().getNoneLeaderNodes();
         int successPushed = 0;
         int otherNodesCount = 0;
-        if (otherNodes != null) {
+        if (otherNodes != null && !otherNodes.isEmpty()) {
             otherNodesCount = otherNodes.size();
-            for (InetSocketAddress node : otherNodes) {
-                String host = node.getHostString();
-                int port = Config.http_port;
-                
-                String url = "http://" + host + ":" + port + "/put?version=" + replayedJournalId
-                        + "&port=" + port;
-                LOG.info("Put image:{}", url);
-
-                try {
-                    MetaHelper.getRemoteFile(url, PUT_TIMEOUT_SECOND * 1000, new NullOutputStream());
-                    successPushed++;
-                } catch (IOException e) {
-                    LOG.error("Exception when pushing image file. url = {}", url, e);
+            ExecutorService pushPool = Executors.newFixedThreadPool(otherNodesCount);
+            try {
+                List<Future<Boolean>> futures = Lists.newArrayList();
+                for (InetSocketAddress node : otherNodes) {
+                    final String url = "http://" + node.getHostString() + ":" + Config.http_port
+                            + "/put?version=" + replayedJournalId + "&port=" + Config.http_port;
+                    futures.add(pushPool.submit(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            LOG.info("Put image:{}", url);
+                            try {
+                                MetaHelper.getRemoteFile(url, PUT_TIMEOUT_SECOND * 1000, new NullOutputStream());
+                                return true;
+                            } catch (IOException e) {
+                                LOG.error("Exception when pushing image file. url = {}", url, e);
+                                return false;
+                            }
+                        }
+                    }));
                 }
+                for (Future<Boolean> future : futures) {
+                    try {
+                        if (future.get()) {
+                            successPushed++;
+                        }
+                    } catch (InterruptedException | ExecutionException e) {
+                        LOG.error("Exception when waiting for pushing image file.", e);
+                    }
+                }
+            } finally {
+                pushPool.shutdownNow();
             }
-            
+
             LOG.info("push image.{} to other nodes. totally {} nodes, push successed {} nodes",
                      replayedJournalId, otherNodesCount, successPushed);
         }
@@ -35,6 +35,7 @@ import com.baidu.palo.catalog.TabletInvertedIndex;
 import com.baidu.palo.catalog.Partition.PartitionState;
 import com.baidu.palo.common.MetaNotFoundException;
 import com.baidu.palo.load.AsyncDeleteJob;
+import com.baidu.palo.load.LoadChecker;
 import com.baidu.palo.load.LoadJob;
 import com.baidu.palo.persist.ReplicaPersistInfo;
 import com.baidu.palo.system.Backend;
@@ -309,6 +310,8 @@ public class MasterImpl {
                 for (ReplicaPersistInfo info : infos) {
                     job.addReplicaPersistInfos(info);
                 }
+                // job may reach quorum or finish now
+                LoadChecker.notifyJobReady(job.getState(), loadJobId);
             } else if (pushTask.getPushType() == TPushType.DELETE) {
                 // report delete task must match version and version hash
                 if (pushTask.getVersion() != request.getRequest_version()
@@ -20,18 +20,25 @@
 package com.baidu.palo.master;
 
 import com.baidu.palo.catalog.Catalog;
+import com.baidu.palo.common.Config;
 import com.baidu.palo.common.io.IOUtils;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.zip.InflaterInputStream;
 
 public class MetaHelper {
+    private static final Logger LOG = LogManager.getLogger(MetaHelper.class);
     private static final String PART_SUFFIX = ".part";
     public static final String X_IMAGE_SIZE = "X-Image-Size";
     private static final int BUFFER_BYTES = 8 * 1024;
@@ -98,4 +105,83 @@ public class MetaHelper {
         }
     }
 
+    /*
+     * Download image from remote node to dir/filename.
+     * Data is written to filename.PART_SUFFIX first. If the transfer is interrupted, it is resumed from
+     * the end of the part file by 'Range' header, at most meta_image_transfer_retry_times times.
+     */
+    public static File downloadImage(String urlStr, int timeout, String filename, File dir) throws IOException {
+        File partFile = new File(dir, filename + PART_SUFFIX);
+        IOException lastException = null;
+        for (int i = 0; i <= Config.meta_image_transfer_retry_times; i++) {
+            try {
+                downloadRange(urlStr, timeout, partFile);
+                return complete(filename, dir);
+            } catch (FileNotFoundException e) {
+                // image does not exist on remote node, or local dir is not writable
+                throw e;
+            } catch (IOException e) {
+                LOG.warn("download image from {} failed, downloaded {} bytes. retry: {}",
+                         urlStr, partFile.length(), i, e);
+                lastException = e;
+            }
+        }
+        throw lastException;
+    }
+
+    private static void downloadRange(String urlStr, int timeout, File partFile) throws IOException {
+        long offset = partFile.exists() ? partFile.length() : 0;
+        URL url = new URL(urlStr);
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) url.openConnection();
+            conn.setConnectTimeout(timeout);
+            conn.setReadTimeout(timeout);
+            if (offset > 0) {
+                conn.setRequestProperty("Range", "bytes=" + offset + "-");
+            }
+            if (Config.meta_image_transfer_compress) {
+                conn.setRequestProperty("Accept-Encoding", "deflate");
+            }
+
+            int code = conn.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                throw new FileNotFoundException(urlStr);
+            } else if (code == 416) {
+                // part file is not a prefix of remote image, download again
+                partFile.delete();
+                throw new IOException("range from " + offset + " is not satisfiable: " + urlStr);
+            } else if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("unexpected response code " + code + ": " + urlStr);
+            }
+            // remote node may not support range
+            boolean append = (code == HttpURLConnection.HTTP_PARTIAL);
+            if (!append) {
+                offset = 0;
+            }
+
+            long imageSize = -1;
+            String imageSizeStr = conn.getHeaderField(X_IMAGE_SIZE);
+            if (imageSizeStr != null) {
+                imageSize = Long.parseLong(imageSizeStr);
+            }
+
+            InputStream in = conn.getInputStream();
+            if ("deflate".equalsIgnoreCase(conn.getContentEncoding())) {
+                in = new InflaterInputStream(in);
+            }
+            OutputStream out = new FileOutputStream(partFile, append);
+            long bytes = IOUtils.copyBytes(new BufferedInputStream(in), out, BUFFER_BYTES,
+                                           CHECKPOINT_LIMIT_BYTES, true);
+
+            if ((imageSize > 0) && (offset + bytes != imageSize)) {
+                throw new IOException("Unexpected image size, expected: " + imageSize
+                        + ", actual: " + (offset + bytes));
+            }
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
 }
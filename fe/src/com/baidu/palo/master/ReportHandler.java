@@ -29,7 +29,10 @@ import com.baidu.palo.catalog.Partition;
 import com.baidu.palo.catalog.TabletInvertedIndex;
 import com.baidu.palo.catalog.Replica.ReplicaState;
 import com.baidu.palo.clone.CloneChecker;
+import com.baidu.palo.common.Config;
 import com.baidu.palo.common.MetaNotFoundException;
+import com.baidu.palo.common.util.BucketHistogram;
+import com.baidu.palo.common.util.Metrics;
 import com.baidu.palo.persist.ReplicaPersistInfo;
 import com.baidu.palo.system.Backend;
 import com.baidu.palo.task.AgentBatchTask;
@@ -65,11 +68,30 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ReportHandler {
     private static final Logger LOG = LogManager.getLogger(ReportHandler.class);
+    private static final BucketHistogram HANDLE_REPORT_HISTOGRAM = (BucketHistogram) Metrics.getMetric(
+            Metrics.MetricType.BUCKET_HISTOGRAM, "report.handle_ms");
+    private static final BucketHistogram TABLET_REPORT_HISTOGRAM = (BucketHistogram) Metrics.getMetric(
+            Metrics.MetricType.BUCKET_HISTOGRAM, "report.tablet_ms");
+
+    // backend id -> version of the last tablet report applied, which a delta report can be based on
+    private static final Map<Long, Long> acceptedTabletReportVersions = new ConcurrentHashMap<Long, Long>();
+    // backend id -> time of the last full tablet report applied
+    private static final Map<Long, Long> lastFullTabletReportTimes = new ConcurrentHashMap<Long, Long>();
 
     public static TMasterResult handleReport(TReportRequest request) throws TException {
+        long start = System.currentTimeMillis();
+        try {
+            return handleReportInternal(request);
+        } finally {
+            HANDLE_REPORT_HISTOGRAM.update(System.currentTimeMillis() - start);
+        }
+    }
+
+    private static TMasterResult handleReportInternal(TReportRequest request) throws TException {
         TMasterResult result = new TMasterResult();
         TStatus tStatus = new TStatus(TStatusCode.OK);
         result.setStatus(tStatus);
@@ -99,15 +121,34 @@ public class ReportHandler {
         // diff tablets
         if (request.isSetTablets()) {
             long backendReportVersion = Catalog.getCurrentSystemInfo().getBackendReportVersion(backendId);
-            if (request.getReport_version() >= backendReportVersion) {
+            boolean isDelta = request.isSetDelta_tablets() && request.isDelta_tablets();
+            if (request.getReport_version() < backendReportVersion) {
+                LOG.warn("out of date report[{}] from backend[{}]. current report version[{}]",
+                         request.getReport_version(), backendId, backendReportVersion);
+                acceptedTabletReportVersions.remove(backendId);
+            } else if (isDelta && !isBaseOfDeltaAccepted(backendId, request.getBase_tablet_report_version())) {
+                // master does not have the base of this delta, eg. master is changed.
+                // ignore it, backend will send a full report next time.
+                LOG.info("ignore delta tablet report[{}] from backend[{}] based on report[{}]",
+                         request.getReport_version(), backendId, request.getBase_tablet_report_version());
+                acceptedTabletReportVersions.remove(backendId);
+            } else {
                 LOG.debug("REPORTING[TABLET] begin. backend[{}-{}-{}]", backendId, host, bePort);
                 long start = System.currentTimeMillis();
-                ReportHandler.tabletReport(backendId, request.getTablets(), request.getReport_version());
+                boolean complete;
+                if (isDelta) {
+                    Set<Long> removedTablets = request.isSetRemoved_tablets()
+                            ? request.getRemoved_tablets() : new HashSet<Long>();
+                    complete = ReportHandler.tabletDeltaReport(backendId, request.getTablets(), removedTablets,
+                                                               request.getReport_version());
+                } else {
+                    complete = ReportHandler.tabletReport(backendId, request.getTablets(),
+                                                          request.getReport_version());
+                }
+                acceptTabletReport(backendId, request.getReport_version(), isDelta, complete, result);
                 long end = System.currentTimeMillis();
+                TABLET_REPORT_HISTOGRAM.update(end - start);
                 LOG.debug("REPORTING[TABLET] end. backend[{}-{}-{}]. cost: {}", backendId, host, bePort, (end - start));
-            } else {
-                LOG.warn("out of date report[{}] from backend[{}]. current report version[{}]",
-                         request.getReport_version(), backendId, backendReportVersion);
             }
         }
 
@@ -121,13 +162,14 @@ public class ReportHandler {
         return result;
     }
 
-    private static void tabletReport(long backendId, Map<Long, TTablet> backendTablets, long backendReportVersion) {
+    // Return false if some replicas are skipped because report version is changed during processing.
+    private static boolean tabletReport(long backendId, Map<Long, TTablet> backendTablets, long backendReportVersion) {
         long start = System.currentTimeMillis();
         LOG.info("backend[{}] reports {} tablet(s). report version: {}",
                  backendId, backendTablets.size(), backendReportVersion);
 
         // storage medium map
-        HashMap<Long, TStorageMedium> storageMediumMap = Catalog.getInstance().getPartitionIdToStorageMediumMap();
+        Map<Long, TStorageMedium> storageMediumMap = Catalog.getInstance().getPartitionIdToStorageMediumMap();
 
         // db id -> tablet id
         ListMultimap<Long, Long> tabletSyncMap = LinkedListMultimap.create();
@@ -148,12 +190,59 @@ public class ReportHandler {
                                                        foundTabletsWithInvalidSchema,
                                                        tabletMigrationMap);
 
+        boolean complete = handleDiff(backendId, backendTablets, backendReportVersion, tabletSyncMap,
+                                      tabletDeleteFromMeta, foundTabletsWithValidSchema,
+                                      foundTabletsWithInvalidSchema, tabletMigrationMap);
+
+        long end = System.currentTimeMillis();
+        LOG.info("tablet report from backend[{}] cost: {}", backendId, (end - start));
+        return complete;
+    }
+
+    // Same as tabletReport(), but backendTablets only contains tablets changed since the last accepted report,
+    // and tablets in meta are deleted only if they are in removedTablets.
+    private static boolean tabletDeltaReport(long backendId, Map<Long, TTablet> backendTablets,
+                                             Set<Long> removedTablets, long backendReportVersion) {
+        long start = System.currentTimeMillis();
+        LOG.info("backend[{}] reports {} changed tablet(s) and {} removed tablet(s). report version: {}",
+                 backendId, backendTablets.size(), removedTablets.size(), backendReportVersion);
+
+        Map<Long, TStorageMedium> storageMediumMap = Catalog.getInstance().getPartitionIdToStorageMediumMap();
+        ListMultimap<Long, Long> tabletSyncMap = LinkedListMultimap.create();
+        ListMultimap<Long, Long> tabletDeleteFromMeta = LinkedListMultimap.create();
+        Set<Long> foundTabletsWithValidSchema = new HashSet<Long>();
+        Map<Long, TTabletInfo> foundTabletsWithInvalidSchema = new HashMap<Long, TTabletInfo>();
+        ListMultimap<TStorageMedium, Long> tabletMigrationMap = LinkedListMultimap.create();
+
+        Catalog.getCurrentInvertedIndex().tabletDeltaReport(backendId, backendTablets, removedTablets,
+                                                            storageMediumMap,
+                                                            tabletSyncMap,
+                                                            tabletDeleteFromMeta,
+                                                            foundTabletsWithValidSchema,
+                                                            foundTabletsWithInvalidSchema,
+                                                            tabletMigrationMap);
+
+        boolean complete = handleDiff(backendId, backendTablets, backendReportVersion, tabletSyncMap,
+                                      tabletDeleteFromMeta, foundTabletsWithValidSchema,
+                                      foundTabletsWithInvalidSchema, tabletMigrationMap);
+
+        long end = System.currentTimeMillis();
+        LOG.info("delta tablet report from backend[{}] cost: {}", backendId, (end - start));
+        return complete;
+    }
+
+    private static boolean handleDiff(long backendId, Map<Long, TTablet> backendTablets, long backendReportVersion,
+                                      ListMultimap<Long, Long> tabletSyncMap,
+                                      ListMultimap<Long, Long> tabletDeleteFromMeta,
+                                      Set<Long> foundTabletsWithValidSchema,
+                                      Map<Long, TTabletInfo> foundTabletsWithInvalidSchema,
+                                      ListMultimap<TStorageMedium, Long> tabletMigrationMap) {
         // 2. sync
         sync(backendTablets, tabletSyncMap, backendId, backendReportVersion);
 
         // 3. delete (meta - be)
         // BE will automatically drop defective tablets. these tablets should also be dropped in catalog
-        deleteFromMeta(tabletDeleteFromMeta, backendId, backendReportVersion);
+        int skipped = deleteFromMeta(tabletDeleteFromMeta, backendId, backendReportVersion);
 
         // 4. handle (be - meta)
         deleteFromBackend(backendTablets, foundTabletsWithValidSchema, foundTabletsWithInvalidSchema, backendId);
@@ -161,8 +250,37 @@ public class ReportHandler {
         // 5. migration (ssd <-> hdd)
         handleMigration(tabletMigrationMap, backendId);
 
-        long end = System.currentTimeMillis();
-        LOG.info("tablet report from backend[{}] cost: {}", backendId, (end - start));
+        return skipped == 0;
+    }
+
+    private static boolean isBaseOfDeltaAccepted(long backendId, long baseReportVersion) {
+        Long accepted = acceptedTabletReportVersions.get(backendId);
+        return accepted != null && accepted == baseReportVersion;
+    }
+
+    // Record the tablet report as the base of next delta report, unless a full report is needed.
+    private static void acceptTabletReport(long backendId, long reportVersion, boolean isDelta, boolean complete,
+                                           TMasterResult result) {
+        if (!complete) {
+            // skipped replicas will not be reported again in delta report
+            acceptedTabletReportVersions.remove(backendId);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (!isDelta) {
+            lastFullTabletReportTimes.put(backendId, now);
+        }
+        Long lastFullReportTime = lastFullTabletReportTimes.get(backendId);
+        if (lastFullReportTime == null
+                || now - lastFullReportTime >= Config.tablet_full_report_interval_second * 1000L) {
+            // ask for a full report to reconcile the replicas ignored by delta reports,
+            // eg. replicas not synced because they were not NORMAL when reported.
+            acceptedTabletReportVersions.remove(backendId);
+            return;
+        }
+        acceptedTabletReportVersions.put(backendId, reportVersion);
+        result.setAccepted_tablet_report_version(reportVersion);
     }
 
     private static void taskReport(long backendId, Map<TTaskType, Set<Long>> runningTasks) {
@@ -301,9 +419,11 @@ public class ReportHandler {
         } // end for dbs
     }
 
-    private static void deleteFromMeta(ListMultimap<Long, Long> tabletDeleteFromMeta, long backendId,
-                                       long backendReportVersion) {
+    // Return the number of replicas skipped because report version is changed.
+    private static int deleteFromMeta(ListMultimap<Long, Long> tabletDeleteFromMeta, long backendId,
+                                      long backendReportVersion) {
         TabletInvertedIndex invertedIndex = Catalog.getCurrentInvertedIndex();
+        int skipCounter = 0;
         for (Long dbId : tabletDeleteFromMeta.keySet()) {
             Database db = Catalog.getInstance().getDb(dbId);
             if (db == null) {
@@ -346,6 +466,7 @@ public class ReportHandler {
                     
                     // check report version again
                     if (backendReportVersion < Catalog.getCurrentSystemInfo().getBackendReportVersion(backendId)) {
+                        ++skipCounter;
                         continue;
                     }
 
@@ -391,6 +512,7 @@ public class ReportHandler {
                 db.writeUnlock();
             }
         } // end for dbs
+        return skipCounter;
     }
 
     private static void deleteFromBackend(Map<Long, TTablet> backendTablets,
@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.List;
 
 /**
  * This class used to read/write MySQL logical packet.
@@ -250,6 +251,64 @@ public class MysqlChannel {
         accSequenceId();
     }
 
+    // Send packets by gathering write, data of packets are not copied to send buffer.
+    // Data in send buffer are written before packets.
+    public void sendPackets(List<ByteBuffer> packets) throws IOException {
+        if (null == sendBuffer) {
+            return;
+        }
+        for (ByteBuffer packet : packets) {
+            if (packet.remaining() >= MAX_PHYSICAL_PACKET_LENGTH) {
+                // packet needs to be split, it's rare
+                for (ByteBuffer onePacket : packets) {
+                    sendOnePacket(onePacket);
+                }
+                return;
+            }
+        }
+
+        // headers of all packets share one buffer
+        ByteBuffer headers = ByteBuffer.allocate(packets.size() * PACKET_HEADER_LEN);
+        ByteBuffer[] buffers = new ByteBuffer[packets.size() * 2 + 1];
+        int num = 0;
+        sendBuffer.flip();
+        if (sendBuffer.hasRemaining()) {
+            buffers[num++] = sendBuffer;
+        }
+        for (ByteBuffer packet : packets) {
+            int length = packet.remaining();
+            ByteBuffer header = headers.slice();
+            header.limit(PACKET_HEADER_LEN);
+            for (int i = 0; i < 3; ++i) {
+                headers.put((byte) length);
+                length >>= 8;
+            }
+            headers.put((byte) sequenceId);
+            accSequenceId();
+            buffers[num++] = header;
+            buffers[num++] = packet;
+        }
+
+        // channel is in block mode, but one write may be limited by max iovec number of system.
+        long remaining = 0;
+        for (int i = 0; i < num; i++) {
+            remaining += buffers[i].remaining();
+        }
+        int offset = 0;
+        while (remaining > 0) {
+            long written = channel.write(buffers, offset, num - offset);
+            if (written < 0) {
+                throw new IOException("Write mysql packets failed, channel is closed.");
+            }
+            remaining -= written;
+            while (offset < num && !buffers[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+        sendBuffer.clear();
+        isSend = true;
+    }
+
     public void sendAndFlush(ByteBuffer packet) throws IOException {
         sendOnePacket(packet);
         flush();
@@ -270,4 +329,10 @@ public class MysqlChannel {
     public String getRemote() {
         return remote;
     }
+
+    // Used to register this channel to a selector when the connection is idle.
+    // NOTE: channel must be set back to block mode before reading or writing packets.
+    public SocketChannel getChannel() {
+        return channel;
+    }
 }
@@ -0,0 +1,48 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.mysql;
+
+// MySQL protocol COM_STMT_PREPARE_OK packet
+// http://dev.mysql.com/doc/internals/en/com-stmt-prepare-response.html
+public class MysqlPrepareOkPacket extends MysqlPacket {
+    private static final int PACKET_OK_INDICATOR = 0X00;
+    private static final int WARNINGS = 0;
+
+    private final int stmtId;
+    private final int numColumns;
+    private final int numParams;
+
+    public MysqlPrepareOkPacket(int stmtId, int numColumns, int numParams) {
+        this.stmtId = stmtId;
+        this.numColumns = numColumns;
+        this.numParams = numParams;
+    }
+
+    @Override
+    public void writeTo(MysqlSerializer serializer) {
+        serializer.writeInt1(PACKET_OK_INDICATOR);
+        serializer.writeInt4(stmtId);
+        serializer.writeInt2(numColumns);
+        serializer.writeInt2(numParams);
+        // reserved
+        serializer.writeInt1(0);
+        serializer.writeInt2(WARNINGS);
+    }
+}
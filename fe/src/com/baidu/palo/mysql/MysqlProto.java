@@ -21,6 +21,8 @@ package com.baidu.palo.mysql;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -297,4 +299,139 @@ public class MysqlProto {
         return buf;
     }
 
+    // Convert one text protocol result row to binary protocol result row, used when result set is
+    // returned for COM_STMT_EXECUTE. Values are encoded by MySQL type of their columns, decimal and
+    // string values are copied as length encoded strings. NULL values are moved to null bitmap.
+    // http://dev.mysql.com/doc/internals/en/binary-protocol-resultset-row.html
+    public static ByteBuffer toBinaryRow(ByteBuffer textRow, List<MysqlColType> columnTypes) {
+        int numColumns = columnTypes.size();
+        // binary row bitmap has an offset of 2 bits
+        byte[] nullBitmap = new byte[(numColumns + 7 + 2) / 8];
+        MysqlSerializer values = MysqlSerializer.newInstance();
+        ByteBuffer input = textRow.duplicate();
+        for (int i = 0; i < numColumns && input.hasRemaining(); i++) {
+            if ((input.get(input.position()) & 0xFF) == 251) {
+                input.get();
+                int bitPos = i + 2;
+                nullBitmap[bitPos / 8] |= (byte) (1 << (bitPos % 8));
+                continue;
+            }
+            writeBinaryValue(values, columnTypes.get(i), readLenEncodedString(input));
+        }
+        byte[] body = values.toArray();
+        ByteBuffer output = ByteBuffer.allocate(1 + nullBitmap.length + body.length);
+        output.put((byte) 0);
+        output.put(nullBitmap);
+        output.put(body);
+        output.flip();
+        return output;
+    }
+
+    // http://dev.mysql.com/doc/internals/en/binary-protocol-value.html
+    private static void writeBinaryValue(MysqlSerializer serializer, MysqlColType type, byte[] text) {
+        String value = new String(text, StandardCharsets.UTF_8);
+        switch (type) {
+            case MYSQL_TYPE_TINY:
+                // boolean is declared as tinyint
+                if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+                    serializer.writeInt1(value.equalsIgnoreCase("true") ? 1 : 0);
+                } else {
+                    serializer.writeInt1(Integer.parseInt(value));
+                }
+                break;
+            case MYSQL_TYPE_SHORT:
+                serializer.writeInt2(Integer.parseInt(value));
+                break;
+            case MYSQL_TYPE_LONG:
+                serializer.writeInt4(Integer.parseInt(value));
+                break;
+            case MYSQL_TYPE_LONGLONG:
+                serializer.writeInt8(Long.parseLong(value));
+                break;
+            case MYSQL_TYPE_FLOAT:
+                serializer.writeInt4(Float.floatToIntBits(Float.parseFloat(value)));
+                break;
+            case MYSQL_TYPE_DOUBLE:
+                serializer.writeInt8(Double.doubleToLongBits(Double.parseDouble(value)));
+                break;
+            case MYSQL_TYPE_DATE:
+            case MYSQL_TYPE_DATETIME:
+                writeBinaryDateTime(serializer, value);
+                break;
+            case MYSQL_TYPE_TIME:
+                writeBinaryTime(serializer, value);
+                break;
+            default:
+                serializer.writeVInt(text.length);
+                serializer.writeBytes(text);
+                break;
+        }
+    }
+
+    // value is in format of 'yyyy-MM-dd' or 'yyyy-MM-dd HH:mm:ss[.ffffff]'
+    private static void writeBinaryDateTime(MysqlSerializer serializer, String value) {
+        int[] fields = new int[7];
+        int num = splitDigits(value, fields);
+        if (num < 3) {
+            throw new NumberFormatException("invalid datetime value: " + value);
+        }
+        int length = num <= 3 ? 4 : (num <= 6 ? 7 : 11);
+        serializer.writeInt1(length);
+        serializer.writeInt2(fields[0]);
+        serializer.writeInt1(fields[1]);
+        serializer.writeInt1(fields[2]);
+        if (length >= 7) {
+            serializer.writeInt1(fields[3]);
+            serializer.writeInt1(fields[4]);
+            serializer.writeInt1(fields[5]);
+        }
+        if (length >= 11) {
+            serializer.writeInt4(fields[6]);
+        }
+    }
+
+    // value is in format of '[-]HH:mm:ss[.ffffff]', hours may be more than 24
+    private static void writeBinaryTime(MysqlSerializer serializer, String value) {
+        boolean isNegative = value.startsWith("-");
+        int[] fields = new int[4];
+        int num = splitDigits(isNegative ? value.substring(1) : value, fields);
+        if (num < 3) {
+            throw new NumberFormatException("invalid time value: " + value);
+        }
+        serializer.writeInt1(num == 4 ? 12 : 8);
+        serializer.writeInt1(isNegative ? 1 : 0);
+        serializer.writeInt4(fields[0] / 24);
+        serializer.writeInt1(fields[0] % 24);
+        serializer.writeInt1(fields[1]);
+        serializer.writeInt1(fields[2]);
+        if (num == 4) {
+            serializer.writeInt4(fields[3]);
+        }
+    }
+
+    // Split value into numbers by non-digit characters, return number of fields found.
+    // Fraction of second is padded to micro seconds.
+    private static int splitDigits(String value, int[] fields) {
+        int num = 0;
+        int i = 0;
+        int len = value.length();
+        while (i < len && num < fields.length) {
+            if (!Character.isDigit(value.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < len && Character.isDigit(value.charAt(i))) {
+                i++;
+            }
+            int field = Integer.parseInt(value.substring(start, i));
+            if (num == fields.length - 1 && start > 0 && value.charAt(start - 1) == '.') {
+                for (int digits = i - start; digits < 6; digits++) {
+                    field *= 10;
+                }
+            }
+            fields[num++] = field;
+        }
+        return num;
+    }
 }
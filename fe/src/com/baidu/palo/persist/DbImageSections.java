@@ -0,0 +1,224 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.persist;
+
+import com.baidu.palo.catalog.Catalog;
+import com.baidu.palo.catalog.Database;
+import com.baidu.palo.catalog.Database.DbState;
+import com.baidu.palo.common.Config;
+import com.baidu.palo.common.FeMetaVersion;
+import com.baidu.palo.common.io.Text;
+import com.baidu.palo.common.io.DataInputBuffer;
+import com.baidu.palo.common.io.DataOutputBuffer;
+
+import com.google.common.collect.Lists;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/*
+ * Database section of image, since FeMetaVersion.VERSION_33.
+ *
+ * Every database is an independent section:
+ *   db id (long) | length of data (int) | crc32 of data (long) | data
+ * Since FeMetaVersion.VERSION_34, db name and attached db name (empty if db is not LINK) follow db id,
+ * so that a section can be located by name without deserializing it (see LazyDbImage).
+ * Sections are read and written in order by the caller thread, while databases are
+ * serialized and deserialized in parallel. Databases are processed chunk by chunk,
+ * so at most one chunk of serialized data is held in memory.
+ */
+public class DbImageSections {
+    private static final Logger LOG = LogManager.getLogger(DbImageSections.class);
+    private static final int OUTPUT_BUFFER_INIT_SIZE = 1024;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    // true if the caller is checkpoint thread, workers should visit checkpoint catalog.
+    private final boolean isCheckpoint;
+
+    public DbImageSections() {
+        int parallelism = Config.meta_image_parallelism > 0
+                ? Config.meta_image_parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism);
+        this.chunkSize = parallelism * 4;
+        this.isCheckpoint = Catalog.isCheckpointThread();
+    }
+
+    private static class Section {
+        long dbId;
+        String name;
+        String attachDbName;
+        byte[] data;
+        int length;
+        long crc;
+    }
+
+    // Write sections of dbs, return checksum of image
+    public long save(DataOutputStream dos, List<Database> dbs, long checksum) throws IOException {
+        try {
+            for (int start = 0; start < dbs.size(); start += chunkSize) {
+                List<Future<Section>> futures = Lists.newArrayList();
+                for (final Database db : dbs.subList(start, Math.min(start + chunkSize, dbs.size()))) {
+                    futures.add(pool.submit(new Callable<Section>() {
+                        @Override
+                        public Section call() throws Exception {
+                            return runAsCaller(new Callable<Section>() {
+                                @Override
+                                public Section call() throws Exception {
+                                    return serialize(db);
+                                }
+                            });
+                        }
+                    }));
+                }
+                for (Future<Section> future : futures) {
+                    Section section = getResult(future);
+                    checksum ^= section.dbId;
+                    writeSection(dos, section.dbId, section.name, section.attachDbName,
+                                 section.data, section.length, section.crc);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return checksum;
+    }
+
+    // Read dbCount sections, dbs are returned in the order of image
+    public List<Database> load(DataInputStream dis, int dbCount) throws IOException {
+        List<Database> dbs = Lists.newArrayListWithCapacity(dbCount);
+        try {
+            for (int start = 0; start < dbCount; start += chunkSize) {
+                List<Future<Database>> futures = Lists.newArrayList();
+                for (int i = start; i < Math.min(start + chunkSize, dbCount); i++) {
+                    final Section section = new Section();
+                    section.dbId = dis.readLong();
+                    if (Catalog.getCurrentCatalogJournalVersion() >= FeMetaVersion.VERSION_34) {
+                        section.name = Text.readString(dis);
+                        section.attachDbName = Text.readString(dis);
+                    }
+                    section.length = dis.readInt();
+                    section.crc = dis.readLong();
+                    section.data = new byte[section.length];
+                    dis.readFully(section.data);
+                    futures.add(pool.submit(new Callable<Database>() {
+                        @Override
+                        public Database call() throws Exception {
+                            return runAsCaller(new Callable<Database>() {
+                                @Override
+                                public Database call() throws Exception {
+                                    return readDb(section.dbId, section.data, section.length, section.crc);
+                                }
+                            });
+                        }
+                    }));
+                }
+                for (Future<Database> future : futures) {
+                    dbs.add(getResult(future));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return dbs;
+    }
+
+    private <T> T runAsCaller(Callable<T> callable) throws Exception {
+        if (!isCheckpoint) {
+            return callable.call();
+        }
+        Catalog.setCheckpointHelperThread(true);
+        try {
+            return callable.call();
+        } finally {
+            Catalog.setCheckpointHelperThread(false);
+        }
+    }
+
+    private static Section serialize(Database db) throws IOException {
+        DataOutputBuffer buffer = new DataOutputBuffer(OUTPUT_BUFFER_INIT_SIZE);
+        db.readLock();
+        try {
+            db.write(buffer);
+        } finally {
+            db.readUnlock();
+        }
+        Section section = new Section();
+        section.dbId = db.getId();
+        section.name = db.getName();
+        section.attachDbName = db.getDbState() == DbState.LINK ? db.getAttachDb() : "";
+        section.data = buffer.getData();
+        section.length = buffer.getLength();
+        CRC32 crc32 = new CRC32();
+        crc32.update(section.data, 0, section.length);
+        section.crc = crc32.getValue();
+        return section;
+    }
+
+    static void writeSection(DataOutputStream dos, long dbId, String name, String attachDbName,
+                             byte[] data, int length, long crc) throws IOException {
+        dos.writeLong(dbId);
+        Text.writeString(dos, name);
+        Text.writeString(dos, attachDbName);
+        dos.writeInt(length);
+        dos.writeLong(crc);
+        dos.write(data, 0, length);
+    }
+
+    static Database readDb(long dbId, byte[] data, int length, long crc) throws IOException {
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, 0, length);
+        if (crc32.getValue() != crc) {
+            throw new IOException("checksum of db " + dbId + " mismatch. " + crc32.getValue() + " vs. " + crc);
+        }
+        DataInputBuffer buffer = new DataInputBuffer();
+        buffer.reset(data, length);
+        Database db = new Database();
+        db.readFields(buffer);
+        if (db.getId() != dbId) {
+            throw new IOException("db id " + db.getId() + " does not match section " + dbId);
+        }
+        return db;
+    }
+
+    private static <T> T getResult(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new IOException("interrupted when processing db section of image", e);
+        } catch (ExecutionException e) {
+            LOG.warn("failed to process db section of image", e.getCause());
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
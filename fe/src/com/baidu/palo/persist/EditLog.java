@@ -34,6 +34,8 @@ import com.baidu.palo.common.Config;
 import com.baidu.palo.common.FeConstants;
 import com.baidu.palo.common.io.Text;
 import com.baidu.palo.common.io.Writable;
+import com.baidu.palo.common.util.BucketHistogram;
+import com.baidu.palo.common.util.Metrics;
 import com.baidu.palo.ha.MasterInfo;
 import com.baidu.palo.journal.Journal;
 import com.baidu.palo.journal.JournalCursor;
@@ -65,6 +67,9 @@ import java.util.List;
  */
 public class EditLog {
     public static final Logger LOG = LogManager.getLogger(EditLog.class);
+    // time of a logEdit() call, including waiting for group commit
+    private static final BucketHistogram LOG_EDIT_HISTOGRAM = (BucketHistogram) Metrics.getMetric(
+            Metrics.MetricType.BUCKET_HISTOGRAM, "edit_log.log_edit_ms");
 
     private EditLogOutputStream editStream = null;
 
@@ -74,6 +79,8 @@ public class EditLog {
     private long totalTimeTransactions;
 
     private Journal journal;
+    // Only used when edit_log_group_commit is true.
+    private volatile EditLogGroupCommitter groupCommitter;
 
     public EditLog() {
         String journalType = Config.edit_log_type;
@@ -555,14 +562,54 @@ public class EditLog {
     }
 
     /**
-     * Write an operation to the edit log. Do not sync to persistent store yet.
+     * Write an operation to the edit log.
+     * If group commit is enabled, concurrent operations are written in one journal transaction.
      */
-    private synchronized void logEdit(short op, Writable writable) {
+    private void logEdit(short op, Writable writable) {
         if (this.getNumEditStreams() == 0) {
             LOG.error("Fatal Error : no editLog stream");
             throw new Error("Fatal Error : no editLog stream");
         }
 
+        long start = System.currentTimeMillis();
+        if (Config.edit_log_group_commit) {
+            if (groupCommitter == null) {
+                initGroupCommitter();
+            }
+            groupCommitter.write(op, writable);
+        } else {
+            logEditSync(op, writable);
+        }
+        LOG_EDIT_HISTOGRAM.update(System.currentTimeMillis() - start);
+    }
+
+    private synchronized void initGroupCommitter() {
+        if (groupCommitter == null) {
+            EditLogGroupCommitter committer = new EditLogGroupCommitter(journal, this);
+            committer.start();
+            groupCommitter = committer;
+        }
+    }
+
+    // Called by group committer after a batch of journals is written.
+    synchronized void onJournalWritten(int num, long costMs) {
+        txId += num;
+        numTransactions += num;
+        totalTimeTransactions += costMs;
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("nextId = {}, numTransactions = {}, totalTimeTransactions = {}, batch = {}",
+                      txId, numTransactions, totalTimeTransactions, num);
+        }
+
+        if (txId >= Config.edit_log_roll_num) {
+            LOG.info("txId {} reaches edit_log_roll_num {}, will roll edit.", txId, Config.edit_log_roll_num);
+            rollEditLog();
+            txId = 0;
+        }
+    }
+
+    private synchronized void logEditSync(short op, Writable writable) {
         long start = System.currentTimeMillis();
 
         try {
@@ -0,0 +1,145 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.persist;
+
+import com.baidu.palo.common.Config;
+import com.baidu.palo.common.io.Writable;
+import com.baidu.palo.common.util.Metrics;
+import com.baidu.palo.journal.Journal;
+import com.baidu.palo.journal.JournalEntity;
+
+import com.google.common.collect.Lists;
+
+import io.dropwizard.metrics.Histogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/*
+ * Group commit of edit log.
+ * Callers put their journals to a queue and wait. One writer thread takes all pending journals
+ * and writes them to journal in one transaction, so concurrent callers share one replicated commit.
+ * Journal ids are assigned in the order of the queue.
+ */
+public class EditLogGroupCommitter implements Runnable {
+    private static final Logger LOG = LogManager.getLogger(EditLogGroupCommitter.class);
+    private static final String COMMIT_LATENCY_HISTOGRAM_NAME = "edit_log.commit_latency_ms";
+    private static final String BATCH_SIZE_HISTOGRAM_NAME = "edit_log.batch_size";
+
+    private final Journal journal;
+    private final EditLog editLog;
+    private final BlockingQueue<JournalTask> queue = new LinkedBlockingQueue<JournalTask>();
+    private Thread writer;
+
+    private static class JournalTask {
+        private final JournalEntity entity;
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        public JournalTask(short op, Writable writable) {
+            entity = new JournalEntity();
+            entity.setOpCode(op);
+            entity.setData(writable);
+        }
+
+        public void await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    latch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    // journal is already in queue, must wait until it is written
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public EditLogGroupCommitter(Journal journal, EditLog editLog) {
+        this.journal = journal;
+        this.editLog = editLog;
+    }
+
+    public synchronized void start() {
+        if (writer != null) {
+            return;
+        }
+        writer = new Thread(this, "EditLog Group Committer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Put one journal to queue and wait until it is written.
+    public void write(short op, Writable writable) {
+        JournalTask task = new JournalTask(op, writable);
+        queue.add(task);
+        task.await();
+    }
+
+    @Override
+    public void run() {
+        Histogram latencyHistogram =
+                (Histogram) Metrics.getMetric(Metrics.MetricType.HISTOGRAM, COMMIT_LATENCY_HISTOGRAM_NAME);
+        Histogram batchSizeHistogram =
+                (Histogram) Metrics.getMetric(Metrics.MetricType.HISTOGRAM, BATCH_SIZE_HISTOGRAM_NAME);
+        List<JournalTask> tasks = Lists.newArrayList();
+        List<JournalEntity> entities = Lists.newArrayList();
+        while (true) {
+            try {
+                tasks.add(queue.take());
+                queue.drainTo(tasks, Math.max(Config.edit_log_group_commit_max_batch - 1, 0));
+                for (JournalTask task : tasks) {
+                    entities.add(task.entity);
+                }
+
+                long start = System.currentTimeMillis();
+                try {
+                    journal.write(entities);
+                } catch (Exception e) {
+                    LOG.error("Fatal Error : write stream Exception", e);
+                    Runtime.getRuntime().exit(-1);
+                }
+                long cost = System.currentTimeMillis() - start;
+                if (latencyHistogram != null) {
+                    latencyHistogram.update(cost);
+                }
+                if (batchSizeHistogram != null) {
+                    batchSizeHistogram.update(entities.size());
+                }
+                editLog.onJournalWritten(entities.size(), cost);
+            } catch (InterruptedException e) {
+                LOG.warn("edit log group committer is interrupted.", e);
+            } finally {
+                for (JournalTask task : tasks) {
+                    task.latch.countDown();
+                }
+                tasks.clear();
+                entities.clear();
+            }
+        }
+    }
+}
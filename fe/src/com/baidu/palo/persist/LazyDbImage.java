@@ -0,0 +1,253 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.persist;
+
+import com.baidu.palo.catalog.Database;
+import com.baidu.palo.common.io.Text;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.CountingInputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/*
+ * Database sections of the last image which are not deserialized yet. Only used by checkpoint catalog.
+ *
+ * When loading image, only the headers of db sections are read, data are left in the image file.
+ * A database is deserialized the first time it is visited by replaying journal, and the sections of
+ * databases never visited are copied from the last image to the new image as they are.
+ * So the memory checkpoint needs is proportional to the databases changed since the last image,
+ * instead of all metadata.
+ */
+public class LazyDbImage {
+    private static final Logger LOG = LogManager.getLogger(LazyDbImage.class);
+
+    // Journals which only visit databases by Catalog.getDb(). Other journals may visit the db maps
+    // of catalog directly, all databases must be loaded before replaying them.
+    private static final Set<Short> LAZY_SAFE_OPS = ImmutableSet.of(
+            OperationType.OP_SAVE_NEXTID,
+            OperationType.OP_ALTER_DB,
+            OperationType.OP_CREATE_TABLE,
+            OperationType.OP_DROP_TABLE,
+            OperationType.OP_ADD_PARTITION,
+            OperationType.OP_DROP_PARTITION,
+            OperationType.OP_MODIFY_PARTITION,
+            OperationType.OP_ERASE_TABLE,
+            OperationType.OP_ERASE_PARTITION,
+            OperationType.OP_RECOVER_TABLE,
+            OperationType.OP_RECOVER_PARTITION,
+            OperationType.OP_RENAME_TABLE,
+            OperationType.OP_RENAME_PARTITION,
+            OperationType.OP_START_ROLLUP,
+            OperationType.OP_FINISH_ROLLUP,
+            OperationType.OP_CANCEL_ROLLUP,
+            OperationType.OP_DROP_ROLLUP,
+            OperationType.OP_START_SCHEMA_CHANGE,
+            OperationType.OP_FINISH_SCHEMA_CHANGE,
+            OperationType.OP_CANCEL_SCHEMA_CHANGE,
+            OperationType.OP_CLEAR_ROLLUP_INFO,
+            OperationType.OP_FINISH_CONSISTENCY_CHECK,
+            OperationType.OP_RENAME_ROLLUP,
+            OperationType.OP_LOAD_START,
+            OperationType.OP_LOAD_ETL,
+            OperationType.OP_LOAD_LOADING,
+            OperationType.OP_LOAD_QUORUM,
+            OperationType.OP_LOAD_DONE,
+            OperationType.OP_LOAD_CANCEL,
+            OperationType.OP_EXPORT_CREATE,
+            OperationType.OP_EXPORT_UPDATE_STATE,
+            OperationType.OP_FINISH_SYNC_DELETE,
+            OperationType.OP_ADD_REPLICA,
+            OperationType.OP_DELETE_REPLICA,
+            OperationType.OP_FINISH_ASYNC_DELETE,
+            OperationType.OP_ADD_BACKEND,
+            OperationType.OP_DROP_BACKEND,
+            OperationType.OP_BACKEND_STATE_CHANGE,
+            OperationType.OP_START_DECOMMISSION_BACKEND,
+            OperationType.OP_FINISH_DECOMMISSION_BACKEND,
+            OperationType.OP_ADD_FRONTEND,
+            OperationType.OP_ADD_FIRST_FRONTEND,
+            OperationType.OP_REMOVE_FRONTEND,
+            OperationType.OP_SET_LOAD_ERROR_URL,
+            OperationType.OP_ALTER_ACCESS_RESOURCE,
+            OperationType.OP_DROP_USER,
+            OperationType.OP_TIMESTAMP,
+            OperationType.OP_MASTER_INFO_CHANGE,
+            OperationType.OP_META_VERSION,
+            OperationType.OP_GLOBAL_VARIABLE,
+            OperationType.OP_ADD_BROKER,
+            OperationType.OP_DROP_BROKER,
+            OperationType.OP_DROP_ALL_BROKER);
+
+    private static class Entry {
+        long dbId;
+        String name;
+        String attachDbName;
+        // offset of data in image file
+        long offset;
+        int length;
+        long crc;
+    }
+
+    private final File imageFile;
+    private RandomAccessFile raf;
+    private final Map<Long, Entry> idToEntry = Maps.newLinkedHashMap();
+    private final Map<String, Long> nameToId = Maps.newHashMap();
+    private long dataSize = 0;
+    // the first error when loading a database, new image can not be saved if set.
+    private IOException error;
+
+    public LazyDbImage(File imageFile) {
+        this.imageFile = imageFile;
+    }
+
+    public static boolean isLazySafe(short opCode) {
+        return LAZY_SAFE_OPS.contains(opCode);
+    }
+
+    // Read headers of dbCount sections and skip their data.
+    // counter is the stream under dis, which counts the offset in image file.
+    public long loadIndex(DataInputStream dis, CountingInputStream counter, int dbCount, long checksum)
+            throws IOException {
+        for (int i = 0; i < dbCount; i++) {
+            Entry entry = new Entry();
+            entry.dbId = dis.readLong();
+            entry.name = Text.readString(dis);
+            entry.attachDbName = Text.readString(dis);
+            entry.length = dis.readInt();
+            entry.crc = dis.readLong();
+            entry.offset = counter.getCount();
+            if (dis.skipBytes(entry.length) != entry.length) {
+                throw new EOFException("image is truncated in section of db " + entry.dbId);
+            }
+
+            checksum ^= entry.dbId;
+            idToEntry.put(entry.dbId, entry);
+            nameToId.put(entry.name, entry.dbId);
+            if (!entry.attachDbName.isEmpty()) {
+                nameToId.put(entry.attachDbName, entry.dbId);
+            }
+            dataSize += entry.length;
+        }
+        raf = new RandomAccessFile(imageFile, "r");
+        LOG.info("load index of {} db sections from {}, {} bytes in total",
+                 dbCount, imageFile.getAbsolutePath(), dataSize);
+        return checksum;
+    }
+
+    public boolean contains(long dbId) {
+        return idToEntry.containsKey(dbId);
+    }
+
+    public Long getDbId(String name) {
+        return nameToId.get(name);
+    }
+
+    public List<Long> getDbIds() {
+        return Lists.newArrayList(idToEntry.keySet());
+    }
+
+    public List<String> getDbNames() {
+        return Lists.newArrayList(nameToId.keySet());
+    }
+
+    public int size() {
+        return idToEntry.size();
+    }
+
+    // bytes of db sections not loaded yet
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    public void setError(IOException e) {
+        if (error == null) {
+            error = e;
+        }
+    }
+
+    // Deserialize one database and remove it from this image.
+    public Database load(long dbId) throws IOException {
+        Entry entry = idToEntry.remove(dbId);
+        if (entry == null) {
+            return null;
+        }
+        nameToId.remove(entry.name);
+        if (!entry.attachDbName.isEmpty()) {
+            nameToId.remove(entry.attachDbName);
+        }
+        dataSize -= entry.length;
+        LOG.debug("load db {} from image lazily", dbId);
+        return DbImageSections.readDb(entry.dbId, readData(entry), entry.length, entry.crc);
+    }
+
+    // Copy sections which are not loaded to new image.
+    public long save(DataOutputStream dos, long checksum) throws IOException {
+        if (error != null) {
+            throw new IOException("failed to load db from image lazily", error);
+        }
+        for (Entry entry : idToEntry.values()) {
+            byte[] data = readData(entry);
+            CRC32 crc32 = new CRC32();
+            crc32.update(data, 0, entry.length);
+            if (crc32.getValue() != entry.crc) {
+                throw new IOException("checksum of db " + entry.dbId + " mismatch. "
+                        + crc32.getValue() + " vs. " + entry.crc);
+            }
+            checksum ^= entry.dbId;
+            DbImageSections.writeSection(dos, entry.dbId, entry.name, entry.attachDbName,
+                                         data, entry.length, entry.crc);
+        }
+        return checksum;
+    }
+
+    public void close() {
+        if (raf == null) {
+            return;
+        }
+        try {
+            raf.close();
+        } catch (IOException e) {
+            LOG.warn("failed to close image file {}", imageFile.getAbsolutePath(), e);
+        }
+        raf = null;
+    }
+
+    private byte[] readData(Entry entry) throws IOException {
+        byte[] data = new byte[entry.length];
+        raf.seek(entry.offset);
+        raf.readFully(data);
+        return data;
+    }
+}
@@ -26,19 +26,27 @@ import com.baidu.palo.analysis.Expr;
 import com.baidu.palo.analysis.InsertStmt;
 import com.baidu.palo.analysis.JoinOperator;
 import com.baidu.palo.analysis.QueryStmt;
+import com.baidu.palo.analysis.SlotRef;
+import com.baidu.palo.catalog.ColocateGroup;
+import com.baidu.palo.catalog.Column;
+import com.baidu.palo.catalog.HashDistributionInfo;
 import com.baidu.palo.catalog.Table;
 import com.baidu.palo.common.AnalysisException;
 import com.baidu.palo.common.InternalException;
 import com.baidu.palo.common.Pair;
+import com.baidu.palo.qe.ConnectContext;
 import com.baidu.palo.thrift.TPartitionType;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * The distributed planner is responsible for creating an executable, distributed plan
@@ -187,7 +195,7 @@ public class DistributedPlanner {
         } else if (root instanceof HashJoinNode) {
             Preconditions.checkState(childFragments.size() == 2);
             result = createHashJoinFragment((HashJoinNode) root, childFragments.get(1),
-                    childFragments.get(0), perNodeMemLimit);
+                    childFragments.get(0), perNodeMemLimit, fragments);
         } else if (root instanceof CrossJoinNode) {
             result = createCrossJoinFragment((CrossJoinNode) root, childFragments.get(1),
                     childFragments.get(0));
@@ -272,8 +280,21 @@ public class DistributedPlanner {
      * don't create a broadcast join if we already anticipate that this will exceed the query's memory budget.
      */
     private PlanFragment createHashJoinFragment(HashJoinNode node, PlanFragment rightChildFragment,
-                                                PlanFragment leftChildFragment, long perNodeMemLimit)
+                                                PlanFragment leftChildFragment, long perNodeMemLimit,
+                                                ArrayList<PlanFragment> fragments)
             throws InternalException {
+        if (canColocateJoin(node, leftChildFragment, rightChildFragment)) {
+            // Doesn't need any exchange, both children are joined locally in leftChildFragment
+            // bucket by bucket, see Coordinator for assignment of their scan ranges
+            node.setDistributionMode(HashJoinNode.DistributionMode.COLOCATE);
+            node.setChild(0, leftChildFragment.getPlanRoot());
+            node.setChild(1, rightChildFragment.getPlanRoot());
+            leftChildFragment.setPlanRoot(node);
+            leftChildFragment.setColocate(true);
+            fragments.remove(rightChildFragment);
+            return leftChildFragment;
+        }
+
         // broadcast: send the rightChildFragment's output to each node executing
         // the leftChildFragment; the cost across all nodes is proportional to the
         // total amount of data sent
@@ -393,6 +414,135 @@ public class DistributedPlanner {
         }
     }
 
+    /**
+     * A hash join can be done locally if
+     *  - the fragments of both children only scan tables of the same colocate group, which are not
+     *    exchanged yet, e.g. scan nodes themselves or colocate joins of them
+     *  - the eq join conjuncts match distribution columns of a table on each side, in order,
+     *    so joined rows are in buckets of the same sequence
+     *  - for every bucket, replicas of all scanned tablets of the bucket have a backend in common
+     * Join hints of broadcast or shuffle are respected.
+     */
+    private boolean canColocateJoin(HashJoinNode node, PlanFragment leftChildFragment,
+                                    PlanFragment rightChildFragment) {
+        ConnectContext context = ConnectContext.get();
+        if (context != null && !context.getSessionVariable().isEnableColocateJoin()) {
+            return false;
+        }
+        if (node.getInnerRef().isBroadcastJoin() || node.getInnerRef().isPartitionJoin()) {
+            return false;
+        }
+
+        List<OlapScanNode> leftScanNodes = Lists.newArrayList();
+        List<OlapScanNode> rightScanNodes = Lists.newArrayList();
+        if (!collectColocateScanNodes(leftChildFragment.getPlanRoot(), leftScanNodes)
+                || !collectColocateScanNodes(rightChildFragment.getPlanRoot(), rightScanNodes)
+                || leftScanNodes.isEmpty() || rightScanNodes.isEmpty()) {
+            return false;
+        }
+
+        boolean isDistributionKeyJoin = false;
+        for (OlapScanNode leftScanNode : leftScanNodes) {
+            for (OlapScanNode rightScanNode : rightScanNodes) {
+                if (isDistributionKeyJoin(node.getEqJoinConjuncts(), leftScanNode, rightScanNode)) {
+                    isDistributionKeyJoin = true;
+                }
+            }
+        }
+        if (!isDistributionKeyJoin) {
+            return false;
+        }
+
+        List<OlapScanNode> scanNodes = Lists.newArrayList(leftScanNodes);
+        scanNodes.addAll(rightScanNodes);
+        return canColocateScan(scanNodes);
+    }
+
+    // Tables of scan nodes are in the same colocate group, and for every bucket, replicas of all scanned
+    // tablets of the bucket have a backend in common. Also checked when a cached plan with colocate joins
+    // is reused, whose scan ranges are computed again.
+    public static boolean canColocateScan(List<OlapScanNode> scanNodes) {
+        for (OlapScanNode scanNode : scanNodes) {
+            if (!ColocateGroup.isColocateCompatible(scanNodes.get(0).getOlapTable(), scanNode.getOlapTable())) {
+                return false;
+            }
+        }
+
+        Map<Integer, Set<Long>> bucketSeqToBackends = Maps.newHashMap();
+        for (OlapScanNode scanNode : scanNodes) {
+            for (Map.Entry<Integer, Set<Long>> entry : scanNode.getBucketSeqToBackends().entrySet()) {
+                Set<Long> backendIds = bucketSeqToBackends.get(entry.getKey());
+                if (backendIds == null) {
+                    bucketSeqToBackends.put(entry.getKey(), entry.getValue());
+                } else {
+                    backendIds.retainAll(entry.getValue());
+                }
+            }
+        }
+        for (Map.Entry<Integer, Set<Long>> entry : bucketSeqToBackends.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                LOG.info("replicas of bucket {} of colocate tables are not on the same backend", entry.getKey());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Collect olap scan nodes whose output are not exchanged in the fragment, return false if there is a node
+    // which may move rows of a bucket, or a scan node which is not olap scan.
+    private boolean collectColocateScanNodes(PlanNode node, List<OlapScanNode> scanNodes) {
+        if (node instanceof OlapScanNode) {
+            scanNodes.add((OlapScanNode) node);
+            return true;
+        } else if (node instanceof ExchangeNode) {
+            return true;
+        } else if (node instanceof HashJoinNode || node instanceof CrossJoinNode || node instanceof SelectNode) {
+            for (PlanNode child : node.getChildren()) {
+                if (!collectColocateScanNodes(child, scanNodes)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Whether every distribution column of the left table equals the distribution column of the right table
+    // at the same position by an eq join conjunct.
+    private boolean isDistributionKeyJoin(List<Pair<Expr, Expr>> eqJoinConjuncts, OlapScanNode leftScanNode,
+                                          OlapScanNode rightScanNode) {
+        List<Column> leftColumns =
+                ((HashDistributionInfo) leftScanNode.getOlapTable().getDefaultDistributionInfo())
+                        .getDistributionColumns();
+        List<Column> rightColumns =
+                ((HashDistributionInfo) rightScanNode.getOlapTable().getDefaultDistributionInfo())
+                        .getDistributionColumns();
+        for (int i = 0; i < leftColumns.size(); i++) {
+            boolean found = false;
+            for (Pair<Expr, Expr> conjunct : eqJoinConjuncts) {
+                if (isColumnOf(conjunct.first, leftScanNode, leftColumns.get(i))
+                        && isColumnOf(conjunct.second, rightScanNode, rightColumns.get(i))) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isColumnOf(Expr expr, OlapScanNode scanNode, Column column) {
+        if (!(expr instanceof SlotRef)) {
+            return false;
+        }
+        SlotRef slotRef = (SlotRef) expr;
+        return slotRef.getDesc().getParent().getId().equals(scanNode.getTupleIds().get(0))
+                && slotRef.getDesc().getColumn() != null
+                && slotRef.getDesc().getColumn().getName().equalsIgnoreCase(column.getName());
+    }
+
     /**
      * Modifies the leftChildFragment to execute a cross join. The right child input is provided by an ExchangeNode,
      * which is the destination of the rightChildFragment's output.
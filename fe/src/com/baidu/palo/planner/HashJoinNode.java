@@ -114,6 +114,11 @@ public class HashJoinNode extends PlanNode {
         this.distrMode = distrMode;
     }
 
+    // Build side of broadcast join is sent to every instance of this node.
+    public boolean isBroadcast() {
+        return distrMode == DistributionMode.BROADCAST;
+    }
+
     @Override
     public void init(Analyzer analyzer) throws InternalException {
         assignConjuncts(analyzer);
@@ -291,7 +296,8 @@ public class HashJoinNode extends PlanNode {
     enum DistributionMode {
         NONE("NONE"),
         BROADCAST("BROADCAST"),
-        PARTITIONED("PARTITIONED");
+        PARTITIONED("PARTITIONED"),
+        COLOCATE("COLOCATE");
 
         private final String description;
 
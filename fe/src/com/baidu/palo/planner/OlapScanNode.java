@@ -42,6 +42,9 @@ import com.baidu.palo.common.AnalysisException;
 import com.baidu.palo.common.ErrorCode;
 import com.baidu.palo.common.ErrorReport;
 import com.baidu.palo.common.InternalException;
+import com.baidu.palo.common.Pair;
+import com.baidu.palo.qe.ConnectContext;
+import com.baidu.palo.qe.ReplicaSelector;
 import com.baidu.palo.system.Backend;
 import com.baidu.palo.thrift.TExplainLevel;
 import com.baidu.palo.thrift.TNetworkAddress;
@@ -60,6 +63,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -71,6 +75,7 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Full scan of an Olap table.
@@ -90,6 +95,12 @@ public class OlapScanNode extends ScanNode {
     private long totalTabletsNum = 0;
     private long selectedIndexId = -1;
     private int selectedPartitionNum = 0;
+    // partition id -> (committed version, committed version hash) of scanned partitions
+    private Map<Long, Pair<Long, Long>> scannedPartitionVersions = Maps.newHashMap();
+    // partition id -> scan ranges of the partition in result
+    private Map<Long, List<TScanRangeLocations>> partitionToScanRanges = Maps.newHashMap();
+    // tablet id -> bucket sequence of the tablet in its index, of all selected tablets
+    private Map<Long, Integer> tabletIdToBucketSeq = Maps.newHashMap();
 
     boolean isFinalized = false;
 
@@ -118,6 +129,49 @@ public class OlapScanNode extends ScanNode {
         this.canTurnOnPreAggr = canChangePreAggr;
     }
 
+    public OlapTable getOlapTable() {
+        return olapTable;
+    }
+
+    public Map<Long, Pair<Long, Long>> getScannedPartitionVersions() {
+        return scannedPartitionVersions;
+    }
+
+    // Only scan the given partitions, which must be selected when finalized. Used to compute results of some
+    // partitions, e.g. those not in partition cache.
+    public void retainPartitions(Collection<Long> partitionIds) {
+        result = new ArrayList<TScanRangeLocations>();
+        for (Long partitionId : partitionIds) {
+            List<TScanRangeLocations> scanRanges = partitionToScanRanges.get(partitionId);
+            Preconditions.checkNotNull(scanRanges, "partition " + partitionId + " is not selected");
+            result.addAll(scanRanges);
+        }
+    }
+
+    // Bucket sequence -> backends having replicas of all scanned tablets of the bucket.
+    // A colocate join can be done on one of the backends for each bucket.
+    public Map<Integer, Set<Long>> getBucketSeqToBackends() {
+        Map<Integer, Set<Long>> bucketSeqToBackends = Maps.newHashMap();
+        for (TScanRangeLocations locations : result) {
+            int bucketSeq = getBucketSeq(locations);
+            Set<Long> backendIds = Sets.newHashSet();
+            for (TScanRangeLocation location : locations.getLocations()) {
+                backendIds.add(location.getBackend_id());
+            }
+            Set<Long> commonBackendIds = bucketSeqToBackends.get(bucketSeq);
+            if (commonBackendIds == null) {
+                bucketSeqToBackends.put(bucketSeq, backendIds);
+            } else {
+                commonBackendIds.retainAll(backendIds);
+            }
+        }
+        return bucketSeqToBackends;
+    }
+
+    public int getBucketSeq(TScanRangeLocations locations) {
+        return tabletIdToBucketSeq.get(locations.getScan_range().getPalo_scan_range().getTablet_id());
+    }
+
     @Override
     protected String debugString() {
         ToStringHelper helper = Objects.toStringHelper(this);
@@ -142,6 +196,26 @@ public class OlapScanNode extends ScanNode {
         isFinalized = true;
     }
 
+    // Compute column filters again from conjuncts, used when literals of the reused plan are changed.
+    public void computeColumnFilters(Analyzer analyzer) {
+        setColumnFilters(SingleNodePlanner.createColumnFilters(analyzer, desc, getConjuncts()));
+    }
+
+    // Compute scan ranges again with current meta of table, used when the plan is reused.
+    public void refreshScanRanges(Analyzer analyzer) throws InternalException {
+        result = new ArrayList<TScanRangeLocations>();
+        scannedPartitionVersions = Maps.newHashMap();
+        partitionToScanRanges = Maps.newHashMap();
+        tabletIdToBucketSeq = Maps.newHashMap();
+        selectedTabletsNum = 0;
+        totalTabletsNum = 0;
+        try {
+            getScanRangeLocations(analyzer);
+        } catch (AnalysisException e) {
+            throw new InternalException(e.getMessage());
+        }
+    }
+
     // private void analyzeVectorizedConjuncts(Analyzer analyzer) throws InternalException {
     //     for (SlotDescriptor slot : desc.getSlots()) {
     //         for (Expr conjunct : conjuncts) {
@@ -390,6 +464,16 @@ public class OlapScanNode extends ScanNode {
         long committedVersionHash = partition.getCommittedVersionHash();
         String committedVersionStr = String.valueOf(committedVersion);
         String committedVersionHashStr = String.valueOf(partition.getCommittedVersionHash());
+        List<Long> orderedTabletIds = index.getTabletIdsInOrder();
+        for (int i = 0; i < orderedTabletIds.size(); i++) {
+            tabletIdToBucketSeq.put(orderedTabletIds.get(i), i);
+        }
+        scannedPartitionVersions.put(partition.getId(), Pair.create(committedVersion, committedVersionHash));
+        List<TScanRangeLocations> partitionScanRanges = new ArrayList<TScanRangeLocations>();
+        partitionToScanRanges.put(partition.getId(), partitionScanRanges);
+        ConnectContext context = ConnectContext.get();
+        ReplicaSelector replicaSelector = ReplicaSelector.getSelector(
+                context == null ? null : context.getSessionVariable().getReplicaSelectionPolicy());
         for (Tablet tablet : tablets) {
             long tabletId = tablet.getId();
             LOG.debug("{} tabletId={}", (logNum++), tabletId);
@@ -402,7 +486,7 @@ public class OlapScanNode extends ScanNode {
             paloRange.setVersion_hash(committedVersionHashStr);
             paloRange.setTablet_id(tabletId);
 
-            // random shuffle List && only collect one copy
+            // order replicas by selection policy && only collect one copy
             List<Replica> replicas =
                     Lists.newArrayList(tablet.getQueryableReplicas(committedVersion, committedVersionHash));
             if (replicas.isEmpty()) {
@@ -411,7 +495,7 @@ public class OlapScanNode extends ScanNode {
                 throw new InternalException("Failed to get scan range, no replica!");
             }
 
-            Collections.shuffle(replicas);
+            replicaSelector.order(tabletId, replicas);
             boolean tabletIsNull = true;
             for (Replica replica : replicas) {
                 Backend backend = Catalog.getCurrentSystemInfo().getBackend(replica.getBackendId());
@@ -434,6 +518,7 @@ public class OlapScanNode extends ScanNode {
             scanRange.setPalo_scan_range(paloRange);
             scanRangeLocations.setScan_range(scanRange);
             result.add(scanRangeLocations);
+            partitionScanRanges.add(scanRangeLocations);
         }
     }
 
@@ -101,6 +101,9 @@ public class PlanFragment extends TreeNode<PlanFragment> {
     // if the output is UNPARTITIONED, it is being broadcast
     private DataPartition outputPartition;
 
+    // true if the fragment does a colocate join, whose scan ranges must be assigned bucket by bucket
+    private boolean isColocate = false;
+
     // TODO: SubstitutionMap outputSmap;
     // substitution map to remap exprs onto the output of this fragment, to be applied
     // at destination fragment
@@ -239,6 +242,14 @@ public class PlanFragment extends TreeNode<PlanFragment> {
         return planRoot;
     }
 
+    public boolean isColocate() {
+        return isColocate;
+    }
+
+    public void setColocate(boolean isColocate) {
+        this.isColocate = isColocate;
+    }
+
     public void setPlanRoot(PlanNode root) {
         planRoot = root;
         setFragmentInPlanTree(planRoot);
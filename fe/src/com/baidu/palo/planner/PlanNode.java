@@ -101,6 +101,9 @@ abstract public class PlanNode extends TreeNode<PlanNode> {
     protected boolean compactData;
     protected int numInstances;
 
+    // runtime filters produced by this node if it is a hash join, or consumed by it if it is a scan
+    protected List<RuntimeFilter> runtimeFilters = Lists.newArrayList();
+
     protected PlanNode(PlanNodeId id, ArrayList<TupleId> tupleIds, String planNodeName) {
         this.id = id;
         this.limit = -1;
@@ -178,6 +181,15 @@ abstract public class PlanNode extends TreeNode<PlanNode> {
 
     public void setFragment(PlanFragment fragment) { fragment_ = fragment; }
     public PlanFragment getFragment() { return fragment_; }
+
+    public void addRuntimeFilter(RuntimeFilter filter) {
+        runtimeFilters.add(filter);
+    }
+
+    public List<RuntimeFilter> getRuntimeFilters() {
+        return runtimeFilters;
+    }
+
     public long getLimit() {
         return limit;
     }
@@ -320,6 +332,16 @@ abstract public class PlanNode extends TreeNode<PlanNode> {
         // will be prefixed by detailPrefix.
         expBuilder.append(rootPrefix + id.asInt() + ":" + planNodeName + "\n");
         expBuilder.append(getNodeExplainString(detailPrefix, detailLevel));
+        if (!runtimeFilters.isEmpty()) {
+            expBuilder.append(detailPrefix + "runtime filters: ");
+            for (int i = 0; i < runtimeFilters.size(); i++) {
+                if (i > 0) {
+                    expBuilder.append(", ");
+                }
+                expBuilder.append(runtimeFilters.get(i).getExplainString(this));
+            }
+            expBuilder.append("\n");
+        }
         if (limit != -1) {
             expBuilder.append(detailPrefix + "limit: " + limit + "\n");
         }
@@ -380,6 +402,9 @@ abstract public class PlanNode extends TreeNode<PlanNode> {
             msg.addToConjuncts(e.treeToThrift());
         }
         msg.compact_data = compactData;
+        for (RuntimeFilter filter : runtimeFilters) {
+            msg.addToRuntime_filters(filter.toThrift());
+        }
         toThrift(msg);
         container.addToNodes(msg);
         if (this instanceof ExchangeNode) {
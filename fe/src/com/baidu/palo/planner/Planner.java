@@ -35,6 +35,7 @@ import com.baidu.palo.catalog.PrimitiveType;
 import com.baidu.palo.common.AnalysisException;
 import com.baidu.palo.common.InternalException;
 import com.baidu.palo.common.NotImplementedException;
+import com.baidu.palo.qe.ConnectContext;
 import com.baidu.palo.thrift.TExplainLevel;
 import com.baidu.palo.thrift.TQueryOptions;
 
@@ -63,6 +64,7 @@ public class Planner {
     private PlannerContext plannerContext;
     private SingleNodePlanner singleNodePlanner;
     private DistributedPlanner distributedPlanner;
+    private List<RuntimeFilter> runtimeFilters = Lists.newArrayList();
 
     public boolean isBlockQuery() {
         return isBlockQuery;
@@ -72,6 +74,10 @@ public class Planner {
         return fragments;
     }
 
+    public List<RuntimeFilter> getRuntimeFilters() {
+        return runtimeFilters;
+    }
+
     public List<ScanNode> getScanNodes() {
         return singleNodePlanner.getScanNodes();
     }
@@ -209,6 +215,15 @@ public class Planner {
         // TupleDescriptor.avgSerializedSize
         analyzer.getDescTbl().computeMemLayout();
         singleNodePlan.finalize(analyzer);
+
+        // plan runtime filters on the single node plan, where cardinality of join children is known
+        ConnectContext context = ConnectContext.get();
+        if (context != null && context.getSessionVariable().isEnableRuntimeFilter()) {
+            RuntimeFilterGenerator generator =
+                    new RuntimeFilterGenerator(context.getSessionVariable().getRuntimeFilterMaxInNum());
+            runtimeFilters = generator.generate(singleNodePlan);
+        }
+
         if (queryOptions.num_nodes == 1) {
             // single-node execution; we're almost done
             singleNodePlan = addUnassignedConjuncts(analyzer, singleNodePlan);
@@ -220,6 +235,8 @@ public class Planner {
             fragments = distributedPlanner.createPlanFragments(singleNodePlan);
         }
 
+        RuntimeFilterGenerator.finalizeFilters(runtimeFilters);
+
         PlanFragment rootFragment = fragments.get(fragments.size() - 1);
         if (statment instanceof InsertStmt) {
             InsertStmt insertStmt = (InsertStmt) statment;
@@ -0,0 +1,166 @@
+// Modifications copyright (C) 2017, Baidu.com, Inc.
+// Copyright 2017 The Apache Software Foundation
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+package com.baidu.palo.planner;
+
+import com.baidu.palo.analysis.Expr;
+import com.baidu.palo.thrift.TRuntimeFilterDesc;
+import com.baidu.palo.thrift.TRuntimeFilterType;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+
+/*
+ * A filter built from one eq join conjunct on the build side of a hash join (the producer),
+ * and applied to the probe side expr by scan nodes below the join (the consumers),
+ * so that probe rows which can not be joined are dropped as early as they are read.
+ * Planned by RuntimeFilterGenerator.
+ */
+public class RuntimeFilter {
+    // bloom filter is sized to about 8 bits per distinct build side value
+    private static final long MIN_BLOOM_FILTER_SIZE_BYTES = 4 * 1024L;
+    private static final long MAX_BLOOM_FILTER_SIZE_BYTES = 16 * 1024 * 1024L;
+    private static final long DEFAULT_BLOOM_FILTER_SIZE_BYTES = 1024 * 1024L;
+
+    private final int filterId;
+    private final HashJoinNode builderNode;
+    private final Expr srcExpr;
+    private final int exprOrder;
+    private final TRuntimeFilterType type;
+    private final long bloomFilterSizeBytes;
+    // consumer scan node -> expr to filter in that node, in the order found
+    private final Map<ScanNode, Expr> targets = Maps.newLinkedHashMap();
+
+    // set by finalizeTargets() after the plan is fragmented
+    private boolean isBroadcastJoin = false;
+    private boolean hasLocalTargets = false;
+    private boolean hasRemoteTargets = false;
+
+    public RuntimeFilter(int filterId, HashJoinNode builderNode, Expr srcExpr, int exprOrder,
+                         TRuntimeFilterType type, long buildCardinality) {
+        this.filterId = filterId;
+        this.builderNode = builderNode;
+        this.srcExpr = srcExpr;
+        this.exprOrder = exprOrder;
+        this.type = type;
+        this.bloomFilterSizeBytes = type == TRuntimeFilterType.BLOOM ? getBloomFilterSize(buildCardinality) : 0;
+    }
+
+    public static long getBloomFilterSize(long ndv) {
+        if (ndv < 0) {
+            return DEFAULT_BLOOM_FILTER_SIZE_BYTES;
+        }
+        long size = MIN_BLOOM_FILTER_SIZE_BYTES;
+        while (size < ndv && size < MAX_BLOOM_FILTER_SIZE_BYTES) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    public int getFilterId() {
+        return filterId;
+    }
+
+    public HashJoinNode getBuilderNode() {
+        return builderNode;
+    }
+
+    public TRuntimeFilterType getType() {
+        return type;
+    }
+
+    public long getBloomFilterSizeBytes() {
+        return bloomFilterSizeBytes;
+    }
+
+    public Map<ScanNode, Expr> getTargets() {
+        return targets;
+    }
+
+    public void addTarget(ScanNode node, Expr targetExpr) {
+        targets.put(node, targetExpr);
+        node.addRuntimeFilter(this);
+    }
+
+    public boolean hasLocalTargets() {
+        return hasLocalTargets;
+    }
+
+    public boolean hasRemoteTargets() {
+        return hasRemoteTargets;
+    }
+
+    // Call after all plan nodes are assigned to fragments.
+    public void finalizeTargets() {
+        isBroadcastJoin = builderNode.getDistributionMode() == HashJoinNode.DistributionMode.BROADCAST;
+        for (ScanNode node : targets.keySet()) {
+            if (node.getFragment() == builderNode.getFragment()) {
+                hasLocalTargets = true;
+            } else {
+                hasRemoteTargets = true;
+            }
+        }
+    }
+
+    public TRuntimeFilterDesc toThrift() {
+        TRuntimeFilterDesc desc = new TRuntimeFilterDesc();
+        desc.setFilter_id(filterId);
+        desc.setSrc_expr(srcExpr.treeToThrift());
+        desc.setExpr_order(exprOrder);
+        for (Map.Entry<ScanNode, Expr> entry : targets.entrySet()) {
+            desc.putToPlan_id_to_target_expr(entry.getKey().getId().asInt(), entry.getValue().treeToThrift());
+        }
+        desc.setIs_broadcast_join(isBroadcastJoin);
+        desc.setHas_local_targets(hasLocalTargets);
+        desc.setHas_remote_targets(hasRemoteTargets);
+        desc.setType(type);
+        if (type == TRuntimeFilterType.BLOOM) {
+            desc.setBloom_filter_size_bytes(bloomFilterSizeBytes);
+        }
+        return desc;
+    }
+
+    // e.g. "RF000[bloom] <- `t2`.`k1`" in the producer, "RF000[bloom] -> `t1`.`k1`" in a consumer
+    public String getExplainString(PlanNode node) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getName()).append("[").append(type.name().toLowerCase()).append("]");
+        if (node == builderNode) {
+            sb.append(" <- ").append(srcExpr.toSql());
+        } else {
+            sb.append(" -> ").append(targets.get(node).toSql());
+        }
+        return sb.toString();
+    }
+
+    public String getName() {
+        return String.format("RF%03d", filterId);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(getName()).append("[").append(type.name().toLowerCase()).append("]: ")
+                .append(srcExpr.toSql()).append(" ->");
+        for (Map.Entry<ScanNode, Expr> entry : targets.entrySet()) {
+            sb.append(" ").append(entry.getValue().toSql()).append("@").append(entry.getKey().getId().asInt());
+        }
+        return sb.toString();
+    }
+}
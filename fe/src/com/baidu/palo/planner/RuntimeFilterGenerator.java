@@ -0,0 +1,143 @@
+// Modifications copyright (C) 2017, Baidu.com, Inc.
+// Copyright 2017 The Apache Software Foundation
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+package com.baidu.palo.planner;
+
+import com.baidu.palo.analysis.Expr;
+import com.baidu.palo.analysis.JoinOperator;
+import com.baidu.palo.analysis.SlotRef;
+import com.baidu.palo.analysis.TupleId;
+import com.baidu.palo.catalog.Type;
+import com.baidu.palo.common.Pair;
+import com.baidu.palo.thrift.TRuntimeFilterType;
+
+import com.google.common.collect.Lists;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+
+/*
+ * Plans runtime filters of hash joins on the single node plan.
+ *
+ * A join is eligible if it drops probe rows without a match: inner, left semi, right outer
+ * and right semi join. For every eq join conjunct whose probe side expr is a slot of an olap
+ * scan below the join, a filter is built from the build side expr:
+ *  - IN if the estimated build cardinality is known and not more than runtime_filter_max_in_num,
+ *    BLOOM otherwise, sized by the build cardinality
+ *  - plus a MIN_MAX filter if the slot is numeric or date, which can prune by zone map
+ *
+ * The filter may only pass hash join, cross join and select nodes on its way to the scan,
+ * and never the nullable side of an outer join.
+ */
+public class RuntimeFilterGenerator {
+    private static final Logger LOG = LogManager.getLogger(RuntimeFilterGenerator.class);
+
+    private final int maxInNum;
+    private final List<RuntimeFilter> filters = Lists.newArrayList();
+
+    public RuntimeFilterGenerator(int maxInNum) {
+        this.maxInNum = maxInNum;
+    }
+
+    public List<RuntimeFilter> generate(PlanNode root) {
+        visit(root);
+        return filters;
+    }
+
+    private void visit(PlanNode node) {
+        for (PlanNode child : node.getChildren()) {
+            visit(child);
+        }
+        if (node instanceof HashJoinNode) {
+            generateForJoin((HashJoinNode) node);
+        }
+    }
+
+    private static boolean isEligibleJoin(JoinOperator joinOp) {
+        return joinOp == JoinOperator.INNER_JOIN || joinOp == JoinOperator.LEFT_SEMI_JOIN
+                || joinOp == JoinOperator.RIGHT_OUTER_JOIN || joinOp == JoinOperator.RIGHT_SEMI_JOIN;
+    }
+
+    private void generateForJoin(HashJoinNode join) {
+        if (!isEligibleJoin(join.getJoinOp())) {
+            return;
+        }
+        long buildCardinality = join.getChild(1).getCardinality();
+        List<Pair<Expr, Expr>> eqJoinConjuncts = join.getEqJoinConjuncts();
+        for (int i = 0; i < eqJoinConjuncts.size(); i++) {
+            Expr probeExpr = eqJoinConjuncts.get(i).first;
+            Expr buildExpr = eqJoinConjuncts.get(i).second;
+            // a cast on the probe side would have to be evaluated in the scan, keep it simple
+            if (!(probeExpr instanceof SlotRef)) {
+                continue;
+            }
+            SlotRef slotRef = (SlotRef) probeExpr;
+            ScanNode target = findTargetScan(join.getChild(0), slotRef.getDesc().getParent().getId());
+            if (target == null) {
+                continue;
+            }
+
+            TRuntimeFilterType type = (buildCardinality >= 0 && buildCardinality <= maxInNum)
+                    ? TRuntimeFilterType.IN : TRuntimeFilterType.BLOOM;
+            addFilter(join, buildExpr, i, type, buildCardinality, target, slotRef);
+            Type slotType = slotRef.getType();
+            if (slotType.isNumericType() || slotType.isDateType()) {
+                addFilter(join, buildExpr, i, TRuntimeFilterType.MIN_MAX, buildCardinality, target, slotRef);
+            }
+        }
+    }
+
+    private void addFilter(HashJoinNode join, Expr buildExpr, int exprOrder, TRuntimeFilterType type,
+                           long buildCardinality, ScanNode target, SlotRef targetExpr) {
+        RuntimeFilter filter = new RuntimeFilter(filters.size(), join, buildExpr, exprOrder, type,
+                buildCardinality);
+        join.addRuntimeFilter(filter);
+        filter.addTarget(target, targetExpr);
+        filters.add(filter);
+        LOG.debug("plan runtime filter {}", filter);
+    }
+
+    // Return the olap scan node materializing tupleId under node, or null if the filter can not reach it.
+    private static ScanNode findTargetScan(PlanNode node, TupleId tupleId) {
+        if (!node.getTupleIds().contains(tupleId) || node.getNullableTupleIds().contains(tupleId)) {
+            return null;
+        }
+        if (node instanceof OlapScanNode) {
+            return (ScanNode) node;
+        }
+        if (!(node instanceof HashJoinNode) && !(node instanceof CrossJoinNode) && !(node instanceof SelectNode)) {
+            return null;
+        }
+        for (PlanNode child : node.getChildren()) {
+            if (child.getTupleIds().contains(tupleId)) {
+                return findTargetScan(child, tupleId);
+            }
+        }
+        return null;
+    }
+
+    // Call after the plan is fragmented.
+    public static void finalizeFilters(List<RuntimeFilter> filters) {
+        for (RuntimeFilter filter : filters) {
+            filter.finalizeTargets();
+        }
+    }
+}
@@ -846,8 +846,25 @@ public class SingleNodePlanner {
         return true;
     }
 
+    // column name -> filter of the column by conjuncts, used to prune partitions and tablets
+    static Map<String, PartitionColumnFilter> createColumnFilters(Analyzer analyzer, TupleDescriptor desc,
+                                                                  List<Expr> conjuncts) {
+        Map<String, PartitionColumnFilter> columnFilters = Maps.newHashMap();
+        for (Column column : desc.getTable().getBaseSchema()) {
+            SlotDescriptor slotDesc = analyzer.getColumnSlot(desc, column);
+            if (null == slotDesc) {
+                continue;
+            }
+            PartitionColumnFilter keyFilter = createPartitionFilter(slotDesc, conjuncts);
+            if (null != keyFilter) {
+                columnFilters.put(column.getName(), keyFilter);
+            }
+        }
+        return columnFilters;
+    }
+
     // no need to remove?
-    private PartitionColumnFilter createPartitionFilter(SlotDescriptor desc, List<Expr> conjuncts) {
+    private static PartitionColumnFilter createPartitionFilter(SlotDescriptor desc, List<Expr> conjuncts) {
         PartitionColumnFilter partitionColumnFilter = null;
         for (Expr expr : conjuncts) {
             if (!expr.isBound(desc.getId())) {
@@ -1142,19 +1159,8 @@ public class SingleNodePlanner {
                 break;
         }
         if (scanNode instanceof OlapScanNode) {
-            Map<String, PartitionColumnFilter> columnFilters = Maps.newHashMap();
             List<Expr> conjuncts = analyzer.getUnassignedConjuncts(scanNode);
-            for (Column column : tblRef.getTable().getBaseSchema()) {
-                SlotDescriptor slotDesc = analyzer.getColumnSlot(tblRef.getDesc(), column);
-                if (null == slotDesc) {
-                    continue;
-                }
-                PartitionColumnFilter keyFilter = createPartitionFilter(slotDesc, conjuncts);
-                if (null != keyFilter) {
-                    columnFilters.put(column.getName(), keyFilter);
-                }
-            }
-            scanNode.setColumnFilters(columnFilters);
+            scanNode.setColumnFilters(createColumnFilters(analyzer, tblRef.getDesc(), conjuncts));
             scanNode.setSortColumn(tblRef.getSortColumn());
         }
         // assignConjuncts(scanNode, analyzer);
@@ -0,0 +1,137 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.common.Config;
+import com.baidu.palo.thrift.TUniqueId;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Load of backends observed by coordinators of this frontend, used by LoadAwareReplicaSelector.
+ *  - number of fragment instances running on each backend
+ *  - moving average of exec_plan_fragment rpc latency of each backend
+ *  - the backend which served each tablet last time, to keep page cache affinity
+ */
+public class BackendLoadStats {
+    // weight of the newest sample in moving average of latency
+    private static final double LATENCY_SAMPLE_WEIGHT = 0.2;
+    private static final long CLEAN_INTERVAL_MS = 10000;
+
+    private static final BackendLoadStats INSTANCE = new BackendLoadStats();
+
+    private static class InFlightFragment {
+        long backendId;
+        // the fragment is treated as finished after this time, in case its finish is never reported
+        long expireTimeMs;
+    }
+
+    private final Map<TUniqueId, InFlightFragment> inFlightFragments =
+            new ConcurrentHashMap<TUniqueId, InFlightFragment>();
+    private final Map<Long, AtomicInteger> inFlightFragmentNums = new ConcurrentHashMap<Long, AtomicInteger>();
+    private final Map<Long, Double> latencyMs = new ConcurrentHashMap<Long, Double>();
+    // tablet id -> backend id
+    private final Cache<Long, Long> lastServedBackends;
+    private volatile long lastCleanTimeMs = 0;
+
+    public BackendLoadStats() {
+        lastServedBackends = CacheBuilder.newBuilder()
+                .maximumSize(Config.replica_affinity_cache_size).build();
+    }
+
+    public static BackendLoadStats getInstance() {
+        return INSTANCE;
+    }
+
+    public void onFragmentStarted(TUniqueId instanceId, long backendId, long timeoutMs) {
+        long now = System.currentTimeMillis();
+        if (now - lastCleanTimeMs > CLEAN_INTERVAL_MS) {
+            lastCleanTimeMs = now;
+            cleanExpired(now);
+        }
+
+        InFlightFragment fragment = new InFlightFragment();
+        fragment.backendId = backendId;
+        fragment.expireTimeMs = now + timeoutMs;
+        if (inFlightFragments.put(instanceId, fragment) == null) {
+            getCounter(backendId).incrementAndGet();
+        }
+    }
+
+    // may be called more than once for one instance
+    public void onFragmentFinished(TUniqueId instanceId) {
+        InFlightFragment fragment = inFlightFragments.remove(instanceId);
+        if (fragment != null) {
+            getCounter(fragment.backendId).decrementAndGet();
+        }
+    }
+
+    public int getInFlightFragmentNum(long backendId) {
+        AtomicInteger counter = inFlightFragmentNums.get(backendId);
+        return counter == null ? 0 : counter.get();
+    }
+
+    public void updateLatency(long backendId, long costMs) {
+        // concurrent updates may lose a sample, which is acceptable for statistics
+        Double old = latencyMs.get(backendId);
+        double latency = old == null ? costMs : old * (1 - LATENCY_SAMPLE_WEIGHT) + costMs * LATENCY_SAMPLE_WEIGHT;
+        latencyMs.put(backendId, latency);
+    }
+
+    public double getLatencyMs(long backendId) {
+        Double latency = latencyMs.get(backendId);
+        return latency == null ? 0 : latency;
+    }
+
+    public void setLastServedBackend(long tabletId, long backendId) {
+        lastServedBackends.put(tabletId, backendId);
+    }
+
+    // return -1 if unknown
+    public long getLastServedBackend(long tabletId) {
+        Long backendId = lastServedBackends.getIfPresent(tabletId);
+        return backendId == null ? -1 : backendId;
+    }
+
+    private AtomicInteger getCounter(long backendId) {
+        AtomicInteger counter = inFlightFragmentNums.get(backendId);
+        if (counter == null) {
+            inFlightFragmentNums.putIfAbsent(backendId, new AtomicInteger(0));
+            counter = inFlightFragmentNums.get(backendId);
+        }
+        return counter;
+    }
+
+    private void cleanExpired(long now) {
+        Iterator<Map.Entry<TUniqueId, InFlightFragment>> iterator = inFlightFragments.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<TUniqueId, InFlightFragment> entry = iterator.next();
+            if (entry.getValue().expireTimeMs < now) {
+                onFragmentFinished(entry.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.catalog.OlapTable;
+import com.baidu.palo.common.util.Metrics;
+import com.baidu.palo.planner.OlapScanNode;
+import com.baidu.palo.planner.ScanNode;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import io.dropwizard.metrics.Counter;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Common part of QueryCache, PartitionCache and PlanCache. Entries are keyed by string and bounded by their
+ * total weight, which is the size of key and cached data by default. Each entry records schema signature of
+ * the tables it is computed from, see getTableSignature(). Lookups are counted by metrics
+ * '<name>.hit_count' and '<name>.miss_count'.
+ */
+public abstract class BaseCache<E extends BaseCache.Entry> {
+    public static class Entry {
+        // table id -> schema signature
+        protected Map<Long, Long> tableSignatures = Maps.newHashMap();
+        // bytes of cached data
+        protected long size;
+
+        public boolean isSchemaChanged(Map<Long, Long> tableSignatures) {
+            return !this.tableSignatures.equals(tableSignatures);
+        }
+    }
+
+    protected final Cache<String, E> cache;
+    private final String hitCounterName;
+    private final String missCounterName;
+
+    // entries never expire if expireSecond is not positive
+    protected BaseCache(String name, long maxWeight, long expireSecond) {
+        hitCounterName = name + ".hit_count";
+        missCounterName = name + ".miss_count";
+        CacheBuilder<String, E> builder = CacheBuilder.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher(new Weigher<String, E>() {
+                    @Override
+                    public int weigh(String key, E entry) {
+                        return BaseCache.this.weigh(key, entry);
+                    }
+                });
+        if (expireSecond > 0) {
+            builder.expireAfterWrite(expireSecond, TimeUnit.SECONDS);
+        }
+        cache = builder.build();
+    }
+
+    protected int weigh(String key, E entry) {
+        return (int) Math.min(Integer.MAX_VALUE, key.length() * 2L + entry.size);
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    protected void incHitCounter() {
+        incCounter(hitCounterName);
+    }
+
+    protected void incMissCounter() {
+        incCounter(missCounterName);
+    }
+
+    // changed by schema change and adding or dropping rollup, independent of iteration order of indexes
+    public static long getTableSignature(OlapTable table) {
+        long signature = 0;
+        for (Map.Entry<Long, Integer> entry : table.getIndexIdToSchemaHash().entrySet()) {
+            long indexSignature = entry.getKey();
+            indexSignature = indexSignature * 31 + entry.getValue();
+            indexSignature = indexSignature * 31 + table.getSchemaVersionByIndexId(entry.getKey());
+            signature += indexSignature * 0x9E3779B97F4A7C15L;
+        }
+        return signature;
+    }
+
+    // scan nodes must be olap scan nodes
+    public static Map<Long, Long> getTableSignatures(List<ScanNode> scanNodes) {
+        Map<Long, Long> tableSignatures = Maps.newHashMap();
+        for (ScanNode scanNode : scanNodes) {
+            OlapTable table = ((OlapScanNode) scanNode).getOlapTable();
+            tableSignatures.put(table.getId(), getTableSignature(table));
+        }
+        return tableSignatures;
+    }
+
+    // Append copies of rows to dest and return their total size. Row received from backend may share a larger
+    // buffer of the rpc response, so it is copied before cached.
+    public static long copyRows(List<ByteBuffer> rows, List<ByteBuffer> dest) {
+        long size = 0;
+        for (ByteBuffer row : rows) {
+            ByteBuffer copy = ByteBuffer.allocate(row.remaining());
+            copy.put(row.duplicate());
+            copy.flip();
+            dest.add(copy);
+            size += copy.capacity();
+        }
+        return size;
+    }
+
+    // Return views of cached rows, which are consumed when sent without changing the cached ones.
+    protected static List<ByteBuffer> duplicateRows(List<ByteBuffer> rows) {
+        List<ByteBuffer> duplicates = Lists.newArrayListWithCapacity(rows.size());
+        for (ByteBuffer row : rows) {
+            duplicates.add(row.duplicate());
+        }
+        return duplicates;
+    }
+
+    private static void incCounter(String name) {
+        Counter counter = (Counter) Metrics.getMetric(Metrics.MetricType.COUNTER, name);
+        if (counter != null) {
+            counter.inc();
+        }
+    }
+}
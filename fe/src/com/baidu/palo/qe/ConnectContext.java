@@ -21,8 +21,10 @@ package com.baidu.palo.qe;
 
 import java.nio.channels.SocketChannel;
 import java.util.List;
+import java.util.Map;
 
 import com.baidu.palo.catalog.Catalog;
+import com.baidu.palo.common.Config;
 import com.baidu.palo.mysql.MysqlCapability;
 import com.baidu.palo.mysql.MysqlChannel;
 import com.baidu.palo.mysql.MysqlCommand;
@@ -31,6 +33,7 @@ import com.baidu.palo.thrift.TResourceInfo;
 import com.baidu.palo.thrift.TUniqueId;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -77,6 +80,11 @@ public class ConnectContext {
     private volatile long startTime;
     // Cache thread info for this connection.
     private volatile ThreadInfo threadInfo;
+    // Processor of this connection, only used when connections are multiplexed by event loops.
+    private volatile ConnectProcessor connectProcessor;
+    // Statements prepared by COM_STMT_PREPARE, only accessed by the thread processing this connection.
+    private Map<Integer, ServerPreparedStmt> preparedStmts = Maps.newHashMap();
+    private int nextStmtId = 1;
 
     // Catalog: put catalog here is convenient for unit test,
     // because catalog is singleton, hard to mock
@@ -153,6 +161,32 @@ public class ConnectContext {
         this.connectScheduler = connectScheduler;
     }
 
+    public ConnectProcessor getConnectProcessor() {
+        return connectProcessor;
+    }
+
+    public void setConnectProcessor(ConnectProcessor connectProcessor) {
+        this.connectProcessor = connectProcessor;
+    }
+
+    // Return null if reach the limit of prepared statements.
+    public ServerPreparedStmt addPreparedStmt(String stmt) {
+        if (preparedStmts.size() >= Config.max_prepared_stmt_per_connection) {
+            return null;
+        }
+        ServerPreparedStmt preparedStmt = new ServerPreparedStmt(nextStmtId++, stmt);
+        preparedStmts.put(preparedStmt.getStmtId(), preparedStmt);
+        return preparedStmt;
+    }
+
+    public ServerPreparedStmt getPreparedStmt(int stmtId) {
+        return preparedStmts.get(stmtId);
+    }
+
+    public void removePreparedStmt(int stmtId) {
+        preparedStmts.remove(stmtId);
+    }
+
     public MysqlCommand getCommand() {
         return command;
     }
@@ -0,0 +1,144 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.google.common.collect.Lists;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * One selector thread which watches idle MySQL connections.
+ *
+ * A connection is owned by the event loop while it waits for the next command. Once its socket
+ * becomes readable, the key is cancelled, the channel is switched back to blocking mode and the
+ * connection is handed to the scheduler's worker pool. So MysqlChannel can read and write packets
+ * exactly as it does in thread-per-connection mode. When the command is done, the worker registers
+ * the connection to the event loop again.
+ */
+public class ConnectEventLoop implements Runnable {
+    private static final Logger LOG = LogManager.getLogger(ConnectEventLoop.class);
+    private static final long SELECT_TIMEOUT_MS = 1000;
+
+    private final String name;
+    private final ConnectScheduler scheduler;
+    private final Selector selector;
+    // connections waiting to be registered to selector, only the loop thread touches the selector keys.
+    private final Queue<ConnectContext> pendingRegister = new ConcurrentLinkedQueue<ConnectContext>();
+    private volatile boolean running;
+    private Thread thread;
+
+    public ConnectEventLoop(String name, ConnectScheduler scheduler) throws IOException {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.selector = Selector.open();
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    // Hand one idle connection to this event loop. Can be called from any thread.
+    public void register(ConnectContext ctx) {
+        pendingRegister.add(ctx);
+        selector.wakeup();
+    }
+
+    public int getConnectionNum() {
+        return selector.keys().size() + pendingRegister.size();
+    }
+
+    private void doRegister() {
+        ConnectContext ctx;
+        while ((ctx = pendingRegister.poll()) != null) {
+            SocketChannel channel = ctx.getMysqlChannel().getChannel();
+            try {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, ctx);
+            } catch (Exception e) {
+                // channel may be closed by timeout checker
+                LOG.debug("register connection {} to {} failed.", ctx.getConnectionId(), name, e);
+                scheduler.closeConnection(ctx);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        List<ConnectContext> readyContexts = Lists.newArrayList();
+        while (running) {
+            try {
+                doRegister();
+                if (selector.select(SELECT_TIMEOUT_MS) == 0) {
+                    continue;
+                }
+
+                Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+                while (iter.hasNext()) {
+                    SelectionKey key = iter.next();
+                    iter.remove();
+                    key.cancel();
+                    readyContexts.add((ConnectContext) key.attachment());
+                }
+                // flush cancelled keys, otherwise the channel can not be set to blocking mode.
+                selector.selectNow();
+
+                for (ConnectContext ctx : readyContexts) {
+                    try {
+                        ctx.getMysqlChannel().getChannel().configureBlocking(true);
+                    } catch (Exception e) {
+                        LOG.debug("connection {} is closed before processing.", ctx.getConnectionId(), e);
+                        scheduler.closeConnection(ctx);
+                        continue;
+                    }
+                    scheduler.dispatch(ctx);
+                }
+            } catch (Exception e) {
+                LOG.warn("{} exception when select.", name, e);
+            } finally {
+                readyContexts.clear();
+            }
+        }
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOG.warn("close selector of {} failed.", name, e);
+        }
+        LOG.info("{} exits.", name);
+    }
+}
@@ -22,8 +22,10 @@ package com.baidu.palo.qe;
 import com.baidu.palo.catalog.Catalog;
 import com.baidu.palo.catalog.Column;
 import com.baidu.palo.catalog.Database;
+import com.baidu.palo.catalog.PrimitiveType;
 import com.baidu.palo.catalog.Table;
 import com.baidu.palo.cluster.ClusterNamespace;
+import com.baidu.palo.common.AnalysisException;
 import com.baidu.palo.common.AuditLog;
 import com.baidu.palo.common.Config;
 import com.baidu.palo.common.DdlException;
@@ -32,13 +34,16 @@ import com.baidu.palo.common.ErrorReport;
 import com.baidu.palo.common.util.Metrics;
 import com.baidu.palo.mysql.MysqlChannel;
 import com.baidu.palo.mysql.MysqlCommand;
+import com.baidu.palo.mysql.MysqlEofPacket;
 import com.baidu.palo.mysql.MysqlPacket;
+import com.baidu.palo.mysql.MysqlPrepareOkPacket;
 import com.baidu.palo.mysql.MysqlProto;
 import com.baidu.palo.mysql.MysqlSerializer;
 import com.baidu.palo.thrift.TMasterOpRequest;
 import com.baidu.palo.thrift.TMasterOpResult;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 import io.dropwizard.metrics.Counter;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
@@ -138,24 +143,36 @@ public class ConnectProcessor {
         }
     }
 
-    // process COM_QUERY statement,
-    // 只有在与请求客户端交互出现问题时候才抛出异常
-    private void handleQuery() {
-        // convert statement to Java string
-        String stmt = null;
+    // convert statement in COM_QUERY or COM_STMT_PREPARE packet to Java string
+    // return null if failed.
+    private String readStmt() {
         try {
             byte[] bytes = packetBuf.array();
             int ending = packetBuf.limit() - 1;
             while (ending >= 1 && bytes[ending] == '\0') {
                 ending--;
             }
-            stmt = new String(bytes, 1, ending, "UTF-8");
+            return new String(bytes, 1, ending, "UTF-8");
         } catch (UnsupportedEncodingException e) {
             // impossible
             LOG.error("UTF8 is not supported in this environment.");
             ctx.getState().setError("Unsupported character set(UTF-8)");
+            return null;
+        }
+    }
+
+    // process COM_QUERY statement,
+    // 只有在与请求客户端交互出现问题时候才抛出异常
+    private void handleQuery() {
+        String stmt = readStmt();
+        if (stmt == null) {
             return;
         }
+        executeStmt(stmt, false);
+    }
+
+    // Execute one statement, result set is sent in binary protocol if isBinaryProtocol is true.
+    private void executeStmt(String stmt, boolean isBinaryProtocol) {
         ctx.getAuditBuilder().reset();
         // replace '\n' to '\\\n' to make string in one line
         ctx.getAuditBuilder().put("client", ctx.getMysqlChannel().getRemote());
@@ -166,6 +183,7 @@ public class ConnectProcessor {
         // execute this query.
         try {
             executor = new StmtExecutor(ctx, stmt);
+            executor.setIsBinaryProtocol(isBinaryProtocol);
             executor.execute();
             // needForward = executor.isForwardtoMaster();
             // outputPacket = executor.getOutputPacket();
@@ -187,6 +205,113 @@ public class ConnectProcessor {
         auditAfterExec();
     }
 
+    // COM_STMT_PREPARE: split statement by placeholders and keep it in this connection.
+    // Response is COM_STMT_PREPARE_OK, followed by parameter definitions and EOF if there are parameters,
+    // then column definitions and EOF if the statement is a query.
+    // Result columns are got by analyzing the statement with NULL as parameters. If that fails, such as
+    // 'LIMIT ?', no column is reported here and client gets them from the result set of execution.
+    private void handleStmtPrepare() throws IOException {
+        String stmt = readStmt();
+        if (stmt == null) {
+            return;
+        }
+        ServerPreparedStmt preparedStmt = ctx.addPreparedStmt(stmt);
+        if (preparedStmt == null) {
+            ctx.getState().setError("Can't create more than max_prepared_stmt_per_connection statements ("
+                    + Config.max_prepared_stmt_per_connection + ")");
+            return;
+        }
+
+        List<String> colNames = Lists.newArrayList();
+        List<PrimitiveType> colTypes = Lists.newArrayList();
+        try {
+            new StmtExecutor(ctx, preparedStmt.getStmtWithNullParams()).analyzeResultColumns(colNames, colTypes);
+        } catch (AnalysisException e) {
+            LOG.debug("failed to analyze result columns of prepared statement: {}", e.getMessage());
+            // error may be reported to state by analysis
+            ctx.getState().reset();
+            colNames.clear();
+            colTypes.clear();
+        }
+
+        MysqlSerializer serializer = ctx.getSerializer();
+        MysqlChannel channel = ctx.getMysqlChannel();
+        int numParams = preparedStmt.getNumParams();
+        int numColumns = colNames.size();
+        serializer.reset();
+        new MysqlPrepareOkPacket(preparedStmt.getStmtId(), numColumns, numParams).writeTo(serializer);
+        if (numParams == 0 && numColumns == 0) {
+            channel.sendAndFlush(serializer.toByteBuffer());
+            ctx.getState().setNoop();
+            return;
+        }
+        channel.sendOnePacket(serializer.toByteBuffer());
+        for (int i = 0; i < numParams; i++) {
+            serializer.reset();
+            serializer.writeField("?", PrimitiveType.VARCHAR);
+            channel.sendOnePacket(serializer.toByteBuffer());
+        }
+        if (numParams > 0 && numColumns > 0) {
+            serializer.reset();
+            new MysqlEofPacket(ctx.getState()).writeTo(serializer);
+            channel.sendOnePacket(serializer.toByteBuffer());
+        }
+        for (int i = 0; i < numColumns; i++) {
+            serializer.reset();
+            serializer.writeField(colNames.get(i), colTypes.get(i));
+            channel.sendOnePacket(serializer.toByteBuffer());
+        }
+        // the last EOF is sent in finalizeCommand
+        ctx.getState().setEof();
+    }
+
+    // COM_STMT_EXECUTE: bind parameters to prepared statement and execute it.
+    private void handleStmtExecute() {
+        int stmtId = MysqlProto.readInt4(packetBuf);
+        ServerPreparedStmt preparedStmt = ctx.getPreparedStmt(stmtId);
+        if (preparedStmt == null) {
+            ctx.getState().setError("Unknown prepared statement handler (" + stmtId + ") given to mysqld_stmt_execute");
+            return;
+        }
+        String stmt;
+        try {
+            stmt = preparedStmt.bind(packetBuf);
+        } catch (AnalysisException e) {
+            ctx.getState().setError(e.getMessage());
+            return;
+        }
+        executeStmt(stmt, true);
+    }
+
+    // COM_STMT_SEND_LONG_DATA: append data of one parameter, no response.
+    private void handleStmtSendLongData() {
+        ctx.getState().setNoop();
+        int stmtId = MysqlProto.readInt4(packetBuf);
+        int paramId = MysqlProto.readInt2(packetBuf);
+        ServerPreparedStmt preparedStmt = ctx.getPreparedStmt(stmtId);
+        if (preparedStmt != null) {
+            preparedStmt.appendLongData(paramId, MysqlProto.readEofString(packetBuf));
+        }
+    }
+
+    // COM_STMT_RESET: clear data sent by COM_STMT_SEND_LONG_DATA.
+    private void handleStmtReset() {
+        int stmtId = MysqlProto.readInt4(packetBuf);
+        ServerPreparedStmt preparedStmt = ctx.getPreparedStmt(stmtId);
+        if (preparedStmt == null) {
+            ctx.getState().setError("Unknown prepared statement handler (" + stmtId + ") given to mysqld_stmt_reset");
+            return;
+        }
+        preparedStmt.reset();
+        ctx.getState().setOk();
+    }
+
+    // COM_STMT_CLOSE: release prepared statement, no response.
+    private void handleStmtClose() {
+        ctx.removePreparedStmt(MysqlProto.readInt4(packetBuf));
+        ctx.getState().setNoop();
+    }
+
     // Get the column definitions of a table
     private void handleFieldList() throws IOException {
         // Already get command code.
@@ -264,6 +389,22 @@ public class ConnectProcessor {
             case COM_PING:
                 handlePing();
                 break;
+            case COM_STMT_PREPARE:
+                handleStmtPrepare();
+                break;
+            case COM_STMT_EXECUTE:
+                handleStmtExecute();
+                ctx.setStartTime();
+                break;
+            case COM_STMT_SEND_LONG_DATA:
+                handleStmtSendLongData();
+                break;
+            case COM_STMT_RESET:
+                handleStmtReset();
+                break;
+            case COM_STMT_CLOSE:
+                handleStmtClose();
+                break;
             default:
                 ctx.getState().setError("Unsupported command(" + command + ")");
                 LOG.warn("Unsupported command(" + command + ")");
@@ -19,23 +19,32 @@
 
 package com.baidu.palo.qe;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.collect.Lists;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import com.baidu.palo.common.Config;
+import com.baidu.palo.mysql.MysqlCommand;
 import com.baidu.palo.mysql.MysqlProto;
 import com.google.common.collect.Maps;
 
 // 查询请求的调度器
-// 当前的策略比较简单，有请求过来，就为其单独申请一个线程进行服务。
+// 默认策略比较简单，有请求过来，就为其单独申请一个线程进行服务。
+// 当 mysql_service_nio_enabled 打开时，空闲连接由少量 ConnectEventLoop 线程通过 selector 监听，
+// 只有收到请求的连接才会交给有界的工作线程池处理。
 // TODO(zhaochun): 应当后面考虑本地文件的连接是否可以超过最大连接数
 public class ConnectScheduler {
     private static final Logger LOG = LogManager.getLogger(ConnectScheduler.class);
@@ -44,7 +53,12 @@ public class ConnectScheduler {
     private AtomicInteger nextConnectionId;
     private Map<Long, ConnectContext> connectionMap = Maps.newHashMap();
     private Map<String, AtomicInteger> connByUser = Maps.newHashMap();
-    private ExecutorService executor = Executors.newCachedThreadPool();
+    private ExecutorService executor;
+
+    // Only used in nio mode
+    private boolean nioEnabled;
+    private ConnectEventLoop[] eventLoops;
+    private AtomicInteger nextEventLoop = new AtomicInteger(0);
 
     // Use a thread to check whether connection is timeout. Because
     // 1. If use a scheduler, the task maybe a huge number when query is messy.
@@ -56,6 +70,31 @@ public class ConnectScheduler {
         this.maxConnections = maxConnections;
         numberConnection = 0;
         nextConnectionId = new AtomicInteger(0);
+        nioEnabled = Config.mysql_service_nio_enabled;
+        if (nioEnabled) {
+            executor = new ThreadPoolExecutor(Config.mysql_nio_worker_threads_num,
+                    Config.mysql_nio_worker_threads_num, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(Config.mysql_nio_worker_queue_size));
+            eventLoops = new ConnectEventLoop[Config.mysql_nio_io_threads_num];
+            for (int i = 0; i < eventLoops.length; i++) {
+                try {
+                    eventLoops[i] = new ConnectEventLoop("MySQL NIO Event Loop-" + i, this);
+                } catch (IOException e) {
+                    LOG.warn("open selector failed, fall back to thread per connection.", e);
+                    nioEnabled = false;
+                    eventLoops = null;
+                    executor = Executors.newCachedThreadPool();
+                    break;
+                }
+            }
+            if (nioEnabled) {
+                for (ConnectEventLoop eventLoop : eventLoops) {
+                    eventLoop.start();
+                }
+            }
+        } else {
+            executor = Executors.newCachedThreadPool();
+        }
         checkTimer = new Timer("ConnectScheduler Check Timer", true);
         checkTimer.scheduleAtFixedRate(new TimeoutChecker(), 0, 1000);
     }
@@ -64,11 +103,21 @@ public class ConnectScheduler {
         @Override
         public void run() {
             long now = System.currentTimeMillis();
+            List<ConnectContext> killedIdleContexts = Lists.newArrayList();
             synchronized (ConnectScheduler.this) {
                 for (ConnectContext connectContext : connectionMap.values()) {
                     connectContext.checkTimeout(now);
+                    // In nio mode, no thread is blocked on an idle connection,
+                    // so nobody else will release a connection killed while sleeping.
+                    if (nioEnabled && connectContext.isKilled()
+                            && connectContext.getCommand() == MysqlCommand.COM_SLEEP) {
+                        killedIdleContexts.add(connectContext);
+                    }
                 }
             }
+            for (ConnectContext connectContext : killedIdleContexts) {
+                closeConnection(connectContext);
+            }
         }
     }
 
@@ -80,13 +129,43 @@ public class ConnectScheduler {
             return false;
         }
         context.setConnectionId(nextConnectionId.getAndAdd(1));
-        if (executor.submit(new LoopHandler(context)) == null) {
-            LOG.warn("Submit one thread failed.");
+        Runnable handler = nioEnabled ? new NegotiateHandler(context) : new LoopHandler(context);
+        try {
+            if (executor.submit(handler) == null) {
+                LOG.warn("Submit one thread failed.");
+                return false;
+            }
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Submit one connection failed, too many pending requests.");
             return false;
         }
         return true;
     }
 
+    // Called by event loop when one idle connection has a request to read.
+    // The channel of this connection has already been set back to blocking mode.
+    public void dispatch(ConnectContext context) {
+        try {
+            executor.execute(new CommandHandler(context));
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Too many pending requests, close connection {}. remote: {}",
+                     context.getConnectionId(), context.getMysqlChannel().getRemote());
+            closeConnection(context);
+        }
+    }
+
+    // Release one connection which is not owned by any thread.
+    public void closeConnection(ConnectContext context) {
+        context.setKilled();
+        unregisterConnection(context);
+        context.cleanup();
+    }
+
+    private void registerToEventLoop(ConnectContext context) {
+        int idx = Math.abs(nextEventLoop.getAndIncrement() % eventLoops.length);
+        eventLoops[idx].register(context);
+    }
+
     // Register one connection with its connection id.
     public synchronized boolean registerConnection(ConnectContext ctx) {
         if (numberConnection >= maxConnections) {
@@ -170,4 +249,74 @@ public class ConnectScheduler {
             }
         }
     }
+
+    // Only used in nio mode, do handshake with client and then hand this connection to event loop.
+    private class NegotiateHandler implements Runnable {
+        ConnectContext context;
+
+        NegotiateHandler(ConnectContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public void run() {
+            boolean registered = false;
+            try {
+                context.setThreadLocalInfo();
+                context.setConnectScheduler(ConnectScheduler.this);
+                // authenticate check failed.
+                if (!MysqlProto.negotiate(context)) {
+                    return;
+                }
+
+                if (registerConnection(context)) {
+                    MysqlProto.sendResponsePacket(context);
+                } else {
+                    context.getState().setError("Reach limit of connections");
+                    MysqlProto.sendResponsePacket(context);
+                    return;
+                }
+
+                context.setStartTime();
+                context.setConnectProcessor(new ConnectProcessor(context));
+                registerToEventLoop(context);
+                registered = true;
+            } catch (Exception e) {
+                LOG.warn("negotiate exception because ", e);
+            } finally {
+                ConnectContext.remove();
+                if (!registered) {
+                    closeConnection(context);
+                }
+            }
+        }
+    }
+
+    // Only used in nio mode, process exactly one command of one connection.
+    private class CommandHandler implements Runnable {
+        ConnectContext context;
+
+        CommandHandler(ConnectContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public void run() {
+            boolean keepAlive = false;
+            try {
+                context.setThreadLocalInfo();
+                context.getConnectProcessor().processOnce();
+                keepAlive = !context.isKilled();
+            } catch (Exception e) {
+                LOG.warn("Exception happened in one session(" + context + ").", e);
+            } finally {
+                ConnectContext.remove();
+                if (keepAlive) {
+                    registerToEventLoop(context);
+                } else {
+                    closeConnection(context);
+                }
+            }
+        }
+    }
 }
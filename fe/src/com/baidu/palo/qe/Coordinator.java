@@ -27,10 +27,13 @@ import com.baidu.palo.common.Config;
 import com.baidu.palo.common.InternalException;
 import com.baidu.palo.common.Reference;
 import com.baidu.palo.common.Status;
+import com.baidu.palo.common.util.BucketHistogram;
 import com.baidu.palo.common.util.DebugUtil;
+import com.baidu.palo.common.util.Metrics;
 import com.baidu.palo.common.util.RuntimeProfile;
 import com.baidu.palo.planner.DataPartition;
 import com.baidu.palo.planner.DataSink;
+import com.baidu.palo.planner.OlapScanNode;
 import com.baidu.palo.planner.PlanFragment;
 import com.baidu.palo.planner.PlanFragmentId;
 import com.baidu.palo.planner.PlanNode;
@@ -47,6 +50,7 @@ import com.baidu.palo.thrift.TCancelPlanFragmentResult;
 import com.baidu.palo.thrift.TDescriptorTable;
 import com.baidu.palo.thrift.TExecPlanFragmentParams;
 import com.baidu.palo.thrift.TExecPlanFragmentResult;
+import com.baidu.palo.thrift.TExecPlanFragmentsResult;
 import com.baidu.palo.thrift.TNetworkAddress;
 import com.baidu.palo.thrift.TPaloScanRange;
 import com.baidu.palo.thrift.TPlanFragmentDestination;
@@ -61,6 +65,7 @@ import com.baidu.palo.thrift.TScanRange;
 import com.baidu.palo.thrift.TScanRangeLocation;
 import com.baidu.palo.thrift.TScanRangeLocations;
 import com.baidu.palo.thrift.TScanRangeParams;
+import com.baidu.palo.thrift.TStatus;
 import com.baidu.palo.thrift.TStatusCode;
 import com.baidu.palo.thrift.TUniqueId;
 
@@ -70,8 +75,11 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import io.dropwizard.metrics.Gauge;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.thrift.TApplicationException;
 import org.apache.thrift.TException;
 import org.apache.thrift.transport.TTransportException;
 
@@ -85,10 +93,13 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -96,6 +107,33 @@ import java.util.concurrent.locks.ReentrantLock;
 public class Coordinator {
     private static final Logger LOG = LogManager.getLogger(Coordinator.class);
     private static final DateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private static final int EXEC_REMOTE_TIMEOUT_MS = 5 * 1000;
+    // threads issuing exec_plan_fragment(s) rpcs, idle threads exit after 60 seconds
+    private static final ThreadPoolExecutor DISPATCH_EXECUTOR = new ThreadPoolExecutor(
+            Config.fragment_dispatch_thread_num, Config.fragment_dispatch_thread_num,
+            60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(Config.fragment_dispatch_queue_size),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "fragment-dispatch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    // latency of exec_plan_fragment(s) rpcs
+    private static final BucketHistogram EXEC_RPC_HISTOGRAM = (BucketHistogram) Metrics.getMetric(
+            Metrics.MetricType.BUCKET_HISTOGRAM, "coordinator.exec_rpc_ms");
+
+    static {
+        DISPATCH_EXECUTOR.allowCoreThreadTimeOut(true);
+        Metrics.registerGauge("coordinator.dispatch_queue_size", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return DISPATCH_EXECUTOR.getQueue().size();
+            }
+        });
+    }
 
     private static String localIP;
 
@@ -177,6 +215,8 @@ public class Coordinator {
     private TUniqueId queryId;
     private TResourceInfo tResourceInfo;
     private boolean needReport;
+    // chooses replicas to scan when assigning scan ranges
+    private ReplicaSelector replicaSelector;
 
 
     // Used for query
@@ -192,6 +232,7 @@ public class Coordinator {
         this.tResourceInfo = new TResourceInfo(context.getUser(),
                 context.getSessionVariable().getResourceGroup());
         this.needReport = context.getSessionVariable().isReportSucc();
+        this.replicaSelector = ReplicaSelector.getSelector(context.getSessionVariable().getReplicaSelectionPolicy());
     }
 
     // Used for pull load task coordinator
@@ -206,6 +247,7 @@ public class Coordinator {
         this.queryGlobals.setNow_string(DATE_FORMAT.format(new Date()));
         this.tResourceInfo = new TResourceInfo("", "");
         this.needReport = true;
+        this.replicaSelector = ReplicaSelector.getSelector(ReplicaSelector.RANDOM);
     }
 
     public TUniqueId getQueryId() {
@@ -312,6 +354,10 @@ public class Coordinator {
             this.errAddress = errAddress;
         }
 
+        public synchronized boolean ok() {
+            return errCode == TStatusCode.OK;
+        }
+
         public ExecStatus() {
             this.errCode = TStatusCode.OK;
             this.errAddress = new TNetworkAddress();
@@ -384,7 +430,7 @@ public class Coordinator {
                 }
                 // Issue all rpcs in parallel
                 ExecStatus status = new ExecStatus();
-                ParallelExecutor.exec(backendExecStates, backendId - numHosts, numHosts, status);
+                dispatch(backendExecStates.subList(backendId - numHosts, backendId), status);
                 if (status.getErrCode() != TStatusCode.OK) {
                     String errMsg = "exec rpc error";
                     queryStatus.setStatus(errMsg);
@@ -604,6 +650,7 @@ public class Coordinator {
                     thriftResult = client.cancel_plan_fragment(rpcParams);
                     if (thriftResult.status.status_code == TStatusCode.OK) {
                         backendExecState.hasCanceled = true;
+                        BackendLoadStats.getInstance().onFragmentFinished(rpcParams.getFragment_instance_id());
                     }
                     isReturnToPool = true;
                 } catch (TTransportException e) {
@@ -807,8 +854,15 @@ public class Coordinator {
     // Populates scan_range_assignment_.
     // <fragment, <server, nodeId>>
     private void computeScanRangeAssignment() throws Exception {
+        // scan nodes of colocate join fragments, which must read the same bucket on the same host
+        HashMap<PlanFragmentId, List<OlapScanNode>> colocateScanNodes = Maps.newHashMap();
         // set scan ranges/locations for scan nodes
         for (ScanNode scanNode : scanNodes) {
+            if (scanNode instanceof OlapScanNode && scanNode.getFragment().isColocate()) {
+                findOrInsert(colocateScanNodes, scanNode.getFragmentId(), new ArrayList<OlapScanNode>())
+                        .add((OlapScanNode) scanNode);
+                continue;
+            }
             // the parameters of getScanRangeLocations may ignore, It dosn't take effect
             List<TScanRangeLocations> locations = scanNode.getScanRangeLocations(0);
             if (locations == null) {
@@ -820,6 +874,75 @@ public class Coordinator {
                     scanRangeAssignment.get(scanNode.getFragmentId());
             computeScanRangeAssignment(scanNode.getId(), locations, assignment);
         }
+
+        for (Map.Entry<PlanFragmentId, List<OlapScanNode>> entry : colocateScanNodes.entrySet()) {
+            computeColocateScanRangeAssignment(entry.getValue(), scanRangeAssignment.get(entry.getKey()));
+        }
+    }
+
+    // Assigns scan ranges of a bucket sequence of all scan nodes to the same host, which has replicas of
+    // all tablets of the bucket. Buckets are spread over hosts by number of assigned buckets.
+    private void computeColocateScanRangeAssignment(
+            final List<OlapScanNode> scanNodes,
+            FragmentScanRangeAssignment assignment) throws Exception {
+        // bucket sequence -> backend ids having replicas of all tablets of the bucket
+        Map<Integer, Set<Long>> bucketSeqToBackends = Maps.newTreeMap();
+        for (OlapScanNode scanNode : scanNodes) {
+            for (Map.Entry<Integer, Set<Long>> entry : scanNode.getBucketSeqToBackends().entrySet()) {
+                Set<Long> backendIds = bucketSeqToBackends.get(entry.getKey());
+                if (backendIds == null) {
+                    bucketSeqToBackends.put(entry.getKey(), entry.getValue());
+                } else {
+                    backendIds.retainAll(entry.getValue());
+                }
+            }
+        }
+
+        HashMap<Long, Integer> assignedBucketsPerBackend = Maps.newHashMap();
+        Map<Integer, TNetworkAddress> bucketSeqToHost = Maps.newHashMap();
+        for (Map.Entry<Integer, Set<Long>> entry : bucketSeqToBackends.entrySet()) {
+            List<Long> backendIds = Lists.newArrayList(entry.getValue());
+            // prefer the backend with the fewest buckets assigned, skip dead or blacklisted backends
+            TNetworkAddress execHostPort = null;
+            while (!backendIds.isEmpty()) {
+                Long minBackendId = null;
+                int minAssignedBuckets = Integer.MAX_VALUE;
+                for (Long backendId : backendIds) {
+                    int assignedBuckets = findOrInsert(assignedBucketsPerBackend, backendId, 0);
+                    if (assignedBuckets < minAssignedBuckets) {
+                        minAssignedBuckets = assignedBuckets;
+                        minBackendId = backendId;
+                    }
+                }
+                backendIds.remove(minBackendId);
+                Reference<Long> backendIdRef = new Reference<Long>();
+                execHostPort = SimpleScheduler.getHost(minBackendId, new ArrayList<TScanRangeLocation>(),
+                        this.idToBackend, backendIdRef);
+                if (execHostPort != null) {
+                    assignedBucketsPerBackend.put(minBackendId, minAssignedBuckets + 1);
+                    this.addressToBackendID.put(execHostPort, minBackendId);
+                    break;
+                }
+            }
+            if (execHostPort == null) {
+                throw new InternalException("there is no alive backend for bucket " + entry.getKey()
+                        + " of colocate join");
+            }
+            bucketSeqToHost.put(entry.getKey(), execHostPort);
+        }
+
+        for (OlapScanNode scanNode : scanNodes) {
+            for (TScanRangeLocations scanRangeLocations : scanNode.getScanRangeLocations(0)) {
+                TNetworkAddress execHostPort = bucketSeqToHost.get(scanNode.getBucketSeq(scanRangeLocations));
+                Map<Integer, List<TScanRangeParams>> scanRanges = findOrInsert(assignment, execHostPort,
+                        new HashMap<Integer, List<TScanRangeParams>>());
+                List<TScanRangeParams> scanRangeParamsList =
+                        findOrInsert(scanRanges, scanNode.getId().asInt(), new ArrayList<TScanRangeParams>());
+                TScanRangeParams scanRangeParams = new TScanRangeParams();
+                scanRangeParams.scan_range = scanRangeLocations.scan_range;
+                scanRangeParamsList.add(scanRangeParams);
+            }
+        }
     }
 
     // Does a scan range assignment (returned in 'assignment') based on a list
@@ -831,16 +954,14 @@ public class Coordinator {
             FragmentScanRangeAssignment assignment) throws Exception {
         HashMap<TNetworkAddress, Long> assignedBytesPerHost = Maps.newHashMap();
         for (TScanRangeLocations scanRangeLocations : locations) {
-            // assign this scan range to the host w/ the fewest assigned bytes
-            Long minAssignedBytes = Long.MAX_VALUE;
-            TScanRangeLocation minLocation = null;
+            // let the replica selector choose the host, considering bytes already assigned to hosts
             for (final TScanRangeLocation location : scanRangeLocations.getLocations()) {
-                Long assignedBytes = findOrInsert(assignedBytesPerHost, location.server, 0L);
-                if (assignedBytes < minAssignedBytes) {
-                    minAssignedBytes = assignedBytes;
-                    minLocation = location;
-                }
+                findOrInsert(assignedBytesPerHost, location.server, 0L);
             }
+            long tabletId = scanRangeLocations.scan_range.isSetPalo_scan_range()
+                    ? scanRangeLocations.scan_range.getPalo_scan_range().getTablet_id() : -1;
+            TScanRangeLocation minLocation = replicaSelector.choose(tabletId, scanRangeLocations.getLocations(),
+                    assignedBytesPerHost);
             Long scanRangeLength = getScanRangeLength(scanRangeLocations.scan_range);
             assignedBytesPerHost.put(minLocation.server,
                     assignedBytesPerHost.get(minLocation.server) + scanRangeLength);
@@ -852,6 +973,11 @@ public class Coordinator {
                 throw new InternalException("there is no scanNode Backend");
             }
             this.addressToBackendID.put(execHostPort, backendIdRef.getRef());
+            if (scanRangeLocations.scan_range.isSetPalo_scan_range()) {
+                // remember the backend for tablet affinity of load_aware replica selection
+                BackendLoadStats.getInstance().setLastServedBackend(
+                        scanRangeLocations.scan_range.getPalo_scan_range().getTablet_id(), backendIdRef.getRef());
+            }
 
             Map<Integer, List<TScanRangeParams>> scanRanges = findOrInsert(assignment, execHostPort,
                 new HashMap<Integer, List<TScanRangeParams>>());
@@ -886,6 +1012,9 @@ public class Coordinator {
         } finally {
             execState.unlock();
         }
+        if (done) {
+            BackendLoadStats.getInstance().onFragmentFinished(params.getFragment_instance_id());
+        }
 
         // print fragment instance profile
         if (LOG.isDebugEnabled()) {
@@ -1038,74 +1167,55 @@ public class Coordinator {
         }
 
         public void execRemoteFragment() throws Exception {
+            TNetworkAddress address = getBackendAddress();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("exec address={} fragmentInstanceId={} rpcParams={}", address,
+                        DebugUtil.printId(rpcParams.params.fragment_instance_id), rpcParams);
+            }
             TExecPlanFragmentResult thriftResult = null;
-            BackendService.Client client = null;
-            TNetworkAddress address = null;
-            int execRemoteTimeoutMs = 5 * 1000;
-            boolean isReturnToPool = false;
+            onDispatching();
             try {
-                try {
-                    address = getBackendAddress();
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("exec address={} fragmentInstanceId={} rpcParams={}", address,
-                                DebugUtil.printId(rpcParams.params.fragment_instance_id), rpcParams);
-                    }
-                    client = ClientPool.backendPool.borrowObject(address, execRemoteTimeoutMs);
-                    thriftResult = client.exec_plan_fragment(rpcParams);
-                    isReturnToPool = true;
-                } catch (TTransportException e) {
-                    LOG.warn("execRemoteFragment TTransporxception address={}", address, e);
-                    // retry
-                    if (client == null) {
-                        LOG.warn("may be connection refuse, try to retry from top");
-                        if (address != null) {
-                            SimpleScheduler.updateBlacklistBackends(
-                                    this.addressToBackendID.get(address));
-                        }
-                        throw e; // may be connection refuse, we may retry from top 3 retry.
-                    }
-                    boolean ok = ClientPool.backendPool.reopen(client,
-                            execRemoteTimeoutMs);
-                    if (!ok) {
-                        if (address != null) {
-                            SimpleScheduler.updateBlacklistBackends(
-                                    this.addressToBackendID.get(address));
-                        }
-                        LOG.warn("reopen rpc error address=" + address);
-                        throw e;
-                    }
-
-                    if (e.getType() == TTransportException.TIMED_OUT) {
-                        throw e;
-                    } else {
-                        thriftResult = client.exec_plan_fragment(rpcParams);
-                        isReturnToPool = true;
+                thriftResult = callBackend(address, new BackendRpc<TExecPlanFragmentResult>() {
+                    @Override
+                    public TExecPlanFragmentResult call(BackendService.Client client) throws TException {
+                        return client.exec_plan_fragment(rpcParams);
                     }
-                }
-            } catch (org.apache.thrift.TApplicationException e) {
-                SimpleScheduler.updateBlacklistBackends(this.addressToBackendID.get(address));
-                LOG.warn("execRemoteFragment Exception ", e);
-                throw e;
+                });
             } catch (Exception e) {
                 LOG.warn("execRemoteFragment Exception " + DebugUtil.getStackTrace(e));
+                onDispatchFailed();
                 throw e;
-            } finally {
-                if (isReturnToPool) {
-                    ClientPool.backendPool.returnObject(address, client);
-                } else {
-                    ClientPool.backendPool.invalidateObject(address, client);
-                }
             }
             if (thriftResult != null) {
                 if (!thriftResult.getStatus().getStatus_code().equals(TStatusCode.OK)) {
                     String errMsg = thriftResult.getStatus().getError_msgs().get(0);
                     LOG.warn("exec_plan_fragment get wrong result, err_msg =" + errMsg);
+                    onDispatchFailed();
                     throw new Exception(errMsg);
                 }
             }
 
             initiated = true;
         }
+
+        // Count the instance in load of its backend before the exec rpc, so concurrent queries selecting
+        // replicas see it even if the rpc is slow.
+        void onDispatching() {
+            Long backendId = this.addressToBackendID.get(getBackendAddress());
+            if (backendId != null) {
+                BackendLoadStats.getInstance().onFragmentStarted(getFragmentInstanceId(), backendId,
+                        queryOptions.query_timeout * 1000L);
+            }
+        }
+
+        // the instance is not executed by backend
+        void onDispatchFailed() {
+            BackendLoadStats.getInstance().onFragmentFinished(getFragmentInstanceId());
+        }
+
+        void onInitiated() {
+            initiated = true;
+        }
     }
 
     // execution parameters for a single fragment; used to assemble the
@@ -1210,62 +1320,190 @@ public class Coordinator {
         }
     }
 
-    private static class ParallelExecutor {
-        private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool();
-
-        public static void exec(List<Coordinator.BackendExecState> args,
-                int beginPos,
-                int numArgs,
-                ExecStatus status)
-                throws InterruptedException, TException {
-            CountDownLatch latch = new CountDownLatch(numArgs);
-            for (int i = 0; i < numArgs; ++i) {
-                Runnable r = new RpcThread(args.get(beginPos + i), latch, status);
-                EXECUTOR.submit(r);
+    // Dispatch fragment instances of one fragment. Instances bound for the same backend are started by one rpc,
+    // rpcs are issued by a thread pool shared by all queries, so wide queries do not create a thread per instance.
+    private void dispatch(List<BackendExecState> states, ExecStatus status) throws InterruptedException {
+        Map<TNetworkAddress, List<BackendExecState>> batches = Maps.newLinkedHashMap();
+        List<List<BackendExecState>> rpcs = Lists.newArrayList();
+        for (BackendExecState state : states) {
+            if (!Config.enable_batch_fragment_dispatch) {
+                rpcs.add(Lists.newArrayList(state));
+                continue;
+            }
+            List<BackendExecState> batch = batches.get(state.getBackendAddress());
+            if (batch == null) {
+                batch = Lists.newArrayList();
+                batches.put(state.getBackendAddress(), batch);
+                rpcs.add(batch);
             }
-            // timeOut cancel, no need to lock
-            // for after do exec, we can cancel and update
-            // thrift rpc default timeout is 5 secs.
-            // we make latch wait 10 secs(> 5 sec) to avoid false timeout
-            if (!latch.await(10, TimeUnit.SECONDS)) {
-                status.setErrCode(TStatusCode.TIMEOUT);
+            batch.add(state);
+        }
+
+        CountDownLatch latch = new CountDownLatch(rpcs.size());
+        for (List<BackendExecState> rpc : rpcs) {
+            try {
+                DISPATCH_EXECUTOR.execute(new DispatchTask(rpc, latch, status));
+            } catch (RejectedExecutionException e) {
+                LOG.warn("too many fragment dispatch tasks, queue size: {}", DISPATCH_EXECUTOR.getQueue().size());
+                status.setErrCode(TStatusCode.INTERNAL_ERROR);
+                status.setErrAddress(rpc.get(0).getBackendAddress());
+                latch.countDown();
             }
         }
+        // timeOut cancel, no need to lock
+        // for after do exec, we can cancel and update
+        // thrift rpc default timeout is 5 secs.
+        // we make latch wait longer than that to avoid false timeout
+        if (!latch.await(Config.fragment_dispatch_timeout_second, TimeUnit.SECONDS)) {
+            status.setErrCode(TStatusCode.TIMEOUT);
+        }
+    }
 
-        private static class RpcThread implements Runnable {
-            private Coordinator.BackendExecState parameter;
-            private CountDownLatch               latch;
-            private ExecStatus status;
+    // Start fragment instances on the same backend in one rpc.
+    private void execRemoteFragments(List<BackendExecState> states) throws Exception {
+        if (states.size() == 1) {
+            states.get(0).execRemoteFragment();
+            return;
+        }
 
-            public RpcThread(Coordinator.BackendExecState parameter, CountDownLatch latch,
-                    ExecStatus status) {
-                // store parameter for later user
-                this.parameter = parameter;
-                this.latch = latch;
-                // there is no need to lock needCanceled, because we only set needCanceled true
-                this.status = status;
+        TNetworkAddress address = states.get(0).getBackendAddress();
+        final List<TExecPlanFragmentParams> paramsList = Lists.newArrayList();
+        for (BackendExecState state : states) {
+            paramsList.add(state.rpcParams);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("exec address={} fragment instance num={}", address, paramsList.size());
+        }
+        for (BackendExecState state : states) {
+            state.onDispatching();
+        }
+        TExecPlanFragmentsResult thriftResult = null;
+        try {
+            thriftResult = callBackend(address, new BackendRpc<TExecPlanFragmentsResult>() {
+                @Override
+                public TExecPlanFragmentsResult call(BackendService.Client client) throws TException {
+                    return client.exec_plan_fragments(paramsList);
+                }
+            });
+        } catch (Exception e) {
+            for (BackendExecState state : states) {
+                state.onDispatchFailed();
             }
+            throw e;
+        }
 
-            public void run() {
-                try {
-                    parameter.execRemoteFragment();
-                } catch (TTransportException e) {
-                    if (e.getType() == TTransportException.TIMED_OUT) {
-                        status.setErrCode(TStatusCode.TIMEOUT);
-                        status.setErrAddress(parameter.getBackendAddress());
-                    } else {
-                        status.setErrCode(TStatusCode.THRIFT_RPC_ERROR);
-                        status.setErrAddress(parameter.getBackendAddress());
-                    }
-                    LOG.warn("ParallelExecutor get exception: {}", parameter.getBackendAddress(), e);
-                } catch (Exception e) {
-                    status.setErrCode(TStatusCode.INTERNAL_ERROR);
-                    status.setErrAddress(parameter.getBackendAddress());
-                    LOG.warn("ParallelExecutor get exception: {}", parameter.getBackendAddress(), e);
+        // instances after the first failed one are not executed by backend
+        List<TStatus> statusList = thriftResult.getStatus_list();
+        for (int i = 0; i < states.size(); ++i) {
+            String errMsg = null;
+            if (statusList == null || i >= statusList.size()) {
+                errMsg = "fragment instance is not executed, address=" + address;
+            } else if (!statusList.get(i).getStatus_code().equals(TStatusCode.OK)) {
+                errMsg = statusList.get(i).getError_msgs().get(0);
+                LOG.warn("exec_plan_fragments get wrong result, err_msg =" + errMsg);
+            }
+            if (errMsg != null) {
+                for (int j = i; j < states.size(); ++j) {
+                    states.get(j).onDispatchFailed();
                 }
-                latch.countDown();
+                throw new Exception(errMsg);
+            }
+            states.get(i).onInitiated();
+        }
+    }
+
+    private interface BackendRpc<T> {
+        T call(BackendService.Client client) throws TException;
+    }
+
+    // Call an exec rpc on backend. If the connection is broken, it is reopened and the rpc is retried once,
+    // unless the rpc timed out. The backend is blacklisted if it can not be connected or the rpc fails
+    // with an application error.
+    private <T> T callBackend(TNetworkAddress address, BackendRpc<T> rpc) throws Exception {
+        BackendService.Client client = null;
+        boolean isReturnToPool = false;
+        try {
+            try {
+                client = ClientPool.backendPool.borrowObject(address, EXEC_REMOTE_TIMEOUT_MS);
+                long rpcStartTime = System.currentTimeMillis();
+                T result = rpc.call(client);
+                long rpcCostMs = System.currentTimeMillis() - rpcStartTime;
+                EXEC_RPC_HISTOGRAM.update(rpcCostMs);
+                Long backendId = addressToBackendID.get(address);
+                if (backendId != null) {
+                    BackendLoadStats.getInstance().updateLatency(backendId, rpcCostMs);
+                }
+                isReturnToPool = true;
+                return result;
+            } catch (TTransportException e) {
+                LOG.warn("exec rpc TTransportException address={}", address, e);
+                if (client == null) {
+                    // may be connection refused, the query may be retried from top
+                    SimpleScheduler.updateBlacklistBackends(addressToBackendID.get(address));
+                    throw e;
+                }
+                if (!ClientPool.backendPool.reopen(client, EXEC_REMOTE_TIMEOUT_MS)) {
+                    SimpleScheduler.updateBlacklistBackends(addressToBackendID.get(address));
+                    LOG.warn("reopen rpc error address=" + address);
+                    throw e;
+                }
+                if (e.getType() == TTransportException.TIMED_OUT) {
+                    throw e;
+                }
+                T result = rpc.call(client);
+                isReturnToPool = true;
+                return result;
+            }
+        } catch (TApplicationException e) {
+            SimpleScheduler.updateBlacklistBackends(addressToBackendID.get(address));
+            LOG.warn("exec rpc TApplicationException address={}", address, e);
+            throw e;
+        } finally {
+            if (isReturnToPool) {
+                ClientPool.backendPool.returnObject(address, client);
+            } else {
+                ClientPool.backendPool.invalidateObject(address, client);
             }
         }
     }
 
+    private class DispatchTask implements Runnable {
+        private List<BackendExecState> states;
+        private CountDownLatch latch;
+        private ExecStatus status;
+
+        public DispatchTask(List<BackendExecState> states, CountDownLatch latch, ExecStatus status) {
+            this.states = states;
+            this.latch = latch;
+            // there is no need to lock needCanceled, because we only set needCanceled true
+            this.status = status;
+        }
+
+        @Override
+        public void run() {
+            TNetworkAddress address = states.get(0).getBackendAddress();
+            try {
+                // the query has failed, e.g. dispatch timed out or another rpc failed, do not start its
+                // fragment instances any more
+                if (!status.ok()) {
+                    return;
+                }
+                execRemoteFragments(states);
+            } catch (TTransportException e) {
+                if (e.getType() == TTransportException.TIMED_OUT) {
+                    status.setErrCode(TStatusCode.TIMEOUT);
+                } else {
+                    status.setErrCode(TStatusCode.THRIFT_RPC_ERROR);
+                }
+                status.setErrAddress(address);
+                LOG.warn("dispatch fragment get exception: {}", address, e);
+            } catch (Exception e) {
+                status.setErrCode(TStatusCode.INTERNAL_ERROR);
+                status.setErrAddress(address);
+                LOG.warn("dispatch fragment get exception: {}", address, e);
+            } finally {
+                latch.countDown();
+            }
+        }
+    }
 }
@@ -0,0 +1,94 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.catalog.Replica;
+import com.baidu.palo.thrift.TNetworkAddress;
+import com.baidu.palo.thrift.TScanRangeLocation;
+
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Prefer replicas on less loaded backends. Score of a replica, the lower the better:
+ *   in-flight fragment instances on its backend
+ *   + rpc latency of its backend / LATENCY_UNIT_MS
+ *   - AFFINITY_BONUS if its backend served this tablet last time, whose page cache may still hold the data
+ * Replicas with equal score are in random order.
+ * When scan ranges are assigned, each scan range of the query already assigned to a backend adds 1 to its
+ * score (length of olap scan range is 1), so ranges of one query are still spread over replicas.
+ */
+public class LoadAwareReplicaSelector extends ReplicaSelector {
+    private static final double LATENCY_UNIT_MS = 10.0;
+    private static final double AFFINITY_BONUS = 1.0;
+
+    private final BackendLoadStats stats;
+
+    public LoadAwareReplicaSelector(BackendLoadStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public void order(long tabletId, List<Replica> replicas) {
+        long lastServedBackend = stats.getLastServedBackend(tabletId);
+        final Map<Replica, Double> scores = Maps.newIdentityHashMap();
+        for (Replica replica : replicas) {
+            scores.put(replica, getScore(replica.getBackendId(), lastServedBackend));
+        }
+
+        // sort is stable, shuffle first to break ties randomly
+        Collections.shuffle(replicas);
+        Collections.sort(replicas, new Comparator<Replica>() {
+            @Override
+            public int compare(Replica r1, Replica r2) {
+                return Double.compare(scores.get(r1), scores.get(r2));
+            }
+        });
+    }
+
+    @Override
+    public TScanRangeLocation choose(long tabletId, List<TScanRangeLocation> locations,
+                                     Map<TNetworkAddress, Long> assignedBytesPerHost) {
+        long lastServedBackend = tabletId < 0 ? -1 : stats.getLastServedBackend(tabletId);
+        double minScore = Double.MAX_VALUE;
+        TScanRangeLocation minLocation = null;
+        for (TScanRangeLocation location : locations) {
+            double score = getScore(location.getBackend_id(), lastServedBackend)
+                    + assignedBytesPerHost.get(location.server);
+            if (score < minScore) {
+                minScore = score;
+                minLocation = location;
+            }
+        }
+        return minLocation;
+    }
+
+    private double getScore(long backendId, long lastServedBackend) {
+        double score = stats.getInFlightFragmentNum(backendId) + stats.getLatencyMs(backendId) / LATENCY_UNIT_MS;
+        if (backendId == lastServedBackend) {
+            score -= AFFINITY_BONUS;
+        }
+        return score;
+    }
+}
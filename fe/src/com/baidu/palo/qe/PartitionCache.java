@@ -0,0 +1,324 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.analysis.Analyzer;
+import com.baidu.palo.analysis.BinaryPredicate;
+import com.baidu.palo.analysis.Expr;
+import com.baidu.palo.analysis.LiteralExpr;
+import com.baidu.palo.analysis.NullLiteral;
+import com.baidu.palo.analysis.QueryStmt;
+import com.baidu.palo.analysis.SelectListItem;
+import com.baidu.palo.analysis.SelectStmt;
+import com.baidu.palo.analysis.SlotRef;
+import com.baidu.palo.catalog.Column;
+import com.baidu.palo.catalog.OlapTable;
+import com.baidu.palo.catalog.PartitionKey;
+import com.baidu.palo.catalog.PartitionType;
+import com.baidu.palo.catalog.RangePartitionInfo;
+import com.baidu.palo.common.AnalysisException;
+import com.baidu.palo.common.Config;
+import com.baidu.palo.common.Pair;
+import com.baidu.palo.mysql.MysqlProto;
+import com.baidu.palo.planner.OlapScanNode;
+import com.baidu.palo.planner.ScanNode;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Cache of query results per partition, enabled by session variable 'enable_partition_cache'.
+ *
+ * A query is eligible if it aggregates a single range partitioned olap table, and the partition column is
+ * a group by column in its select list. Then groups of different partitions never merge, and the result of
+ * the query is the union of results over each partition. So results of partitions whose version is unchanged
+ * are taken from cache, and only the other partitions are scanned. Rows of the fresh result are assigned to
+ * partitions by value of the partition column, and cached with the version of their partition.
+ * Queries with order by, limit or analytic functions are not eligible, for they are not evaluated per group.
+ *
+ * Results are keyed by the query with its range predicates on partition column removed, and partition id.
+ * So a query over a sliding range, e.g. 'dt >= x and dt < y', shares results of partitions with queries
+ * over other ranges. Only results of partitions whose whole range satisfies the removed predicates are cached,
+ * the boundary partitions are always scanned.
+ */
+public class PartitionCache extends BaseCache<PartitionCache.Entry> {
+    private static final Logger LOG = LogManager.getLogger(PartitionCache.class);
+
+    private static final PartitionCache INSTANCE = new PartitionCache();
+
+    static class Entry extends BaseCache.Entry {
+        long version;
+        long versionHash;
+        List<ByteBuffer> rows = Lists.newArrayList();
+    }
+
+    private PartitionCache() {
+        super("partition_cache", Config.partition_cache_size_mb * 1024L * 1024L, 0);
+    }
+
+    public static PartitionCache getInstance() {
+        return INSTANCE;
+    }
+
+    // Return index of partition column in select list if query is eligible, otherwise -1.
+    public static int getPartitionColumnIndex(ConnectContext context, Analyzer analyzer, QueryStmt queryStmt,
+                                              List<ScanNode> scanNodes) {
+        if (!context.getSessionVariable().isEnablePartitionCache()) {
+            return -1;
+        }
+        if (!(queryStmt instanceof SelectStmt) || queryStmt.hasOrderByClause() || queryStmt.hasLimit()) {
+            return -1;
+        }
+        SelectStmt selectStmt = (SelectStmt) queryStmt;
+        if (!selectStmt.hasAggInfo() || selectStmt.hasAnalyticInfo() || selectStmt.getTableRefs().size() != 1) {
+            return -1;
+        }
+        if (scanNodes.size() != 1 || !(scanNodes.get(0) instanceof OlapScanNode)) {
+            return -1;
+        }
+        OlapTable table = ((OlapScanNode) scanNodes.get(0)).getOlapTable();
+        if (table.getPartitionInfo().getType() != PartitionType.RANGE) {
+            return -1;
+        }
+        List<Column> partitionColumns = ((RangePartitionInfo) table.getPartitionInfo()).getPartitionColumns();
+        if (partitionColumns.size() != 1 || analyzer.hasNondeterministicFunction()) {
+            return -1;
+        }
+
+        List<SelectListItem> items = selectStmt.getSelectList().getItems();
+        for (int i = 0; i < items.size(); ++i) {
+            if (items.get(i).isStar() || !(items.get(i).getExpr() instanceof SlotRef)) {
+                continue;
+            }
+            // a column out of aggregate function must be a group by column
+            if (isColumnOf((SlotRef) items.get(i).getExpr(), table, partitionColumns.get(0))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Key of results of an eligible query, which has its range predicates on partition column removed.
+    public static String buildKey(ConnectContext context, SelectStmt selectStmt, OlapTable table) {
+        List<Expr> rangeConjuncts = Lists.newArrayList();
+        for (Pair<Expr, Range<PartitionKey>> conjunct : getPartitionRangeConjuncts(selectStmt, table)) {
+            rangeConjuncts.add(conjunct.first);
+        }
+        return QueryCache.buildKey(context, selectStmt.toSqlWithoutConjuncts(rangeConjuncts));
+    }
+
+    // Return the partitions whose whole range satisfies the range predicates on partition column, results of
+    // the query over them are the same as the ones cached by buildKey().
+    public static Set<Long> getCoveredPartitionIds(SelectStmt selectStmt, OlapTable table,
+                                                   Collection<Long> partitionIds) {
+        Set<Long> coveredPartitionIds = Sets.newHashSet();
+        Range<PartitionKey> range = Range.all();
+        for (Pair<Expr, Range<PartitionKey>> conjunct : getPartitionRangeConjuncts(selectStmt, table)) {
+            if (!range.isConnected(conjunct.second)) {
+                return coveredPartitionIds;
+            }
+            range = range.intersection(conjunct.second);
+        }
+        RangePartitionInfo partitionInfo = (RangePartitionInfo) table.getPartitionInfo();
+        for (Long partitionId : partitionIds) {
+            Range<PartitionKey> partitionRange = partitionInfo.getRange(partitionId);
+            if (partitionRange != null && range.encloses(partitionRange)) {
+                coveredPartitionIds.add(partitionId);
+            }
+        }
+        return coveredPartitionIds;
+    }
+
+    // Comparisons of partition column with a literal in where clause, and the values of column they accept.
+    private static List<Pair<Expr, Range<PartitionKey>>> getPartitionRangeConjuncts(SelectStmt selectStmt,
+                                                                                   OlapTable table) {
+        List<Pair<Expr, Range<PartitionKey>>> rangeConjuncts = Lists.newArrayList();
+        if (selectStmt.getWhereClause() == null) {
+            return rangeConjuncts;
+        }
+        List<Column> partitionColumns = ((RangePartitionInfo) table.getPartitionInfo()).getPartitionColumns();
+        for (Expr conjunct : selectStmt.getWhereClause().getConjuncts()) {
+            if (!(conjunct instanceof BinaryPredicate)) {
+                continue;
+            }
+            BinaryPredicate.Operator op = ((BinaryPredicate) conjunct).getOp();
+            Expr slot = conjunct.getChild(0);
+            Expr value = conjunct.getChild(1);
+            boolean slotIsLeft = slot instanceof SlotRef;
+            if (!slotIsLeft) {
+                slot = conjunct.getChild(1);
+                value = conjunct.getChild(0);
+            }
+            if (!(slot instanceof SlotRef) || !isColumnOf((SlotRef) slot, table, partitionColumns.get(0))
+                    || !(value instanceof LiteralExpr) || value instanceof NullLiteral) {
+                continue;
+            }
+            PartitionKey key;
+            try {
+                key = PartitionKey.createPartitionKey(
+                        Lists.newArrayList(((LiteralExpr) value).getStringValue()), partitionColumns);
+            } catch (AnalysisException e) {
+                LOG.debug("failed to create partition key of {}", value.toSql(), e);
+                continue;
+            }
+            Range<PartitionKey> range;
+            switch (op) {
+                case EQ:
+                    range = Range.singleton(key);
+                    break;
+                case LT:
+                    range = slotIsLeft ? Range.lessThan(key) : Range.greaterThan(key);
+                    break;
+                case LE:
+                    range = slotIsLeft ? Range.atMost(key) : Range.atLeast(key);
+                    break;
+                case GT:
+                    range = slotIsLeft ? Range.greaterThan(key) : Range.lessThan(key);
+                    break;
+                case GE:
+                    range = slotIsLeft ? Range.atLeast(key) : Range.atMost(key);
+                    break;
+                default:
+                    continue;
+            }
+            rangeConjuncts.add(Pair.create(conjunct, range));
+        }
+        return rangeConjuncts;
+    }
+
+    private static boolean isColumnOf(SlotRef slotRef, OlapTable table, Column column) {
+        Column slotColumn = slotRef.getDesc() == null ? null : slotRef.getDesc().getColumn();
+        return slotColumn != null && slotRef.getDesc().getParent().getTable() == table
+                && slotColumn.getName().equalsIgnoreCase(column.getName());
+    }
+
+    // Append cached rows of covered partitions to cachedRows, and return ids of the other partitions, which
+    // are not cached, or have changed version or table schema.
+    public List<Long> get(String key, Map<Long, Pair<Long, Long>> partitionVersions, Set<Long> coveredPartitionIds,
+                          Map<Long, Long> tableSignatures, List<ByteBuffer> cachedRows) {
+        List<Long> missedPartitionIds = Lists.newArrayList();
+        for (Map.Entry<Long, Pair<Long, Long>> partition : partitionVersions.entrySet()) {
+            if (!coveredPartitionIds.contains(partition.getKey())) {
+                missedPartitionIds.add(partition.getKey());
+                continue;
+            }
+            String partitionKey = key + "\n" + partition.getKey();
+            Pair<Long, Long> version = partition.getValue();
+            Entry entry = cache.getIfPresent(partitionKey);
+            if (entry != null && (entry.version != version.first || entry.versionHash != version.second
+                    || entry.isSchemaChanged(tableSignatures))) {
+                cache.invalidate(partitionKey);
+                entry = null;
+            }
+            if (entry == null) {
+                incMissCounter();
+                missedPartitionIds.add(partition.getKey());
+            } else {
+                incHitCounter();
+                cachedRows.addAll(duplicateRows(entry.rows));
+            }
+        }
+        return missedPartitionIds;
+    }
+
+    // Cache rows of a query over given partitions, each row is put into the partition it belongs to.
+    // Rows of partitions out of coveredPartitionIds are not cached.
+    public void put(String key, OlapTable table, int partitionColumnIndex,
+                    Map<Long, Pair<Long, Long>> partitionVersions, Collection<Long> partitionIds,
+                    Set<Long> coveredPartitionIds, Map<Long, Long> tableSignatures, List<ByteBuffer> rows) {
+        Map<Long, Entry> entries = Maps.newHashMap();
+        for (Long partitionId : partitionIds) {
+            if (!coveredPartitionIds.contains(partitionId)) {
+                continue;
+            }
+            Entry entry = new Entry();
+            entry.version = partitionVersions.get(partitionId).first;
+            entry.versionHash = partitionVersions.get(partitionId).second;
+            entry.tableSignatures = tableSignatures;
+            entries.put(partitionId, entry);
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        RangePartitionInfo partitionInfo = (RangePartitionInfo) table.getPartitionInfo();
+        for (ByteBuffer row : rows) {
+            Long rowPartitionId = null;
+            String value = readColumn(row, partitionColumnIndex);
+            try {
+                if (value != null) {
+                    PartitionKey partitionKey = PartitionKey.createPartitionKey(
+                            Lists.newArrayList(value), partitionInfo.getPartitionColumns());
+                    for (Long partitionId : partitionIds) {
+                        Range<PartitionKey> range = partitionInfo.getRange(partitionId);
+                        if (range != null && range.contains(partitionKey)) {
+                            rowPartitionId = partitionId;
+                            break;
+                        }
+                    }
+                }
+            } catch (AnalysisException e) {
+                LOG.debug("failed to get partition of value {}", value, e);
+            }
+            if (rowPartitionId == null) {
+                // null or unexpected value of partition column, do not cache the result
+                return;
+            }
+            Entry entry = entries.get(rowPartitionId);
+            if (entry != null) {
+                entry.rows.add(row);
+                entry.size += row.remaining();
+            }
+        }
+
+        for (Map.Entry<Long, Entry> entry : entries.entrySet()) {
+            cache.put(key + "\n" + entry.getKey(), entry.getValue());
+        }
+    }
+
+    // Read the index-th column of a text protocol result row, return null if it is NULL.
+    static String readColumn(ByteBuffer row, int index) {
+        ByteBuffer buffer = row.duplicate();
+        for (int i = 0; i < index; ++i) {
+            if ((buffer.get(buffer.position()) & 0xFF) == 251) {
+                buffer.get();
+            } else {
+                long length = MysqlProto.readVInt(buffer);
+                buffer.position(buffer.position() + (int) length);
+            }
+        }
+        if ((buffer.get(buffer.position()) & 0xFF) == 251) {
+            return null;
+        }
+        return new String(MysqlProto.readLenEncodedString(buffer), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,505 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.analysis.Analyzer;
+import com.baidu.palo.analysis.BinaryPredicate;
+import com.baidu.palo.analysis.CastExpr;
+import com.baidu.palo.analysis.CompoundPredicate;
+import com.baidu.palo.analysis.Expr;
+import com.baidu.palo.analysis.InPredicate;
+import com.baidu.palo.analysis.IntLiteral;
+import com.baidu.palo.analysis.LiteralExpr;
+import com.baidu.palo.analysis.LiteralParam;
+import com.baidu.palo.analysis.QueryStmt;
+import com.baidu.palo.analysis.SqlParserSymbols;
+import com.baidu.palo.analysis.SqlScanner;
+import com.baidu.palo.analysis.StatementBase;
+import com.baidu.palo.catalog.AccessPrivilege;
+import com.baidu.palo.catalog.Catalog;
+import com.baidu.palo.catalog.Database;
+import com.baidu.palo.catalog.OlapTable;
+import com.baidu.palo.common.AnalysisException;
+import com.baidu.palo.common.Config;
+import com.baidu.palo.common.InternalException;
+import com.baidu.palo.planner.DistributedPlanner;
+import com.baidu.palo.planner.OlapScanNode;
+import com.baidu.palo.planner.PlanFragment;
+import com.baidu.palo.planner.PlanNode;
+import com.baidu.palo.planner.Planner;
+import com.baidu.palo.planner.ScanNode;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java_cup.runtime.Symbol;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * Cache of analyzed and planned queries, keyed by the shape of statement with session state, see buildKey().
+ * A cached plan is reused if the databases and tables it reads are not replaced and their schemas are unchanged,
+ * then only scan ranges are computed again (partition pruning, rollup selection and replica selection), so
+ * new data and partitions are visible. Privilege of user and colocate joins are checked again on each use.
+ * Plan nodes are not thread safe, so a plan is used by one query at a time. If it is in use, the query is
+ * planned as usual.
+ *
+ * Literals are not part of the shape, so statements differing only in constants, such as executions of one
+ * prepared statement, share a plan. A literal token is a parameter of the plan only if all its literals sent to
+ * backend are operands of comparison or IN predicates of plan nodes, and analysis kept it apart from the other
+ * literals (see getRebindableParams()), then its literals are changed to the value of the statement on each use
+ * (see bind()). Other literal tokens are fixed: their values are part of the cache key. Fixed tokens of a shape
+ * are the union of those of its plans, see shapes.
+ */
+public class PlanCache extends BaseCache<PlanCache.Entry> {
+    private static final PlanCache INSTANCE = new PlanCache();
+
+    public static class Entry extends BaseCache.Entry {
+        private StatementBase stmt;
+        private Analyzer analyzer;
+        private Planner planner;
+        // databases and tables read by the plan
+        private Map<String, Database> dbs;
+        private Map<OlapTable, Database> tableDbs = Maps.newIdentityHashMap();
+        private AtomicBoolean inUse = new AtomicBoolean(true);
+        private String cacheKey;
+        // parameter -> index of its literal token in statement
+        private Map<LiteralParam, Integer> params;
+
+        public StatementBase getStmt() {
+            return stmt;
+        }
+
+        public Analyzer getAnalyzer() {
+            return analyzer;
+        }
+
+        public Planner getPlanner() {
+            return planner;
+        }
+
+        public Map<String, Database> getDbs() {
+            return dbs;
+        }
+    }
+
+    // Key of plan: shape of statement with session state, and literal tokens of statement.
+    public static class Key {
+        private final String shape;
+        private final List<Symbol> literals;
+
+        Key(String shape, List<Symbol> literals) {
+            this.shape = shape;
+            this.literals = literals;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public List<Symbol> getLiterals() {
+            return literals;
+        }
+    }
+
+    // shape -> indexes of fixed literal tokens
+    private final Cache<String, ImmutableSortedSet<Integer>> shapes;
+
+    private PlanCache() {
+        super("plan_cache", Config.plan_cache_size, Config.plan_cache_expire_second);
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(Config.plan_cache_size);
+        if (Config.plan_cache_expire_second > 0) {
+            builder.expireAfterAccess(Config.plan_cache_expire_second, TimeUnit.SECONDS);
+        }
+        shapes = builder.build();
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        shapes.invalidateAll();
+    }
+
+    // bounded by number of plans
+    @Override
+    protected int weigh(String key, Entry entry) {
+        return 1;
+    }
+
+    public static PlanCache getInstance() {
+        return INSTANCE;
+    }
+
+    public static boolean isCacheable(StatementBase stmt, Analyzer analyzer, Planner planner) {
+        if (!Config.enable_plan_cache || !(stmt instanceof QueryStmt) || ((QueryStmt) stmt).isExplain()) {
+            return false;
+        }
+        if (planner.getScanNodes().isEmpty()) {
+            return false;
+        }
+        for (ScanNode scanNode : planner.getScanNodes()) {
+            if (!(scanNode instanceof OlapScanNode)) {
+                return false;
+            }
+        }
+        // non-deterministic functions may be folded into constant by analysis
+        return !analyzer.hasNondeterministicFunction();
+    }
+
+    // Create an entry in use by the caller. Return null if key is already cached or tables of plan
+    // can not be found in dbs. Params are those of the literal tokens of statement, created by parser.
+    public Entry put(Key key, StatementBase stmt, Analyzer analyzer, Planner planner, Map<String, Database> dbs,
+                     List<LiteralParam> params) {
+        Entry entry = new Entry();
+        entry.stmt = stmt;
+        entry.analyzer = analyzer;
+        entry.planner = planner;
+        entry.dbs = dbs;
+        for (ScanNode scanNode : planner.getScanNodes()) {
+            OlapTable table = ((OlapScanNode) scanNode).getOlapTable();
+            for (Database db : dbs.values()) {
+                if (db.getTable(table.getId()) == table) {
+                    entry.tableDbs.put(table, db);
+                    entry.tableSignatures.put(table.getId(), getTableSignature(table));
+                    break;
+                }
+            }
+            if (!entry.tableDbs.containsKey(table)) {
+                return null;
+            }
+        }
+
+        // literals sent to backend, and those which can be changed without planning again
+        LiteralExpr.startTrace();
+        Set<LiteralExpr> serialized;
+        try {
+            for (PlanFragment fragment : planner.getFragments()) {
+                fragment.toThrift();
+            }
+        } finally {
+            serialized = LiteralExpr.stopTrace();
+        }
+        Set<LiteralExpr> operands = Sets.newIdentityHashSet();
+        for (PlanFragment fragment : planner.getFragments()) {
+            collectOperands(fragment.getPlanRoot(), operands);
+        }
+        entry.params = getRebindableParams(key.literals, params, serialized, operands);
+
+        SortedSet<Integer> fixed = Sets.newTreeSet();
+        for (int i = 0; i < key.literals.size(); ++i) {
+            fixed.add(i);
+        }
+        fixed.removeAll(entry.params.values());
+        entry.cacheKey = buildCacheKey(key, mergeFixed(key.shape, fixed));
+
+        // keep the existing one, which may be in use
+        if (cache.asMap().putIfAbsent(entry.cacheKey, entry) != null) {
+            return null;
+        }
+        return entry;
+    }
+
+    // Add fixed literal tokens of a plan to those of its shape, and return the result.
+    private ImmutableSortedSet<Integer> mergeFixed(String shape, Collection<Integer> fixed) {
+        while (true) {
+            ImmutableSortedSet<Integer> current = shapes.getIfPresent(shape);
+            if (current == null) {
+                ImmutableSortedSet<Integer> merged = ImmutableSortedSet.copyOf(fixed);
+                if (shapes.asMap().putIfAbsent(shape, merged) == null) {
+                    return merged;
+                }
+                continue;
+            }
+            if (current.containsAll(fixed)) {
+                return current;
+            }
+            ImmutableSortedSet<Integer> merged = ImmutableSortedSet.<Integer>naturalOrder()
+                    .addAll(current).addAll(fixed).build();
+            if (shapes.asMap().replace(shape, current, merged)) {
+                return merged;
+            }
+        }
+    }
+
+    private static String buildCacheKey(Key key, Collection<Integer> fixed) {
+        StringBuilder sb = new StringBuilder(key.shape);
+        for (Integer index : fixed) {
+            String value = String.valueOf(key.literals.get(index).value);
+            sb.append('\n').append(index).append(':').append(value.length()).append(':').append(value);
+        }
+        return sb.toString();
+    }
+
+    // Collect literal operands of comparison and IN predicates in conjuncts of plan tree.
+    private static void collectOperands(PlanNode node, Set<LiteralExpr> operands) {
+        for (Expr conjunct : node.getConjuncts()) {
+            collectOperands(conjunct, operands);
+        }
+        for (PlanNode child : node.getChildren()) {
+            collectOperands(child, operands);
+        }
+    }
+
+    private static void collectOperands(Expr expr, Set<LiteralExpr> operands) {
+        if (expr instanceof CompoundPredicate) {
+            for (Expr child : expr.getChildren()) {
+                collectOperands(child, operands);
+            }
+        } else if (expr instanceof BinaryPredicate || expr instanceof InPredicate) {
+            for (Expr child : expr.getChildren()) {
+                while (child instanceof CastExpr) {
+                    child = child.getChild(0);
+                }
+                if (child instanceof LiteralExpr) {
+                    operands.add((LiteralExpr) child);
+                }
+            }
+        }
+    }
+
+    // Return params which can be bound to other values without planning again, with index of their tokens.
+    // A param can if all its literals sent to backend are operands, it is not of the same value as other literals,
+    // which may be merged with it by analysis, and its token is converted to its literals the same way as the
+    // other tokens will be by bind().
+    static Map<LiteralParam, Integer> getRebindableParams(List<Symbol> tokens, List<LiteralParam> params,
+                                                          Set<LiteralExpr> serialized, Set<LiteralExpr> operands) {
+        Map<String, Integer> positions = Maps.newHashMap();
+        for (int i = 0; i < tokens.size(); ++i) {
+            positions.put(tokens.get(i).left + ":" + tokens.get(i).right, i);
+        }
+        // all literals which may be compared with a param
+        Set<LiteralExpr> allLiterals = Sets.newIdentityHashSet();
+        allLiterals.addAll(serialized);
+        for (LiteralParam param : params) {
+            allLiterals.addAll(param.getLiterals());
+        }
+
+        Map<LiteralParam, Integer> result = Maps.newHashMap();
+        for (LiteralParam param : params) {
+            Integer index = positions.get(param.getLine() + ":" + param.getColumn());
+            if (index != null && isRebindable(param, tokens.get(index), serialized, operands, allLiterals)) {
+                result.put(param, index);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isRebindable(LiteralParam param, Symbol token, Set<LiteralExpr> serialized,
+                                        Set<LiteralExpr> operands, Set<LiteralExpr> allLiterals) {
+        boolean isSerialized = false;
+        for (LiteralExpr literal : param.getLiterals()) {
+            if (serialized.contains(literal)) {
+                if (!operands.contains(literal)) {
+                    return false;
+                }
+                isSerialized = true;
+            }
+        }
+        // folded or used by analysis only
+        if (!isSerialized) {
+            return false;
+        }
+        for (LiteralExpr other : allLiterals) {
+            if (param.getLiterals().contains(other)) {
+                continue;
+            }
+            for (LiteralExpr literal : param.getLiterals()) {
+                if (LiteralParam.isSameValue(literal, other)) {
+                    return false;
+                }
+            }
+        }
+        LiteralExpr value;
+        try {
+            value = param.createLiteralOf(token);
+        } catch (AnalysisException e) {
+            return false;
+        }
+        for (LiteralExpr literal : param.getLiterals()) {
+            LiteralExpr converted = LiteralParam.convert(value, literal);
+            if (converted == null || converted.compareLiteral(literal) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Change literals of params to the values of tokens of the same index. Return false and change nothing if
+    // some token can not be converted to literals of its param as they are, then the plan can not be used.
+    static boolean bindParams(Map<LiteralParam, Integer> params, List<Symbol> tokens) {
+        Map<LiteralExpr, LiteralExpr> values = Maps.newIdentityHashMap();
+        for (Map.Entry<LiteralParam, Integer> param : params.entrySet()) {
+            LiteralExpr value;
+            try {
+                value = param.getKey().createLiteralOf(tokens.get(param.getValue()));
+            } catch (AnalysisException e) {
+                return false;
+            }
+            for (LiteralExpr literal : param.getKey().getLiterals()) {
+                LiteralExpr converted = LiteralParam.convert(value, literal);
+                if (converted == null) {
+                    return false;
+                }
+                values.put(literal, converted);
+            }
+        }
+        for (Map.Entry<LiteralExpr, LiteralExpr> value : values.entrySet()) {
+            value.getKey().copyValue(value.getValue());
+        }
+        return true;
+    }
+
+    // Bind the acquired entry to literals of key. Return false if it can not be used for key.
+    public boolean bind(Entry entry, Key key) {
+        return bindParams(entry.params, key.literals);
+    }
+
+    // Return the cached plan and mark it in use, or null if not cached or in use.
+    // Caller should bind it to literals of key by bind(), and check it by isValid() with read lock of its dbs.
+    public Entry acquire(Key key) {
+        ImmutableSortedSet<Integer> fixed = shapes.getIfPresent(key.shape);
+        Entry entry = fixed == null ? null : cache.getIfPresent(buildCacheKey(key, fixed));
+        if (entry == null || !entry.inUse.compareAndSet(false, true)) {
+            incMissCounter();
+            return null;
+        }
+        incHitCounter();
+        return entry;
+    }
+
+    public void release(Entry entry) {
+        entry.inUse.set(false);
+    }
+
+    // Remove the entry from cache if it is still cached, caller should release it after.
+    public void invalidate(Entry entry) {
+        if (cache.getIfPresent(entry.cacheKey) == entry) {
+            cache.invalidate(entry.cacheKey);
+        }
+    }
+
+    // Session state affecting analysis and planning, and tokens of statement with literals replaced by their
+    // kinds. Type of integer literal depends on its value, and analysis depends on the type, so it is kept.
+    // Return null if statement can not be tokenized, then it is planned as usual.
+    public static Key buildKey(ConnectContext context, String sql) {
+        SessionVariable variable = context.getSessionVariable();
+        StringBuilder sb = new StringBuilder();
+        sb.append(context.getClusterName()).append('\n');
+        sb.append(context.getDatabase()).append('\n');
+        sb.append(variable.getTimeZone()).append('\n');
+        sb.append(variable.getSqlMode()).append('\n');
+        sb.append(variable.isEnableRuntimeFilter()).append('\n');
+        sb.append(variable.getRuntimeFilterMaxInNum()).append('\n');
+        sb.append(variable.isEnableColocateJoin()).append('\n');
+        sb.append(variable.enableSpilling).append('\n');
+
+        List<Symbol> literals = Lists.newArrayList();
+        SqlScanner scanner = new SqlScanner(new StringReader(sql));
+        try {
+            for (Symbol token = scanner.next_token(); token.sym != SqlParserSymbols.EOF;
+                    token = scanner.next_token()) {
+                if (token.sym == SqlParserSymbols.UNMATCHED_STRING_LITERAL
+                        || token.sym == SqlParserSymbols.NUMERIC_OVERFLOW || token.sym == SqlParserSymbols.error) {
+                    return null;
+                }
+                if (LiteralParam.isLiteralToken(token.sym)) {
+                    literals.add(token);
+                    sb.append('?').append(token.sym);
+                    if (token.sym == SqlParserSymbols.INTEGER_LITERAL) {
+                        sb.append(':').append(new IntLiteral((Long) token.value).getType());
+                    }
+                } else {
+                    sb.append(token.sym);
+                    if (token.value != null && !isKeyword(token)) {
+                        String value = token.value.toString();
+                        sb.append(':').append(value.length()).append(':').append(value);
+                    }
+                }
+                sb.append(' ');
+            }
+        } catch (IOException e) {
+            return null;
+        } catch (Error e) {
+            // illegal character
+            return null;
+        }
+        return new Key(sb.toString(), literals);
+    }
+
+    // keywords are case insensitive, and identified by token id
+    private static boolean isKeyword(Symbol token) {
+        return token.sym != SqlParserSymbols.IDENT && token.sym != SqlParserSymbols.COMMENTED_PLAN_HINTS
+                && token.value instanceof String && SqlScanner.isKeyword((String) token.value);
+    }
+
+    // Check the entry is still valid for the query of context, and compute scan ranges of its plan again.
+    // Caller should hold read lock of dbs of the entry.
+    public boolean isValid(Entry entry, ConnectContext context) throws InternalException {
+        Catalog catalog = Catalog.getInstance();
+        for (Map.Entry<String, Database> db : entry.dbs.entrySet()) {
+            if (catalog.getDb(db.getKey()) != db.getValue()) {
+                return false;
+            }
+            if (!catalog.getUserMgr().checkAccess(context.getUser(), db.getKey(), AccessPrivilege.READ_ONLY)) {
+                return false;
+            }
+        }
+        for (Map.Entry<OlapTable, Database> table : entry.tableDbs.entrySet()) {
+            if (table.getValue().getTable(table.getKey().getId()) != table.getKey()
+                    || getTableSignature(table.getKey()) != entry.tableSignatures.get(table.getKey().getId())) {
+                return false;
+            }
+        }
+
+        for (ScanNode scanNode : entry.planner.getScanNodes()) {
+            // literals of conjuncts may be changed by bind()
+            ((OlapScanNode) scanNode).computeColumnFilters(entry.analyzer);
+            ((OlapScanNode) scanNode).refreshScanRanges(entry.analyzer);
+        }
+        // replicas may be moved, or tables may leave their colocate group since planned
+        for (PlanFragment fragment : entry.planner.getFragments()) {
+            if (!fragment.isColocate()) {
+                continue;
+            }
+            List<OlapScanNode> scanNodes = Lists.newArrayList();
+            for (ScanNode scanNode : entry.planner.getScanNodes()) {
+                if (scanNode.getFragment() == fragment) {
+                    scanNodes.add((OlapScanNode) scanNode);
+                }
+            }
+            if (!DistributedPlanner.canColocateScan(scanNodes)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,154 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.analysis.Analyzer;
+import com.baidu.palo.common.Config;
+import com.baidu.palo.common.Pair;
+import com.baidu.palo.common.util.Metrics;
+import com.baidu.palo.planner.OlapScanNode;
+import com.baidu.palo.planner.ScanNode;
+
+import com.google.common.collect.Maps;
+
+import io.dropwizard.metrics.Gauge;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Cache of query results, enabled by session variable 'query_cache_type'.
+ * Key is the normalized sql with the session state affecting its result. An entry also records the committed
+ * version of each partition the query scanned and the schema signature of each table, and is only used when all
+ * of them are unchanged, so schema change or rollup change without new load invalidates it too. Entry with
+ * stale versions is dropped when found, others are evicted in LRU order when total size exceeds query_cache_size_mb.
+ * Only queries over olap tables, without non-deterministic functions (also in views), are cached.
+ */
+public class QueryCache extends BaseCache<QueryCache.Entry> {
+    private static final String ENTRY_NUM_GAUGE_NAME = "query_cache.entry_num";
+
+    private static final QueryCache INSTANCE = new QueryCache();
+
+    static class Entry extends BaseCache.Entry {
+        Map<Long, Pair<Long, Long>> partitionVersions;
+        List<ByteBuffer> rows;
+    }
+
+    private QueryCache() {
+        super("query_cache", Config.query_cache_size_mb * 1024L * 1024L, 0);
+        Metrics.registerGauge(ENTRY_NUM_GAUGE_NAME, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.size();
+            }
+        });
+    }
+
+    public static QueryCache getInstance() {
+        return INSTANCE;
+    }
+
+    public static boolean isCacheable(ConnectContext context, Analyzer analyzer, List<ScanNode> scanNodes) {
+        if (context.getSessionVariable().getQueryCacheType() == 0 || scanNodes.isEmpty()) {
+            return false;
+        }
+        for (ScanNode scanNode : scanNodes) {
+            if (!(scanNode instanceof OlapScanNode)) {
+                return false;
+            }
+        }
+        return !analyzer.hasNondeterministicFunction();
+    }
+
+    public static String buildKey(ConnectContext context, String sql) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(context.getClusterName()).append('\n');
+        sb.append(context.getDatabase()).append('\n');
+        sb.append(context.getSessionVariable().getTimeZone()).append('\n');
+        sb.append(context.getSessionVariable().getSqlMode()).append('\n');
+        sb.append(normalize(sql));
+        return sb.toString();
+    }
+
+    // Collapse whitespaces out of quotes, and remove leading and trailing ones.
+    static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < sql.length(); ++i) {
+            char c = sql.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(c);
+            if (quote == 0) {
+                if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                }
+            } else if (c == '\\' && i + 1 < sql.length()) {
+                sb.append(sql.charAt(++i));
+            } else if (c == quote) {
+                quote = 0;
+            }
+        }
+        return sb.toString();
+    }
+
+    public static Map<Long, Pair<Long, Long>> getPartitionVersions(List<ScanNode> scanNodes) {
+        Map<Long, Pair<Long, Long>> partitionVersions = Maps.newHashMap();
+        for (ScanNode scanNode : scanNodes) {
+            partitionVersions.putAll(((OlapScanNode) scanNode).getScannedPartitionVersions());
+        }
+        return partitionVersions;
+    }
+
+    // Return rows of cached result, or null if not cached, or scanned partitions or schema of tables have changed.
+    public List<ByteBuffer> get(String key, Map<Long, Pair<Long, Long>> partitionVersions,
+                                Map<Long, Long> tableSignatures) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && (!entry.partitionVersions.equals(partitionVersions)
+                || entry.isSchemaChanged(tableSignatures))) {
+            cache.invalidate(key);
+            entry = null;
+        }
+        if (entry == null) {
+            incMissCounter();
+            return null;
+        }
+        incHitCounter();
+        return duplicateRows(entry.rows);
+    }
+
+    public void put(String key, Map<Long, Pair<Long, Long>> partitionVersions, Map<Long, Long> tableSignatures,
+                    List<ByteBuffer> rows, long size) {
+        Entry entry = new Entry();
+        entry.partitionVersions = partitionVersions;
+        entry.tableSignatures = tableSignatures;
+        entry.rows = rows;
+        entry.size = size;
+        cache.put(key, entry);
+    }
+}
@@ -0,0 +1,396 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.catalog.Catalog;
+import com.baidu.palo.catalog.UserResource;
+import com.baidu.palo.common.Config;
+import com.baidu.palo.common.InternalException;
+import com.baidu.palo.common.util.Metrics;
+import com.baidu.palo.planner.AggregationNode;
+import com.baidu.palo.planner.AnalyticEvalNode;
+import com.baidu.palo.planner.CrossJoinNode;
+import com.baidu.palo.planner.DataPartition;
+import com.baidu.palo.planner.ExchangeNode;
+import com.baidu.palo.planner.HashJoinNode;
+import com.baidu.palo.planner.PlanFragment;
+import com.baidu.palo.planner.PlanNode;
+import com.baidu.palo.planner.Planner;
+import com.baidu.palo.planner.ScanNode;
+import com.baidu.palo.planner.SortNode;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import io.dropwizard.metrics.Counter;
+import io.dropwizard.metrics.Gauge;
+import io.dropwizard.metrics.Histogram;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Admission control of queries in this frontend.
+ * A query is admitted if running queries of its user are less than query_queue_max_running_per_user, running
+ * queries of its resource group are less than the limit of the group (query_queue_max_running_low/normal/high),
+ * running queries are less than query_queue_max_running_num, and estimated memory of running queries plus its own
+ * does not exceed query_queue_mem_limit_mb. Otherwise it waits in queue, in arrival order, until
+ * query_queue_timeout_second or it is cancelled. A query waiting for memory blocks queries behind it, so a large
+ * query is not starved by small ones.
+ *
+ * Memory of a query is estimated per fragment instance by cardinality and row size of blocking plan nodes
+ * (aggregation, sort, analytic and build side of join), limited by exec_mem_limit, and multiplied by number of
+ * instances of the fragment. If cardinality is unknown, exec_mem_limit is used.
+ */
+public class QueryQueue {
+    private static final Logger LOG = LogManager.getLogger(QueryQueue.class);
+
+    private static final String WAITING_NUM_GAUGE_NAME = "query_queue.waiting_num";
+    private static final String RUNNING_NUM_GAUGE_NAME = "query_queue.running_num";
+    private static final String WAIT_TIME_HISTOGRAM_NAME = "query_queue.wait_ms";
+    private static final String TIMEOUT_COUNTER_NAME = "query_queue.timeout_count";
+    // memory used by a fragment without blocking nodes, e.g. a scan
+    private static final long MIN_FRAGMENT_MEM_BYTES = 64L * 1024 * 1024;
+
+    private static final QueryQueue INSTANCE = new QueryQueue();
+
+    public static class Token {
+        private String user;
+        private String group;
+        private long memBytes;
+        private long enqueueTimeMs;
+        private boolean admitted = false;
+        private boolean cancelled = false;
+
+        public long getMemBytes() {
+            return memBytes;
+        }
+    }
+
+    // stat of a user or a resource group
+    private static class Stat {
+        int runningNum = 0;
+        int waitingNum = 0;
+        long runningMemBytes = 0;
+    }
+
+    // all fields are protected by lock of this object
+    private final LinkedList<Token> waitingQueue = Lists.newLinkedList();
+    private final Map<String, Stat> userStats = Maps.newHashMap();
+    private final Map<String, Stat> groupStats = Maps.newHashMap();
+    private int runningNum = 0;
+    private long runningMemBytes = 0;
+
+    QueryQueue() {
+        Metrics.registerGauge(WAITING_NUM_GAUGE_NAME, new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                synchronized (QueryQueue.this) {
+                    return waitingQueue.size();
+                }
+            }
+        });
+        Metrics.registerGauge(RUNNING_NUM_GAUGE_NAME, new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                synchronized (QueryQueue.this) {
+                    return runningNum;
+                }
+            }
+        });
+    }
+
+    public static QueryQueue getInstance() {
+        return INSTANCE;
+    }
+
+    // Put query in queue, return the token to wait for by admit(), and to release after query is done.
+    // Return null if admission control is disabled.
+    // The token is returned before waiting, so that the query can be cancelled by cancel() while waiting.
+    public Token enqueue(ConnectContext context, Planner planner) {
+        if (!Config.enable_query_queue) {
+            return null;
+        }
+        int backendNum = Catalog.getCurrentSystemInfo().getBackendIds(true).size();
+        long memBytes = estimateMemBytes(planner, context.getSessionVariable().getMaxExecMemByte(), backendNum);
+        return enqueue(context.getUser(), context.getSessionVariable().getResourceGroup(), memBytes);
+    }
+
+    public synchronized Token enqueue(String user, String group, long memBytes) {
+        Token token = new Token();
+        token.user = user;
+        token.group = group.toLowerCase();
+        token.memBytes = memBytes;
+        token.enqueueTimeMs = System.currentTimeMillis();
+        waitingQueue.add(token);
+        getStat(userStats, token.user).waitingNum++;
+        getStat(groupStats, token.group).waitingNum++;
+        schedule();
+        return token;
+    }
+
+    public void admit(Token token) throws InternalException {
+        admit(token, Config.query_queue_timeout_second * 1000L);
+    }
+
+    // Wait until query of the token is admitted. Throw exception if it times out or is cancelled.
+    public synchronized void admit(Token token, long timeoutMs) throws InternalException {
+        if (token == null) {
+            return;
+        }
+        long deadline = token.enqueueTimeMs + timeoutMs;
+        try {
+            while (!token.admitted && !token.cancelled) {
+                long waitMs = deadline - System.currentTimeMillis();
+                if (waitMs <= 0) {
+                    break;
+                }
+                wait(waitMs);
+            }
+        } catch (InterruptedException e) {
+            LOG.warn("interrupted while waiting in query queue", e);
+            Thread.currentThread().interrupt();
+        }
+
+        if (!token.admitted) {
+            waitingQueue.remove(token);
+            getStat(userStats, token.user).waitingNum--;
+            getStat(groupStats, token.group).waitingNum--;
+            // queries behind may be admitted now
+            schedule();
+            if (token.cancelled) {
+                throw new InternalException("query is cancelled while waiting in queue");
+            }
+            incTimeoutCounter();
+            throw new InternalException("query waits in queue for more than " + timeoutMs / 1000
+                    + " seconds, running queries: " + runningNum + ", waiting queries: " + waitingQueue.size());
+        }
+        Histogram waitTime = (Histogram) Metrics.getMetric(Metrics.MetricType.HISTOGRAM, WAIT_TIME_HISTOGRAM_NAME);
+        if (waitTime != null) {
+            waitTime.update(System.currentTimeMillis() - token.enqueueTimeMs);
+        }
+    }
+
+    // Wake up the query if it is waiting, called by other thread when the query is killed.
+    // Nothing is done if the query is already admitted, which is cancelled by its coordinator.
+    public synchronized void cancel(Token token) {
+        if (token == null || token.admitted) {
+            return;
+        }
+        token.cancelled = true;
+        notifyAll();
+    }
+
+    // Release the token whether it is admitted or not.
+    public synchronized void release(Token token) {
+        if (token == null || !token.admitted) {
+            return;
+        }
+        token.admitted = false;
+        updateRunning(token, -1);
+        schedule();
+    }
+
+    // Type (user or group), Name, Running, Waiting, RunningMemMB
+    public synchronized List<List<String>> getStats() {
+        List<List<String>> rows = Lists.newArrayList();
+        addStatRows("user", userStats, rows);
+        addStatRows("group", groupStats, rows);
+        return rows;
+    }
+
+    private static void addStatRows(String type, Map<String, Stat> stats, List<List<String>> rows) {
+        for (Map.Entry<String, Stat> entry : stats.entrySet()) {
+            List<String> row = Lists.newArrayList();
+            row.add(type);
+            row.add(entry.getKey());
+            row.add(String.valueOf(entry.getValue().runningNum));
+            row.add(String.valueOf(entry.getValue().waitingNum));
+            row.add(String.valueOf(entry.getValue().runningMemBytes / 1024 / 1024));
+            rows.add(row);
+        }
+    }
+
+    // Admit waiting queries in order, stop at the first one blocked by memory.
+    private void schedule() {
+        boolean admitted = false;
+        Iterator<Token> iterator = waitingQueue.iterator();
+        while (iterator.hasNext()) {
+            Token token = iterator.next();
+            if (token.cancelled) {
+                // removed by its own thread
+                continue;
+            }
+            if (Config.query_queue_max_running_num > 0 && runningNum >= Config.query_queue_max_running_num) {
+                break;
+            }
+            if (Config.query_queue_max_running_per_user > 0
+                    && getStat(userStats, token.user).runningNum >= Config.query_queue_max_running_per_user) {
+                continue;
+            }
+            int groupLimit = getGroupMaxRunningNum(token.group);
+            if (groupLimit > 0 && getStat(groupStats, token.group).runningNum >= groupLimit) {
+                continue;
+            }
+            // a query larger than the limit is admitted when nothing is running
+            if (runningNum > 0 && Config.query_queue_mem_limit_mb > 0
+                    && runningMemBytes + token.memBytes > Config.query_queue_mem_limit_mb * 1024L * 1024L) {
+                break;
+            }
+
+            iterator.remove();
+            token.admitted = true;
+            getStat(userStats, token.user).waitingNum--;
+            getStat(groupStats, token.group).waitingNum--;
+            updateRunning(token, 1);
+            admitted = true;
+        }
+        if (admitted) {
+            notifyAll();
+        }
+
+        // do not keep stat of idle users and groups
+        removeIdleStats(userStats);
+        removeIdleStats(groupStats);
+    }
+
+    // Add (delta is 1) or remove (delta is -1) a running query.
+    private void updateRunning(Token token, int delta) {
+        Stat userStat = getStat(userStats, token.user);
+        Stat groupStat = getStat(groupStats, token.group);
+        userStat.runningNum += delta;
+        userStat.runningMemBytes += delta * token.memBytes;
+        groupStat.runningNum += delta;
+        groupStat.runningMemBytes += delta * token.memBytes;
+        runningNum += delta;
+        runningMemBytes += delta * token.memBytes;
+    }
+
+    private static Stat getStat(Map<String, Stat> stats, String name) {
+        Stat stat = stats.get(name);
+        if (stat == null) {
+            stat = new Stat();
+            stats.put(name, stat);
+        }
+        return stat;
+    }
+
+    private static void removeIdleStats(Map<String, Stat> stats) {
+        Iterator<Map.Entry<String, Stat>> iterator = stats.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Stat stat = iterator.next().getValue();
+            if (stat.runningNum == 0 && stat.waitingNum == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // Return 0 if the group is not limited.
+    private static int getGroupMaxRunningNum(String group) {
+        if (group.equals(UserResource.LOW)) {
+            return Config.query_queue_max_running_low;
+        } else if (group.equals(UserResource.NORMAL)) {
+            return Config.query_queue_max_running_normal;
+        } else if (group.equals(UserResource.HIGH)) {
+            return Config.query_queue_max_running_high;
+        }
+        return 0;
+    }
+
+    static long estimateMemBytes(Planner planner, long execMemLimit, int backendNum) {
+        long memBytes = 0;
+        for (PlanFragment fragment : planner.getFragments()) {
+            int instanceNum = getInstanceNum(fragment, backendNum);
+            long instanceMemBytes = estimateInstanceMemBytes(fragment.getPlanRoot(), instanceNum);
+            if (instanceMemBytes < 0 || instanceMemBytes > execMemLimit) {
+                instanceMemBytes = execMemLimit;
+            }
+            instanceMemBytes = Math.max(instanceMemBytes, Math.min(MIN_FRAGMENT_MEM_BYTES, execMemLimit));
+            memBytes += instanceMemBytes * instanceNum;
+        }
+        return memBytes;
+    }
+
+    // Coordinator runs one instance of a fragment on each of its hosts: an unpartitioned fragment runs on one host,
+    // a fragment whose leftmost node is scan runs on hosts of its scan ranges, and others run on hosts of their
+    // leftmost input fragment. Hosts of scan ranges are not chosen yet, so at most one host per scan range is assumed.
+    static int getInstanceNum(PlanFragment fragment, int backendNum) {
+        if (fragment.getDataPartition() == DataPartition.UNPARTITIONED) {
+            return 1;
+        }
+        PlanNode leftmostNode = fragment.getPlanRoot();
+        while (!leftmostNode.getChildren().isEmpty()) {
+            leftmostNode = leftmostNode.getChild(0);
+        }
+        if (leftmostNode instanceof ScanNode) {
+            return Math.max(1, Math.min(leftmostNode.getNumInstances(), backendNum));
+        }
+        return getInstanceNum(fragment.getChild(0), backendNum);
+    }
+
+    // Return -1 if unknown. Children of exchange node belong to other fragments.
+    // Rows of a blocking node are split among instances, except build side of broadcast join, which is sent to
+    // every instance.
+    private static long estimateInstanceMemBytes(PlanNode node, int instanceNum) {
+        if (node instanceof ExchangeNode) {
+            return 0;
+        }
+        PlanNode materializedNode = null;
+        boolean isBroadcast = false;
+        if (node instanceof AggregationNode || node instanceof SortNode || node instanceof AnalyticEvalNode) {
+            materializedNode = node;
+        } else if (node instanceof HashJoinNode) {
+            materializedNode = node.getChild(1);
+            isBroadcast = ((HashJoinNode) node).isBroadcast();
+        } else if (node instanceof CrossJoinNode) {
+            materializedNode = node.getChild(1);
+            isBroadcast = true;
+        }
+
+        long memBytes = 0;
+        if (materializedNode != null) {
+            if (materializedNode.getCardinality() < 0) {
+                return -1;
+            }
+            long nodeMemBytes = (long) (materializedNode.getCardinality() * (double) materializedNode.getAvgRowSize());
+            memBytes += isBroadcast ? nodeMemBytes : nodeMemBytes / instanceNum;
+        }
+        for (PlanNode child : node.getChildren()) {
+            long childMemBytes = estimateInstanceMemBytes(child, instanceNum);
+            if (childMemBytes < 0) {
+                return -1;
+            }
+            memBytes += childMemBytes;
+        }
+        return memBytes;
+    }
+
+    private static void incTimeoutCounter() {
+        Counter counter = (Counter) Metrics.getMetric(Metrics.MetricType.COUNTER, TIMEOUT_COUNTER_NAME);
+        if (counter != null) {
+            counter.inc();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.catalog.Replica;
+import com.baidu.palo.thrift.TNetworkAddress;
+import com.baidu.palo.thrift.TScanRangeLocation;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Decide the order of replicas to read a tablet when planning, and the replica to scan when the coordinator
+ * assigns scan ranges. Policy is chosen by session variable 'replica_selection_policy'.
+ */
+public abstract class ReplicaSelector {
+    public static final String RANDOM = "random";
+    public static final String LOAD_AWARE = "load_aware";
+
+    private static final ReplicaSelector RANDOM_SELECTOR = new RandomReplicaSelector();
+    private static final ReplicaSelector LOAD_AWARE_SELECTOR =
+            new LoadAwareReplicaSelector(BackendLoadStats.getInstance());
+
+    // unknown policy falls back to random
+    public static ReplicaSelector getSelector(String policy) {
+        if (LOAD_AWARE.equalsIgnoreCase(policy)) {
+            return LOAD_AWARE_SELECTOR;
+        }
+        return RANDOM_SELECTOR;
+    }
+
+    // Reorder replicas of tablet in place, the preferred one first.
+    public abstract void order(long tabletId, List<Replica> replicas);
+
+    // Choose the location to scan a range of tablet, tabletId is -1 if it is not an olap scan range.
+    // assignedBytesPerHost contains bytes of ranges of the query already assigned to each location.
+    // By default the one with the fewest assigned bytes is chosen, the first one in order on ties.
+    public TScanRangeLocation choose(long tabletId, List<TScanRangeLocation> locations,
+                                     Map<TNetworkAddress, Long> assignedBytesPerHost) {
+        long minAssignedBytes = Long.MAX_VALUE;
+        TScanRangeLocation minLocation = null;
+        for (TScanRangeLocation location : locations) {
+            long assignedBytes = assignedBytesPerHost.get(location.server);
+            if (assignedBytes < minAssignedBytes) {
+                minAssignedBytes = assignedBytes;
+                minLocation = location;
+            }
+        }
+        return minLocation;
+    }
+}
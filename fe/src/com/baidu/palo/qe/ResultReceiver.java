@@ -20,6 +20,7 @@
 package com.baidu.palo.qe;
 
 import com.baidu.palo.common.ClientPool;
+import com.baidu.palo.common.Config;
 import com.baidu.palo.common.InternalException;
 import com.baidu.palo.common.Status;
 import com.baidu.palo.thrift.BackendService;
@@ -34,16 +35,45 @@ import com.baidu.palo.thrift.TStatusCode;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Fetch result batches from the root fragment.
+ * When a batch is returned, the next one is fetched in background while the caller sends the batch to client,
+ * so network to backend and to client are both kept busy.
+ * Prefetch threads are bounded by result_prefetch_thread_num, there is no waiting queue. If all threads are busy,
+ * the next batch is fetched in the caller thread as if prefetch is disabled.
+ */
 public class ResultReceiver {
     private static final Logger LOG = LogManager.getLogger(ResultReceiver.class);
+    private static final ExecutorService PREFETCH_EXECUTOR = new ThreadPoolExecutor(
+            0, Config.result_prefetch_thread_num, 60L, TimeUnit.SECONDS,
+            new SynchronousQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "result-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
     private boolean isDone    = false;
-    private boolean isCancel  = false;
+    private volatile boolean isCancel  = false;
     private int     packetIdx = 0;
     private int              timeoutMs;
     private TNetworkAddress  rootFragmentAddress;
-    private TFetchDataResult thriftResult;
     private TFetchDataParams thriftParams;
     private Long backendID;
+    // fetching of next batch, null if not started
+    private volatile Future<TFetchDataResult> prefetch;
 
     public ResultReceiver(TPlanFragmentDestination resultSource, 
             Long backendID, int timeoutMs) {
@@ -63,7 +93,7 @@ public class ResultReceiver {
         
         try {
             while (!isDone && !isCancel) {
-                getNextFromRpc();
+                TFetchDataResult thriftResult = takeNext();
                 // check packet num
                 if (packetIdx != thriftResult.packet_num) {
                     status.setStatus("receive packet failed, expect " + packetIdx 
@@ -73,6 +103,9 @@ public class ResultReceiver {
     
                 packetIdx++;
                 isDone = thriftResult.eos;
+                if (!isDone && Config.enable_result_prefetch) {
+                    startPrefetch();
+                }
                 if (thriftResult.result_batch.rows.size() > 0) {
                     return thriftResult.result_batch;
                 }
@@ -96,12 +129,49 @@ public class ResultReceiver {
 
     public void cancel() {
         isCancel = true;
+        Future<TFetchDataResult> pending = prefetch;
+        if (pending != null) {
+            pending.cancel(true);
+        }
+    }
+
+    private void startPrefetch() {
+        try {
+            prefetch = PREFETCH_EXECUTOR.submit(new Callable<TFetchDataResult>() {
+                @Override
+                public TFetchDataResult call() throws Exception {
+                    return getNextFromRpc();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // all prefetch threads are busy, fetch in caller thread
+            LOG.debug("result prefetch is rejected, address={}", rootFragmentAddress);
+        }
+    }
+
+    // Return the prefetched batch, or fetch one if prefetch is not started.
+    private TFetchDataResult takeNext() throws Exception {
+        Future<TFetchDataResult> pending = prefetch;
+        if (pending == null) {
+            return getNextFromRpc();
+        }
+        try {
+            return pending.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        } finally {
+            prefetch = null;
+        }
     }
 
-    void getNextFromRpc() throws Exception {
+    TFetchDataResult getNextFromRpc() throws Exception {
         BackendService.Client client = null;
         TNetworkAddress address = null;
         boolean isReturnToPool = false;
+        TFetchDataResult thriftResult = null;
 
         try {
             // there is no need to retry for read socket
@@ -139,5 +209,6 @@ public class ResultReceiver {
                 throw new InternalException(errMsg);
             }
         }
+        return thriftResult;
     }
 }
@@ -0,0 +1,291 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.common.AnalysisException;
+import com.baidu.palo.mysql.MysqlColType;
+import com.baidu.palo.mysql.MysqlProto;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One statement prepared by COM_STMT_PREPARE, kept in ConnectContext until COM_STMT_CLOSE.
+ *
+ * The statement text is split by '?' placeholders once when preparing. Every COM_STMT_EXECUTE
+ * decodes the binary parameters, renders them as SQL literals and fills them into the template.
+ *
+ * This gives protocol compatibility only, for clients and drivers using server side prepared statements.
+ * The bound statement is parsed, analyzed and planned like a COM_QUERY one. Since parameters are
+ * rendered as literals, executions with different parameters have different statement text and do not
+ * share an entry of plan cache.
+ */
+public class ServerPreparedStmt {
+    private static final int UNSIGNED_FLAG = 0x8000;
+
+    private final int stmtId;
+    private final String originStmt;
+    // statement split by placeholders, size is numParams + 1
+    private final List<String> segments;
+    // parameter types sent by client, client only sends them when they are changed
+    private int[] paramTypes;
+    // data sent by COM_STMT_SEND_LONG_DATA, cleared after execution or COM_STMT_RESET
+    private final Map<Integer, ByteArrayOutputStream> longData = Maps.newHashMap();
+
+    public ServerPreparedStmt(int stmtId, String originStmt) {
+        this.stmtId = stmtId;
+        this.originStmt = originStmt;
+        this.segments = splitByPlaceholder(originStmt);
+    }
+
+    public int getStmtId() {
+        return stmtId;
+    }
+
+    public String getOriginStmt() {
+        return originStmt;
+    }
+
+    public int getNumParams() {
+        return segments.size() - 1;
+    }
+
+    // Statement with NULL in place of all placeholders, used to analyze result columns when preparing.
+    public String getStmtWithNullParams() {
+        return Joiner.on("NULL").join(segments);
+    }
+
+    public void appendLongData(int paramId, byte[] data) {
+        ByteArrayOutputStream out = longData.get(paramId);
+        if (out == null) {
+            out = new ByteArrayOutputStream();
+            longData.put(paramId, out);
+        }
+        out.write(data, 0, data.length);
+    }
+
+    public void reset() {
+        longData.clear();
+    }
+
+    // Bind parameters in COM_STMT_EXECUTE packet, the position of packet is after statement id.
+    // Return the statement to execute.
+    // http://dev.mysql.com/doc/internals/en/com-stmt-execute.html
+    public String bind(ByteBuffer packet) throws AnalysisException {
+        int numParams = getNumParams();
+        if (numParams == 0) {
+            return originStmt;
+        }
+        try {
+            // flags and iteration count, cursor is not supported
+            MysqlProto.readInt1(packet);
+            MysqlProto.readInt4(packet);
+
+            byte[] nullBitmap = MysqlProto.readFixedString(packet, (numParams + 7) / 8);
+            int newParamsBound = MysqlProto.readInt1(packet);
+            if (newParamsBound == 1) {
+                paramTypes = new int[numParams];
+                for (int i = 0; i < numParams; i++) {
+                    paramTypes[i] = MysqlProto.readInt2(packet);
+                }
+            }
+            if (paramTypes == null) {
+                throw new AnalysisException("Incorrect arguments to mysqld_stmt_execute: no parameter types");
+            }
+
+            StringBuilder sb = new StringBuilder(segments.get(0));
+            for (int i = 0; i < numParams; i++) {
+                if (longData.containsKey(i)) {
+                    sb.append(quote(new String(longData.get(i).toByteArray(), "UTF-8")));
+                } else if ((nullBitmap[i / 8] & (1 << (i % 8))) != 0) {
+                    sb.append("NULL");
+                } else {
+                    sb.append(readParam(packet, paramTypes[i]));
+                }
+                sb.append(segments.get(i + 1));
+            }
+            return sb.toString();
+        } catch (UnsupportedEncodingException e) {
+            throw new AnalysisException("Unsupported character set(UTF-8)");
+        } catch (RuntimeException e) {
+            // packet is shorter than what parameters need
+            throw new AnalysisException("Incorrect arguments to mysqld_stmt_execute");
+        } finally {
+            longData.clear();
+        }
+    }
+
+    private static String readParam(ByteBuffer packet, int type)
+            throws UnsupportedEncodingException, AnalysisException {
+        boolean unsigned = (type & UNSIGNED_FLAG) != 0;
+        int code = type & 0xFF;
+        if (code == MysqlColType.MYSQL_TYPE_TINY.getCode()) {
+            byte value = MysqlProto.readByte(packet);
+            return unsigned ? String.valueOf(value & 0xFF) : number(String.valueOf(value));
+        } else if (code == MysqlColType.MYSQL_TYPE_SHORT.getCode()
+                || code == MysqlColType.MYSQL_TYPE_YEAR.getCode()) {
+            int value = MysqlProto.readInt2(packet);
+            return unsigned ? String.valueOf(value) : number(String.valueOf((short) value));
+        } else if (code == MysqlColType.MYSQL_TYPE_LONG.getCode()
+                || code == MysqlColType.MYSQL_TYPE_INT24.getCode()) {
+            int value = MysqlProto.readInt4(packet);
+            return unsigned ? String.valueOf(value & 0xFFFFFFFFL) : number(String.valueOf(value));
+        } else if (code == MysqlColType.MYSQL_TYPE_LONGLONG.getCode()) {
+            long value = MysqlProto.readInt8(packet);
+            return unsigned ? Long.toUnsignedString(value) : number(String.valueOf(value));
+        } else if (code == MysqlColType.MYSQL_TYPE_FLOAT.getCode()) {
+            float value = Float.intBitsToFloat(MysqlProto.readInt4(packet));
+            checkFinite(value);
+            return number(String.valueOf(value));
+        } else if (code == MysqlColType.MYSQL_TYPE_DOUBLE.getCode()) {
+            double value = Double.longBitsToDouble(MysqlProto.readInt8(packet));
+            checkFinite(value);
+            return number(String.valueOf(value));
+        } else if (code == MysqlColType.MYSQL_TYPE_DATE.getCode()
+                || code == MysqlColType.MYSQL_TYPE_DATETIME.getCode()
+                || code == MysqlColType.MYSQL_TYPE_TIMESTAMP.getCode()) {
+            return readDateTime(packet, code == MysqlColType.MYSQL_TYPE_DATE.getCode());
+        } else if (code == MysqlColType.MYSQL_TYPE_TIME.getCode()) {
+            return readTime(packet);
+        } else if (code == MysqlColType.MYSQL_TYPE_NULL.getCode()) {
+            return "NULL";
+        } else {
+            // decimal, string and blob types are all sent as length encoded string
+            return quote(new String(MysqlProto.readLenEncodedString(packet), "UTF-8"));
+        }
+    }
+
+    // Negative number is enclosed in parentheses, otherwise '1-?' becomes '1--1', which starts a comment.
+    private static String number(String value) {
+        return value.startsWith("-") ? "(" + value + ")" : value;
+    }
+
+    // NaN and infinity can not be written as literal
+    private static void checkFinite(double value) throws AnalysisException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new AnalysisException("Incorrect arguments to mysqld_stmt_execute: " + value
+                    + " is not supported");
+        }
+    }
+
+    private static String readDateTime(ByteBuffer packet, boolean isDate) {
+        int len = MysqlProto.readInt1(packet);
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        if (len >= 4) {
+            year = MysqlProto.readInt2(packet);
+            month = MysqlProto.readInt1(packet);
+            day = MysqlProto.readInt1(packet);
+        }
+        if (len >= 7) {
+            hour = MysqlProto.readInt1(packet);
+            minute = MysqlProto.readInt1(packet);
+            second = MysqlProto.readInt1(packet);
+        }
+        if (len >= 11) {
+            // micro second is not supported
+            MysqlProto.readInt4(packet);
+        }
+        if (isDate) {
+            return String.format("'%04d-%02d-%02d'", year, month, day);
+        }
+        return String.format("'%04d-%02d-%02d %02d:%02d:%02d'", year, month, day, hour, minute, second);
+    }
+
+    private static String readTime(ByteBuffer packet) {
+        int len = MysqlProto.readInt1(packet);
+        boolean isNegative = false;
+        long hours = 0;
+        int minute = 0;
+        int second = 0;
+        if (len >= 8) {
+            isNegative = MysqlProto.readInt1(packet) == 1;
+            hours = (MysqlProto.readInt4(packet) & 0xFFFFFFFFL) * 24;
+            hours += MysqlProto.readInt1(packet);
+            minute = MysqlProto.readInt1(packet);
+            second = MysqlProto.readInt1(packet);
+        }
+        if (len >= 12) {
+            MysqlProto.readInt4(packet);
+        }
+        return String.format("'%s%02d:%02d:%02d'", isNegative ? "-" : "", hours, minute, second);
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('\'');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\'' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        sb.append('\'');
+        return sb.toString();
+    }
+
+    // Split statement by '?', placeholders in quoted strings, quoted identifiers and comments are ignored.
+    static List<String> splitByPlaceholder(String stmt) {
+        List<String> segments = Lists.newArrayList();
+        int start = 0;
+        int i = 0;
+        int len = stmt.length();
+        while (i < len) {
+            char c = stmt.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i++;
+                while (i < len && stmt.charAt(i) != c) {
+                    if (stmt.charAt(i) == '\\' && c != '`') {
+                        i++;
+                    }
+                    i++;
+                }
+                i++;
+            } else if (c == '#' || (c == '-' && stmt.startsWith("--", i))) {
+                while (i < len && stmt.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && stmt.startsWith("/*", i)) {
+                int end = stmt.indexOf("*/", i + 2);
+                i = end < 0 ? len : end + 2;
+            } else if (c == '?') {
+                segments.add(stmt.substring(start, i));
+                i++;
+                start = i;
+            } else {
+                i++;
+            }
+        }
+        segments.add(stmt.substring(start));
+        return segments;
+    }
+}
@@ -60,6 +60,11 @@ public class SessionVariable implements Serializable, Writable {
     public static final String SQL_SAFE_UPDATES = "sql_safe_updates";
     public static final String NET_BUFFER_LENGTH = "net_buffer_length";
     public static final String CODEGEN_LEVEL = "codegen_level";
+    public static final String REPLICA_SELECTION_POLICY = "replica_selection_policy";
+    public static final String ENABLE_PARTITION_CACHE = "enable_partition_cache";
+    public static final String ENABLE_RUNTIME_FILTER = "enable_runtime_filter";
+    public static final String RUNTIME_FILTER_MAX_IN_NUM = "runtime_filter_max_in_num";
+    public static final String ENABLE_COLOCATE_JOIN = "enable_colocate_join";
     
     // max memory used on every backend.
     @VariableMgr.VarAttr(name = EXEC_MEM_LIMIT)
@@ -119,6 +124,7 @@ public class SessionVariable implements Serializable, Writable {
     private int autoIncrementIncrement = 1;
 
     // this is used to make c3p0 library happy
+    // if not 0, results of queries are cached in frontend, see QueryCache
     @VariableMgr.VarAttr(name = QUERY_CACHE_TYPE)
     private int queryCacheType = 0;
 
@@ -154,6 +160,26 @@ public class SessionVariable implements Serializable, Writable {
     @VariableMgr.VarAttr(name = CODEGEN_LEVEL)
     private int codegenLevel = 0;    
 
+    // how to choose replicas to scan, 'random' or 'load_aware', see ReplicaSelector
+    @VariableMgr.VarAttr(name = REPLICA_SELECTION_POLICY)
+    private String replicaSelectionPolicy = ReplicaSelector.RANDOM;
+
+    // if true, results of eligible aggregate queries are cached per partition, see PartitionCache
+    @VariableMgr.VarAttr(name = ENABLE_PARTITION_CACHE)
+    private boolean enablePartitionCache = false;
+
+    // if true, planner plans runtime filters of hash joins, see RuntimeFilterGenerator
+    @VariableMgr.VarAttr(name = ENABLE_RUNTIME_FILTER)
+    private boolean enableRuntimeFilter = false;
+
+    // runtime filter is an IN filter if the build side has at most this many rows, otherwise a bloom filter
+    @VariableMgr.VarAttr(name = RUNTIME_FILTER_MAX_IN_NUM)
+    private int runtimeFilterMaxInNum = 1024;
+
+    // if true, join of tables in the same colocate group on their distribution columns is done locally
+    @VariableMgr.VarAttr(name = ENABLE_COLOCATE_JOIN)
+    private boolean enableColocateJoin = true;
+
     public long getMaxExecMemByte() {
         return maxExecMemByte;
     }
@@ -282,6 +308,10 @@ public class SessionVariable implements Serializable, Writable {
         this.queryCacheType = queryCacheType;
     }
 
+    public boolean isEnablePartitionCache() {
+        return enablePartitionCache;
+    }
+
     public int getInteractiveTimeout() {
         return interactiveTimeout;
     }
@@ -366,6 +396,26 @@ public class SessionVariable implements Serializable, Writable {
         this.resourceGroup = resourceGroup;
     }
 
+    public String getReplicaSelectionPolicy() {
+        return replicaSelectionPolicy;
+    }
+
+    public void setReplicaSelectionPolicy(String replicaSelectionPolicy) {
+        this.replicaSelectionPolicy = replicaSelectionPolicy;
+    }
+
+    public boolean isEnableRuntimeFilter() {
+        return enableRuntimeFilter;
+    }
+
+    public int getRuntimeFilterMaxInNum() {
+        return runtimeFilterMaxInNum;
+    }
+
+    public boolean isEnableColocateJoin() {
+        return enableColocateJoin;
+    }
+
    // Serialize to thrift object 
     TQueryOptions toThrift() {
         TQueryOptions tResult = new TQueryOptions();
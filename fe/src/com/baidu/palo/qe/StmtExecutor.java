@@ -27,6 +27,7 @@ import com.baidu.palo.analysis.ExportStmt;
 import com.baidu.palo.analysis.Expr;
 import com.baidu.palo.analysis.InsertStmt;
 import com.baidu.palo.analysis.KillStmt;
+import com.baidu.palo.analysis.LiteralParam;
 import com.baidu.palo.analysis.QueryStmt;
 import com.baidu.palo.analysis.RedirectStatus;
 import com.baidu.palo.analysis.SelectStmt;
@@ -42,20 +43,28 @@ import com.baidu.palo.catalog.Catalog;
 import com.baidu.palo.catalog.Column;
 import com.baidu.palo.catalog.ColumnType;
 import com.baidu.palo.catalog.Database;
+import com.baidu.palo.catalog.OlapTable;
+import com.baidu.palo.catalog.PrimitiveType;
 import com.baidu.palo.catalog.Table.TableType;
 import com.baidu.palo.catalog.Type;
 import com.baidu.palo.common.AnalysisException;
+import com.baidu.palo.common.Config;
 import com.baidu.palo.common.DdlException;
 import com.baidu.palo.common.ErrorCode;
 import com.baidu.palo.common.ErrorReport;
 import com.baidu.palo.common.InternalException;
+import com.baidu.palo.common.Pair;
+import com.baidu.palo.common.util.BucketHistogram;
 import com.baidu.palo.common.util.DebugUtil;
+import com.baidu.palo.common.util.Metrics;
 import com.baidu.palo.common.util.ProfileManager;
 import com.baidu.palo.common.util.RuntimeProfile;
 import com.baidu.palo.common.util.TimeUtils;
-import com.baidu.palo.mysql.MysqlChannel;
+import com.baidu.palo.mysql.MysqlColType;
 import com.baidu.palo.mysql.MysqlEofPacket;
+import com.baidu.palo.mysql.MysqlProto;
 import com.baidu.palo.mysql.MysqlSerializer;
+import com.baidu.palo.planner.OlapScanNode;
 import com.baidu.palo.planner.Planner;
 import com.baidu.palo.rewrite.ExprRewriter;
 import com.baidu.palo.thrift.TExplainLevel;
@@ -63,6 +72,7 @@ import com.baidu.palo.thrift.TQueryOptions;
 import com.baidu.palo.thrift.TResultBatch;
 import com.baidu.palo.thrift.TUniqueId;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
@@ -77,6 +87,7 @@ import java.io.StringReader;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 // Do one COM_QEURY process.
@@ -84,6 +95,11 @@ import java.util.UUID;
 // second: Do handle function for statement.
 public class StmtExecutor {
     private static final Logger LOG = LogManager.getLogger(StmtExecutor.class);
+    // latency of queries and other statements executed by this frontend, including forwarded ones
+    private static final BucketHistogram QUERY_LATENCY_HISTOGRAM = (BucketHistogram) Metrics.getMetric(
+            Metrics.MetricType.BUCKET_HISTOGRAM, "query.latency_ms");
+    private static final BucketHistogram STMT_LATENCY_HISTOGRAM = (BucketHistogram) Metrics.getMetric(
+            Metrics.MetricType.BUCKET_HISTOGRAM, "stmt.latency_ms");
 
     private ConnectContext context;
     private MysqlSerializer serializer;
@@ -94,11 +110,24 @@ public class StmtExecutor {
     private RuntimeProfile profile;
     private RuntimeProfile summaryProfile;
     private volatile Coordinator coord = null;
+    // token of query queue, set before waiting in queue so that the query can be cancelled meanwhile
+    private volatile QueryQueue.Token queueToken = null;
+    private volatile boolean isCancelled = false;
     private MasterOpExecutor masterOpExecutor = null;
     private RedirectStatus redicrtStatus = null;
     private Planner planner;
+    // cached plan used by this statement, released when execution is done
+    private PlanCache.Entry planCacheEntry;
+    // null if plan cache is not used by this statement
+    private PlanCache.Key planCacheKey;
+    // params of literal tokens of parsed statement
+    private List<LiteralParam> literalParams;
     private boolean isProxy;
     private ShowResultSet proxyResultSet = null;
+    // true if result set is sent in binary protocol, used by COM_STMT_EXECUTE
+    private boolean isBinaryProtocol = false;
+    // MySQL types of columns of result set being sent, used to encode binary protocol rows
+    private List<MysqlColType> resultColumnTypes = Lists.newArrayList();
 
     public StmtExecutor(ConnectContext context, String stmt, boolean isProxy) {
         this.context = context;
@@ -111,6 +140,10 @@ public class StmtExecutor {
         this(context, stmt, false);
     }
 
+    public void setIsBinaryProtocol(boolean isBinaryProtocol) {
+        this.isBinaryProtocol = isBinaryProtocol;
+    }
+
     // At the end of query execution, we begin to add up profile
     public void initProfile(long beginTimeInNanoSecond) {
         profile = new RuntimeProfile("Query");
@@ -129,6 +162,9 @@ public class StmtExecutor {
         summaryProfile.addInfoString(ProfileManager.USER, context.getUser());
         summaryProfile.addInfoString(ProfileManager.DEFAULT_DB, context.getDatabase());
         summaryProfile.addInfoString(ProfileManager.SQL_STATEMENT, originStmt);
+        if (planner != null && !planner.getRuntimeFilters().isEmpty()) {
+            summaryProfile.addInfoString("Runtime Filters", Joiner.on(", ").join(planner.getRuntimeFilters()));
+        }
         profile.addChild(summaryProfile);
         if (coord != null) {
             coord.getQueryProfile().getCounterTotalTime().setValue(TimeUtils.getEstimatedTime(beginTimeInNanoSecond));
@@ -263,6 +299,16 @@ public class StmtExecutor {
             if (isRegisterQuery) {
                 QeProcessor.unregisterQuery(context.queryId());
             }
+            if (planCacheEntry != null) {
+                PlanCache.getInstance().release(planCacheEntry);
+                planCacheEntry = null;
+            }
+            long costMs = TimeUtils.getEstimatedTime(beginTimeInNanoSecond) / 1000000;
+            if (parsedStmt instanceof QueryStmt) {
+                QUERY_LATENCY_HISTOGRAM.update(costMs);
+            } else {
+                STMT_LATENCY_HISTOGRAM.update(costMs);
+            }
         }
     }
 
@@ -300,16 +346,139 @@ public class StmtExecutor {
         }
     }
 
+    // Reuse the plan of statement of the same shape if it is cached and valid, only literals and scan ranges are
+    // changed.
+    private boolean usePlanCache() throws AnalysisException {
+        planCacheKey = PlanCache.buildKey(context, originStmt);
+        if (planCacheKey == null) {
+            return false;
+        }
+        PlanCache.Entry entry = PlanCache.getInstance().acquire(planCacheKey);
+        if (entry == null) {
+            return false;
+        }
+        if (!PlanCache.getInstance().bind(entry, planCacheKey)) {
+            PlanCache.getInstance().release(entry);
+            return false;
+        }
+        boolean isAdopted = false;
+        lock(entry.getDbs());
+        try {
+            if (!PlanCache.getInstance().isValid(entry, context)) {
+                PlanCache.getInstance().invalidate(entry);
+                return false;
+            }
+            isAdopted = true;
+        } catch (InternalException e) {
+            throw new AnalysisException(e.getMessage());
+        } finally {
+            unLock(entry.getDbs());
+            // the entry is released when the statement is done if adopted
+            if (!isAdopted) {
+                PlanCache.getInstance().release(entry);
+            }
+        }
+
+        planCacheEntry = entry;
+        parsedStmt = entry.getStmt();
+        redicrtStatus = parsedStmt.getRedirectStatus();
+        analyzer = entry.getAnalyzer();
+        planner = entry.getPlanner();
+        return true;
+    }
+
+    private void cachePlan(Map<String, Database> dbs) {
+        if (planCacheKey == null || !PlanCache.isCacheable(parsedStmt, analyzer, planner)) {
+            return;
+        }
+        lock(dbs);
+        try {
+            planCacheEntry = PlanCache.getInstance().put(planCacheKey, parsedStmt, analyzer, planner, dbs,
+                    literalParams);
+        } finally {
+            unLock(dbs);
+        }
+    }
 
     // Analyze one statement to structure in memory.
     private void analyze() throws AnalysisException {
         LOG.info("the originStmt is ={}", originStmt);
-        // Parse statement with parser generated by CUP&FLEX
+        if (Config.enable_plan_cache && usePlanCache()) {
+            return;
+        }
+        parse();
+
+        if (parsedStmt instanceof QueryStmt
+                || parsedStmt instanceof InsertStmt
+                || parsedStmt instanceof CreateTableAsSelectStmt) {
+            Map<String, Database> dbs = getDbs();
+            if (Config.enable_optimistic_analysis && parsedStmt instanceof QueryStmt) {
+                if (analyzeOptimistically(dbs)) {
+                    cachePlan(dbs);
+                    return;
+                }
+                // some database is modified during analysis, analyze again with lock.
+                // statement is changed by analysis, so it is parsed again.
+                LOG.debug("optimistic analysis failed, analyze with lock. stmt: {}", originStmt);
+                parse();
+                dbs = getDbs();
+            }
+
+            lock(dbs);
+            try {
+                analyzeAndPlan();
+            } finally {
+                unLock(dbs);
+            }
+            cachePlan(dbs);
+        } else {
+            try {
+                parsedStmt.analyze(analyzer);
+            } catch (AnalysisException e) {
+                throw e;
+            } catch (Exception e) {
+                LOG.warn("Analyze failed because ", e);
+                throw new AnalysisException("Internal Error, maybe this is a bug, please contact with Palo RD.");
+            }
+        }
+    }
+
+    // Analyze query statement without executing it, used by COM_STMT_PREPARE to describe result set.
+    // Return false if statement is not a query.
+    public boolean analyzeResultColumns(List<String> colNames, List<PrimitiveType> colTypes)
+            throws AnalysisException {
+        parse();
+        if (!(parsedStmt instanceof QueryStmt) || ((QueryStmt) parsedStmt).isExplain()) {
+            return false;
+        }
+        Map<String, Database> dbs = getDbs();
+        lock(dbs);
+        try {
+            parsedStmt.analyze(analyzer);
+        } catch (AnalysisException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.warn("Analyze failed because ", e);
+            throw new AnalysisException("Internal Error, maybe this is a bug, please contact with Palo RD.");
+        } finally {
+            unLock(dbs);
+        }
+        QueryStmt queryStmt = (QueryStmt) parsedStmt;
+        colNames.addAll(queryStmt.getColLabels());
+        for (Expr expr : queryStmt.getResultExprs()) {
+            colTypes.add(expr.getType().getPrimitiveType());
+        }
+        return true;
+    }
+
+    // Parse statement with parser generated by CUP&FLEX, and create analyzer for it.
+    private void parse() throws AnalysisException {
         SqlScanner input = new SqlScanner(new StringReader(originStmt));
         SqlParser parser = new SqlParser(input);
         try {
             parsedStmt = (StatementBase) parser.parse().value;
             redicrtStatus = parsedStmt.getRedirectStatus();
+            literalParams = parser.getLiteralParams();
         } catch (Error e) {
             LOG.warn("error happens when parsing sql: {}", e);
             throw new AnalysisException("sql parsing error, please check your sql");
@@ -336,102 +505,127 @@ public class StmtExecutor {
                 parsedStmt = selectStmt;
             }
         }
+    }
 
-        if (parsedStmt instanceof QueryStmt
-                || parsedStmt instanceof InsertStmt
-                || parsedStmt instanceof CreateTableAsSelectStmt) {
-            Map<String, Database> dbs = Maps.newTreeMap();
-            QueryStmt queryStmt;
-            if (parsedStmt instanceof QueryStmt) {
-                queryStmt = (QueryStmt) parsedStmt;
-                queryStmt.getDbs(analyzer, dbs);
+    // Get databases referenced by query or insert statement
+    private Map<String, Database> getDbs() throws AnalysisException {
+        Map<String, Database> dbs = Maps.newTreeMap();
+        if (parsedStmt instanceof QueryStmt) {
+            ((QueryStmt) parsedStmt).getDbs(analyzer, dbs);
+        } else {
+            InsertStmt insertStmt;
+            if (parsedStmt instanceof InsertStmt) {
+                insertStmt = (InsertStmt) parsedStmt;
             } else {
-                InsertStmt insertStmt;
-                if (parsedStmt instanceof InsertStmt) {
-                    insertStmt = (InsertStmt) parsedStmt;
-                } else {
-                    insertStmt = ((CreateTableAsSelectStmt) parsedStmt).getInsertStmt();
-                }
-                insertStmt.getDbs(analyzer, dbs);
+                insertStmt = ((CreateTableAsSelectStmt) parsedStmt).getInsertStmt();
             }
+            insertStmt.getDbs(analyzer, dbs);
+        }
+        return dbs;
+    }
 
-            lock(dbs);
-            try {
-                parsedStmt.analyze(analyzer);
-                if (parsedStmt instanceof QueryStmt) {
-                    QueryStmt queryStmt1 = (QueryStmt)parsedStmt;
-                    boolean isExplain = ((QueryStmt) parsedStmt).isExplain();
-                    // Apply expr and subquery rewrites.
-                    boolean reAnalyze = false;
-
-                    ExprRewriter rewriter = analyzer.getExprRewriter();
-                    rewriter.reset();
-                    queryStmt1.rewriteExprs(rewriter);
-                    reAnalyze = rewriter.changed();
-                    if (analyzer.containSubquery()) {
-                        StmtRewriter.rewrite(analyzer, parsedStmt);
-                        reAnalyze = true;
-                    }
+    // Analyze and plan without locking databases, like StampedLock's optimistic read.
+    // Return false if any database is modified during analysis, the result should be discarded.
+    private boolean analyzeOptimistically(Map<String, Database> dbs) throws AnalysisException {
+        Map<Database, Long> stamps = Maps.newHashMap();
+        for (Database db : dbs.values()) {
+            long stamp = db.tryOptimisticRead();
+            if (stamp == 0) {
+                // db is being written
+                return false;
+            }
+            stamps.put(db, stamp);
+        }
 
-                    if (reAnalyze) {
-                        // The rewrites should have no user-visible effect. Remember the original result
-                        // types and column labels to restore them after the rewritten stmt has been
-                        // reset() and re-analyzed.
-                        List<Type> origResultTypes = Lists.newArrayList();
-                        for (Expr e: queryStmt1.getResultExprs()) {
-                            origResultTypes.add(e.getType());
-                        }
-                        List<String> origColLabels =
-                                Lists.newArrayList(queryStmt1.getColLabels());
-
-                        // Re-analyze the stmt with a new analyzer.
-                        analyzer = new Analyzer(context.getCatalog(), context);
-                        parsedStmt.reset();
-                        parsedStmt.analyze(analyzer);
-
-                        // Restore the original result types and column labels.
-                        queryStmt1.castResultExprs(origResultTypes);
-                        queryStmt1.setColLabels(origColLabels);
-                        if (LOG.isTraceEnabled()) {
-                            LOG.trace("rewrittenStmt: " + parsedStmt.toSql());
-                        }
-                        if (isExplain) parsedStmt.setIsExplain(isExplain);
-                    }
+        try {
+            analyzeAndPlan();
+        } catch (AnalysisException e) {
+            // error may be caused by concurrent modification
+            if (validate(stamps)) {
+                throw e;
+            }
+            return false;
+        }
+        return validate(stamps);
+    }
+
+    private boolean validate(Map<Database, Long> stamps) {
+        for (Map.Entry<Database, Long> entry : stamps.entrySet()) {
+            if (!entry.getKey().validate(entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Analyze and plan query or insert statement, referenced databases should be locked or validated by caller.
+    private void analyzeAndPlan() throws AnalysisException {
+        try {
+            parsedStmt.analyze(analyzer);
+            if (parsedStmt instanceof QueryStmt) {
+                QueryStmt queryStmt1 = (QueryStmt)parsedStmt;
+                boolean isExplain = ((QueryStmt) parsedStmt).isExplain();
+                // Apply expr and subquery rewrites.
+                boolean reAnalyze = false;
+
+                ExprRewriter rewriter = analyzer.getExprRewriter();
+                rewriter.reset();
+                queryStmt1.rewriteExprs(rewriter);
+                reAnalyze = rewriter.changed();
+                if (analyzer.containSubquery()) {
+                    StmtRewriter.rewrite(analyzer, parsedStmt);
+                    reAnalyze = true;
                 }
-                // create plan
-                planner = new Planner();
-                if (parsedStmt instanceof QueryStmt || parsedStmt instanceof InsertStmt) {
-                    planner.plan(parsedStmt, analyzer, new TQueryOptions());
-                } else {
-                    planner.plan(((CreateTableAsSelectStmt) parsedStmt).getInsertStmt(),
-                            analyzer, new TQueryOptions());
+
+                if (reAnalyze) {
+                    // The rewrites should have no user-visible effect. Remember the original result
+                    // types and column labels to restore them after the rewritten stmt has been
+                    // reset() and re-analyzed.
+                    List<Type> origResultTypes = Lists.newArrayList();
+                    for (Expr e: queryStmt1.getResultExprs()) {
+                        origResultTypes.add(e.getType());
+                    }
+                    List<String> origColLabels =
+                            Lists.newArrayList(queryStmt1.getColLabels());
+
+                    // Re-analyze the stmt with a new analyzer.
+                    analyzer = new Analyzer(context.getCatalog(), context);
+                    parsedStmt.reset();
+                    parsedStmt.analyze(analyzer);
+
+                    // Restore the original result types and column labels.
+                    queryStmt1.castResultExprs(origResultTypes);
+                    queryStmt1.setColLabels(origColLabels);
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace("rewrittenStmt: " + parsedStmt.toSql());
+                    }
+                    if (isExplain) parsedStmt.setIsExplain(isExplain);
                 }
-                // TODO(zc):
-                // Preconditions.checkState(!analyzer.hasUnassignedConjuncts());
-            } catch (AnalysisException e) {
-                throw e;
-            } catch (InternalException e) {
-                throw new AnalysisException(e.getMessage());
-            } catch (Exception e) {
-                LOG.warn("Analyze failed because ", e);
-                throw new AnalysisException("Internal Error, maybe this is a bug, please contact with Palo RD.");
-            } finally {
-                unLock(dbs);
             }
-        } else {
-            try {
-                parsedStmt.analyze(analyzer);
-            } catch (AnalysisException e) {
-                throw e;
-            } catch (Exception e) {
-                LOG.warn("Analyze failed because ", e);
-                throw new AnalysisException("Internal Error, maybe this is a bug, please contact with Palo RD.");
+            // create plan
+            planner = new Planner();
+            if (parsedStmt instanceof QueryStmt || parsedStmt instanceof InsertStmt) {
+                planner.plan(parsedStmt, analyzer, new TQueryOptions());
+            } else {
+                planner.plan(((CreateTableAsSelectStmt) parsedStmt).getInsertStmt(),
+                        analyzer, new TQueryOptions());
             }
+            // TODO(zc):
+            // Preconditions.checkState(!analyzer.hasUnassignedConjuncts());
+        } catch (AnalysisException e) {
+            throw e;
+        } catch (InternalException e) {
+            throw new AnalysisException(e.getMessage());
+        } catch (Exception e) {
+            LOG.warn("Analyze failed because ", e);
+            throw new AnalysisException("Internal Error, maybe this is a bug, please contact with Palo RD.");
         }
     }
 
     // Because this is called by other thread
     public void cancel() {
+        isCancelled = true;
+        QueryQueue.getInstance().cancel(queueToken);
         Coordinator coordRef = coord;
         if (coordRef != null) {
             coordRef.cancel();
@@ -489,6 +683,49 @@ public class StmtExecutor {
             handleExplainStmt(explainString);
             return;
         }
+
+        String cacheKey = null;
+        Map<Long, Pair<Long, Long>> partitionVersions = null;
+        Map<Long, Long> tableSignatures = null;
+        if (QueryCache.isCacheable(context, analyzer, planner.getScanNodes())) {
+            cacheKey = QueryCache.buildKey(context, originStmt);
+            partitionVersions = QueryCache.getPartitionVersions(planner.getScanNodes());
+            tableSignatures = QueryCache.getTableSignatures(planner.getScanNodes());
+            List<ByteBuffer> cachedRows = QueryCache.getInstance().get(cacheKey, partitionVersions, tableSignatures);
+            if (cachedRows != null) {
+                sendFields(queryStmt.getColLabels(), queryStmt.getResultExprs());
+                sendResultRows(cachedRows);
+                context.updateReturnRows(cachedRows.size());
+                context.getState().setEof();
+                return;
+            }
+        }
+
+        queueToken = QueryQueue.getInstance().enqueue(context, planner);
+        try {
+            // cancel() may be called before the token is set
+            if (isCancelled) {
+                QueryQueue.getInstance().cancel(queueToken);
+            }
+            QueryQueue.getInstance().admit(queueToken);
+            int partitionColumnIndex = PartitionCache.getPartitionColumnIndex(context, analyzer, queryStmt,
+                    planner.getScanNodes());
+            if (partitionColumnIndex >= 0) {
+                handlePartitionCachedQuery(queryStmt, (OlapScanNode) planner.getScanNodes().get(0),
+                        partitionColumnIndex);
+            } else {
+                execQueryAndSendResult(queryStmt, cacheKey, partitionVersions, tableSignatures);
+            }
+        } finally {
+            QueryQueue.getInstance().release(queueToken);
+            queueToken = null;
+        }
+    }
+
+    // Query backends and send result to client, and put result to query cache if cacheKey is not null.
+    private void execQueryAndSendResult(QueryStmt queryStmt, String cacheKey,
+                                        Map<Long, Pair<Long, Long>> partitionVersions,
+                                        Map<Long, Long> tableSignatures) throws Exception {
         coord = new Coordinator(context, analyzer, planner);
 
         QeProcessor.registerQuery(context.queryId(), coord);
@@ -500,23 +737,89 @@ public class StmtExecutor {
 
         // send result
         TResultBatch batch;
-        MysqlChannel channel = context.getMysqlChannel();
         boolean isSendFields = false;
+        // copy of sent rows to put in query cache, null if not cacheable or too large
+        List<ByteBuffer> cacheRows = cacheKey == null ? null : Lists.<ByteBuffer>newArrayList();
+        long cacheSize = 0;
         while ((batch = coord.getNext()) != null) {
             if (!isSendFields) {
                 sendFields(queryStmt.getColLabels(), queryStmt.getResultExprs());
             }
             isSendFields = true;
 
-            for (ByteBuffer row : batch.getRows()) {
-                channel.sendOnePacket(row);
+            if (cacheRows != null) {
+                cacheSize += QueryCache.copyRows(batch.getRows(), cacheRows);
+                if (cacheSize > Config.query_cache_max_entry_size_kb * 1024L) {
+                    cacheRows = null;
+                }
             }
+            sendResultRows(batch.getRows());
             context.updateReturnRows(batch.getRows().size());
         }
 
         if (!isSendFields) {
             sendFields(queryStmt.getColLabels(), queryStmt.getResultExprs());
         }
+        if (cacheRows != null) {
+            QueryCache.getInstance().put(cacheKey, partitionVersions, tableSignatures, cacheRows, cacheSize);
+        }
+        context.getState().setEof();
+    }
+
+    // Take results of unchanged partitions from partition cache, and only query the other partitions.
+    private void handlePartitionCachedQuery(QueryStmt queryStmt, OlapScanNode scanNode, int partitionColumnIndex)
+            throws Exception {
+        PartitionCache cache = PartitionCache.getInstance();
+        SelectStmt selectStmt = (SelectStmt) queryStmt;
+        OlapTable table = scanNode.getOlapTable();
+        String cacheKey = PartitionCache.buildKey(context, selectStmt, table);
+        Map<Long, Pair<Long, Long>> partitionVersions = scanNode.getScannedPartitionVersions();
+        Set<Long> coveredPartitionIds = PartitionCache.getCoveredPartitionIds(selectStmt, table,
+                partitionVersions.keySet());
+        Map<Long, Long> tableSignatures = PartitionCache.getTableSignatures(planner.getScanNodes());
+        List<ByteBuffer> cachedRows = Lists.newArrayList();
+        List<Long> missedPartitionIds = cache.get(cacheKey, partitionVersions, coveredPartitionIds,
+                tableSignatures, cachedRows);
+
+        boolean isSendFields = false;
+        List<ByteBuffer> freshRows = null;
+        if (!missedPartitionIds.isEmpty()) {
+            scanNode.retainPartitions(missedPartitionIds);
+            coord = new Coordinator(context, analyzer, planner);
+            QeProcessor.registerQuery(context.queryId(), coord);
+            isRegisterQuery = true;
+            coord.exec();
+
+            freshRows = Lists.newArrayList();
+            long freshSize = 0;
+            TResultBatch batch;
+            while ((batch = coord.getNext()) != null) {
+                if (!isSendFields) {
+                    sendFields(queryStmt.getColLabels(), queryStmt.getResultExprs());
+                    sendResultRows(cachedRows);
+                }
+                isSendFields = true;
+
+                if (freshRows != null) {
+                    freshSize += QueryCache.copyRows(batch.getRows(), freshRows);
+                    if (freshSize > Config.query_cache_max_entry_size_kb * 1024L) {
+                        freshRows = null;
+                    }
+                }
+                sendResultRows(batch.getRows());
+                context.updateReturnRows(batch.getRows().size());
+            }
+        }
+
+        if (!isSendFields) {
+            sendFields(queryStmt.getColLabels(), queryStmt.getResultExprs());
+            sendResultRows(cachedRows);
+        }
+        context.updateReturnRows(cachedRows.size());
+        if (freshRows != null) {
+            cache.put(cacheKey, table, partitionColumnIndex, partitionVersions, missedPartitionIds,
+                    coveredPartitionIds, tableSignatures, freshRows);
+        }
         context.getState().setEof();
     }
 
@@ -607,11 +910,16 @@ public class StmtExecutor {
         serializer.writeVInt(metaData.getColumnCount());
         context.getMysqlChannel().sendOnePacket(serializer.toByteBuffer());
         // send field one by one
+        resultColumnTypes.clear();
         for (Column col : metaData.getColumns()) {
             serializer.reset();
             // TODO(zhaochun): only support varchar type
-            serializer.writeField(col.getName(), col.getColumnType().getType());
+            // Values of show result are made by FE and may not match declared types, such as empty string
+            // in an integer column, so they are declared as string in binary protocol.
+            PrimitiveType type = isBinaryProtocol ? PrimitiveType.VARCHAR : col.getColumnType().getType();
+            serializer.writeField(col.getName(), type);
             context.getMysqlChannel().sendOnePacket(serializer.toByteBuffer());
+            resultColumnTypes.add(type.toMysqlType());
         }
         // send EOF
         serializer.reset();
@@ -626,10 +934,13 @@ public class StmtExecutor {
         serializer.writeVInt(colNames.size());
         context.getMysqlChannel().sendOnePacket(serializer.toByteBuffer());
         // send field one by one
+        resultColumnTypes.clear();
         for (int i = 0; i < colNames.size(); ++i) {
             serializer.reset();
-            serializer.writeField(colNames.get(i), exprs.get(i).getType().getPrimitiveType());
+            PrimitiveType type = exprs.get(i).getType().getPrimitiveType();
+            serializer.writeField(colNames.get(i), type);
             context.getMysqlChannel().sendOnePacket(serializer.toByteBuffer());
+            resultColumnTypes.add(type.toMysqlType());
         }
         // send EOF
         serializer.reset();
@@ -638,6 +949,26 @@ public class StmtExecutor {
         context.getMysqlChannel().sendOnePacket(serializer.toByteBuffer());
     }
 
+    // Send one text protocol row, it is converted to binary protocol row if needed.
+    private void sendResultRow(ByteBuffer row) throws IOException {
+        if (isBinaryProtocol) {
+            row = MysqlProto.toBinaryRow(row, resultColumnTypes);
+        }
+        context.getMysqlChannel().sendOnePacket(row);
+    }
+
+    // Send text protocol rows of one batch together, see MysqlChannel.sendPackets()
+    private void sendResultRows(List<ByteBuffer> rows) throws IOException {
+        if (isBinaryProtocol) {
+            List<ByteBuffer> binaryRows = Lists.newArrayListWithCapacity(rows.size());
+            for (ByteBuffer row : rows) {
+                binaryRows.add(MysqlProto.toBinaryRow(row, resultColumnTypes));
+            }
+            rows = binaryRows;
+        }
+        context.getMysqlChannel().sendPackets(rows);
+    }
+
     public void sendShowResult(ShowResultSet resultSet) throws IOException {
         // Send meta data.
         sendMetaData(resultSet.getMetaData());
@@ -652,7 +983,7 @@ public class StmtExecutor {
                     serializer.writeLenEncodedString(item);
                 }
             }
-            context.getMysqlChannel().sendOnePacket(serializer.toByteBuffer());
+            sendResultRow(serializer.toByteBuffer());
         }
 
         context.getState().setEof();
@@ -684,7 +1015,7 @@ public class StmtExecutor {
         for (String item : result.split("\n")) {
             serializer.reset();
             serializer.writeLenEncodedString(item);
-            context.getMysqlChannel().sendOnePacket(serializer.toByteBuffer());
+            sendResultRow(serializer.toByteBuffer());
         }
         context.getState().setEof();
     }
@@ -35,7 +35,9 @@ import com.baidu.palo.common.DdlException;
 import com.baidu.palo.common.PatternMatcher;
 import com.baidu.palo.load.MiniEtlTaskInfo;
 import com.baidu.palo.load.EtlStatus;
+import com.baidu.palo.load.LoadChecker;
 import com.baidu.palo.load.LoadJob;
+import com.baidu.palo.load.LoadJob.JobState;
 import com.baidu.palo.master.MasterImpl;
 import com.baidu.palo.mysql.MysqlPassword;
 import com.baidu.palo.qe.AuditBuilder;
@@ -396,6 +398,8 @@ public class FrontendServiceImpl implements FrontendService.Iface {
             if (statusResult.isSetFile_map()) {
                 taskStatus.setFileMap(statusResult.getFile_map());
             }
+            // let etl checker update job etl status at once
+            LoadChecker.notifyJobReady(JobState.ETL, jobId);
         }
         return result;
     }
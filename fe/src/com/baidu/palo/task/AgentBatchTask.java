@@ -29,6 +29,8 @@ import org.apache.logging.log4j.LogManager;
 
 import com.baidu.palo.catalog.Catalog;
 import com.baidu.palo.common.ClientPool;
+import com.baidu.palo.common.util.BucketHistogram;
+import com.baidu.palo.common.util.Metrics;
 import com.baidu.palo.system.Backend;
 import com.baidu.palo.thrift.BackendService;
 import com.baidu.palo.thrift.TAgentServiceVersion;
@@ -54,6 +56,11 @@ import com.baidu.palo.thrift.TUploadReq;
  */
 public class AgentBatchTask implements Runnable {
     private static final Logger LOG = LogManager.getLogger(AgentBatchTask.class);
+    // latency of submit_tasks rpcs, and number of tasks in each of them
+    private static final BucketHistogram SUBMIT_RPC_HISTOGRAM = (BucketHistogram) Metrics.getMetric(
+            Metrics.MetricType.BUCKET_HISTOGRAM, "agent_task.submit_rpc_ms");
+    private static final BucketHistogram SUBMIT_TASK_NUM_HISTOGRAM = (BucketHistogram) Metrics.getMetric(
+            Metrics.MetricType.BUCKET_HISTOGRAM, "agent_task.submit_task_num");
 
     // backendId -> AgentTask List
     private Map<Long, List<AgentTask>> backendIdToTasks;
@@ -118,7 +125,10 @@ public class AgentBatchTask implements Runnable {
                 for (AgentTask task : tasks) {
                     agentTaskRequests.add(toAgentTaskRequest(task));
                 }
+                long rpcStartTime = System.currentTimeMillis();
                 client.submit_tasks(agentTaskRequests);
+                SUBMIT_RPC_HISTOGRAM.update(System.currentTimeMillis() - rpcStartTime);
+                SUBMIT_TASK_NUM_HISTOGRAM.update(agentTaskRequests.size());
 
                 if (LOG.isDebugEnabled()) {
                     for (AgentTask task : tasks) {
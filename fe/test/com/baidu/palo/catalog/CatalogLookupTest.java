@@ -0,0 +1,367 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.catalog;
+
+import com.baidu.palo.catalog.MaterializedIndex.IndexState;
+import com.baidu.palo.cluster.Cluster;
+import com.baidu.palo.persist.TableInfo;
+
+import com.google.common.collect.ForwardingMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Db and table maps are read without catalog or db lock. Lookups must not wait for a writer holding the lock,
+ * and must find an object by id whenever it is found by name, and by one of its names while it is renamed.
+ */
+public class CatalogLookupTest {
+    private static final String CLUSTER_NAME = "testCluster";
+    private static final long TIMEOUT_MS = 5000L;
+
+    private Catalog catalog;
+    private Map<Long, Database> idToDb;
+    private Map<String, Database> nameToDb;
+    private ExecutorService executor;
+    // violations of the order of map updates, recorded by checked maps
+    private List<String> violations;
+
+    @Before
+    public void setUp() throws Exception {
+        catalog = Catalog.getInstance();
+        catalog.clear();
+        catalog.addCluster(new Cluster(CLUSTER_NAME, 1L));
+        idToDb = getField(catalog, "idToDb");
+        nameToDb = getField(catalog, "nameToDb");
+        executor = Executors.newCachedThreadPool();
+        violations = Collections.synchronizedList(Lists.<String>newArrayList());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        setField(catalog, "idToDb", idToDb);
+        setField(catalog, "nameToDb", nameToDb);
+        catalog.clear();
+    }
+
+    @Test
+    public void testDbLookupWhileCatalogLocked() throws Exception {
+        final Database db = createDb(10000L, "db1");
+        catalog.replayCreateDb(db);
+
+        ReentrantReadWriteLock lock = getField(catalog, "lock");
+        lock.writeLock().lock();
+        try {
+            Future<Boolean> lookup = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return catalog.getDb(db.getName()) == db && catalog.getDb(db.getId()) == db
+                            && catalog.getDbNames().contains(db.getName())
+                            && catalog.getDbIds().contains(db.getId());
+                }
+            });
+            Assert.assertTrue(lookup.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Test
+    public void testTableLookupWhileDbLocked() throws Exception {
+        final Database db = createDb(10000L, "db1");
+        catalog.replayCreateDb(db);
+        final OlapTable table = createTable(20000L, "table1");
+        db.createTable(table);
+
+        db.writeLock();
+        try {
+            Future<Boolean> lookup = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return catalog.getDb(db.getId()) == db && db.getTable("table1") == table
+                            && db.getTable(table.getId()) == table;
+                }
+            });
+            Assert.assertTrue(lookup.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        } finally {
+            db.writeUnlock();
+        }
+    }
+
+    @Test
+    public void testDbMapsOrder() throws Exception {
+        installCheckedDbMaps();
+
+        Database db = createDb(10000L, "db1");
+        catalog.replayCreateDb(db);
+        Assert.assertSame(db, catalog.getDb(db.getName()));
+
+        catalog.replayRenameDatabase(db.getName(), fullName("db2"));
+        Assert.assertSame(db, catalog.getDb(fullName("db2")));
+        Assert.assertNull(catalog.getDb(fullName("db1")));
+        Assert.assertSame(db, catalog.getDb(db.getId()));
+
+        catalog.replayDropDb(fullName("db2"));
+        Assert.assertNull(catalog.getDb(fullName("db2")));
+        Assert.assertNull(catalog.getDb(db.getId()));
+
+        Assert.assertEquals(Collections.emptyList(), violations);
+    }
+
+    @Test
+    public void testTableMapsOrder() throws Exception {
+        Database db = createDb(10000L, "db1");
+        catalog.replayCreateDb(db);
+        installCheckedTableMaps(db);
+
+        OlapTable table = createTable(20000L, "table1");
+        db.createTableWithLock(table, true, false);
+        Assert.assertSame(table, db.getTable("table1"));
+
+        catalog.replayRenameTable(TableInfo.createForTableRename(db.getId(), table.getId(), "table2"));
+        Assert.assertSame(table, db.getTable("table2"));
+        Assert.assertNull(db.getTable("table1"));
+        Assert.assertSame(table, db.getTable(table.getId()));
+
+        db.dropTableWithLock("table2");
+        Assert.assertNull(db.getTable("table2"));
+        Assert.assertNull(db.getTable(table.getId()));
+
+        Assert.assertEquals(Collections.emptyList(), violations);
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        installCheckedDbMaps();
+        final Database db = createDb(10000L, "db");
+        catalog.replayCreateDb(db);
+        installCheckedTableMaps(db);
+
+        final AtomicBoolean isDone = new AtomicBoolean(false);
+        List<Future<?>> readers = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            readers.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    while (!isDone.get()) {
+                        for (String name : catalog.getDbNames()) {
+                            catalog.getDb(name);
+                        }
+                        for (Long id : catalog.getDbIds()) {
+                            catalog.getDb(id);
+                        }
+                        db.getTable("tmp_table");
+                        db.getTable("tmp_table_renamed");
+                        for (Table table : db.getTables()) {
+                            db.getTable(table.getId());
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (int i = 0; i < 200; i++) {
+                Database tmpDb = createDb(30000L + i, "tmp_db");
+                catalog.replayCreateDb(tmpDb);
+                catalog.replayRenameDatabase(fullName("tmp_db"), fullName("tmp_db_renamed"));
+                catalog.replayDropDb(fullName("tmp_db_renamed"));
+
+                OlapTable table = createTable(40000L + i, "tmp_table");
+                db.createTableWithLock(table, true, false);
+                catalog.replayRenameTable(TableInfo.createForTableRename(db.getId(), table.getId(),
+                                                                         "tmp_table_renamed"));
+                db.dropTableWithLock("tmp_table_renamed");
+            }
+        } finally {
+            isDone.set(true);
+        }
+        for (Future<?> reader : readers) {
+            reader.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+
+        Assert.assertEquals(Collections.emptyList(), violations);
+        Assert.assertEquals(Lists.newArrayList(db.getId()), catalog.getDbIds());
+        Assert.assertEquals(Lists.newArrayList(db.getName()), catalog.getDbNames());
+        Assert.assertTrue(db.getTables().isEmpty());
+    }
+
+    private void installCheckedDbMaps() throws Exception {
+        Map<Long, Database> idMap = Maps.newConcurrentMap();
+        Map<String, Database> nameMap = Maps.newConcurrentMap();
+        idMap.putAll(idToDb);
+        nameMap.putAll(nameToDb);
+        setField(catalog, "idToDb", new CheckedIdMap<Database>(idMap, nameMap));
+        setField(catalog, "nameToDb", new CheckedNameMap<Database>(nameMap, idMap) {
+            @Override
+            protected long getId(Database value) {
+                return value.getId();
+            }
+
+            @Override
+            protected String getName(Database value) {
+                return value.getName();
+            }
+        });
+    }
+
+    private void installCheckedTableMaps(Database db) throws Exception {
+        Map<Long, Table> idMap = Maps.newConcurrentMap();
+        Map<String, Table> nameMap = Maps.newConcurrentMap();
+        idMap.putAll(CatalogLookupTest.<Map<Long, Table>>getField(db, "idToTable"));
+        nameMap.putAll(CatalogLookupTest.<Map<String, Table>>getField(db, "nameToTable"));
+        setField(db, "idToTable", new CheckedIdMap<Table>(idMap, nameMap));
+        setField(db, "nameToTable", new CheckedNameMap<Table>(nameMap, idMap) {
+            @Override
+            protected long getId(Table value) {
+                return value.getId();
+            }
+
+            @Override
+            protected String getName(Table value) {
+                return value.getName();
+            }
+        });
+    }
+
+    private static Database createDb(long id, String name) {
+        Database db = new Database(id, fullName(name));
+        db.setClusterName(CLUSTER_NAME);
+        return db;
+    }
+
+    private static String fullName(String name) {
+        return CLUSTER_NAME + ":" + name;
+    }
+
+    private static OlapTable createTable(long id, String name) {
+        List<Column> columns = Lists.newArrayList();
+        columns.add(new Column("k1", ColumnType.createType(PrimitiveType.INT), true, null, "", ""));
+        MaterializedIndex index = new MaterializedIndex(id + 1, IndexState.NORMAL);
+        Partition partition = new Partition(id + 2, name, index, new RandomDistributionInfo(10));
+        OlapTable table = new OlapTable(id, name, columns, KeysType.AGG_KEYS,
+                                        new SinglePartitionInfo(), new RandomDistributionInfo(10));
+        table.addPartition(partition);
+        return table;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T getField(Object obj, String name) throws Exception {
+        Field field = obj.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return (T) field.get(obj);
+    }
+
+    private static void setField(Object obj, String name, Object value) throws Exception {
+        Field field = obj.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(obj, value);
+    }
+
+    private static <V> boolean containsSame(Map<?, V> map, V value) {
+        for (V v : map.values()) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Checks that an object is removed by id after it is not found by any name.
+    private class CheckedIdMap<V> extends ForwardingMap<Long, V> {
+        private final Map<Long, V> delegate;
+        private final Map<String, V> nameMap;
+
+        public CheckedIdMap(Map<Long, V> delegate, Map<String, V> nameMap) {
+            this.delegate = delegate;
+            this.nameMap = nameMap;
+        }
+
+        @Override
+        protected Map<Long, V> delegate() {
+            return delegate;
+        }
+
+        @Override
+        public V remove(Object id) {
+            V value = delegate.get(id);
+            if (value != null && containsSame(nameMap, value)) {
+                violations.add("id " + id + " is removed while it is found by name");
+            }
+            return super.remove(id);
+        }
+    }
+
+    // Checks that an object is put by name after it is found by id, and that it is found by its new name
+    // when it is removed by the old one.
+    private abstract class CheckedNameMap<V> extends ForwardingMap<String, V> {
+        private final Map<String, V> delegate;
+        private final Map<Long, V> idMap;
+
+        public CheckedNameMap(Map<String, V> delegate, Map<Long, V> idMap) {
+            this.delegate = delegate;
+            this.idMap = idMap;
+        }
+
+        protected abstract long getId(V value);
+
+        protected abstract String getName(V value);
+
+        @Override
+        protected Map<String, V> delegate() {
+            return delegate;
+        }
+
+        @Override
+        public V put(String name, V value) {
+            if (idMap.get(getId(value)) != value) {
+                violations.add("name " + name + " is put before id " + getId(value));
+            }
+            return super.put(name, value);
+        }
+
+        @Override
+        public V remove(Object name) {
+            V value = super.remove(name);
+            if (value != null && !name.equals(getName(value)) && delegate.get(getName(value)) != value) {
+                violations.add("name " + name + " is removed before new name " + getName(value) + " is put");
+            }
+            return value;
+        }
+    }
+}
@@ -237,4 +237,45 @@ public class CatalogTest {
         
         deleteDir(dir);
     }
+
+    @Test
+    public void testSaveLoadDb() throws Exception {
+        String dir = "testLoadDb";
+        mkdir(dir);
+        File file = new File(dir, "image");
+        file.createNewFile();
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(file));
+        Catalog catalog = Catalog.getInstance();
+        catalog.setJournalVersion(FeConstants.meta_version);
+        Field field = catalog.getClass().getDeclaredField("load");
+        field.setAccessible(true);
+        field.set(catalog, new Load());
+
+        final Cluster cluster = new Cluster("testCluster", 10001L);
+        catalog.addCluster(cluster);
+        for (int i = 0; i < 10; i++) {
+            Database db = new Database(20000L + i, "testCluster.db" + i);
+            db.setClusterName("testCluster");
+            catalog.unprotectCreateDb(db);
+        }
+
+        long checksum1 = catalog.saveDb(dos, 0);
+        catalog.clear();
+        catalog = null;
+        dos.close();
+
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        catalog = Catalog.getInstance();
+        catalog.setJournalVersion(FeConstants.meta_version);
+        long checksum2 = catalog.loadDb(dis, 0);
+        Assert.assertEquals(checksum1, checksum2);
+        for (int i = 0; i < 10; i++) {
+            Database db = catalog.getDb(20000L + i);
+            Assert.assertNotNull(db);
+            Assert.assertEquals("testCluster.db" + i, db.getName());
+        }
+        dis.close();
+
+        deleteDir(dir);
+    }
 }
@@ -0,0 +1,168 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.catalog;
+
+import com.baidu.palo.common.DdlException;
+import com.baidu.palo.common.FeMetaVersion;
+import com.google.common.collect.Lists;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.easymock.PowerMock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore("org.apache.log4j.*")
+@PrepareForTest(Catalog.class)
+public class ColocateGroupTest {
+
+    private Catalog catalog;
+
+    @Before
+    public void setUp() {
+        catalog = EasyMock.createMock(Catalog.class);
+
+        PowerMock.mockStatic(Catalog.class);
+        EasyMock.expect(Catalog.getInstance()).andReturn(catalog).anyTimes();
+        EasyMock.expect(Catalog.getCurrentCatalogJournalVersion()).andReturn(FeMetaVersion.VERSION_35).anyTimes();
+        PowerMock.replay(Catalog.class);
+    }
+
+    private List<Column> createColumns(PrimitiveType... types) {
+        List<Column> columns = Lists.newArrayList();
+        for (int i = 0; i < types.length; i++) {
+            Column column = new Column("k" + i, types[i]);
+            column.setIsKey(true);
+            columns.add(column);
+        }
+        return columns;
+    }
+
+    private OlapTable createTable(long id, String group, DistributionInfo distributionInfo) {
+        OlapTable table = new OlapTable(id, "table" + id, createColumns(PrimitiveType.INT, PrimitiveType.BIGINT),
+                KeysType.DUP_KEYS, new SinglePartitionInfo(), distributionInfo);
+        table.setColocateGroup(group);
+        return table;
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        // 1. Write objects to file
+        File file = new File("./colocateGroupTable");
+        file.createNewFile();
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(file));
+
+        List<Column> columns = createColumns(PrimitiveType.INT, PrimitiveType.BIGINT);
+        OlapTable table1 = createTable(1000L, "group1", new HashDistributionInfo(10, columns));
+        OlapTable table2 = createTable(1001L, null, new HashDistributionInfo(10, columns));
+        table1.write(dos);
+        table2.write(dos);
+        dos.flush();
+        dos.close();
+
+        // 2. Read objects from file
+        DataInputStream dis = new DataInputStream(new FileInputStream(file));
+
+        OlapTable rTable1 = (OlapTable) Table.read(dis);
+        OlapTable rTable2 = (OlapTable) Table.read(dis);
+        Assert.assertEquals("group1", rTable1.getColocateGroup());
+        Assert.assertNull(rTable2.getColocateGroup());
+        Assert.assertTrue(ColocateGroup.isColocateCompatible(table1, rTable1));
+
+        // 3. delete files
+        dis.close();
+        file.delete();
+    }
+
+    @Test
+    public void testDistributionColocateCompatible() {
+        HashDistributionInfo info = new HashDistributionInfo(10,
+                createColumns(PrimitiveType.INT, PrimitiveType.BIGINT));
+
+        // distribution columns may have different names
+        List<Column> renamed = Lists.newArrayList(new Column("a", PrimitiveType.INT),
+                new Column("b", PrimitiveType.BIGINT));
+        Assert.assertTrue(info.isColocateCompatible(new HashDistributionInfo(10, renamed)));
+
+        // different bucket num
+        Assert.assertFalse(info.isColocateCompatible(
+                new HashDistributionInfo(8, createColumns(PrimitiveType.INT, PrimitiveType.BIGINT))));
+        // different distribution column num
+        Assert.assertFalse(info.isColocateCompatible(
+                new HashDistributionInfo(10, createColumns(PrimitiveType.INT))));
+        // different distribution column type
+        Assert.assertFalse(info.isColocateCompatible(
+                new HashDistributionInfo(10, createColumns(PrimitiveType.INT, PrimitiveType.INT))));
+    }
+
+    @Test
+    public void testTableColocateCompatible() {
+        List<Column> columns = createColumns(PrimitiveType.INT);
+        OlapTable table1 = createTable(1000L, "group1", new HashDistributionInfo(10, columns));
+        OlapTable table2 = createTable(1001L, "group1", new HashDistributionInfo(10, columns));
+        Assert.assertTrue(ColocateGroup.isColocateCompatible(table1, table2));
+
+        // not in the same group
+        table2.setColocateGroup("group2");
+        Assert.assertFalse(ColocateGroup.isColocateCompatible(table1, table2));
+        table1.setColocateGroup(null);
+        table2.setColocateGroup(null);
+        Assert.assertFalse(ColocateGroup.isColocateCompatible(table1, table2));
+
+        // random distribution is never colocated
+        OlapTable table3 = createTable(1002L, "group1", new RandomDistributionInfo(10));
+        table1.setColocateGroup("group1");
+        Assert.assertFalse(ColocateGroup.isColocateCompatible(table1, table3));
+    }
+
+    @Test
+    public void testCheckCompatible() throws Exception {
+        OlapTable firstTable = createTable(1000L, "group1",
+                new HashDistributionInfo(10, createColumns(PrimitiveType.INT)));
+        ColocateGroup.checkCompatible(firstTable, new HashDistributionInfo(10, createColumns(PrimitiveType.INT)));
+
+        try {
+            ColocateGroup.checkCompatible(firstTable,
+                    new HashDistributionInfo(10, createColumns(PrimitiveType.BIGINT)));
+            Assert.fail("No exception throws.");
+        } catch (DdlException e) {
+            Assert.assertTrue(e.getMessage().contains(firstTable.getName()));
+        }
+
+        try {
+            ColocateGroup.checkCompatible(firstTable, new RandomDistributionInfo(10));
+            Assert.fail("No exception throws.");
+        } catch (DdlException e) {
+            Assert.assertTrue(e.getMessage().contains(firstTable.getName()));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.catalog;
+
+import com.baidu.palo.catalog.Replica.ReplicaState;
+
+/*
+ * Heap footprint of TabletInvertedIndex on a synthetic catalog. Not run as a unit test.
+ *
+ * usage: java -Xmx16g -cp ... com.baidu.palo.catalog.TabletInvertedIndexBenchmark \
+ *            [tablet num, default 10000000] [replica num, default 3] [backend num, default 200]
+ */
+public class TabletInvertedIndexBenchmark {
+    // tablets of one (partition, index)
+    private static final int TABLETS_PER_INDEX = 32;
+
+    public static void main(String[] args) {
+        long tabletNum = args.length > 0 ? Long.parseLong(args[0]) : 10000000L;
+        int replicaNum = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int backendNum = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        long before = usedHeap();
+        long start = System.currentTimeMillis();
+        TabletInvertedIndex invertedIndex = new TabletInvertedIndex();
+        TabletMeta tabletMeta = null;
+        long replicaId = 0;
+        for (long tabletId = 0; tabletId < tabletNum; tabletId++) {
+            if (tabletId % TABLETS_PER_INDEX == 0) {
+                long partitionId = tabletId / TABLETS_PER_INDEX;
+                tabletMeta = new TabletMeta(1, 2, partitionId, 3, 1);
+            }
+            invertedIndex.addTablet(tabletId, tabletMeta);
+            for (int i = 0; i < replicaNum; i++) {
+                long backendId = (tabletId + i) % backendNum;
+                invertedIndex.addReplica(tabletId, new Replica(replicaId++, backendId, 1L, 0L, 0L, 0L,
+                                                               ReplicaState.NORMAL));
+            }
+        }
+        long buildMs = System.currentTimeMillis() - start;
+        long after = usedHeap();
+
+        // replica objects are owned by catalog, they are not the overhead of index
+        long replicaHeap = measureReplicas(replicaNum * 1000);
+        long indexBytes = after - before - replicaHeap * (tabletNum * replicaNum) / (replicaNum * 1000);
+
+        start = System.currentTimeMillis();
+        long total = 0;
+        for (int backendId = 0; backendId < backendNum; backendId++) {
+            total += invertedIndex.getTabletIdsByBackendId(backendId).size();
+        }
+        long scanMs = System.currentTimeMillis() - start;
+
+        System.out.println("tablets: " + tabletNum + ", replicas: " + total + ", backends: " + backendNum);
+        System.out.println("build cost: " + buildMs + " ms, scan all backends cost: " + scanMs + " ms");
+        System.out.println("heap used: " + (after - before) / 1024 / 1024 + " MB, index overhead: "
+                + indexBytes / 1024 / 1024 + " MB, " + indexBytes / Math.max(total, 1) + " bytes per replica");
+    }
+
+    private static long measureReplicas(int num) {
+        long before = usedHeap();
+        Replica[] replicas = new Replica[num];
+        for (int i = 0; i < num; i++) {
+            replicas[i] = new Replica(i, 0, 1L, 0L, 0L, 0L, ReplicaState.NORMAL);
+        }
+        long after = usedHeap();
+        if (replicas.length != num) {
+            throw new IllegalStateException();
+        }
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
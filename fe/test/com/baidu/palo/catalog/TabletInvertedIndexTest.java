@@ -0,0 +1,118 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.catalog;
+
+import com.baidu.palo.catalog.Replica.ReplicaState;
+import com.baidu.palo.thrift.TStorageMedium;
+import com.baidu.palo.thrift.TTablet;
+import com.baidu.palo.thrift.TTabletInfo;
+
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.easymock.PowerMock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Map;
+import java.util.Set;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore("org.apache.log4j.*")
+@PrepareForTest({ Catalog.class })
+public class TabletInvertedIndexTest {
+    private static final long DB_ID = 10;
+    private static final long BACKEND_ID = 1;
+    private static final int SCHEMA_HASH = 1;
+
+    private TabletInvertedIndex invertedIndex;
+
+    @Before
+    public void setUp() {
+        PowerMock.mockStatic(Catalog.class);
+        EasyMock.expect(Catalog.isCheckpointThread()).andReturn(false).anyTimes();
+        PowerMock.replay(Catalog.class);
+
+        invertedIndex = new TabletInvertedIndex();
+        TabletMeta tabletMeta = new TabletMeta(DB_ID, 20, 30, 40, SCHEMA_HASH);
+        for (long tabletId = 1; tabletId <= 3; tabletId++) {
+            invertedIndex.addTablet(tabletId, tabletMeta);
+            invertedIndex.addReplica(tabletId, new Replica(tabletId, BACKEND_ID, 2L, 0L, 100L, 10L,
+                                                           ReplicaState.NORMAL));
+        }
+    }
+
+    private static TTablet makeTablet(long tabletId, long version) {
+        TTabletInfo tabletInfo = new TTabletInfo(tabletId, SCHEMA_HASH, version, 0L, 10L, 100L);
+        return new TTablet(Lists.newArrayList(tabletInfo));
+    }
+
+    @Test
+    public void testDeltaReport() {
+        // tablet 1 is changed, tablet 2 is removed, tablet 3 is unchanged and not reported
+        Map<Long, TTablet> changedTablets = Maps.newHashMap();
+        changedTablets.put(1L, makeTablet(1L, 3L));
+        Set<Long> removedTablets = Sets.newHashSet(2L);
+
+        ListMultimap<Long, Long> tabletSyncMap = LinkedListMultimap.create();
+        ListMultimap<Long, Long> tabletDeleteFromMeta = LinkedListMultimap.create();
+        Set<Long> foundTabletsWithValidSchema = Sets.newHashSet();
+        Map<Long, TTabletInfo> foundTabletsWithInvalidSchema = Maps.newHashMap();
+        ListMultimap<TStorageMedium, Long> tabletMigrationMap = LinkedListMultimap.create();
+        invertedIndex.tabletDeltaReport(BACKEND_ID, changedTablets, removedTablets,
+                                        Maps.<Long, TStorageMedium>newHashMap(), tabletSyncMap,
+                                        tabletDeleteFromMeta, foundTabletsWithValidSchema,
+                                        foundTabletsWithInvalidSchema, tabletMigrationMap);
+
+        Assert.assertEquals(Lists.newArrayList(1L), tabletSyncMap.get(DB_ID));
+        Assert.assertEquals(Lists.newArrayList(2L), tabletDeleteFromMeta.get(DB_ID));
+        Assert.assertEquals(Sets.newHashSet(1L), foundTabletsWithValidSchema);
+        Assert.assertTrue(foundTabletsWithInvalidSchema.isEmpty());
+    }
+
+    @Test
+    public void testFullReport() {
+        // tablets not reported in full report are deleted from meta
+        Map<Long, TTablet> backendTablets = Maps.newHashMap();
+        backendTablets.put(1L, makeTablet(1L, 2L));
+
+        ListMultimap<Long, Long> tabletSyncMap = LinkedListMultimap.create();
+        ListMultimap<Long, Long> tabletDeleteFromMeta = LinkedListMultimap.create();
+        Set<Long> foundTabletsWithValidSchema = Sets.newHashSet();
+        Map<Long, TTabletInfo> foundTabletsWithInvalidSchema = Maps.newHashMap();
+        ListMultimap<TStorageMedium, Long> tabletMigrationMap = LinkedListMultimap.create();
+        invertedIndex.tabletReport(BACKEND_ID, backendTablets, Maps.<Long, TStorageMedium>newHashMap(),
+                                   tabletSyncMap, tabletDeleteFromMeta, foundTabletsWithValidSchema,
+                                   foundTabletsWithInvalidSchema, tabletMigrationMap);
+
+        Assert.assertTrue(tabletSyncMap.isEmpty());
+        Assert.assertEquals(Sets.newHashSet(2L, 3L), Sets.newHashSet(tabletDeleteFromMeta.get(DB_ID)));
+        Assert.assertEquals(Sets.newHashSet(1L), foundTabletsWithValidSchema);
+    }
+}
@@ -20,12 +20,18 @@
 package com.baidu.palo.clone;
 
 import com.baidu.palo.catalog.Catalog;
+import com.baidu.palo.catalog.DataProperty;
 import com.baidu.palo.catalog.Database;
+import com.baidu.palo.catalog.KeysType;
 import com.baidu.palo.catalog.MaterializedIndex;
+import com.baidu.palo.catalog.MaterializedIndex.IndexState;
 import com.baidu.palo.catalog.OlapTable;
 import com.baidu.palo.catalog.Partition;
+import com.baidu.palo.catalog.PartitionInfo;
+import com.baidu.palo.catalog.RandomDistributionInfo;
 import com.baidu.palo.catalog.Replica;
 import com.baidu.palo.catalog.Replica.ReplicaState;
+import com.baidu.palo.catalog.SinglePartitionInfo;
 import com.baidu.palo.catalog.Tablet;
 import com.baidu.palo.catalog.TabletInvertedIndex;
 import com.baidu.palo.catalog.TabletMeta;
@@ -242,6 +248,112 @@ public class CloneCheckerTest {
         }
     }
 
+    @Test
+    public void testCheckColocateTablets() throws Exception {
+        // the first table of the group owns the layout, its bucket is on backends 0, 1 and 3
+        long backendId1 = backendId;
+        long backendId2 = backendId + 1;
+        long backendId3 = backendId + 2;
+        long backendId4 = backendId + 3;
+        long leaderTableId = 1L;
+        long leaderPartitionId = 1L;
+        long leaderIndexId = 1L;
+        long leaderTabletId = 1L;
+        long version = 1L;
+        long versionHash = 0L;
+
+        // the other table of the group is on backends 0, 1 and 2
+        long misplacedTableId = 10L;
+        long misplacedTabletId = 10L;
+        Database db = UnitTestUtil.createDb(dbId, misplacedTableId, 10L, 10L, misplacedTabletId, backendId, version,
+                versionHash);
+        db.setClusterName("testCluster");
+        OlapTable misplacedTable = (OlapTable) db.getTable(misplacedTableId);
+        misplacedTable.setColocateGroup("group1");
+
+        Tablet leaderTablet = new Tablet(leaderTabletId);
+        MaterializedIndex leaderIndex = new MaterializedIndex(leaderIndexId, IndexState.NORMAL);
+        leaderIndex.addTablet(leaderTablet,
+                new TabletMeta(dbId, leaderTableId, leaderPartitionId, leaderIndexId, 0));
+        leaderTablet.addReplica(new Replica(100L, backendId1, version, versionHash, 0L, 0L, ReplicaState.NORMAL));
+        leaderTablet.addReplica(new Replica(101L, backendId2, version, versionHash, 0L, 0L, ReplicaState.NORMAL));
+        leaderTablet.addReplica(new Replica(102L, backendId4, version, versionHash, 0L, 0L, ReplicaState.NORMAL));
+        RandomDistributionInfo distributionInfo = new RandomDistributionInfo(1);
+        Partition leaderPartition = new Partition(leaderPartitionId, "leaderPartition", leaderIndex,
+                distributionInfo);
+        PartitionInfo partitionInfo = new SinglePartitionInfo();
+        partitionInfo.setDataProperty(leaderPartitionId, DataProperty.DEFAULT_HDD_DATA_PROPERTY);
+        partitionInfo.setReplicationNum(leaderPartitionId, (short) 3);
+        OlapTable leaderTable = new OlapTable(leaderTableId, "leaderTable", misplacedTable.getBaseSchema(),
+                KeysType.AGG_KEYS, partitionInfo, distributionInfo);
+        leaderTable.addPartition(leaderPartition);
+        leaderTable.setIndexSchemaInfo(leaderIndexId, "leaderTable", misplacedTable.getBaseSchema(), 0, 0,
+                (short) 1);
+        leaderTable.setColocateGroup("group1");
+        db.createTable(leaderTable);
+
+        // mock getBackend getCloneInstance getDb getDbNames
+        Backend onlineBackend = EasyMock.createMock(Backend.class);
+        EasyMock.expect(onlineBackend.isAlive()).andReturn(true).anyTimes();
+        EasyMock.replay(onlineBackend);
+        catalog = EasyMock.createNiceMock(Catalog.class);
+        Clone clone = new Clone();
+        EasyMock.expect(catalog.getCloneInstance()).andReturn(clone).anyTimes();
+        EasyMock.expect(catalog.getDb(dbId)).andReturn(db).anyTimes();
+        EasyMock.expect(catalog.getDb(db.getName())).andReturn(db).anyTimes();
+        EasyMock.expect(catalog.getDbNames()).andReturn(Lists.newArrayList(db.getName())).anyTimes();
+        EasyMock.replay(catalog);
+
+        // SystemInfoService
+        systemInfoService = EasyMock.createMock(SystemInfoService.class);
+        EasyMock.expect(systemInfoService.getBackend(EasyMock.anyLong())).andReturn(onlineBackend).anyTimes();
+        EasyMock.replay(systemInfoService);
+
+        // mock catalog
+        PowerMock.mockStatic(Catalog.class);
+        EasyMock.expect(Catalog.getInstance()).andReturn(catalog).anyTimes();
+        EasyMock.expect(Catalog.getCurrentSystemInfo()).andReturn(systemInfoService).anyTimes();
+        PowerMock.replay(Catalog.class);
+
+        // mock private method
+        Map<Long, Object> backendInfos = new HashMap<Long, Object>();
+        Map<Level, Set<Long>> distributionLevelToBackendIds = new HashMap<Level, Set<Long>>();
+        Map<Level, Set<Long>> capacityLevelToBackendIds = new HashMap<Level, Set<Long>>();
+        CloneChecker mockChecker = PowerMock.createPartialMock(CloneChecker.class, "initBackendInfos",
+                "initBackendCapacityInfos", "initBackendDistributionInfos");
+        PowerMock.expectPrivate(mockChecker, "initBackendInfos", "testCluster").andReturn(backendInfos).anyTimes();
+        PowerMock.expectPrivate(mockChecker, "initBackendDistributionInfos", backendInfos)
+                .andReturn(distributionLevelToBackendIds).anyTimes();
+        PowerMock.expectPrivate(mockChecker, "initBackendCapacityInfos", backendInfos)
+                .andReturn(capacityLevelToBackendIds).anyTimes();
+        PowerMock.replay(mockChecker);
+
+        // init backend infos, all backends are balanced so that only colocate migration is checked
+        Class backendInfoClass = UnitTestUtil.getInnerClass(CloneChecker.class,
+                "com.baidu.palo.clone.CloneChecker$BackendInfo");
+        Constructor constructor = getInnerClassConstructor(backendInfoClass);
+        for (Level level : Level.values()) {
+            distributionLevelToBackendIds.put(level, new HashSet<Long>());
+            capacityLevelToBackendIds.put(level, new HashSet<Long>());
+        }
+        for (long id : new long[] { backendId1, backendId2, backendId3, backendId4 }) {
+            backendInfos.put(id, constructor.newInstance(new Object[] { mockChecker, id, 10L, 0L }));
+            distributionLevelToBackendIds.get(Level.MID).add(id);
+            capacityLevelToBackendIds.get(Level.MID).add(id);
+        }
+
+        // test check tablets: the misplaced tablet is cloned to the backend of the layout
+        Method checkTablets = UnitTestUtil.getPrivateMethod(CloneChecker.class, "checkTablets", new Class[] {});
+        checkTablets.invoke(mockChecker, new Object[] {});
+        List<CloneJob> pendingJobs = clone.getCloneJobs(JobState.PENDING);
+        Assert.assertEquals(1, pendingJobs.size());
+        CloneJob job = pendingJobs.get(0);
+        Assert.assertEquals(misplacedTableId, job.getTableId());
+        Assert.assertEquals(misplacedTabletId, job.getTabletId());
+        Assert.assertEquals(backendId4, job.getDestBackendId());
+        Assert.assertEquals(JobType.MIGRATION, job.getType());
+    }
+
     @Test
     public void testInitBackendAndCapacityInfos() throws Exception {
         // mock catalog editlog
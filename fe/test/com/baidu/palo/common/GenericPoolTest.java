@@ -33,6 +33,7 @@ import com.baidu.palo.thrift.TCancelPlanFragmentResult;
 import com.baidu.palo.thrift.TDeleteEtlFilesRequest;
 import com.baidu.palo.thrift.TExecPlanFragmentParams;
 import com.baidu.palo.thrift.TExecPlanFragmentResult;
+import com.baidu.palo.thrift.TExecPlanFragmentsResult;
 import com.baidu.palo.thrift.TFetchDataParams;
 import com.baidu.palo.thrift.TFetchDataResult;
 import com.baidu.palo.thrift.TNetworkAddress;
@@ -105,6 +106,10 @@ public class GenericPoolTest {
             return new TExecPlanFragmentResult();
         }
         @Override
+        public TExecPlanFragmentsResult exec_plan_fragments(List<TExecPlanFragmentParams> params) {
+            return new TExecPlanFragmentsResult();
+        }
+        @Override
         public TCancelPlanFragmentResult cancel_plan_fragment(TCancelPlanFragmentParams params) {
             return new TCancelPlanFragmentResult();
         }
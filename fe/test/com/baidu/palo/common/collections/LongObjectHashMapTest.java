@@ -0,0 +1,88 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.common.collections;
+
+import com.google.common.collect.Maps;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+public class LongObjectHashMapTest {
+
+    @Test
+    public void testBasic() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<String>();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.put(0L, "zero"));
+        Assert.assertNull(map.put(-1L, "minus"));
+        Assert.assertNull(map.put(Long.MAX_VALUE, "max"));
+        Assert.assertEquals("zero", map.put(0L, "ZERO"));
+
+        Assert.assertEquals(3, map.size());
+        Assert.assertEquals("ZERO", map.get(0L));
+        Assert.assertEquals("minus", map.get(-1L));
+        Assert.assertTrue(map.containsKey(Long.MAX_VALUE));
+        Assert.assertFalse(map.containsKey(1L));
+
+        Assert.assertEquals("minus", map.remove(-1L));
+        Assert.assertNull(map.remove(-1L));
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals(2, map.keys().length);
+        Assert.assertEquals(2, map.values().size());
+
+        map.clear();
+        Assert.assertEquals(0, map.size());
+        Assert.assertNull(map.get(0L));
+    }
+
+    @Test
+    public void testRandomOperations() {
+        // compare with HashMap under random puts and removes, which exercises resize and removal shifting
+        LongObjectHashMap<Long> map = new LongObjectHashMap<Long>();
+        final Map<Long, Long> expected = Maps.newHashMap();
+        Random random = new Random(2017);
+        for (int i = 0; i < 200000; i++) {
+            long key = random.nextInt(10000);
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                Long value = random.nextLong();
+                Assert.assertEquals(expected.put(key, value), map.put(key, value));
+            }
+        }
+
+        Assert.assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 10000; key++) {
+            Assert.assertEquals(expected.get(key), map.get(key));
+        }
+        final int[] visited = new int[1];
+        map.forEach(new LongObjectHashMap.EntryVisitor<Long>() {
+            @Override
+            public void visit(long key, Long value) {
+                Assert.assertEquals(expected.get(key), value);
+                visited[0]++;
+            }
+        });
+        Assert.assertEquals(expected.size(), visited[0]);
+    }
+}
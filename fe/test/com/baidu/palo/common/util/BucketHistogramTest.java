@@ -0,0 +1,64 @@
+// Modifications copyright (C) 2017, Baidu.com, Inc.
+// Copyright 2017 The Apache Software Foundation
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+package com.baidu.palo.common.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BucketHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        // buckets are contiguous, and every power of 2 is an upper bound
+        for (int i = 1; i < 600; i++) {
+            long upper = BucketHistogram.bucketUpperBound(i);
+            Assert.assertEquals(i, BucketHistogram.bucketIndex(upper));
+            Assert.assertEquals(i + 1, BucketHistogram.bucketIndex(upper + 1));
+        }
+        for (int power = 0; power < 40; power++) {
+            long value = 1L << power;
+            Assert.assertEquals(value, BucketHistogram.bucketUpperBound(BucketHistogram.bucketIndex(value)));
+        }
+    }
+
+    @Test
+    public void testPercentile() {
+        BucketHistogram histogram = new BucketHistogram();
+        Assert.assertEquals(0, histogram.getP99());
+        for (long i = 1; i <= 1000; i++) {
+            histogram.update(i);
+        }
+        histogram.update(-1);
+        Assert.assertEquals(1001, histogram.getCount());
+        Assert.assertEquals(500500, histogram.getSum());
+        Assert.assertEquals(1000, histogram.getMax());
+
+        // relative error is at most 1/16
+        long p50 = histogram.getP50();
+        Assert.assertTrue(p50 >= 500 && p50 <= 500 + 500 / 16);
+        long p99 = histogram.getP99();
+        Assert.assertTrue(p99 >= 990 && p99 <= 1000);
+
+        Assert.assertEquals(2, histogram.getCountAtPowerOf2(0));
+        Assert.assertEquals(3, histogram.getCountAtPowerOf2(1));
+        Assert.assertEquals(513, histogram.getCountAtPowerOf2(9));
+        Assert.assertEquals(1001, histogram.getCountAtPowerOf2(10));
+    }
+}
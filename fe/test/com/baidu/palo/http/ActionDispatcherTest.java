@@ -0,0 +1,318 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package com.baidu.palo.http;
+
+import com.baidu.palo.common.Config;
+import com.baidu.palo.common.DdlException;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ActionDispatcherTest {
+    private int threadNum;
+    private int queueSize;
+    private int maxConcurrencyPerAction;
+
+    private ActionDispatcher dispatcher;
+    private EventLoopGroup group;
+    private int port;
+    private final Map<String, BaseAction> actions = Maps.newConcurrentMap();
+    // body received by the handler after dispatching handler
+    private final StringBuffer received = new StringBuffer();
+
+    private BlockAction blockAction;
+    private FailAction failAction;
+
+    @Before
+    public void setUp() {
+        threadNum = Config.http_action_thread_num;
+        queueSize = Config.http_action_queue_size;
+        maxConcurrencyPerAction = Config.http_action_max_concurrency_per_action;
+
+        blockAction = new BlockAction();
+        failAction = new FailAction();
+        actions.put("/block", blockAction);
+        actions.put("/ok", new OkAction());
+        actions.put("/fail", failAction);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        blockAction.release.countDown();
+        if (group != null) {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        }
+        Config.http_action_thread_num = threadNum;
+        Config.http_action_queue_size = queueSize;
+        Config.http_action_max_concurrency_per_action = maxConcurrencyPerAction;
+    }
+
+    private void startServer(int threadNum, int queueSize, int maxConcurrencyPerAction) throws Exception {
+        Config.http_action_thread_num = threadNum;
+        Config.http_action_queue_size = queueSize;
+        Config.http_action_max_concurrency_per_action = maxConcurrencyPerAction;
+        dispatcher = new ActionDispatcher();
+
+        group = new NioEventLoopGroup(1);
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(group).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(new HttpServerCodec());
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                                if (msg instanceof HttpRequest) {
+                                    HttpRequest request = (HttpRequest) msg;
+                                    dispatcher.dispatch(actions.get(request.uri()), new BaseRequest(ctx, request));
+                                }
+                                if (msg instanceof HttpContent) {
+                                    received.append(((HttpContent) msg).content().toString(CharsetUtil.UTF_8));
+                                }
+                                ReferenceCountUtil.release(msg);
+                            }
+                        });
+                    }
+                });
+        port = ((InetSocketAddress) bootstrap.bind(0).sync().channel().localAddress()).getPort();
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        startServer(1, 1, 10);
+        Socket c1 = request("/block");
+        Assert.assertTrue(blockAction.started.await(10, TimeUnit.SECONDS));
+
+        // one of them waits in queue and the other is rejected
+        Socket c2 = request("/block");
+        Socket c3 = request("/ok");
+        Set<String> statuses = Sets.newHashSet();
+        blockAction.release.countDown();
+        statuses.add(readStatus(c2.getInputStream()));
+        statuses.add(readStatus(c3.getInputStream()));
+        Assert.assertEquals(Sets.newHashSet("HTTP/1.1 200 OK", "HTTP/1.1 503 Service Unavailable"), statuses);
+        Assert.assertEquals("HTTP/1.1 200 OK", readStatus(c1.getInputStream()));
+
+        Socket c4 = request("/ok");
+        Assert.assertEquals("HTTP/1.1 200 OK", readStatus(c4.getInputStream()));
+        closeAll(c1, c2, c3, c4);
+    }
+
+    @Test
+    public void testPerActionLimit() throws Exception {
+        startServer(4, 10, 1);
+        Socket c1 = request("/block");
+        Assert.assertTrue(blockAction.started.await(10, TimeUnit.SECONDS));
+
+        Socket c2 = request("/block");
+        Assert.assertEquals("HTTP/1.1 503 Service Unavailable", readStatus(c2.getInputStream()));
+        // other actions are not limited
+        Socket c3 = request("/ok");
+        Assert.assertEquals("HTTP/1.1 200 OK", readStatus(c3.getInputStream()));
+
+        blockAction.release.countDown();
+        Assert.assertEquals("HTTP/1.1 200 OK", readStatus(c1.getInputStream()));
+        Socket c4 = request("/block");
+        Assert.assertEquals("HTTP/1.1 200 OK", readStatus(c4.getInputStream()));
+        closeAll(c1, c2, c3, c4);
+    }
+
+    @Test
+    public void testActionThrows() throws Exception {
+        startServer(1, 1, 1);
+        Socket c1 = request("/fail");
+        // connection is closed without response
+        Assert.assertEquals("", readStatus(c1.getInputStream()));
+
+        // auto read is turned on again
+        Channel channel = failAction.channel;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!channel.config().isAutoRead() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(channel.config().isAutoRead());
+
+        // permit is released, the only one of this action
+        Socket c2 = request("/fail");
+        Assert.assertEquals("HTTP/1.1 200 OK", readStatus(c2.getInputStream()));
+        closeAll(c1, c2);
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception {
+        startServer(1, 1, 1);
+        Socket client = request("/ok");
+        Assert.assertEquals("HTTP/1.1 200 OK", readStatus(client.getInputStream()));
+        write(client, "/ok", "");
+        Assert.assertEquals("HTTP/1.1 200 OK", readStatus(client.getInputStream()));
+        client.close();
+    }
+
+    // Body read while the action is running is passed on after the action is done.
+    @Test
+    public void testBodyHeld() throws Exception {
+        startServer(1, 1, 1);
+        Socket client = new Socket("127.0.0.1", port);
+        write(client, "/block", "data");
+        Assert.assertTrue(blockAction.started.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        Assert.assertEquals("", received.toString());
+
+        blockAction.release.countDown();
+        Assert.assertEquals("HTTP/1.1 200 OK", readStatus(client.getInputStream()));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (received.length() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals("data", received.toString());
+        client.close();
+    }
+
+    private Socket request(String uri) throws IOException {
+        Socket client = new Socket("127.0.0.1", port);
+        write(client, uri, "");
+        return client;
+    }
+
+    private void write(Socket client, String uri, String body) throws IOException {
+        String request = "POST " + uri + " HTTP/1.1\r\n"
+                + "Host: 127.0.0.1:" + port + "\r\n"
+                + "Content-Length: " + body.length() + "\r\n\r\n" + body;
+        client.getOutputStream().write(request.getBytes());
+        client.getOutputStream().flush();
+    }
+
+    // Read a whole response and return its status line, or empty string if connection is closed.
+    private static String readStatus(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 4 || !sb.substring(sb.length() - 4).equals("\r\n\r\n")) {
+            int c = in.read();
+            if (c < 0) {
+                return sb.toString();
+            }
+            sb.append((char) c);
+        }
+        String header = sb.toString();
+        int contentLength = 0;
+        for (String line : header.split("\r\n")) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+            }
+        }
+        for (int i = 0; i < contentLength; i++) {
+            if (in.read() < 0) {
+                break;
+            }
+        }
+        return header.substring(0, header.indexOf("\r\n"));
+    }
+
+    private static void closeAll(Socket... sockets) throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    private static class OkAction extends BaseAction {
+        public OkAction() {
+            super(null);
+        }
+
+        @Override
+        public void execute(BaseRequest request, BaseResponse response) throws DdlException {
+            response.appendContent("ok");
+            writeResponse(request, response, HttpResponseStatus.OK);
+        }
+    }
+
+    private static class BlockAction extends BaseAction {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        public BlockAction() {
+            super(null);
+        }
+
+        @Override
+        public void execute(BaseRequest request, BaseResponse response) throws DdlException {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new DdlException("interrupted");
+            }
+            response.appendContent("ok");
+            writeResponse(request, response, HttpResponseStatus.OK);
+        }
+    }
+
+    // Throws at the first request.
+    private static class FailAction extends BaseAction {
+        private final AtomicBoolean failed = new AtomicBoolean(false);
+        private volatile Channel channel;
+
+        public FailAction() {
+            super(null);
+        }
+
+        @Override
+        public void execute(BaseRequest request, BaseResponse response) throws DdlException {
+            if (failed.compareAndSet(false, true)) {
+                channel = request.getContext().channel();
+                throw new RuntimeException("action fails");
+            }
+            response.appendContent("ok");
+            writeResponse(request, response, HttpResponseStatus.OK);
+        }
+    }
+}
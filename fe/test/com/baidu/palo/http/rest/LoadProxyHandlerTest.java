@@ -0,0 +1,247 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package com.baidu.palo.http.rest;
+
+import com.baidu.palo.system.Backend;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.util.ReferenceCountUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class LoadProxyHandlerTest {
+    private static final long BACKEND_ID = 10001L;
+
+    private EventLoopGroup group;
+    private Backend backend;
+    private ServerSocket backendSocket;
+    private int frontendPort;
+    private volatile Channel clientChannel;
+
+    // frontend which proxies every request to backend, like LoadAction in proxy mode
+    @Before
+    public void setUp() throws Exception {
+        backendSocket = new ServerSocket(0);
+        backend = new Backend(BACKEND_ID, "127.0.0.1", 0);
+        backend.setHttpPort(backendSocket.getLocalPort());
+
+        group = new NioEventLoopGroup(1);
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(group).channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast(new HttpServerCodec());
+                        ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                            @Override
+                            public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                                if (msg instanceof HttpRequest) {
+                                    clientChannel = ctx.channel();
+                                    LoadProxyHandler.start(ctx, (HttpRequest) msg, backend);
+                                }
+                                ReferenceCountUtil.release(msg);
+                            }
+                        });
+                    }
+                });
+        frontendPort = ((InetSocketAddress) bootstrap.bind(0).sync().channel().localAddress()).getPort();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        backendSocket.close();
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        byte[] body = new byte[4 * 1024 * 1024];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+
+        Socket client = connect(body.length);
+        CountDownLatch sent = send(client, body);
+
+        Socket backendConn = backendSocket.accept();
+        InputStream in = backendConn.getInputStream();
+        String header = readHeader(in);
+        Assert.assertTrue(header.startsWith("PUT /api/db/tbl/_load?label=l1 HTTP/1.1"));
+        Assert.assertTrue(header.contains("127.0.0.1:" + backend.getHttpPort()));
+        Assert.assertTrue(Arrays.equals(body, readFully(in, body.length)));
+        Assert.assertTrue(sent.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, LoadProxyHandler.getProxyingLoadNum(BACKEND_ID));
+
+        backendConn.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nOK".getBytes());
+        backendConn.getOutputStream().flush();
+
+        String response = new String(readToEnd(client.getInputStream()));
+        Assert.assertTrue(response.startsWith("HTTP/1.1 200 OK"));
+        Assert.assertTrue(response.endsWith("\r\n\r\nOK"));
+        Assert.assertEquals(0, LoadProxyHandler.getProxyingLoadNum(BACKEND_ID));
+        backendConn.close();
+        client.close();
+    }
+
+    // Body is not read from client faster than backend receives it.
+    @Test
+    public void testBackpressure() throws Exception {
+        byte[] body = new byte[64 * 1024 * 1024];
+        Socket client = connect(body.length);
+        CountDownLatch sent = send(client, body);
+
+        // backend accepts but does not read
+        Socket backendConn = backendSocket.accept();
+        Assert.assertFalse(sent.await(1, TimeUnit.SECONDS));
+        Assert.assertFalse(clientChannel.config().isAutoRead());
+
+        InputStream in = backendConn.getInputStream();
+        readHeader(in);
+        Assert.assertEquals(body.length, readFully(in, body.length).length);
+        Assert.assertTrue(sent.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(clientChannel.config().isAutoRead());
+
+        backendConn.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes());
+        backendConn.getOutputStream().flush();
+        Assert.assertTrue(new String(readToEnd(client.getInputStream())).startsWith("HTTP/1.1 200 OK"));
+        backendConn.close();
+        client.close();
+    }
+
+    @Test
+    public void testBackendUnreachable() throws Exception {
+        backendSocket.close();
+        Socket client = connect(4);
+        client.getOutputStream().write("data".getBytes());
+
+        String response = new String(readToEnd(client.getInputStream()));
+        Assert.assertTrue(response.startsWith("HTTP/1.1 502"));
+        Assert.assertTrue(response.contains("failed to connect to backend"));
+        Assert.assertEquals(0, LoadProxyHandler.getProxyingLoadNum(BACKEND_ID));
+        client.close();
+    }
+
+    @Test
+    public void testBackendClosed() throws Exception {
+        Socket client = connect(8);
+        client.getOutputStream().write("data".getBytes());
+
+        // backend closes connection before the whole body is sent
+        Socket backendConn = backendSocket.accept();
+        readHeader(backendConn.getInputStream());
+        backendConn.close();
+
+        String response = new String(readToEnd(client.getInputStream()));
+        Assert.assertTrue(response.startsWith("HTTP/1.1 502"));
+        Assert.assertEquals(0, LoadProxyHandler.getProxyingLoadNum(BACKEND_ID));
+        client.close();
+    }
+
+    private Socket connect(int contentLength) throws IOException {
+        Socket client = new Socket("127.0.0.1", frontendPort);
+        String header = "PUT /api/db/tbl/_load?label=l1 HTTP/1.1\r\n"
+                + "Host: 127.0.0.1:" + frontendPort + "\r\n"
+                + "Content-Length: " + contentLength + "\r\n\r\n";
+        client.getOutputStream().write(header.getBytes());
+        client.getOutputStream().flush();
+        return client;
+    }
+
+    // Send body in another thread, which blocks if body is not consumed.
+    private static CountDownLatch send(final Socket client, final byte[] body) {
+        final CountDownLatch sent = new CountDownLatch(1);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    OutputStream out = client.getOutputStream();
+                    out.write(body);
+                    out.flush();
+                    sent.countDown();
+                } catch (IOException e) {
+                    // checked by latch
+                }
+            }
+        });
+        writer.setDaemon(true);
+        writer.start();
+        return sent;
+    }
+
+    private static String readHeader(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 4 || !sb.substring(sb.length() - 4).equals("\r\n\r\n")) {
+            int c = in.read();
+            if (c < 0) {
+                break;
+            }
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] readFully(InputStream in, int len) throws IOException {
+        byte[] data = new byte[len];
+        int offset = 0;
+        while (offset < len) {
+            int n = in.read(data, offset, len - offset);
+            if (n < 0) {
+                break;
+            }
+            offset += n;
+        }
+        return Arrays.copyOf(data, offset);
+    }
+
+    private static byte[] readToEnd(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
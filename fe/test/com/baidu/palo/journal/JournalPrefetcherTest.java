@@ -0,0 +1,142 @@
+// Modifications copyright (C) 2017, Baidu.com, Inc.
+// Copyright 2017 The Apache Software Foundation
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+package com.baidu.palo.journal;
+
+import com.baidu.palo.common.io.Text;
+import com.baidu.palo.persist.OperationType;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+public class JournalPrefetcherTest {
+
+    private static class ListCursor implements JournalCursor {
+        private final Iterator<JournalEntity> iter;
+        private volatile boolean interrupted = false;
+
+        public ListCursor(List<JournalEntity> entities) {
+            this.iter = entities.iterator();
+        }
+
+        @Override
+        public JournalEntity next() {
+            interrupted |= Thread.currentThread().isInterrupted();
+            return iter.hasNext() ? iter.next() : null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static JournalEntity entity(short op, String data) {
+        JournalEntity entity = new JournalEntity();
+        entity.setOpCode(op);
+        entity.setData(new Text(data));
+        return entity;
+    }
+
+    private static List<JournalEntity> entities(int num) {
+        List<JournalEntity> entities = Lists.newArrayList();
+        for (int i = 0; i < num; i++) {
+            entities.add(entity(OperationType.OP_SAVE_NEXTID, String.valueOf(i)));
+        }
+        return entities;
+    }
+
+    @Test
+    public void testPrefetch() {
+        // capacity is less than number of journals
+        JournalPrefetcher prefetcher = new JournalPrefetcher(8);
+        prefetcher.start();
+        prefetcher.prefetch(new ListCursor(entities(100)));
+        try {
+            for (int i = 0; i < 100; i++) {
+                JournalEntity entity = prefetcher.next();
+                Assert.assertNotNull(entity);
+                Assert.assertEquals(String.valueOf(i), entity.getData().toString());
+            }
+            Assert.assertNull(prefetcher.next());
+        } finally {
+            prefetcher.close();
+        }
+    }
+
+    @Test
+    public void testStopAfterMetaVersion() {
+        List<JournalEntity> entities = Lists.newArrayList();
+        entities.add(entity(OperationType.OP_SAVE_NEXTID, "1"));
+        entities.add(entity(OperationType.OP_META_VERSION, "34"));
+        entities.add(entity(OperationType.OP_SAVE_NEXTID, "2"));
+        JournalPrefetcher prefetcher = new JournalPrefetcher(8);
+        prefetcher.start();
+        prefetcher.prefetch(new ListCursor(entities));
+        try {
+            Assert.assertEquals(OperationType.OP_SAVE_NEXTID, prefetcher.next().getOpCode());
+            Assert.assertEquals(OperationType.OP_META_VERSION, prefetcher.next().getOpCode());
+            Assert.assertNull(prefetcher.next());
+        } finally {
+            prefetcher.close();
+        }
+    }
+
+    @Test
+    public void testRoundsWithOneThread() {
+        JournalPrefetcher prefetcher = new JournalPrefetcher(4);
+        prefetcher.start();
+        try {
+            // replay stops early in the first round, the rest journals are discarded
+            prefetcher.prefetch(new ListCursor(entities(100)));
+            Assert.assertEquals("0", prefetcher.next().getData().toString());
+            prefetcher.finish();
+
+            for (int round = 0; round < 3; round++) {
+                prefetcher.prefetch(new ListCursor(entities(10)));
+                for (int i = 0; i < 10; i++) {
+                    Assert.assertEquals(String.valueOf(i), prefetcher.next().getData().toString());
+                }
+                Assert.assertNull(prefetcher.next());
+                prefetcher.finish();
+            }
+        } finally {
+            prefetcher.close();
+        }
+    }
+
+    @Test
+    public void testCloseWithoutInterrupt() {
+        // journals are not consumed, prefetch thread is blocked on the full queue
+        JournalPrefetcher prefetcher = new JournalPrefetcher(1);
+        prefetcher.start();
+        ListCursor cursor = new ListCursor(entities(100));
+        prefetcher.prefetch(cursor);
+        while (!prefetcher.hasReady()) {
+            Thread.yield();
+        }
+        prefetcher.close();
+        Assert.assertFalse(prefetcher.isRunning());
+        Assert.assertFalse(cursor.interrupted);
+    }
+}
@@ -51,6 +51,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({LoadChecker.class, Catalog.class})
@@ -125,7 +126,6 @@ public class LoadCheckerTest {
 
         // mock load
         load = EasyMock.createMock(Load.class);
-        EasyMock.expect(load.getLoadJobs(JobState.PENDING)).andReturn(pendingJobs).times(1);
         EasyMock.replay(load);
         EasyMock.expect(catalog.getLoadInstance()).andReturn(load).times(1);
         EasyMock.replay(catalog);
@@ -144,8 +144,9 @@ public class LoadCheckerTest {
         Field checkersField = LoadChecker.class.getDeclaredField("checkers");
         checkersField.setAccessible(true);
         Map<JobState, LoadChecker> checkers = (Map<JobState, LoadChecker>) checkersField.get(LoadChecker.class);
-        Method runPendingJobs = UnitTestUtil.getPrivateMethod(LoadChecker.class, "runPendingJobs", new Class[] {});
-        runPendingJobs.invoke(checkers.get(JobState.PENDING), new Object[] {});
+        Method runPendingJobs = UnitTestUtil.getPrivateMethod(LoadChecker.class, "runPendingJobs",
+                new Class[] {List.class});
+        runPendingJobs.invoke(checkers.get(JobState.PENDING), new Object[] {pendingJobs});
         
         // verify
         EasyMock.verify(executor);
@@ -163,7 +164,6 @@ public class LoadCheckerTest {
 
         // mock load
         load = EasyMock.createMock(Load.class);
-        EasyMock.expect(load.getLoadJobs(JobState.PENDING)).andReturn(pendingJobs).times(1);
         EasyMock.expect(load.getLoadJobs(JobState.ETL)).andReturn(Lists.newArrayList(job)).times(1);
         EasyMock.replay(load);
         EasyMock.expect(catalog.getLoadInstance()).andReturn(load).times(1);
@@ -187,8 +187,10 @@ public class LoadCheckerTest {
         Field checkersField = LoadChecker.class.getDeclaredField("checkers");
         checkersField.setAccessible(true);
         Map<JobState, LoadChecker> checkers = (Map<JobState, LoadChecker>) checkersField.get(LoadChecker.class);
-        Method runPendingJobs = UnitTestUtil.getPrivateMethod(LoadChecker.class, "runPendingJobs", new Class[] {});
-        runPendingJobs.invoke(checkers.get(JobState.PENDING), new Object[] {});
+        Method runPendingJobs = UnitTestUtil.getPrivateMethod(LoadChecker.class, "runPendingJobs",
+                new Class[] {List.class});
+        runPendingJobs.invoke(checkers.get(JobState.PENDING), new Object[] {pendingJobs});
+        EasyMock.verify(executor);
     }
 
     @Test
@@ -198,11 +200,6 @@ public class LoadCheckerTest {
         job.setState(JobState.ETL);
         etlJobs.add(job);
 
-        // mock load
-        load = EasyMock.createMock(Load.class);
-        EasyMock.expect(load.getLoadJobs(JobState.ETL)).andReturn(etlJobs).times(1);
-        EasyMock.replay(load);
-        EasyMock.expect(catalog.getLoadInstance()).andReturn(load).times(1);
         EasyMock.replay(catalog);
         
         // mock MasterTaskExecutor submit
@@ -219,8 +216,8 @@ public class LoadCheckerTest {
         Field checkersField = LoadChecker.class.getDeclaredField("checkers");
         checkersField.setAccessible(true);
         Map<JobState, LoadChecker> checkers = (Map<JobState, LoadChecker>) checkersField.get(LoadChecker.class);
-        Method runEtlJobs = UnitTestUtil.getPrivateMethod(LoadChecker.class, "runEtlJobs", new Class[] {});
-        runEtlJobs.invoke(checkers.get(JobState.ETL), new Object[] {});
+        Method runEtlJobs = UnitTestUtil.getPrivateMethod(LoadChecker.class, "runEtlJobs", new Class[] {List.class});
+        runEtlJobs.invoke(checkers.get(JobState.ETL), new Object[] {etlJobs});
         
         // verify
         EasyMock.verify(executor);
@@ -263,10 +260,9 @@ public class LoadCheckerTest {
 
         // mock load
         load = EasyMock.createMock(Load.class);
-        EasyMock.expect(load.getLoadJobs(JobState.LOADING)).andReturn(etlJobs).times(2);
         EasyMock.expect(load.updateLoadJobState(job, JobState.QUORUM_FINISHED)).andReturn(true).times(1);
         EasyMock.replay(load);
-        EasyMock.expect(catalog.getLoadInstance()).andReturn(load).times(4);
+        EasyMock.expect(catalog.getLoadInstance()).andReturn(load).times(2);
         EasyMock.replay(catalog);
         
         // init
@@ -276,8 +272,9 @@ public class LoadCheckerTest {
         Field checkersField = LoadChecker.class.getDeclaredField("checkers");
         checkersField.setAccessible(true);
         Map<JobState, LoadChecker> checkers = (Map<JobState, LoadChecker>) checkersField.get(LoadChecker.class);
-        Method runLoadingJobs = UnitTestUtil.getPrivateMethod(LoadChecker.class, "runLoadingJobs", new Class[] {});
-        runLoadingJobs.invoke(checkers.get(JobState.LOADING), new Object[] {});
+        Method runLoadingJobs = UnitTestUtil.getPrivateMethod(LoadChecker.class, "runLoadingJobs",
+                new Class[] {List.class});
+        runLoadingJobs.invoke(checkers.get(JobState.LOADING), new Object[] {etlJobs});
         Assert.assertEquals(replicaNum, AgentTaskQueue.getTaskNum());
 
         // update replica to new version
@@ -290,7 +287,7 @@ public class LoadCheckerTest {
         }       
 
         // verify
-        runLoadingJobs.invoke(checkers.get(JobState.LOADING), new Object[] {});
+        runLoadingJobs.invoke(checkers.get(JobState.LOADING), new Object[] {etlJobs});
         EasyMock.verify(load);
         EasyMock.verify(catalog);
         
@@ -336,7 +333,6 @@ public class LoadCheckerTest {
 
         // mock load
         load = EasyMock.createMock(Load.class);
-        EasyMock.expect(load.getLoadJobs(JobState.QUORUM_FINISHED)).andReturn(etlJobs).anyTimes();
         EasyMock.expect(load.getQuorumFinishedDeleteJobs()).andReturn(deleteJobs).anyTimes();
         EasyMock.expect(load.updateLoadJobState(job, JobState.FINISHED)).andReturn(true).anyTimes();
         load.clearJob(job, JobState.QUORUM_FINISHED);
@@ -353,8 +349,8 @@ public class LoadCheckerTest {
         checkersField.setAccessible(true);
         Map<JobState, LoadChecker> checkers = (Map<JobState, LoadChecker>) checkersField.get(LoadChecker.class);
         Method runQuorumFinishedJobs = UnitTestUtil.getPrivateMethod(
-                LoadChecker.class, "runQuorumFinishedJobs", new Class[] {});
-        runQuorumFinishedJobs.invoke(checkers.get(JobState.QUORUM_FINISHED), new Object[] {});
+                LoadChecker.class, "runQuorumFinishedJobs", new Class[] {List.class, boolean.class});
+        runQuorumFinishedJobs.invoke(checkers.get(JobState.QUORUM_FINISHED), new Object[] {etlJobs, true});
         
         // verify
         EasyMock.verify(load);
@@ -362,6 +358,114 @@ public class LoadCheckerTest {
         Assert.assertEquals(0, AgentTaskQueue.getTaskNum());
     }
     
+    @Test
+    public void testNotifyJobReady() throws Exception {
+        long jobId = 10L;
+        LoadJob job = new LoadJob(label);
+        job.setId(jobId);
+        job.setState(JobState.ETL);
+        LoadJob loadingJob = new LoadJob(label);
+        loadingJob.setId(jobId + 1);
+        loadingJob.setState(JobState.LOADING);
+
+        // only the ready jobs are looked up, getLoadJobs(ETL) is not expected
+        load = EasyMock.createMock(Load.class);
+        EasyMock.expect(load.getLoadJob(jobId)).andReturn(job).times(1);
+        EasyMock.expect(load.getLoadJob(jobId + 1)).andReturn(loadingJob).times(1);
+        EasyMock.replay(load);
+        EasyMock.expect(catalog.getLoadInstance()).andReturn(load).anyTimes();
+        EasyMock.replay(catalog);
+
+        MasterTaskExecutor executor = EasyMock.createMock(MasterTaskExecutor.class);
+        EasyMock.expect(executor.submit(EasyMock.isA(MasterTask.class))).andReturn(true).times(1);
+        EasyMock.replay(executor);
+        PowerMock.expectNew(MasterTaskExecutor.class, EasyMock.anyInt()).andReturn(executor).times(4);
+        PowerMock.replay(MasterTaskExecutor.class);
+
+        LoadChecker.init(5000L);
+        LoadChecker checker = getChecker(JobState.ETL);
+        setNeedFullCheck(checker, false);
+        setLastFullCheckTime(checker, System.currentTimeMillis());
+
+        // job which has left the state is skipped
+        LoadChecker.notifyJobReady(JobState.ETL, jobId);
+        LoadChecker.notifyJobReady(JobState.ETL, jobId + 1);
+        checker.runOneCycle();
+        EasyMock.verify(load);
+        EasyMock.verify(executor);
+
+        // nothing is ready now
+        Field readyJobIdsField = LoadChecker.class.getDeclaredField("readyJobIds");
+        readyJobIdsField.setAccessible(true);
+        Assert.assertTrue(((Set<Long>) readyJobIdsField.get(checker)).isEmpty());
+    }
+
+    @Test
+    public void testWakeUp() throws Exception {
+        LoadChecker.init(5000L);
+        final LoadChecker checker = getChecker(JobState.PENDING);
+        setNeedFullCheck(checker, false);
+        setLastFullCheckTime(checker, System.currentTimeMillis());
+
+        // waits until woken up, long before the interval ends
+        final long intervalMs = 60000L;
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    checker.waitForNextCycle(intervalMs);
+                } catch (InterruptedException e) {
+                    // exit
+                }
+            }
+        });
+        long start = System.currentTimeMillis();
+        waiter.start();
+        Thread.sleep(100);
+        Assert.assertTrue(waiter.isAlive());
+        LoadChecker.wakeUp(JobState.PENDING);
+        waiter.join(5000);
+        Assert.assertFalse(waiter.isAlive());
+        Assert.assertTrue(System.currentTimeMillis() - start < intervalMs);
+        Assert.assertTrue(getNeedFullCheck(checker));
+
+        // a ready job also ends the wait, without full check
+        setNeedFullCheck(checker, false);
+        LoadChecker.notifyJobReady(JobState.PENDING, 1L);
+        checker.waitForNextCycle(intervalMs);
+        Assert.assertFalse(getNeedFullCheck(checker));
+
+        // full check is due once the interval passes
+        setLastFullCheckTime(checker, 0L);
+        checker.waitForNextCycle(intervalMs);
+        Assert.assertTrue(getNeedFullCheck(checker));
+    }
+
+    private LoadChecker getChecker(JobState jobState) throws Exception {
+        Field checkersField = LoadChecker.class.getDeclaredField("checkers");
+        checkersField.setAccessible(true);
+        Map<JobState, LoadChecker> checkers = (Map<JobState, LoadChecker>) checkersField.get(LoadChecker.class);
+        return checkers.get(jobState);
+    }
+
+    private void setNeedFullCheck(LoadChecker checker, boolean needFullCheck) throws Exception {
+        Field field = LoadChecker.class.getDeclaredField("needFullCheck");
+        field.setAccessible(true);
+        field.set(checker, needFullCheck);
+    }
+
+    private boolean getNeedFullCheck(LoadChecker checker) throws Exception {
+        Field field = LoadChecker.class.getDeclaredField("needFullCheck");
+        field.setAccessible(true);
+        return (Boolean) field.get(checker);
+    }
+
+    private void setLastFullCheckTime(LoadChecker checker, long timeMs) throws Exception {
+        Field field = LoadChecker.class.getDeclaredField("lastFullCheckTimeMs");
+        field.setAccessible(true);
+        field.set(checker, timeMs);
+    }
+
     @Test
     public void testCheckTimeout() {
         LoadJob job = new LoadJob(label);
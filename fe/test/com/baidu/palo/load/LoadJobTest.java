@@ -27,10 +27,13 @@ import com.baidu.palo.analysis.StringLiteral;
 import com.baidu.palo.catalog.Catalog;
 import com.baidu.palo.common.Config;
 import com.baidu.palo.common.FeConstants;
+import com.baidu.palo.common.FeMetaVersion;
 import com.baidu.palo.common.util.UnitTestUtil;
 import com.baidu.palo.load.LoadJob.JobState;
 import com.baidu.palo.persist.ReplicaPersistInfo;
 
+import com.google.common.collect.Lists;
+
 import org.easymock.EasyMock;
 import org.junit.Assert;
 import org.junit.Before;
@@ -184,6 +187,42 @@ public class LoadJobTest {
         file.delete();
     }
     
+    @Test
+    public void testMergedLabelSerialization() throws Exception {
+        // mock meta version
+        PowerMock.mockStatic(Catalog.class);
+        EasyMock.expect(Catalog.getCurrentCatalogJournalVersion()).andReturn(FeMetaVersion.VERSION_36).anyTimes();
+        PowerMock.replay(Catalog.class);
+
+        File file = new File("./mergedLoadJobTest");
+        file.createNewFile();
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(file));
+
+        LoadJob loadJob = new LoadJob("label_1", 1000, 0.1);
+        loadJob.setTimestamp(1L);
+        loadJob.addMergedLabel("label_2", 2L);
+        loadJob.addMergedLabel("label_3", 3L);
+        loadJob.write(dos);
+        dos.flush();
+        dos.close();
+
+        DataInputStream dis = new DataInputStream(new FileInputStream(file));
+        LoadJob rLoadJob = new LoadJob();
+        rLoadJob.readFields(dis);
+
+        Assert.assertTrue(loadJob.equals(rLoadJob));
+        Assert.assertEquals("label_1", rLoadJob.getLabel());
+        Assert.assertEquals(3, rLoadJob.getAllLabels().size());
+        Assert.assertTrue(rLoadJob.getAllLabels().containsAll(Lists.newArrayList("label_1", "label_2", "label_3")));
+        Assert.assertEquals(1L, rLoadJob.getTimestamp());
+        Assert.assertEquals(1L, rLoadJob.getTimestamp("label_1"));
+        Assert.assertEquals(2L, rLoadJob.getTimestamp("label_2"));
+        Assert.assertEquals(3L, rLoadJob.getTimestamp("label_3"));
+
+        dis.close();
+        file.delete();
+    }
+
     @Test
     public void testClear() throws Exception {
         LoadJob job = getLoadJob();
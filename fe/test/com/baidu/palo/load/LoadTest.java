@@ -46,8 +46,11 @@ import com.baidu.palo.load.LoadJob.EtlJobType;
 import com.baidu.palo.load.LoadJob.JobState;
 import com.baidu.palo.persist.EditLog;
 import com.baidu.palo.qe.ConnectContext;
+import com.baidu.palo.thrift.TMiniLoadRequest;
+import com.baidu.palo.thrift.TNetworkAddress;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import org.easymock.EasyMock;
 import org.junit.Assert;
@@ -191,6 +194,60 @@ public class LoadTest {
         Assert.assertEquals(1, load.getLoadJobInfosByDb(db.getId(), null, false, null, null).size());
     }
 
+    private TMiniLoadRequest createMiniLoadRequest(String label, long timestamp) {
+        TMiniLoadRequest request = new TMiniLoadRequest();
+        request.setDb(db.getName());
+        request.setTbl(UnitTestUtil.TABLE_NAME);
+        request.setLabel(label);
+        request.setBackend(new TNetworkAddress("127.0.0.1", 8040));
+        request.setFiles(filePathes);
+        request.setProperties(Maps.<String, String>newHashMap());
+        request.setTimestamp(timestamp);
+        return request;
+    }
+
+    @Test
+    public void testMergedLabels() throws Exception {
+        // a finished job of three merged mini loads, old enough to be removed
+        LoadJob job = new LoadJob("label_1", 0, 0.1);
+        job.setId(1L);
+        job.setDbId(dbId);
+        job.setEtlJobType(EtlJobType.MINI);
+        job.setTimestamp(1L);
+        job.addMergedLabel("label_2", 2L);
+        job.addMergedLabel("label_3", 3L);
+        job.setState(JobState.FINISHED);
+        job.setCreateTimeMs(System.currentTimeMillis() - (Config.label_keep_max_second + 10) * 1000L);
+        load.unprotectAddLoadJob(job);
+
+        // every label resolves to the job
+        for (String jobLabel : job.getAllLabels()) {
+            Assert.assertEquals(1, load.getLoadJobInfosByDb(dbId, jobLabel, true, null, null).size());
+        }
+
+        // retried mini loads with the same timestamp are already loaded
+        Assert.assertFalse(load.addLoadJob(createMiniLoadRequest("label_1", 1L)));
+        Assert.assertFalse(load.addLoadJob(createMiniLoadRequest("label_2", 2L)));
+        Assert.assertFalse(load.addLoadJob(createMiniLoadRequest("label_3", 3L)));
+
+        // label is used by another mini load
+        try {
+            load.addLoadJob(createMiniLoadRequest("label_2", 1L));
+            Assert.fail("No exception throws.");
+        } catch (DdlException e) {
+            Assert.assertTrue(e.getMessage().contains("label_2"));
+        }
+
+        // all labels are removed with the job
+        load.removeOldLoadJobs();
+        Assert.assertNull(load.getLoadJob(1L));
+        Assert.assertEquals(0, load.getLoadJobNumber());
+        for (String jobLabel : job.getAllLabels()) {
+            Assert.assertEquals(0, load.getLoadJobInfosByDb(dbId, jobLabel, true, null, null).size());
+            load.checkLabelUsed(db.getName(), jobLabel, 0L);
+        }
+    }
+
     @Test
     public void testCancelLoadJob() throws Exception {
         // add load job success
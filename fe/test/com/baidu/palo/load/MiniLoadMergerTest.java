@@ -0,0 +1,136 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.load;
+
+import com.baidu.palo.common.Config;
+import com.baidu.palo.common.DdlException;
+import com.baidu.palo.thrift.TMiniLoadRequest;
+import com.baidu.palo.thrift.TNetworkAddress;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+public class MiniLoadMergerTest {
+
+    @After
+    public void tearDown() {
+        Config.mini_load_merge_window_ms = 0;
+        Config.mini_load_merge_max_num = 100;
+    }
+
+    private static TMiniLoadRequest createRequest(String tbl, String label) {
+        TMiniLoadRequest request = new TMiniLoadRequest();
+        request.setDb("testDb");
+        request.setTbl(tbl);
+        request.setLabel(label);
+        request.setUser("root");
+        request.setBackend(new TNetworkAddress("127.0.0.1", 8040));
+        request.setFiles(Lists.newArrayList("file_" + label));
+        request.setProperties(Maps.<String, String>newHashMap());
+        return request;
+    }
+
+    // mock load recording labels of every merged load job, and failing with errMsg if it is not null
+    private static Load createLoad(final List<List<String>> mergedLabels, final String errMsg)
+            throws DdlException {
+        Load load = EasyMock.createMock(Load.class);
+        load.addMergedMiniLoadJob(EasyMock.<List<TMiniLoadRequest>>anyObject());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                @SuppressWarnings("unchecked")
+                List<TMiniLoadRequest> requests = (List<TMiniLoadRequest>) EasyMock.getCurrentArguments()[0];
+                List<String> labels = Lists.newArrayList();
+                for (TMiniLoadRequest request : requests) {
+                    labels.add(request.getLabel());
+                }
+                mergedLabels.add(labels);
+                if (errMsg != null) {
+                    throw new DdlException(errMsg);
+                }
+                return null;
+            }
+        }).anyTimes();
+        EasyMock.replay(load);
+        return load;
+    }
+
+    @Test
+    public void testCloseAtMaxNum() throws Exception {
+        // the window is long enough that only a full batch makes the load job
+        Config.mini_load_merge_window_ms = 600 * 1000;
+        Config.mini_load_merge_max_num = 3;
+        List<List<String>> mergedLabels = Collections.synchronizedList(Lists.<List<String>>newArrayList());
+        final MiniLoadMerger merger = new MiniLoadMerger(createLoad(mergedLabels, "add job failed"));
+
+        final List<String> errMsgs = Collections.synchronizedList(Lists.<String>newArrayList());
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            final TMiniLoadRequest request = createRequest("testTbl", "label_" + i);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        merger.merge(request);
+                    } catch (DdlException e) {
+                        errMsgs.add(e.getMessage());
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(60 * 1000);
+            Assert.assertFalse(thread.isAlive());
+        }
+
+        // one load job for the batch, and the error of adding it is returned to every mini load
+        Assert.assertEquals(1, mergedLabels.size());
+        Assert.assertEquals(3, mergedLabels.get(0).size());
+        Assert.assertEquals(3, errMsgs.size());
+        for (String errMsg : errMsgs) {
+            Assert.assertEquals("add job failed", errMsg);
+        }
+    }
+
+    @Test
+    public void testCloseAtWindow() throws Exception {
+        Config.mini_load_merge_window_ms = 10;
+        List<List<String>> mergedLabels = Collections.synchronizedList(Lists.<List<String>>newArrayList());
+        MiniLoadMerger merger = new MiniLoadMerger(createLoad(mergedLabels, null));
+
+        // a batch not full makes its load job when the window ends
+        merger.merge(createRequest("testTbl1", "label_1"));
+        merger.merge(createRequest("testTbl2", "label_2"));
+        Assert.assertEquals(2, mergedLabels.size());
+        Assert.assertEquals(Lists.newArrayList("label_1"), mergedLabels.get(0));
+        Assert.assertEquals(Lists.newArrayList("label_2"), mergedLabels.get(1));
+    }
+}
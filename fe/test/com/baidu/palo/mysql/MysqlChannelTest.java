@@ -24,11 +24,15 @@ import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.List;
 
 public class MysqlChannelTest {
     int packetId = 0;
@@ -262,4 +266,90 @@ public class MysqlChannelTest {
         Assert.fail("No Exception throws.");
     }
 
+    // Write at most 5 bytes in one call, so that gathering write is done in several rounds.
+    private ByteArrayOutputStream mockPartialWrite() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EasyMock.expect(channel.write(EasyMock.anyObject(ByteBuffer[].class), EasyMock.anyInt(), EasyMock.anyInt()))
+                .andDelegateTo(new WrapperSocketChannel() {
+                    @Override
+                    public long write(ByteBuffer[] srcs, int offset, int length) {
+                        long writeLen = 0;
+                        for (int i = offset; i < offset + length && writeLen < 5; ++i) {
+                            while (srcs[i].hasRemaining() && writeLen < 5) {
+                                out.write(srcs[i].get());
+                                writeLen++;
+                            }
+                        }
+                        return writeLen;
+                    }
+                }).anyTimes();
+        EasyMock.expect(channel.write(EasyMock.anyObject(ByteBuffer.class))).andDelegateTo(new WrapperSocketChannel() {
+                    @Override
+                    public int write(ByteBuffer buffer) {
+                        int writeLen = buffer.remaining();
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer.get());
+                        }
+                        return writeLen;
+                    }
+                }).anyTimes();
+        EasyMock.replay(channel);
+        return out;
+    }
+
+    private static ByteBuffer packet(String data) {
+        return ByteBuffer.wrap(data.getBytes());
+    }
+
+    // header and data of one packet
+    private static byte[] expectPacket(String data, int seq) {
+        MysqlSerializer serializer = MysqlSerializer.newInstance();
+        serializer.writeInt3(data.length());
+        serializer.writeInt1(seq);
+        serializer.writeBytes(data.getBytes());
+        return serializer.toArray();
+    }
+
+    @Test
+    public void testSendPackets() throws IOException {
+        ByteArrayOutputStream out = mockPartialWrite();
+        MysqlChannel channel1 = new MysqlChannel(channel);
+        // packet in send buffer is written before packets
+        channel1.sendOnePacket(packet("head"));
+        List<ByteBuffer> packets = Lists.newArrayList(packet("row1"), packet(""), packet("row-3"));
+        channel1.sendPackets(packets);
+
+        ByteArrayOutputStream expect = new ByteArrayOutputStream();
+        expect.write(expectPacket("head", 0));
+        expect.write(expectPacket("row1", 1));
+        expect.write(expectPacket("", 2));
+        expect.write(expectPacket("row-3", 3));
+        Assert.assertArrayEquals(expect.toByteArray(), out.toByteArray());
+        for (ByteBuffer packet : packets) {
+            Assert.assertFalse(packet.hasRemaining());
+        }
+
+        // send buffer is reusable, and sequence id goes on
+        channel1.sendOnePacket(packet("tail"));
+        channel1.flush();
+        expect.write(expectPacket("tail", 4));
+        Assert.assertArrayEquals(expect.toByteArray(), out.toByteArray());
+    }
+
+    @Test
+    public void testSendPacketsLong() throws IOException {
+        ByteArrayOutputStream out = mockPartialWrite();
+        MysqlChannel channel1 = new MysqlChannel(channel);
+        // packet needs to be split is sent one by one
+        channel1.sendPackets(Lists.newArrayList(packet("row1"), ByteBuffer.allocate(0xffffff + 10)));
+        channel1.flush();
+        // first packet, then the long packet split into a max length one and the rest
+        int maxLen = 0xffffff - 1;
+        Assert.assertEquals(8 + 4 + maxLen + 4 + 11, out.size());
+        byte[] bytes = out.toByteArray();
+        Assert.assertEquals(0, bytes[3]);
+        Assert.assertEquals(1, bytes[8 + 3]);
+        Assert.assertEquals(2, bytes[8 + 4 + maxLen + 3]);
+        Assert.assertEquals(11, bytes[8 + 4 + maxLen]);
+    }
 }
\ No newline at end of file
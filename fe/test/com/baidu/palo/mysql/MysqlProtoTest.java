@@ -26,6 +26,8 @@ import com.baidu.palo.catalog.Database;
 import com.baidu.palo.common.DdlException;
 import com.baidu.palo.qe.ConnectContext;
 
+import com.google.common.collect.Lists;
+
 import org.junit.Assert;
 
 import org.easymock.EasyMock;
@@ -42,6 +44,7 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.List;
 
 @RunWith(PowerMockRunner.class)
 @PowerMockIgnore("org.apache.log4j.*")
@@ -206,4 +209,66 @@ public class MysqlProtoTest {
         Assert.assertEquals("you have dream too", new String(MysqlProto.readEofString(buffer)));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testToBinaryRow() {
+        MysqlSerializer serializer = MysqlSerializer.newInstance();
+        serializer.writeLenEncodedString("1");
+        serializer.writeNull();
+        serializer.writeLenEncodedString("abc");
+        serializer.writeLenEncodedString("-12345678901");
+        serializer.writeLenEncodedString("1.5");
+        serializer.writeLenEncodedString("12.30");
+
+        List<MysqlColType> types = Lists.newArrayList(MysqlColType.MYSQL_TYPE_LONG,
+                MysqlColType.MYSQL_TYPE_LONG, MysqlColType.MYSQL_TYPE_STRING,
+                MysqlColType.MYSQL_TYPE_LONGLONG, MysqlColType.MYSQL_TYPE_DOUBLE,
+                MysqlColType.MYSQL_TYPE_DECIMAL);
+        ByteBuffer buffer = MysqlProto.toBinaryRow(serializer.toByteBuffer(), types);
+        // packet header
+        Assert.assertEquals(0x00, MysqlProto.readInt1(buffer));
+        // null bitmap with offset 2, the second column is null
+        Assert.assertEquals(0x08, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(1, MysqlProto.readInt4(buffer));
+        Assert.assertEquals("abc", new String(MysqlProto.readLenEncodedString(buffer)));
+        Assert.assertEquals(-12345678901L, MysqlProto.readInt8(buffer));
+        Assert.assertEquals(1.5, Double.longBitsToDouble(MysqlProto.readInt8(buffer)), 0);
+        // decimal is sent as string
+        Assert.assertEquals("12.30", new String(MysqlProto.readLenEncodedString(buffer)));
+        Assert.assertEquals(0, buffer.remaining());
+    }
+
+    @Test
+    public void testToBinaryRowDateTime() {
+        MysqlSerializer serializer = MysqlSerializer.newInstance();
+        serializer.writeLenEncodedString("2018-01-02");
+        serializer.writeLenEncodedString("2018-01-02 03:04:05");
+        serializer.writeLenEncodedString("-25:01:02");
+
+        List<MysqlColType> types = Lists.newArrayList(MysqlColType.MYSQL_TYPE_DATE,
+                MysqlColType.MYSQL_TYPE_DATETIME, MysqlColType.MYSQL_TYPE_TIME);
+        ByteBuffer buffer = MysqlProto.toBinaryRow(serializer.toByteBuffer(), types);
+        Assert.assertEquals(0x00, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(0x00, MysqlProto.readInt1(buffer));
+        // date
+        Assert.assertEquals(4, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(2018, MysqlProto.readInt2(buffer));
+        Assert.assertEquals(1, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(2, MysqlProto.readInt1(buffer));
+        // datetime
+        Assert.assertEquals(7, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(2018, MysqlProto.readInt2(buffer));
+        Assert.assertEquals(1, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(2, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(3, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(4, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(5, MysqlProto.readInt1(buffer));
+        // time, negative 1 day and 1 hour
+        Assert.assertEquals(8, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(1, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(1, MysqlProto.readInt4(buffer));
+        Assert.assertEquals(1, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(1, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(2, MysqlProto.readInt1(buffer));
+        Assert.assertEquals(0, buffer.remaining());
+    }
+}
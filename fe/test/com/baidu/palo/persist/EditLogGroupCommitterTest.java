@@ -0,0 +1,100 @@
+// Modifications copyright (C) 2017, Baidu.com, Inc.
+// Copyright 2017 The Apache Software Foundation
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+package com.baidu.palo.persist;
+
+import com.baidu.palo.common.io.Text;
+import com.baidu.palo.journal.Journal;
+import com.baidu.palo.journal.JournalEntity;
+
+import com.google.common.collect.Lists;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EditLogGroupCommitterTest {
+
+    @Test
+    public void testConcurrentWrite() throws InterruptedException {
+        final List<String> written = Collections.synchronizedList(Lists.<String>newArrayList());
+        Journal journal = EasyMock.createMock(Journal.class);
+        journal.write(EasyMock.<List<JournalEntity>>anyObject());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                @SuppressWarnings("unchecked")
+                List<JournalEntity> entities = (List<JournalEntity>) EasyMock.getCurrentArguments()[0];
+                for (JournalEntity entity : entities) {
+                    written.add(((Text) entity.getData()).toString());
+                }
+                return null;
+            }
+        }).anyTimes();
+        EditLog editLog = EasyMock.createMock(EditLog.class);
+        editLog.onJournalWritten(EasyMock.anyInt(), EasyMock.anyLong());
+        EasyMock.expectLastCall().anyTimes();
+        EasyMock.replay(journal, editLog);
+
+        final AtomicInteger notWritten = new AtomicInteger(0);
+        final EditLogGroupCommitter committer = new EditLogGroupCommitter(journal, editLog);
+        committer.start();
+
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            final int threadId = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100; j++) {
+                        committer.write(OperationType.OP_SAVE_NEXTID, new Text(threadId + "_" + j));
+                        // journal must be written when write() returns
+                        if (!written.contains(threadId + "_" + j)) {
+                            notWritten.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(0, notWritten.get());
+        Assert.assertEquals(1000, written.size());
+        // journals of one thread keep their order
+        for (int i = 0; i < 10; i++) {
+            int last = -1;
+            for (String item : written) {
+                if (item.startsWith(i + "_")) {
+                    int seq = Integer.parseInt(item.substring(item.indexOf('_') + 1));
+                    Assert.assertEquals(last + 1, seq);
+                    last = seq;
+                }
+            }
+        }
+    }
+}
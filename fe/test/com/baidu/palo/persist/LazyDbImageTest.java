@@ -0,0 +1,109 @@
+// Modifications copyright (C) 2017, Baidu.com, Inc.
+// Copyright 2017 The Apache Software Foundation
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+package com.baidu.palo.persist;
+
+import com.baidu.palo.catalog.Catalog;
+import com.baidu.palo.catalog.Database;
+import com.baidu.palo.common.FeConstants;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.CountingInputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.List;
+
+public class LazyDbImageTest {
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        Catalog.getInstance().setJournalVersion(FeConstants.meta_version);
+        file = File.createTempFile("lazyDbImage", ".image");
+
+        List<Database> dbs = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            dbs.add(new Database(10000L + i, "cluster.db" + i));
+        }
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(file));
+        try {
+            // something before db sections
+            dos.writeLong(12345L);
+            new DbImageSections().save(dos, dbs, 0);
+        } finally {
+            dos.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testLoadAndSave() throws Exception {
+        CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+        DataInputStream dis = new DataInputStream(counter);
+        LazyDbImage image = new LazyDbImage(file);
+        try {
+            Assert.assertEquals(12345L, dis.readLong());
+            long checksum = image.loadIndex(dis, counter, 5, 0);
+            Assert.assertEquals(-1, dis.read());
+            Assert.assertEquals(5, image.size());
+            Assert.assertEquals(Long.valueOf(10002L), image.getDbId("cluster.db2"));
+
+            // load one db, others are left in image
+            Database db = image.load(10002L);
+            Assert.assertEquals("cluster.db2", db.getName());
+            Assert.assertEquals(4, image.size());
+            Assert.assertNull(image.getDbId("cluster.db2"));
+            Assert.assertNull(image.load(10002L));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(out);
+            long newChecksum = new DbImageSections().save(dos, Lists.newArrayList(db), 0);
+            newChecksum = image.save(dos, newChecksum);
+            dos.flush();
+            Assert.assertEquals(checksum, newChecksum);
+
+            DataInputStream newDis = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+            List<Database> dbs = new DbImageSections().load(newDis, 5);
+            Assert.assertEquals(5, dbs.size());
+            Assert.assertEquals(10002L, dbs.get(0).getId());
+            for (int i = 1; i < 5; i++) {
+                Assert.assertEquals("cluster.db" + (dbs.get(i).getId() - 10000L), dbs.get(i).getName());
+            }
+        } finally {
+            dis.close();
+            image.close();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.planner;
+
+import com.baidu.palo.analysis.DescriptorTable;
+import com.baidu.palo.analysis.Expr;
+import com.baidu.palo.analysis.JoinOperator;
+import com.baidu.palo.analysis.SlotDescriptor;
+import com.baidu.palo.analysis.SlotRef;
+import com.baidu.palo.analysis.TableName;
+import com.baidu.palo.analysis.TableRef;
+import com.baidu.palo.analysis.TupleDescriptor;
+import com.baidu.palo.catalog.Column;
+import com.baidu.palo.catalog.HashDistributionInfo;
+import com.baidu.palo.catalog.KeysType;
+import com.baidu.palo.catalog.OlapTable;
+import com.baidu.palo.catalog.PrimitiveType;
+import com.baidu.palo.catalog.SinglePartitionInfo;
+import com.baidu.palo.common.Pair;
+import com.baidu.palo.common.util.UnitTestUtil;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class DistributedPlannerTest {
+    private DescriptorTable descTbl;
+    private int nextNodeId;
+    private DistributedPlanner planner;
+    private Method canColocateJoin;
+
+    // olap scan node with given backends of buckets instead of scan ranges
+    private static class ColocateScanNode extends OlapScanNode {
+        private final Map<Integer, Set<Long>> bucketSeqToBackends;
+
+        public ColocateScanNode(PlanNodeId id, TupleDescriptor desc, Map<Integer, Set<Long>> bucketSeqToBackends) {
+            super(id, desc, "OlapScanNode");
+            this.bucketSeqToBackends = bucketSeqToBackends;
+        }
+
+        @Override
+        public Map<Integer, Set<Long>> getBucketSeqToBackends() {
+            Map<Integer, Set<Long>> copy = Maps.newHashMap();
+            for (Map.Entry<Integer, Set<Long>> entry : bucketSeqToBackends.entrySet()) {
+                copy.put(entry.getKey(), Sets.newHashSet(entry.getValue()));
+            }
+            return copy;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        descTbl = new DescriptorTable();
+        nextNodeId = 0;
+        planner = new DistributedPlanner(null);
+        canColocateJoin = UnitTestUtil.getPrivateMethod(DistributedPlanner.class, "canColocateJoin",
+                new Class[] { HashJoinNode.class, PlanFragment.class, PlanFragment.class });
+    }
+
+    // table with columns k0 and k1, distributed by k0 into 2 buckets
+    private static OlapTable createTable(long id, String group) {
+        List<Column> columns = Lists.newArrayList(new Column("k0", PrimitiveType.INT),
+                new Column("k1", PrimitiveType.INT));
+        OlapTable table = new OlapTable(id, "table" + id, columns, KeysType.DUP_KEYS, new SinglePartitionInfo(),
+                new HashDistributionInfo(2, Lists.newArrayList(columns.get(0))));
+        table.setColocateGroup(group);
+        return table;
+    }
+
+    private static Map<Integer, Set<Long>> bucketBackends(Long bucket0Backend, Long bucket1Backend) {
+        Map<Integer, Set<Long>> bucketSeqToBackends = Maps.newHashMap();
+        bucketSeqToBackends.put(0, Sets.newHashSet(bucket0Backend));
+        bucketSeqToBackends.put(1, Sets.newHashSet(bucket1Backend));
+        return bucketSeqToBackends;
+    }
+
+    private OlapScanNode createScan(OlapTable table, Map<Integer, Set<Long>> bucketSeqToBackends) {
+        TupleDescriptor tuple = descTbl.createTupleDescriptor();
+        tuple.setTable(table);
+        for (Column column : table.getBaseSchema()) {
+            SlotDescriptor slot = descTbl.addSlotDescriptor(tuple);
+            slot.setColumn(column);
+            slot.setIsMaterialized(true);
+        }
+        return new ColocateScanNode(new PlanNodeId(nextNodeId++), tuple, bucketSeqToBackends);
+    }
+
+    private static SlotRef slot(ScanNode scan, int index) {
+        return new SlotRef(scan.desc.getSlots().get(index));
+    }
+
+    private HashJoinNode createJoin(PlanNode left, PlanNode right, Expr leftExpr, Expr rightExpr,
+                                    ArrayList<String> joinHints) {
+        TableRef innerRef = new TableRef(new TableName("db", "tbl"), null);
+        innerRef.setJoinOp(JoinOperator.INNER_JOIN);
+        if (joinHints != null) {
+            innerRef.setJoinHints(joinHints);
+            Method analyzeJoinHints = UnitTestUtil.getPrivateMethod(TableRef.class, "analyzeJoinHints",
+                    new Class[] {});
+            try {
+                analyzeJoinHints.invoke(innerRef, new Object[] {});
+            } catch (Exception e) {
+                Assert.fail(e.getMessage());
+            }
+        }
+        List<Pair<Expr, Expr>> eqJoinConjuncts = Lists.newArrayList();
+        eqJoinConjuncts.add(new Pair<Expr, Expr>(leftExpr, rightExpr));
+        return new HashJoinNode(new PlanNodeId(nextNodeId++), left, right, innerRef, eqJoinConjuncts,
+                Lists.<Expr>newArrayList());
+    }
+
+    private boolean canColocateJoin(HashJoinNode join) throws Exception {
+        PlanFragment leftFragment = new PlanFragment(new PlanFragmentId(0), join.getChild(0), DataPartition.RANDOM);
+        PlanFragment rightFragment = new PlanFragment(new PlanFragmentId(1), join.getChild(1), DataPartition.RANDOM);
+        return (Boolean) canColocateJoin.invoke(planner, new Object[] { join, leftFragment, rightFragment });
+    }
+
+    @Test
+    public void testCanColocateJoin() throws Exception {
+        // tables of the same group joined on distribution column, buckets are on the same backends
+        OlapScanNode left = createScan(createTable(1L, "group1"), bucketBackends(10L, 11L));
+        OlapScanNode right = createScan(createTable(2L, "group1"), bucketBackends(10L, 11L));
+        Assert.assertTrue(canColocateJoin(createJoin(left, right, slot(left, 0), slot(right, 0), null)));
+
+        // a join of colocate tables on the left side
+        OlapScanNode third = createScan(createTable(3L, "group1"), bucketBackends(10L, 11L));
+        HashJoinNode join = createJoin(left, right, slot(left, 0), slot(right, 0), null);
+        SelectNode select = new SelectNode(new PlanNodeId(nextNodeId++), join);
+        Assert.assertTrue(canColocateJoin(createJoin(select, third, slot(right, 0), slot(third, 0), null)));
+    }
+
+    @Test
+    public void testCanNotColocateJoin() throws Exception {
+        // tables of different groups
+        OlapScanNode left = createScan(createTable(1L, "group1"), bucketBackends(10L, 11L));
+        OlapScanNode right = createScan(createTable(2L, "group2"), bucketBackends(10L, 11L));
+        Assert.assertFalse(canColocateJoin(createJoin(left, right, slot(left, 0), slot(right, 0), null)));
+
+        // tables not in any group
+        left = createScan(createTable(1L, null), bucketBackends(10L, 11L));
+        right = createScan(createTable(2L, null), bucketBackends(10L, 11L));
+        Assert.assertFalse(canColocateJoin(createJoin(left, right, slot(left, 0), slot(right, 0), null)));
+
+        // not joined on distribution column
+        left = createScan(createTable(1L, "group1"), bucketBackends(10L, 11L));
+        right = createScan(createTable(2L, "group1"), bucketBackends(10L, 11L));
+        Assert.assertFalse(canColocateJoin(createJoin(left, right, slot(left, 0), slot(right, 1), null)));
+        Assert.assertFalse(canColocateJoin(createJoin(left, right, slot(left, 1), slot(right, 1), null)));
+
+        // replicas of bucket 1 are not on the same backend
+        left = createScan(createTable(1L, "group1"), bucketBackends(10L, 11L));
+        right = createScan(createTable(2L, "group1"), bucketBackends(10L, 12L));
+        Assert.assertFalse(canColocateJoin(createJoin(left, right, slot(left, 0), slot(right, 0), null)));
+
+        // broadcast join is required by hint
+        left = createScan(createTable(1L, "group1"), bucketBackends(10L, 11L));
+        right = createScan(createTable(2L, "group1"), bucketBackends(10L, 11L));
+        Assert.assertFalse(canColocateJoin(createJoin(left, right, slot(left, 0), slot(right, 0),
+                Lists.newArrayList("BROADCAST"))));
+
+        // right side is not a scan of colocate table
+        left = createScan(createTable(1L, "group1"), bucketBackends(10L, 11L));
+        right = createScan(createTable(2L, "group1"), bucketBackends(10L, 11L));
+        EmptySetNode emptySet = new EmptySetNode(new PlanNodeId(nextNodeId++), right.getTupleIds());
+        Assert.assertFalse(canColocateJoin(createJoin(left, emptySet, slot(left, 0), slot(right, 0), null)));
+    }
+}
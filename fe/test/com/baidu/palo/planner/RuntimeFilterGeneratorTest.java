@@ -0,0 +1,195 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.planner;
+
+import com.baidu.palo.analysis.ArithmeticExpr;
+import com.baidu.palo.analysis.DescriptorTable;
+import com.baidu.palo.analysis.Expr;
+import com.baidu.palo.analysis.IntLiteral;
+import com.baidu.palo.analysis.JoinOperator;
+import com.baidu.palo.analysis.SlotDescriptor;
+import com.baidu.palo.analysis.SlotRef;
+import com.baidu.palo.analysis.TableName;
+import com.baidu.palo.analysis.TableRef;
+import com.baidu.palo.analysis.TupleDescriptor;
+import com.baidu.palo.catalog.Type;
+import com.baidu.palo.common.Pair;
+import com.baidu.palo.thrift.TRuntimeFilterType;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class RuntimeFilterGeneratorTest {
+    private static final int MAX_IN_NUM = 1024;
+
+    private DescriptorTable descTbl;
+    private int nextNodeId;
+
+    @Before
+    public void setUp() {
+        descTbl = new DescriptorTable();
+        nextNodeId = 0;
+    }
+
+    // scan of a tuple with one int slot and one varchar slot
+    private OlapScanNode createScan(long cardinality) {
+        TupleDescriptor tuple = descTbl.createTupleDescriptor();
+        SlotDescriptor intSlot = descTbl.addSlotDescriptor(tuple);
+        intSlot.setType(Type.INT);
+        intSlot.setIsMaterialized(true);
+        SlotDescriptor strSlot = descTbl.addSlotDescriptor(tuple);
+        strSlot.setType(Type.VARCHAR);
+        strSlot.setIsMaterialized(true);
+        OlapScanNode scan = new OlapScanNode(new PlanNodeId(nextNodeId++), tuple, "OlapScanNode");
+        scan.cardinality = cardinality;
+        return scan;
+    }
+
+    private static SlotRef intSlot(ScanNode scan) {
+        return new SlotRef(scan.desc.getSlots().get(0));
+    }
+
+    private static SlotRef strSlot(ScanNode scan) {
+        return new SlotRef(scan.desc.getSlots().get(1));
+    }
+
+    private HashJoinNode createJoin(JoinOperator joinOp, PlanNode probe, PlanNode build,
+                                    Expr probeExpr, Expr buildExpr) {
+        TableRef innerRef = new TableRef(new TableName("db", "tbl"), null);
+        innerRef.setJoinOp(joinOp);
+        List<Pair<Expr, Expr>> eqJoinConjuncts = Lists.newArrayList();
+        eqJoinConjuncts.add(new Pair<Expr, Expr>(probeExpr, buildExpr));
+        HashJoinNode join = new HashJoinNode(new PlanNodeId(nextNodeId++), probe, build, innerRef,
+                eqJoinConjuncts, Lists.<Expr>newArrayList());
+        join.cardinality = -1;
+        return join;
+    }
+
+    @Test
+    public void testEligibleJoins() {
+        for (JoinOperator joinOp : JoinOperator.values()) {
+            if (joinOp == JoinOperator.MERGE_JOIN || joinOp == JoinOperator.CROSS_JOIN) {
+                continue;
+            }
+            setUp();
+            OlapScanNode probe = createScan(10000);
+            OlapScanNode build = createScan(10);
+            HashJoinNode join = createJoin(joinOp, probe, build, strSlot(probe), strSlot(build));
+            List<RuntimeFilter> filters = new RuntimeFilterGenerator(MAX_IN_NUM).generate(join);
+
+            // only joins dropping unmatched probe rows get filters
+            boolean eligible = joinOp == JoinOperator.INNER_JOIN || joinOp == JoinOperator.LEFT_SEMI_JOIN
+                    || joinOp == JoinOperator.RIGHT_OUTER_JOIN || joinOp == JoinOperator.RIGHT_SEMI_JOIN;
+            Assert.assertEquals(joinOp.toString(), eligible ? 1 : 0, filters.size());
+            Assert.assertEquals(joinOp.toString(), eligible ? 1 : 0, join.getRuntimeFilters().size());
+            Assert.assertEquals(joinOp.toString(), eligible ? 1 : 0, probe.getRuntimeFilters().size());
+            Assert.assertTrue(build.getRuntimeFilters().isEmpty());
+        }
+    }
+
+    @Test
+    public void testInOrBloom() {
+        // build side is small enough for IN filter, min max filter is added for int slot
+        OlapScanNode probe = createScan(10000);
+        OlapScanNode build = createScan(MAX_IN_NUM);
+        HashJoinNode join = createJoin(JoinOperator.INNER_JOIN, probe, build, intSlot(probe), intSlot(build));
+        List<RuntimeFilter> filters = new RuntimeFilterGenerator(MAX_IN_NUM).generate(join);
+        Assert.assertEquals(2, filters.size());
+        Assert.assertEquals(TRuntimeFilterType.IN, filters.get(0).getType());
+        Assert.assertEquals(TRuntimeFilterType.MIN_MAX, filters.get(1).getType());
+
+        // build side is larger than runtime_filter_max_in_num
+        setUp();
+        probe = createScan(10000);
+        build = createScan(MAX_IN_NUM + 1);
+        join = createJoin(JoinOperator.INNER_JOIN, probe, build, strSlot(probe), strSlot(build));
+        filters = new RuntimeFilterGenerator(MAX_IN_NUM).generate(join);
+        Assert.assertEquals(1, filters.size());
+        Assert.assertEquals(TRuntimeFilterType.BLOOM, filters.get(0).getType());
+        Assert.assertEquals(RuntimeFilter.getBloomFilterSize(MAX_IN_NUM + 1),
+                filters.get(0).getBloomFilterSizeBytes());
+
+        // unknown build cardinality
+        setUp();
+        probe = createScan(10000);
+        build = createScan(-1);
+        join = createJoin(JoinOperator.INNER_JOIN, probe, build, strSlot(probe), strSlot(build));
+        filters = new RuntimeFilterGenerator(MAX_IN_NUM).generate(join);
+        Assert.assertEquals(1, filters.size());
+        Assert.assertEquals(TRuntimeFilterType.BLOOM, filters.get(0).getType());
+
+        // IN filter is disabled
+        setUp();
+        probe = createScan(10000);
+        build = createScan(10);
+        join = createJoin(JoinOperator.INNER_JOIN, probe, build, strSlot(probe), strSlot(build));
+        filters = new RuntimeFilterGenerator(0).generate(join);
+        Assert.assertEquals(TRuntimeFilterType.BLOOM, filters.get(0).getType());
+    }
+
+    @Test
+    public void testTargetScan() {
+        // probe side is a join of a and b under a select node, filter on slot of b goes to scan b
+        OlapScanNode scanA = createScan(10000);
+        OlapScanNode scanB = createScan(10000);
+        OlapScanNode scanC = createScan(10);
+        HashJoinNode joinAB = createJoin(JoinOperator.INNER_JOIN, scanA, scanB, strSlot(scanA), strSlot(scanB));
+        SelectNode select = new SelectNode(new PlanNodeId(nextNodeId++), joinAB);
+        HashJoinNode join = createJoin(JoinOperator.INNER_JOIN, select, scanC, strSlot(scanB), strSlot(scanC));
+        List<RuntimeFilter> filters = new RuntimeFilterGenerator(MAX_IN_NUM).generate(join);
+
+        // one filter of the lower join, one of the upper join
+        Assert.assertEquals(2, filters.size());
+        Assert.assertSame(joinAB, filters.get(0).getBuilderNode());
+        Assert.assertEquals(1, filters.get(0).getTargets().size());
+        Assert.assertTrue(filters.get(0).getTargets().containsKey(scanA));
+        Assert.assertSame(join, filters.get(1).getBuilderNode());
+        Assert.assertEquals(1, filters.get(1).getTargets().size());
+        Assert.assertTrue(filters.get(1).getTargets().containsKey(scanB));
+        Assert.assertEquals(1, scanA.getRuntimeFilters().size());
+        Assert.assertEquals(1, scanB.getRuntimeFilters().size());
+        Assert.assertTrue(scanC.getRuntimeFilters().isEmpty());
+    }
+
+    @Test
+    public void testNoTargetScan() {
+        // filter can not pass the nullable side of an outer join
+        OlapScanNode scanA = createScan(10000);
+        OlapScanNode scanB = createScan(10000);
+        OlapScanNode scanC = createScan(10);
+        HashJoinNode joinAB = createJoin(JoinOperator.LEFT_OUTER_JOIN, scanA, scanB, strSlot(scanA), strSlot(scanB));
+        HashJoinNode join = createJoin(JoinOperator.INNER_JOIN, joinAB, scanC, strSlot(scanB), strSlot(scanC));
+        Assert.assertTrue(new RuntimeFilterGenerator(MAX_IN_NUM).generate(join).isEmpty());
+        Assert.assertTrue(scanB.getRuntimeFilters().isEmpty());
+
+        // probe expr is not a slot
+        setUp();
+        OlapScanNode probe = createScan(10000);
+        OlapScanNode build = createScan(10);
+        Expr probeExpr = new ArithmeticExpr(ArithmeticExpr.Operator.ADD, intSlot(probe), new IntLiteral(1));
+        join = createJoin(JoinOperator.INNER_JOIN, probe, build, probeExpr, intSlot(build));
+        Assert.assertTrue(new RuntimeFilterGenerator(MAX_IN_NUM).generate(join).isEmpty());
+    }
+}
@@ -0,0 +1,275 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.analysis.AccessTestUtil;
+import com.baidu.palo.common.Config;
+import com.baidu.palo.mysql.MysqlChannel;
+import com.baidu.palo.mysql.MysqlProto;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.easymock.PowerMock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({"org.apache.log4j.*", "javax.management.*"})
+@PrepareForTest(MysqlProto.class)
+public class ConnectEventLoopTest {
+    private static final long TIMEOUT_MS = 5000;
+    // code of COM_PING
+    private static final byte COM_PING = 14;
+
+    private boolean nioEnabled;
+    private int ioThreadsNum;
+    private int workerThreadsNum;
+
+    private ServerSocketChannel serverChannel;
+    // client side of the last connection
+    private SocketChannel client;
+    private byte clientSequenceId;
+
+    @Before
+    public void setUp() throws IOException {
+        nioEnabled = Config.mysql_service_nio_enabled;
+        ioThreadsNum = Config.mysql_nio_io_threads_num;
+        workerThreadsNum = Config.mysql_nio_worker_threads_num;
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Config.mysql_service_nio_enabled = nioEnabled;
+        Config.mysql_nio_io_threads_num = ioThreadsNum;
+        Config.mysql_nio_worker_threads_num = workerThreadsNum;
+        if (client != null) {
+            client.close();
+        }
+        serverChannel.close();
+    }
+
+    // Connect to server channel and return the server side of the connection.
+    private SocketChannel connect() throws IOException {
+        client = SocketChannel.open(serverChannel.getLocalAddress());
+        clientSequenceId = 0;
+        return serverChannel.accept();
+    }
+
+    private void writePacket(byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + payload.length);
+        buffer.put((byte) payload.length).put((byte) (payload.length >> 8)).put((byte) (payload.length >> 16));
+        buffer.put(clientSequenceId++);
+        buffer.put(payload);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            client.write(buffer);
+        }
+    }
+
+    private byte[] readPacket() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(header);
+        int length = (header.get(0) & 0xFF) | (header.get(1) & 0xFF) << 8 | (header.get(2) & 0xFF) << 16;
+        clientSequenceId = (byte) (header.get(3) + 1);
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload);
+        return payload.array();
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (client.read(buffer) < 0) {
+                throw new IOException("connection is closed by server");
+            }
+        }
+    }
+
+    private void ping() throws IOException {
+        clientSequenceId = 0;
+        writePacket(new byte[] {COM_PING});
+        // OK packet
+        Assert.assertEquals(0, readPacket()[0]);
+    }
+
+    private static void waitFor(ConnectEventLoop eventLoop, int connectionNum) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (eventLoop.getConnectionNum() != connectionNum && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(connectionNum, eventLoop.getConnectionNum());
+    }
+
+    // Scheduler which records connections dispatched by event loop, and whether they are in blocking mode.
+    private ConnectScheduler mockScheduler(final BlockingQueue<ConnectContext> dispatched,
+                                           final BlockingQueue<Boolean> isBlocking) {
+        ConnectScheduler scheduler = EasyMock.createMock(ConnectScheduler.class);
+        scheduler.dispatch(EasyMock.anyObject(ConnectContext.class));
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                ConnectContext ctx = (ConnectContext) EasyMock.getCurrentArguments()[0];
+                isBlocking.add(ctx.getMysqlChannel().getChannel().isBlocking());
+                dispatched.add(ctx);
+                return null;
+            }
+        }).anyTimes();
+        EasyMock.replay(scheduler);
+        return scheduler;
+    }
+
+    @Test
+    public void testReadyPacketDispatched() throws Exception {
+        BlockingQueue<ConnectContext> dispatched = new LinkedBlockingQueue<ConnectContext>();
+        BlockingQueue<Boolean> isBlocking = new LinkedBlockingQueue<Boolean>();
+        ConnectEventLoop eventLoop = new ConnectEventLoop("test-event-loop", mockScheduler(dispatched, isBlocking));
+        eventLoop.start();
+        try {
+            ConnectContext ctx = new ConnectContext(connect());
+            eventLoop.register(ctx);
+            waitFor(eventLoop, 1);
+            // nothing to read
+            Assert.assertNull(dispatched.poll(100, TimeUnit.MILLISECONDS));
+
+            writePacket(new byte[] {COM_PING});
+            Assert.assertSame(ctx, dispatched.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            Assert.assertTrue(isBlocking.poll());
+            // the connection is not watched while it is processed
+            waitFor(eventLoop, 0);
+
+            // packet is left for the worker
+            MysqlChannel channel = ctx.getMysqlChannel();
+            channel.setSequenceId(0);
+            ByteBuffer packet = channel.fetchOnePacket();
+            Assert.assertEquals(COM_PING, packet.get());
+        } finally {
+            eventLoop.stop();
+        }
+    }
+
+    @Test
+    public void testIdleConnectionReturned() throws Exception {
+        BlockingQueue<ConnectContext> dispatched = new LinkedBlockingQueue<ConnectContext>();
+        BlockingQueue<Boolean> isBlocking = new LinkedBlockingQueue<Boolean>();
+        ConnectEventLoop eventLoop = new ConnectEventLoop("test-event-loop", mockScheduler(dispatched, isBlocking));
+        eventLoop.start();
+        try {
+            ConnectContext ctx = new ConnectContext(connect());
+            MysqlChannel channel = ctx.getMysqlChannel();
+            eventLoop.register(ctx);
+            for (int i = 0; i < 3; ++i) {
+                waitFor(eventLoop, 1);
+                clientSequenceId = 0;
+                writePacket(new byte[] {COM_PING});
+                Assert.assertSame(ctx, dispatched.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+                Assert.assertTrue(isBlocking.poll());
+                channel.setSequenceId(0);
+                Assert.assertNotNull(channel.fetchOnePacket());
+                // done by worker after the command
+                eventLoop.register(ctx);
+            }
+            waitFor(eventLoop, 1);
+            Assert.assertNull(dispatched.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            eventLoop.stop();
+        }
+    }
+
+    private ConnectScheduler createNioScheduler() throws Exception {
+        Config.mysql_service_nio_enabled = true;
+        Config.mysql_nio_io_threads_num = 1;
+        Config.mysql_nio_worker_threads_num = 2;
+
+        // simplified handshake: one packet each way
+        PowerMock.mockStaticPartial(MysqlProto.class, "negotiate");
+        EasyMock.expect(MysqlProto.negotiate(EasyMock.anyObject(ConnectContext.class))).andAnswer(
+                new IAnswer<Boolean>() {
+                    @Override
+                    public Boolean answer() throws Throwable {
+                        ConnectContext ctx = (ConnectContext) EasyMock.getCurrentArguments()[0];
+                        ctx.getState().setOk();
+                        MysqlChannel channel = ctx.getMysqlChannel();
+                        channel.sendAndFlush(ByteBuffer.wrap("handshake".getBytes()));
+                        return channel.fetchOnePacket() != null;
+                    }
+                }).anyTimes();
+        PowerMock.replay(MysqlProto.class);
+        return new ConnectScheduler(10);
+    }
+
+    private ConnectContext handshake(ConnectScheduler scheduler) throws Exception {
+        ConnectContext ctx = new ConnectContext(connect());
+        ctx.setCatalog(AccessTestUtil.fetchAdminCatalog());
+        ctx.setUser("root");
+        Assert.assertTrue(scheduler.submit(ctx));
+
+        Assert.assertEquals("handshake", new String(readPacket()));
+        writePacket("auth".getBytes());
+        // OK packet
+        Assert.assertEquals(0, readPacket()[0]);
+        Assert.assertSame(ctx, scheduler.getContext(ctx.getConnectionId()));
+        return ctx;
+    }
+
+    @Test
+    public void testHandshakeAndCommands() throws Exception {
+        ConnectScheduler scheduler = createNioScheduler();
+        ConnectContext ctx = handshake(scheduler);
+        // each command is read by event loop and processed by worker, then the connection is idle again
+        for (int i = 0; i < 3; ++i) {
+            ping();
+        }
+        Assert.assertFalse(ctx.isKilled());
+        Assert.assertSame(ctx, scheduler.getContext(ctx.getConnectionId()));
+    }
+
+    @Test
+    public void testCloseOnEof() throws Exception {
+        ConnectScheduler scheduler = createNioScheduler();
+        ConnectContext ctx = handshake(scheduler);
+        ping();
+
+        client.close();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (scheduler.getContext(ctx.getConnectionId()) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertNull(scheduler.getContext(ctx.getConnectionId()));
+        Assert.assertTrue(ctx.isKilled());
+        Assert.assertFalse(ctx.getMysqlChannel().getChannel().isOpen());
+    }
+}
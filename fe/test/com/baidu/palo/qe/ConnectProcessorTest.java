@@ -22,15 +22,21 @@ package com.baidu.palo.qe;
 
 import com.baidu.palo.analysis.AccessTestUtil;
 import com.baidu.palo.catalog.Catalog;
+import com.baidu.palo.catalog.PrimitiveType;
 import com.baidu.palo.mysql.MysqlChannel;
+import com.baidu.palo.mysql.MysqlColType;
 import com.baidu.palo.mysql.MysqlCommand;
 import com.baidu.palo.mysql.MysqlEofPacket;
 import com.baidu.palo.mysql.MysqlErrPacket;
 import com.baidu.palo.mysql.MysqlOkPacket;
+import com.baidu.palo.mysql.MysqlProto;
 import com.baidu.palo.mysql.MysqlSerializer;
 
+import com.google.common.collect.Lists;
+
 import org.junit.Assert;
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -43,6 +49,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.List;
 
 @RunWith(PowerMockRunner.class)
 @PowerMockIgnore({"javax.management.*"})
@@ -158,6 +165,8 @@ public class ConnectProcessorTest {
         EasyMock.expectLastCall().andDelegateTo(myContext).anyTimes();
         context.getDatabase();
         EasyMock.expectLastCall().andDelegateTo(myContext).anyTimes();
+        EasyMock.expect(context.addPreparedStmt(EasyMock.anyObject(String.class)))
+                .andDelegateTo(myContext).anyTimes();
 
         EasyMock.replay(context);
 
@@ -282,6 +291,82 @@ public class ConnectProcessorTest {
         Assert.assertTrue(myContext.getState().toResponsePacket() instanceof MysqlErrPacket);
     }
 
+    @Test
+    public void testStmtPrepare() throws Exception {
+        MysqlSerializer serializer = MysqlSerializer.newInstance();
+        serializer.writeInt1(22);
+        serializer.writeEofString("select k1, k2 from t where k1 = ?");
+
+        // record packets sent before the final one
+        final List<ByteBuffer> sentPackets = Lists.newArrayList();
+        MysqlChannel channel = EasyMock.createNiceMock(MysqlChannel.class);
+        EasyMock.expect(channel.fetchOnePacket()).andReturn(serializer.toByteBuffer()).once();
+        channel.sendOnePacket(EasyMock.isA(ByteBuffer.class));
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() {
+                ByteBuffer packet = (ByteBuffer) EasyMock.getCurrentArguments()[0];
+                byte[] bytes = new byte[packet.remaining()];
+                packet.duplicate().get(bytes);
+                sentPackets.add(ByteBuffer.wrap(bytes));
+                return null;
+            }
+        }).anyTimes();
+        EasyMock.expect(channel.getRemote()).andReturn("127.0.0.1:12345").anyTimes();
+        EasyMock.replay(channel);
+        ConnectContext ctx = initMockContext(channel, AccessTestUtil.fetchAdminCatalog());
+
+        // Mock analysis of result columns
+        StmtExecutor qe = EasyMock.createNiceMock(StmtExecutor.class);
+        EasyMock.expect(qe.analyzeResultColumns(EasyMock.<List<String>>anyObject(),
+                EasyMock.<List<PrimitiveType>>anyObject())).andAnswer(new IAnswer<Boolean>() {
+            @Override
+            public Boolean answer() {
+                List<String> colNames = (List<String>) EasyMock.getCurrentArguments()[0];
+                List<PrimitiveType> colTypes = (List<PrimitiveType>) EasyMock.getCurrentArguments()[1];
+                colNames.add("k1");
+                colNames.add("k2");
+                colTypes.add(PrimitiveType.INT);
+                colTypes.add(PrimitiveType.DATETIME);
+                return true;
+            }
+        }).once();
+        EasyMock.replay(qe);
+        PowerMock.expectNew(StmtExecutor.class, EasyMock.isA(ConnectContext.class),
+                EasyMock.eq("select k1, k2 from t where k1 = NULL")).andReturn(qe).once();
+        PowerMock.replay(StmtExecutor.class);
+
+        ConnectProcessor processor = new ConnectProcessor(ctx);
+        processor.processOnce();
+        Assert.assertEquals(MysqlCommand.COM_STMT_PREPARE, myContext.getCommand());
+        Assert.assertTrue(myContext.getState().toResponsePacket() instanceof MysqlEofPacket);
+
+        // prepare ok, parameter, EOF of parameters, 2 columns, EOF of columns is the final packet
+        Assert.assertEquals(5, sentPackets.size());
+        ByteBuffer prepareOk = sentPackets.get(0);
+        Assert.assertEquals(0, MysqlProto.readInt1(prepareOk));
+        Assert.assertEquals(1, MysqlProto.readInt4(prepareOk));
+        Assert.assertEquals(2, MysqlProto.readInt2(prepareOk));
+        Assert.assertEquals(1, MysqlProto.readInt2(prepareOk));
+        Assert.assertEquals(0xfe, MysqlProto.readInt1(sentPackets.get(2)));
+        assertColumn(sentPackets.get(3), "k1", MysqlColType.MYSQL_TYPE_LONG);
+        assertColumn(sentPackets.get(4), "k2", MysqlColType.MYSQL_TYPE_DATETIME);
+    }
+
+    private static void assertColumn(ByteBuffer packet, String name, MysqlColType type) {
+        // catalog, schema, table and origin table
+        for (int i = 0; i < 4; i++) {
+            MysqlProto.readLenEncodedString(packet);
+        }
+        Assert.assertEquals(name, new String(MysqlProto.readLenEncodedString(packet)));
+        MysqlProto.readLenEncodedString(packet);
+        // length of fields, character set and column length
+        MysqlProto.readVInt(packet);
+        MysqlProto.readInt2(packet);
+        MysqlProto.readInt4(packet);
+        Assert.assertEquals(type.getCode(), MysqlProto.readInt1(packet));
+    }
+
     @Test
     public void testFieldList() throws Exception {
         ConnectContext ctx = initMockContext(mockChannel(fieldListPacket), AccessTestUtil.fetchAdminCatalog());
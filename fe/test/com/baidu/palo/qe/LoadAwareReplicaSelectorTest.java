@@ -0,0 +1,110 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.catalog.Replica;
+import com.baidu.palo.catalog.Replica.ReplicaState;
+import com.baidu.palo.thrift.TNetworkAddress;
+import com.baidu.palo.thrift.TScanRangeLocation;
+import com.baidu.palo.thrift.TUniqueId;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class LoadAwareReplicaSelectorTest {
+    private static final long TABLET_ID = 100;
+
+    private BackendLoadStats stats;
+    private LoadAwareReplicaSelector selector;
+    private List<Replica> replicas;
+
+    @Before
+    public void setUp() {
+        stats = new BackendLoadStats();
+        selector = new LoadAwareReplicaSelector(stats);
+        replicas = Lists.newArrayList();
+        for (long backendId = 1; backendId <= 3; backendId++) {
+            replicas.add(new Replica(backendId, backendId, ReplicaState.NORMAL));
+        }
+    }
+
+    @Test
+    public void testPreferLessInFlightFragments() {
+        stats.onFragmentStarted(new TUniqueId(1, 1), 1, 60000);
+        stats.onFragmentStarted(new TUniqueId(1, 2), 1, 60000);
+        stats.onFragmentStarted(new TUniqueId(1, 3), 2, 60000);
+        selector.order(TABLET_ID, replicas);
+        Assert.assertEquals(3, replicas.get(0).getBackendId());
+        Assert.assertEquals(2, replicas.get(1).getBackendId());
+        Assert.assertEquals(1, replicas.get(2).getBackendId());
+
+        // finish is idempotent
+        stats.onFragmentFinished(new TUniqueId(1, 1));
+        stats.onFragmentFinished(new TUniqueId(1, 1));
+        Assert.assertEquals(1, stats.getInFlightFragmentNum(1));
+    }
+
+    @Test
+    public void testPreferLowLatencyAndAffinity() {
+        stats.updateLatency(1, 50);
+        stats.updateLatency(2, 50);
+        selector.order(TABLET_ID, replicas);
+        Assert.assertEquals(3, replicas.get(0).getBackendId());
+
+        // the backend served the tablet last time wins among equally loaded backends
+        stats.updateLatency(3, 50);
+        stats.setLastServedBackend(TABLET_ID, 2);
+        selector.order(TABLET_ID, replicas);
+        Assert.assertEquals(2, replicas.get(0).getBackendId());
+    }
+
+    @Test
+    public void testChooseLocation() {
+        List<TScanRangeLocation> locations = Lists.newArrayList();
+        Map<TNetworkAddress, Long> assignedBytesPerHost = Maps.newHashMap();
+        for (long backendId = 1; backendId <= 3; backendId++) {
+            TScanRangeLocation location = new TScanRangeLocation(new TNetworkAddress("host" + backendId, 9060));
+            location.setBackend_id(backendId);
+            locations.add(location);
+            assignedBytesPerHost.put(location.server, 0L);
+        }
+        stats.onFragmentStarted(new TUniqueId(1, 1), 1, 60000);
+        stats.onFragmentStarted(new TUniqueId(1, 2), 1, 60000);
+
+        // loaded backend is avoided, and ranges of the query are spread over the others
+        Assert.assertEquals(2, selector.choose(TABLET_ID, locations, assignedBytesPerHost).getBackend_id());
+        assignedBytesPerHost.put(locations.get(1).server, 1L);
+        Assert.assertEquals(3, selector.choose(TABLET_ID, locations, assignedBytesPerHost).getBackend_id());
+        assignedBytesPerHost.put(locations.get(2).server, 1L);
+        Assert.assertEquals(2, selector.choose(TABLET_ID, locations, assignedBytesPerHost).getBackend_id());
+
+        // random policy only balances ranges of the query
+        assignedBytesPerHost.put(locations.get(1).server, 2L);
+        ReplicaSelector randomSelector = ReplicaSelector.getSelector(ReplicaSelector.RANDOM);
+        Assert.assertEquals(1, randomSelector.choose(TABLET_ID, locations, assignedBytesPerHost).getBackend_id());
+    }
+}
@@ -0,0 +1,173 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.catalog.Column;
+import com.baidu.palo.catalog.KeysType;
+import com.baidu.palo.catalog.OlapTable;
+import com.baidu.palo.catalog.PartitionKey;
+import com.baidu.palo.catalog.PrimitiveType;
+import com.baidu.palo.catalog.RandomDistributionInfo;
+import com.baidu.palo.catalog.RangePartitionInfo;
+import com.baidu.palo.common.AnalysisException;
+import com.baidu.palo.common.Pair;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PartitionCacheTest {
+    private static final String KEY = "key";
+
+    private OlapTable table;
+    private Map<Long, Long> signatures;
+    private PartitionCache cache;
+
+    // table partitioned by k1: p10 [0, 10), p11 [10, 20), p12 [20, 30)
+    @Before
+    public void setUp() throws AnalysisException {
+        Column k1 = new Column("k1", PrimitiveType.INT);
+        k1.setIsKey(true);
+        List<Column> columns = Lists.newArrayList(k1, new Column("v", PrimitiveType.INT));
+        RangePartitionInfo partitionInfo = new RangePartitionInfo(Lists.newArrayList(k1));
+        for (long partitionId = 10; partitionId <= 12; ++partitionId) {
+            long lower = (partitionId - 10) * 10;
+            partitionInfo.setRange(partitionId, Range.closedOpen(createKey(k1, lower), createKey(k1, lower + 10)));
+        }
+        table = new OlapTable(1L, "t", columns, KeysType.AGG_KEYS, partitionInfo, new RandomDistributionInfo(1));
+        signatures = Maps.newHashMap();
+        signatures.put(1L, 2L);
+        cache = PartitionCache.getInstance();
+        cache.clear();
+    }
+
+    private static PartitionKey createKey(Column column, long value) throws AnalysisException {
+        return PartitionKey.createPartitionKey(Lists.newArrayList(String.valueOf(value)), Lists.newArrayList(column));
+    }
+
+    // text protocol row of (k1, v)
+    private static ByteBuffer row(int k1, int v) {
+        ByteBuffer row = ByteBuffer.allocate(32);
+        byte[] k1Bytes = String.valueOf(k1).getBytes();
+        byte[] vBytes = String.valueOf(v).getBytes();
+        row.put((byte) k1Bytes.length).put(k1Bytes);
+        row.put((byte) vBytes.length).put(vBytes);
+        row.flip();
+        return row;
+    }
+
+    private static Map<Long, Pair<Long, Long>> versions(long... idAndVersions) {
+        Map<Long, Pair<Long, Long>> versions = Maps.newHashMap();
+        for (int i = 0; i < idAndVersions.length; i += 2) {
+            versions.put(idAndVersions[i], Pair.create(idAndVersions[i + 1], 0L));
+        }
+        return versions;
+    }
+
+    private static Set<String> values(List<ByteBuffer> rows) {
+        Set<String> values = Sets.newHashSet();
+        for (ByteBuffer row : rows) {
+            values.add(PartitionCache.readColumn(row, 0) + ":" + PartitionCache.readColumn(row, 1));
+        }
+        return values;
+    }
+
+    @Test
+    public void testSplitRowsIntoPartitions() {
+        Map<Long, Pair<Long, Long>> versions = versions(10, 1, 11, 1, 12, 1);
+        Set<Long> allIds = Sets.newHashSet(10L, 11L, 12L);
+        // p12 is a boundary partition of the query, not cached
+        cache.put(KEY, table, 0, versions, allIds, Sets.newHashSet(10L, 11L), signatures,
+                Lists.newArrayList(row(1, 100), row(15, 200), row(5, 300), row(25, 400)));
+
+        List<ByteBuffer> cachedRows = Lists.newArrayList();
+        List<Long> missed = cache.get(KEY, versions, Sets.newHashSet(10L), signatures, cachedRows);
+        Assert.assertEquals(Sets.newHashSet(11L, 12L), Sets.newHashSet(missed));
+        Assert.assertEquals(Sets.newHashSet("1:100", "5:300"), values(cachedRows));
+
+        cachedRows.clear();
+        missed = cache.get(KEY, versions, allIds, signatures, cachedRows);
+        Assert.assertEquals(Lists.newArrayList(12L), missed);
+        Assert.assertEquals(Sets.newHashSet("1:100", "5:300", "15:200"), values(cachedRows));
+
+        // row out of all partitions, nothing is cached
+        cache.clear();
+        cache.put(KEY, table, 0, versions, allIds, allIds, signatures,
+                Lists.newArrayList(row(1, 100), row(35, 200)));
+        cachedRows.clear();
+        Assert.assertEquals(3, cache.get(KEY, versions, allIds, signatures, cachedRows).size());
+        Assert.assertTrue(cachedRows.isEmpty());
+    }
+
+    @Test
+    public void testMergeCachedAndFreshRows() {
+        Set<Long> allIds = Sets.newHashSet(10L, 11L, 12L);
+        cache.put(KEY, table, 0, versions(10, 1, 11, 1), Sets.newHashSet(10L, 11L), allIds, signatures,
+                Lists.newArrayList(row(1, 100), row(15, 200)));
+
+        // p11 is loaded and p12 is added
+        Map<Long, Pair<Long, Long>> versions = versions(10, 1, 11, 2, 12, 1);
+        List<ByteBuffer> cachedRows = Lists.newArrayList();
+        List<Long> missed = cache.get(KEY, versions, allIds, signatures, cachedRows);
+        Assert.assertEquals(Sets.newHashSet(11L, 12L), Sets.newHashSet(missed));
+        Assert.assertEquals(Sets.newHashSet("1:100"), values(cachedRows));
+
+        // fresh rows of missed partitions are cached, and merged with cached ones by the next query
+        List<ByteBuffer> freshRows = Lists.newArrayList(row(15, 210), row(25, 300));
+        cache.put(KEY, table, 0, versions, missed, allIds, signatures, freshRows);
+        cachedRows.clear();
+        Assert.assertTrue(cache.get(KEY, versions, allIds, signatures, cachedRows).isEmpty());
+        Assert.assertEquals(Sets.newHashSet("1:100", "15:210", "25:300"), values(cachedRows));
+
+        // schema change invalidates all partitions
+        Map<Long, Long> newSignatures = Maps.newHashMap();
+        newSignatures.put(1L, 3L);
+        cachedRows.clear();
+        Assert.assertEquals(3, cache.get(KEY, versions, allIds, newSignatures, cachedRows).size());
+        Assert.assertTrue(cachedRows.isEmpty());
+    }
+
+    @Test
+    public void testReadColumn() {
+        // text protocol row: "2017-01-01", NULL, "12"
+        ByteBuffer row = ByteBuffer.allocate(32);
+        byte[] date = "2017-01-01".getBytes();
+        row.put((byte) date.length).put(date);
+        row.put((byte) 251);
+        row.put((byte) 2).put("12".getBytes());
+        row.flip();
+
+        Assert.assertEquals("2017-01-01", PartitionCache.readColumn(row, 0));
+        Assert.assertNull(PartitionCache.readColumn(row, 1));
+        Assert.assertEquals("12", PartitionCache.readColumn(row, 2));
+        // row is not consumed
+        Assert.assertEquals(0, row.position());
+    }
+}
@@ -0,0 +1,261 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.analysis.Analyzer;
+import com.baidu.palo.analysis.DateLiteral;
+import com.baidu.palo.analysis.LiteralExpr;
+import com.baidu.palo.analysis.LiteralParam;
+import com.baidu.palo.analysis.QueryStmt;
+import com.baidu.palo.analysis.StringLiteral;
+import com.baidu.palo.catalog.AccessPrivilege;
+import com.baidu.palo.catalog.Catalog;
+import com.baidu.palo.catalog.Database;
+import com.baidu.palo.catalog.OlapTable;
+import com.baidu.palo.catalog.Type;
+import com.baidu.palo.catalog.UserPropertyMgr;
+import com.baidu.palo.common.util.UnitTestUtil;
+import com.baidu.palo.planner.OlapScanNode;
+import com.baidu.palo.planner.PlanFragment;
+import com.baidu.palo.planner.Planner;
+import com.baidu.palo.planner.ScanNode;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java_cup.runtime.Symbol;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.easymock.PowerMock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RunWith(PowerMockRunner.class)
+@PowerMockIgnore({"org.apache.log4j.*", "javax.management.*"})
+@PrepareForTest(Catalog.class)
+public class PlanCacheTest {
+    private static final String SQL = "select * from tbl where k1 = 1";
+    private static final String DB_NAME = "default_cluster:testDb";
+    private static final long TABLE_ID = 2L;
+    private static final long INDEX_ID = 4L;
+
+    private PlanCache cache;
+    private Database db;
+    private OlapTable table;
+    private Map<String, Database> dbs;
+    private Analyzer analyzer;
+    private Planner planner;
+    private QueryStmt stmt;
+    private ConnectContext context;
+    private PlanCache.Key key;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = PlanCache.getInstance();
+        cache.clear();
+
+        db = UnitTestUtil.createDb(1L, TABLE_ID, 3L, INDEX_ID, 5L, 6L, 1L, 0L);
+        table = (OlapTable) db.getTable(TABLE_ID);
+        dbs = Maps.newTreeMap();
+        dbs.put(DB_NAME, db);
+
+        analyzer = EasyMock.createMock(Analyzer.class);
+        EasyMock.replay(analyzer);
+        OlapScanNode scanNode = EasyMock.createMock(OlapScanNode.class);
+        EasyMock.expect(scanNode.getOlapTable()).andReturn(table).anyTimes();
+        scanNode.computeColumnFilters(analyzer);
+        EasyMock.expectLastCall().anyTimes();
+        scanNode.refreshScanRanges(analyzer);
+        EasyMock.expectLastCall().anyTimes();
+        EasyMock.replay(scanNode);
+        planner = EasyMock.createMock(Planner.class);
+        EasyMock.expect(planner.getScanNodes()).andReturn(Lists.<ScanNode>newArrayList(scanNode)).anyTimes();
+        EasyMock.expect(planner.getFragments()).andReturn(Lists.<PlanFragment>newArrayList()).anyTimes();
+        EasyMock.replay(planner);
+        stmt = EasyMock.createMock(QueryStmt.class);
+        EasyMock.replay(stmt);
+
+        context = EasyMock.createMock(ConnectContext.class);
+        EasyMock.expect(context.getUser()).andReturn("user").anyTimes();
+        EasyMock.expect(context.getClusterName()).andReturn("default_cluster").anyTimes();
+        EasyMock.expect(context.getDatabase()).andReturn(DB_NAME).anyTimes();
+        EasyMock.expect(context.getSessionVariable()).andReturn(new SessionVariable()).anyTimes();
+        EasyMock.replay(context);
+        key = PlanCache.buildKey(context, SQL);
+    }
+
+    private PlanCache.Entry put(PlanCache.Key key) {
+        return cache.put(key, stmt, analyzer, planner, dbs, Lists.<LiteralParam>newArrayList());
+    }
+
+    private void mockCatalog(boolean hasAccess) {
+        UserPropertyMgr userMgr = EasyMock.createMock(UserPropertyMgr.class);
+        EasyMock.expect(userMgr.checkAccess("user", DB_NAME, AccessPrivilege.READ_ONLY)).andReturn(hasAccess)
+                .anyTimes();
+        EasyMock.replay(userMgr);
+        Catalog catalog = EasyMock.createMock(Catalog.class);
+        EasyMock.expect(catalog.getDb(DB_NAME)).andReturn(db).anyTimes();
+        EasyMock.expect(catalog.getUserMgr()).andReturn(userMgr).anyTimes();
+        EasyMock.replay(catalog);
+
+        PowerMock.mockStatic(Catalog.class);
+        EasyMock.expect(Catalog.getInstance()).andReturn(catalog).anyTimes();
+        PowerMock.replay(Catalog.class);
+    }
+
+    @Test
+    public void testHit() throws Exception {
+        mockCatalog(true);
+        PlanCache.Entry entry = put(key);
+        Assert.assertNotNull(entry);
+        // the same key is cached once
+        Assert.assertNull(put(key));
+        cache.release(entry);
+
+        PlanCache.Entry cached = cache.acquire(PlanCache.buildKey(context, "SELECT *  FROM tbl\nWHERE k1 = 1"));
+        Assert.assertSame(entry, cached);
+        Assert.assertSame(planner, cached.getPlanner());
+        Assert.assertTrue(cache.bind(cached, key));
+        Assert.assertTrue(cache.isValid(cached, context));
+        cache.release(cached);
+    }
+
+    @Test
+    public void testShape() throws Exception {
+        Assert.assertEquals(key.getShape(), PlanCache.buildKey(context, "select * from tbl where k1 = 2").getShape());
+        Assert.assertEquals(1, key.getLiterals().size());
+        Assert.assertEquals(1L, key.getLiterals().get(0).value);
+        // type of integer literal is part of shape
+        Assert.assertFalse(key.getShape().equals(
+                PlanCache.buildKey(context, "select * from tbl where k1 = 1000").getShape()));
+        Assert.assertFalse(key.getShape().equals(
+                PlanCache.buildKey(context, "select * from tbl where k2 = 1").getShape()));
+        Assert.assertFalse(key.getShape().equals(
+                PlanCache.buildKey(context, "select * from tbl where k1 = '1'").getShape()));
+        Assert.assertFalse(PlanCache.buildKey(context, "select `date` from tbl").getShape().equals(
+                PlanCache.buildKey(context, "select `year` from tbl").getShape()));
+        Assert.assertNull(PlanCache.buildKey(context, "select * from tbl where k1 = 'a"));
+    }
+
+    @Test
+    public void testFixedLiteral() throws Exception {
+        mockCatalog(true);
+        // no params, so the literal is fixed
+        cache.release(put(key));
+        Assert.assertNull(cache.acquire(PlanCache.buildKey(context, "select * from tbl where k1 = 2")));
+        PlanCache.Entry entry = cache.acquire(PlanCache.buildKey(context, "select * from tbl where k1 = 1"));
+        Assert.assertNotNull(entry);
+        cache.release(entry);
+    }
+
+    @Test
+    public void testRebindableParams() throws Exception {
+        PlanCache.Key key = PlanCache.buildKey(context, "select * from tbl where k1 = '2018-01-01'");
+        Symbol token = key.getLiterals().get(0);
+        LiteralParam param = new LiteralParam(token.left, token.right);
+        StringLiteral literal = new StringLiteral("2018-01-01");
+        literal.setParam(param);
+        // converted by analysis to the type of column
+        LiteralExpr converted = (LiteralExpr) literal.castTo(Type.DATE);
+        Assert.assertTrue(converted instanceof DateLiteral);
+        Assert.assertSame(param, converted.getParam());
+        List<LiteralParam> params = Lists.newArrayList(param);
+
+        // literals are compared by identity
+        Set<LiteralExpr> serialized = Sets.newIdentityHashSet();
+        serialized.add(converted);
+        // not an operand of comparison
+        Assert.assertTrue(PlanCache.getRebindableParams(key.getLiterals(), params, serialized,
+                Sets.<LiteralExpr>newIdentityHashSet()).isEmpty());
+        // of the same value as another literal
+        Set<LiteralExpr> withSameValue = Sets.newIdentityHashSet();
+        withSameValue.addAll(serialized);
+        LiteralExpr other = new DateLiteral("2018-01-01", Type.DATE);
+        withSameValue.add(other);
+        Assert.assertTrue(PlanCache.getRebindableParams(key.getLiterals(), params, withSameValue,
+                withSameValue).isEmpty());
+
+        Map<LiteralParam, Integer> rebindable = PlanCache.getRebindableParams(key.getLiterals(), params,
+                serialized, serialized);
+        Assert.assertEquals(Integer.valueOf(0), rebindable.get(param));
+
+        PlanCache.Key newKey = PlanCache.buildKey(context, "select * from tbl where k1 = '2018-02-01'");
+        Assert.assertEquals(key.getShape(), newKey.getShape());
+        Assert.assertTrue(PlanCache.bindParams(rebindable, newKey.getLiterals()));
+        Assert.assertEquals(0, converted.compareLiteral(new DateLiteral("2018-02-01", Type.DATE)));
+        Assert.assertEquals(0, literal.compareLiteral(new StringLiteral("2018-02-01")));
+
+        // can not be converted to date as planned, nothing is changed
+        newKey = PlanCache.buildKey(context, "select * from tbl where k1 = '20180301'");
+        Assert.assertFalse(PlanCache.bindParams(rebindable, newKey.getLiterals()));
+        Assert.assertEquals(0, converted.compareLiteral(new DateLiteral("2018-02-01", Type.DATE)));
+        Assert.assertEquals(0, literal.compareLiteral(new StringLiteral("2018-02-01")));
+    }
+
+    @Test
+    public void testInvalidateOnSchemaChange() throws Exception {
+        mockCatalog(true);
+        cache.release(put(key));
+
+        table.setIndexSchemaInfo(INDEX_ID, null, table.getSchemaByIndexId(INDEX_ID), 1,
+                UnitTestUtil.SCHEMA_HASH + 1, (short) 1);
+        PlanCache.Entry entry = cache.acquire(key);
+        Assert.assertFalse(cache.isValid(entry, context));
+        cache.invalidate(entry);
+        cache.release(entry);
+        Assert.assertNull(cache.acquire(key));
+    }
+
+    @Test
+    public void testInvalidateOnPrivilegeChange() throws Exception {
+        mockCatalog(false);
+        cache.release(put(key));
+
+        PlanCache.Entry entry = cache.acquire(key);
+        Assert.assertFalse(cache.isValid(entry, context));
+        cache.release(entry);
+    }
+
+    @Test
+    public void testConcurrentCheckout() throws Exception {
+        mockCatalog(true);
+        // in use by the query which planned it
+        PlanCache.Entry entry = put(key);
+        Assert.assertNull(cache.acquire(key));
+        cache.release(entry);
+
+        Assert.assertSame(entry, cache.acquire(key));
+        // another query plans as usual while the plan is in use
+        Assert.assertNull(cache.acquire(key));
+        cache.release(entry);
+        Assert.assertSame(entry, cache.acquire(key));
+        cache.release(entry);
+    }
+}
@@ -0,0 +1,98 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.catalog.Database;
+import com.baidu.palo.catalog.OlapTable;
+import com.baidu.palo.common.Pair;
+import com.baidu.palo.common.util.UnitTestUtil;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+public class QueryCacheTest {
+    @Test
+    public void testNormalize() {
+        Assert.assertEquals("select * from t where k = 'a  b'",
+                QueryCache.normalize("  select *\n  from t\twhere k = 'a  b'  "));
+        Assert.assertEquals("select 'it\\'s  x' from t",
+                QueryCache.normalize("select 'it\\'s  x'   from t"));
+    }
+
+    @Test
+    public void testInvalidateOnVersionChange() {
+        QueryCache cache = QueryCache.getInstance();
+        cache.clear();
+        Map<Long, Pair<Long, Long>> versions = Maps.newHashMap();
+        versions.put(1L, Pair.create(2L, 3L));
+        List<ByteBuffer> rows = Lists.newArrayList(ByteBuffer.wrap(new byte[] {1, 2, 3}));
+        Map<Long, Long> signatures = Maps.newHashMap();
+        signatures.put(10L, 20L);
+        cache.put("key", versions, signatures, rows, 3);
+
+        List<ByteBuffer> cached = cache.get("key", Maps.newHashMap(versions), signatures);
+        Assert.assertNotNull(cached);
+        Assert.assertEquals(3, cached.get(0).remaining());
+        // consuming the returned rows does not change the cached ones
+        cached.get(0).position(3);
+        Assert.assertEquals(3, cache.get("key", versions, signatures).get(0).remaining());
+
+        Map<Long, Pair<Long, Long>> newVersions = Maps.newHashMap();
+        newVersions.put(1L, Pair.create(3L, 4L));
+        Assert.assertNull(cache.get("key", newVersions, signatures));
+        // stale entry is dropped
+        Assert.assertNull(cache.get("key", versions, signatures));
+    }
+
+    @Test
+    public void testInvalidateOnSchemaChange() {
+        long dbId = 1L;
+        long tableId = 2L;
+        long indexId = 4L;
+        Database db = UnitTestUtil.createDb(dbId, tableId, 3L, indexId, 5L, 6L, 1L, 0L);
+        OlapTable table = (OlapTable) db.getTable(tableId);
+
+        QueryCache cache = QueryCache.getInstance();
+        cache.clear();
+        Map<Long, Pair<Long, Long>> versions = Maps.newHashMap();
+        versions.put(3L, Pair.create(1L, 0L));
+        Map<Long, Long> signatures = Maps.newHashMap();
+        signatures.put(tableId, QueryCache.getTableSignature(table));
+        cache.put("key", versions, signatures, Lists.newArrayList(ByteBuffer.wrap(new byte[] {1})), 1);
+        Assert.assertNotNull(cache.get("key", versions, signatures));
+
+        // schema change finished without any new load, so partition versions are unchanged
+        table.setIndexSchemaInfo(indexId, null, table.getSchemaByIndexId(indexId), 1,
+                UnitTestUtil.SCHEMA_HASH + 1, (short) 1);
+        Map<Long, Long> newSignatures = Maps.newHashMap();
+        newSignatures.put(tableId, QueryCache.getTableSignature(table));
+        Assert.assertNotEquals(signatures, newSignatures);
+        Assert.assertNull(cache.get("key", versions, newSignatures));
+        // stale entry is dropped
+        Assert.assertNull(cache.get("key", versions, signatures));
+    }
+}
@@ -0,0 +1,244 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.common.Config;
+import com.baidu.palo.common.InternalException;
+import com.baidu.palo.planner.AggregationNode;
+import com.baidu.palo.planner.DataPartition;
+import com.baidu.palo.planner.ExchangeNode;
+import com.baidu.palo.planner.HashJoinNode;
+import com.baidu.palo.planner.PlanFragment;
+import com.baidu.palo.planner.PlanNode;
+import com.baidu.palo.planner.Planner;
+import com.baidu.palo.planner.ScanNode;
+
+import com.google.common.collect.Lists;
+
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class QueryQueueTest {
+    private static final long MB = 1024L * 1024;
+
+    private int maxRunningPerUser;
+    private int maxRunningLow;
+    private long memLimitMb;
+
+    @Before
+    public void setUp() {
+        maxRunningPerUser = Config.query_queue_max_running_per_user;
+        maxRunningLow = Config.query_queue_max_running_low;
+        memLimitMb = Config.query_queue_mem_limit_mb;
+        Config.query_queue_max_running_per_user = 1;
+        Config.query_queue_max_running_low = 1;
+        Config.query_queue_mem_limit_mb = 100;
+    }
+
+    @After
+    public void tearDown() {
+        Config.query_queue_max_running_per_user = maxRunningPerUser;
+        Config.query_queue_max_running_low = maxRunningLow;
+        Config.query_queue_mem_limit_mb = memLimitMb;
+    }
+
+    @Test
+    public void testUserLimit() throws InternalException {
+        QueryQueue queue = new QueryQueue();
+        QueryQueue.Token token = admit(queue, "user1", "normal", 1, 1000);
+        // other user is not limited by user1
+        QueryQueue.Token otherToken = admit(queue, "user2", "normal", 1, 1000);
+
+        boolean timeout = false;
+        try {
+            admit(queue, "user1", "normal", 1, 10);
+        } catch (InternalException e) {
+            timeout = true;
+        }
+        Assert.assertTrue(timeout);
+
+        queue.release(token);
+        queue.release(otherToken);
+        queue.release(admit(queue, "user1", "normal", 1, 10));
+        Assert.assertTrue(queue.getStats().isEmpty());
+    }
+
+    @Test
+    public void testGroupLimit() throws InternalException {
+        Config.query_queue_max_running_per_user = 0;
+        QueryQueue queue = new QueryQueue();
+        QueryQueue.Token token = admit(queue, "user1", "low", 1, 1000);
+
+        // limit of group is shared by users
+        boolean timeout = false;
+        try {
+            admit(queue, "user2", "LOW", 1, 10);
+        } catch (InternalException e) {
+            timeout = true;
+        }
+        Assert.assertTrue(timeout);
+        // other group is not limited
+        queue.release(admit(queue, "user2", "normal", 1, 10));
+
+        queue.release(token);
+        queue.release(admit(queue, "user2", "low", 1, 10));
+        Assert.assertTrue(queue.getStats().isEmpty());
+    }
+
+    @Test
+    public void testMemLimit() throws InternalException {
+        QueryQueue queue = new QueryQueue();
+        // a query larger than limit is admitted if nothing is running
+        QueryQueue.Token token = admit(queue, "user1", "normal", 200 * MB, 1000);
+
+        boolean timeout = false;
+        try {
+            admit(queue, "user2", "normal", 1, 10);
+        } catch (InternalException e) {
+            timeout = true;
+        }
+        Assert.assertTrue(timeout);
+        queue.release(token);
+    }
+
+    // Query is cancelled while waiting in queue, e.g. by KILL.
+    @Test
+    public void testCancel() throws Exception {
+        final QueryQueue queue = new QueryQueue();
+        QueryQueue.Token token = admit(queue, "user1", "normal", 1, 1000);
+
+        final QueryQueue.Token waitingToken = queue.enqueue("user1", "normal", 1);
+        final AtomicReference<InternalException> error = new AtomicReference<InternalException>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queue.admit(waitingToken, 60000);
+                } catch (InternalException e) {
+                    error.set(e);
+                }
+                done.countDown();
+            }
+        });
+        waiter.start();
+
+        queue.cancel(waitingToken);
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(error.get().getMessage().contains("cancelled"));
+        // the cancelled query is not counted
+        queue.release(waitingToken);
+        queue.release(token);
+        Assert.assertTrue(queue.getStats().isEmpty());
+    }
+
+    @Test
+    public void testInstanceNum() {
+        ScanNode scanNode = createScanNode(10);
+        PlanFragment scanFragment = createFragment(DataPartition.RANDOM, scanNode, null);
+        Assert.assertEquals(4, QueryQueue.getInstanceNum(scanFragment, 4));
+        Assert.assertEquals(10, QueryQueue.getInstanceNum(scanFragment, 20));
+
+        // fragment reading exchange runs on hosts of its input fragment
+        PlanFragment mergeFragment = createFragment(DataPartition.RANDOM, createExchangeNode(), scanFragment);
+        Assert.assertEquals(4, QueryQueue.getInstanceNum(mergeFragment, 4));
+        PlanFragment rootFragment = createFragment(DataPartition.UNPARTITIONED, createExchangeNode(), mergeFragment);
+        Assert.assertEquals(1, QueryQueue.getInstanceNum(rootFragment, 4));
+    }
+
+    @Test
+    public void testEstimateMemBytes() {
+        // 400MB of aggregation is split among 4 instances
+        AggregationNode aggNode = EasyMock.createMock(AggregationNode.class);
+        EasyMock.expect(aggNode.getCardinality()).andReturn(4L * 1024 * 1024).anyTimes();
+        EasyMock.expect(aggNode.getAvgRowSize()).andReturn(100f).anyTimes();
+        EasyMock.expect(aggNode.getChildren()).andReturn(Lists.<PlanNode>newArrayList(createScanNode(10))).anyTimes();
+        EasyMock.replay(aggNode);
+        PlanFragment aggFragment = createFragment(DataPartition.RANDOM, aggNode, null);
+        // result fragment uses the minimal memory
+        PlanFragment rootFragment = createFragment(DataPartition.UNPARTITIONED, createExchangeNode(), aggFragment);
+        Assert.assertEquals(400 * MB + 64 * MB, QueryQueue.estimateMemBytes(
+                createPlanner(rootFragment, aggFragment), 2048 * MB, 4));
+        // limited by exec_mem_limit of each instance
+        Assert.assertEquals(4 * 80 * MB + 64 * MB, QueryQueue.estimateMemBytes(
+                createPlanner(rootFragment, aggFragment), 80 * MB, 4));
+
+        // build side of broadcast join is held by every instance
+        ScanNode buildNode = EasyMock.createMock(ScanNode.class);
+        EasyMock.expect(buildNode.getCardinality()).andReturn(1024L * 1024).anyTimes();
+        EasyMock.expect(buildNode.getAvgRowSize()).andReturn(100f).anyTimes();
+        EasyMock.expect(buildNode.getChildren()).andReturn(Lists.<PlanNode>newArrayList()).anyTimes();
+        EasyMock.replay(buildNode);
+        HashJoinNode joinNode = EasyMock.createMock(HashJoinNode.class);
+        EasyMock.expect(joinNode.isBroadcast()).andReturn(true).anyTimes();
+        EasyMock.expect(joinNode.getChild(1)).andReturn(buildNode).anyTimes();
+        EasyMock.expect(joinNode.getChildren()).andReturn(
+                Lists.<PlanNode>newArrayList(createScanNode(10), buildNode)).anyTimes();
+        EasyMock.replay(joinNode);
+        PlanFragment joinFragment = createFragment(DataPartition.RANDOM, joinNode, null);
+        Assert.assertEquals(4 * 100 * MB, QueryQueue.estimateMemBytes(createPlanner(joinFragment), 2048 * MB, 4));
+    }
+
+    private static QueryQueue.Token admit(QueryQueue queue, String user, String group, long memBytes,
+                                          long timeoutMs) throws InternalException {
+        QueryQueue.Token token = queue.enqueue(user, group, memBytes);
+        queue.admit(token, timeoutMs);
+        return token;
+    }
+
+    private static ScanNode createScanNode(int scanRangeNum) {
+        ScanNode scanNode = EasyMock.createMock(ScanNode.class);
+        EasyMock.expect(scanNode.getNumInstances()).andReturn(scanRangeNum).anyTimes();
+        EasyMock.expect(scanNode.getChildren()).andReturn(Lists.<PlanNode>newArrayList()).anyTimes();
+        EasyMock.replay(scanNode);
+        return scanNode;
+    }
+
+    private static ExchangeNode createExchangeNode() {
+        ExchangeNode exchangeNode = EasyMock.createMock(ExchangeNode.class);
+        EasyMock.expect(exchangeNode.getChildren()).andReturn(Lists.<PlanNode>newArrayList()).anyTimes();
+        EasyMock.replay(exchangeNode);
+        return exchangeNode;
+    }
+
+    private static PlanFragment createFragment(DataPartition partition, PlanNode root, PlanFragment child) {
+        PlanFragment fragment = EasyMock.createMock(PlanFragment.class);
+        EasyMock.expect(fragment.getDataPartition()).andReturn(partition).anyTimes();
+        EasyMock.expect(fragment.getPlanRoot()).andReturn(root).anyTimes();
+        EasyMock.expect(fragment.getChild(0)).andReturn(child).anyTimes();
+        EasyMock.replay(fragment);
+        return fragment;
+    }
+
+    private static Planner createPlanner(PlanFragment... fragments) {
+        Planner planner = EasyMock.createMock(Planner.class);
+        EasyMock.expect(planner.getFragments()).andReturn(Lists.newArrayList(fragments)).anyTimes();
+        EasyMock.replay(planner);
+        return planner;
+    }
+}
@@ -0,0 +1,171 @@
+// Copyright (c) 2017, Baidu.com, Inc. All Rights Reserved
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+
+package com.baidu.palo.qe;
+
+import com.baidu.palo.common.Config;
+import com.baidu.palo.common.Status;
+import com.baidu.palo.thrift.TFetchDataResult;
+import com.baidu.palo.thrift.TNetworkAddress;
+import com.baidu.palo.thrift.TPlanFragmentDestination;
+import com.baidu.palo.thrift.TResultBatch;
+import com.baidu.palo.thrift.TStatus;
+import com.baidu.palo.thrift.TStatusCode;
+import com.baidu.palo.thrift.TUniqueId;
+
+import com.google.common.collect.Lists;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ResultReceiverTest {
+    private boolean enablePrefetch;
+
+    // Return batches from a list instead of rpc to backend
+    private static class MockReceiver extends ResultReceiver {
+        private final List<TFetchDataResult> results;
+        private int fetchIdx = 0;
+        // fetching of this batch is blocked until released
+        private int blockIdx = -1;
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean interrupted = false;
+        private volatile Thread fetchThread;
+
+        public MockReceiver(List<TFetchDataResult> results) {
+            super(destination(), 10001L, 1000);
+            this.results = results;
+        }
+
+        @Override
+        TFetchDataResult getNextFromRpc() throws Exception {
+            int idx;
+            synchronized (this) {
+                idx = fetchIdx++;
+            }
+            fetchThread = Thread.currentThread();
+            if (idx == blockIdx) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    throw e;
+                }
+            }
+            return results.get(idx);
+        }
+    }
+
+    private static TPlanFragmentDestination destination() {
+        TPlanFragmentDestination destination = new TPlanFragmentDestination();
+        destination.setFragment_instance_id(new TUniqueId(1, 2));
+        destination.setServer(new TNetworkAddress("127.0.0.1", 9060));
+        return destination;
+    }
+
+    private static TFetchDataResult result(int packetNum, boolean eos, String... rows) {
+        List<ByteBuffer> buffers = Lists.newArrayList();
+        for (String row : rows) {
+            buffers.add(ByteBuffer.wrap(row.getBytes()));
+        }
+        TResultBatch batch = new TResultBatch();
+        batch.setRows(buffers);
+        batch.setIs_compressed(false);
+        batch.setPacket_seq(packetNum);
+
+        TFetchDataResult result = new TFetchDataResult();
+        result.setResult_batch(batch);
+        result.setEos(eos);
+        result.setPacket_num(packetNum);
+        result.setStatus(new TStatus(TStatusCode.OK));
+        return result;
+    }
+
+    private static String firstRow(TResultBatch batch) {
+        ByteBuffer row = batch.getRows().get(0);
+        return new String(row.array(), row.arrayOffset() + row.position(), row.remaining());
+    }
+
+    @Before
+    public void setUp() {
+        enablePrefetch = Config.enable_result_prefetch;
+        Config.enable_result_prefetch = true;
+    }
+
+    @After
+    public void tearDown() {
+        Config.enable_result_prefetch = enablePrefetch;
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        MockReceiver receiver = new MockReceiver(Lists.newArrayList(
+                result(0, false, "a"), result(1, false), result(2, false, "b"), result(3, true, "c")));
+        Status status = new Status();
+
+        Assert.assertEquals("a", firstRow(receiver.getNext(status)));
+        // batch after the first one is fetched by prefetch thread
+        Assert.assertEquals("b", firstRow(receiver.getNext(status)));
+        Assert.assertNotSame(Thread.currentThread(), receiver.fetchThread);
+        Assert.assertEquals("c", firstRow(receiver.getNext(status)));
+        Assert.assertNull(receiver.getNext(status));
+        Assert.assertTrue(status.ok());
+        // nothing is fetched after eos
+        Assert.assertEquals(4, receiver.fetchIdx);
+    }
+
+    @Test
+    public void testPacketLost() throws Exception {
+        MockReceiver receiver = new MockReceiver(Lists.newArrayList(
+                result(0, false, "a"), result(2, true, "b")));
+        Status status = new Status();
+
+        Assert.assertEquals("a", firstRow(receiver.getNext(status)));
+        Assert.assertNull(receiver.getNext(status));
+        Assert.assertFalse(status.ok());
+    }
+
+    @Test
+    public void testCancelPendingPrefetch() throws Exception {
+        MockReceiver receiver = new MockReceiver(Lists.newArrayList(
+                result(0, false, "a"), result(1, true, "b")));
+        receiver.blockIdx = 1;
+        Status status = new Status();
+
+        Assert.assertEquals("a", firstRow(receiver.getNext(status)));
+        Assert.assertTrue(receiver.blocked.await(10, TimeUnit.SECONDS));
+        receiver.cancel();
+        Assert.assertNull(receiver.getNext(status));
+        Assert.assertTrue(status.isCancelled());
+
+        // blocked rpc is interrupted by cancel
+        for (int i = 0; i < 100 && !receiver.interrupted; i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertTrue(receiver.interrupted);
+    }
+}
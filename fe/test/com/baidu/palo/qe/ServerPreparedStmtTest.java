@@ -0,0 +1,122 @@
+// Modifications copyright (C) 2017, Baidu.com, Inc.
+// Copyright 2017 The Apache Software Foundation
+
+// Licensed to the Apache Software Foundation (ASF) under one
+// or more contributor license agreements.  See the NOTICE file
+// distributed with this work for additional information
+// regarding copyright ownership.  The ASF licenses this file
+// to you under the Apache License, Version 2.0 (the
+// "License"); you may not use this file except in compliance
+// with the License.  You may obtain a copy of the License at
+//
+//   http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing,
+// software distributed under the License is distributed on an
+// "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+// KIND, either express or implied.  See the License for the
+// specific language governing permissions and limitations
+// under the License.
+package com.baidu.palo.qe;
+
+import com.baidu.palo.common.AnalysisException;
+import com.baidu.palo.mysql.MysqlColType;
+import com.baidu.palo.mysql.MysqlSerializer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public class ServerPreparedStmtTest {
+    @Test
+    public void testSplit() {
+        List<String> segments = ServerPreparedStmt.splitByPlaceholder(
+                "select '?', `a?` from t where k1 = ? and k2 = \"\\\"?\" /* ? */ and k3 = ?");
+        Assert.assertEquals(3, segments.size());
+        Assert.assertEquals("select '?', `a?` from t where k1 = ", segments.get(0));
+        Assert.assertEquals(" and k2 = \"\\\"?\" /* ? */ and k3 = ", segments.get(1));
+        Assert.assertEquals("", segments.get(2));
+    }
+
+    @Test
+    public void testStmtWithNullParams() {
+        ServerPreparedStmt stmt = new ServerPreparedStmt(1, "select k1, '?' from t where k1 = ? and k2 in (?, 1)");
+        Assert.assertEquals("select k1, '?' from t where k1 = NULL and k2 in (NULL, 1)", stmt.getStmtWithNullParams());
+    }
+
+    @Test
+    public void testBind() throws AnalysisException {
+        ServerPreparedStmt stmt = new ServerPreparedStmt(1, "select * from t where k1 = ? and k2 = ? and k3 = ?");
+        Assert.assertEquals(3, stmt.getNumParams());
+
+        MysqlSerializer serializer = MysqlSerializer.newInstance();
+        // flags and iteration count
+        serializer.writeInt1(0);
+        serializer.writeInt4(1);
+        // null bitmap, the third parameter is null
+        serializer.writeInt1(0x04);
+        // new params bound
+        serializer.writeInt1(1);
+        serializer.writeInt2(MysqlColType.MYSQL_TYPE_LONGLONG.getCode());
+        serializer.writeInt2(MysqlColType.MYSQL_TYPE_VARSTRING.getCode());
+        serializer.writeInt2(MysqlColType.MYSQL_TYPE_LONG.getCode());
+        serializer.writeInt8(-10L);
+        serializer.writeLenEncodedString("it's");
+
+        Assert.assertEquals("select * from t where k1 = (-10) and k2 = 'it\\'s' and k3 = NULL",
+                stmt.bind(serializer.toByteBuffer()));
+
+        // types are not sent again
+        serializer.reset();
+        serializer.writeInt1(0);
+        serializer.writeInt4(1);
+        serializer.writeInt1(0);
+        serializer.writeInt1(0);
+        serializer.writeInt8(1L);
+        serializer.writeLenEncodedString("a");
+        serializer.writeInt4(2);
+        Assert.assertEquals("select * from t where k1 = 1 and k2 = 'a' and k3 = 2",
+                stmt.bind(serializer.toByteBuffer()));
+    }
+
+    @Test
+    public void testBindNegative() throws AnalysisException {
+        ServerPreparedStmt stmt = new ServerPreparedStmt(1, "select 1-?, 1-?");
+        MysqlSerializer serializer = MysqlSerializer.newInstance();
+        serializer.writeInt1(0);
+        serializer.writeInt4(1);
+        serializer.writeInt1(0);
+        serializer.writeInt1(1);
+        serializer.writeInt2(MysqlColType.MYSQL_TYPE_TINY.getCode());
+        serializer.writeInt2(MysqlColType.MYSQL_TYPE_DOUBLE.getCode());
+        serializer.writeInt1(-5);
+        serializer.writeInt8(Double.doubleToLongBits(-1.5));
+        Assert.assertEquals("select 1-(-5), 1-(-1.5)", stmt.bind(serializer.toByteBuffer()));
+    }
+
+    @Test(expected = AnalysisException.class)
+    public void testBindNaN() throws AnalysisException {
+        ServerPreparedStmt stmt = new ServerPreparedStmt(1, "select ?");
+        MysqlSerializer serializer = MysqlSerializer.newInstance();
+        serializer.writeInt1(0);
+        serializer.writeInt4(1);
+        serializer.writeInt1(0);
+        serializer.writeInt1(1);
+        serializer.writeInt2(MysqlColType.MYSQL_TYPE_DOUBLE.getCode());
+        serializer.writeInt8(Double.doubleToLongBits(Double.NaN));
+        stmt.bind(serializer.toByteBuffer());
+    }
+
+    @Test(expected = AnalysisException.class)
+    public void testBindWithoutTypes() throws AnalysisException {
+        ServerPreparedStmt stmt = new ServerPreparedStmt(1, "select ?");
+        MysqlSerializer serializer = MysqlSerializer.newInstance();
+        serializer.writeInt1(0);
+        serializer.writeInt4(1);
+        serializer.writeInt1(0);
+        serializer.writeInt1(0);
+        stmt.bind(ByteBuffer.wrap(serializer.toArray()));
+    }
+}
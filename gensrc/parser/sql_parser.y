@@ -53,6 +53,9 @@ parser code {:
     public String wild;
     public Expr where;
 
+    // Literals from literal tokens, which are parameters of the plan when the plan is cached, see LiteralParam
+    private final List<LiteralParam> literalParams = Lists.newArrayList();
+
     // List of expected tokens ids from current parsing state for generating syntax error message
     private final List<Integer> expectedTokenIds = Lists.newArrayList();
 
@@ -190,6 +193,17 @@ parser code {:
 
         return result.toString();
     }
+
+    public List<LiteralParam> getLiteralParams() {
+        return literalParams;
+    }
+
+    public LiteralExpr bindLiteralParam(LiteralExpr literal, int line, int column) {
+        LiteralParam param = new LiteralParam(line, column);
+        literal.setParam(param);
+        literalParams.add(param);
+        return literal;
+    }
 :};
 
 // Total keywords of palo
@@ -2866,6 +2880,9 @@ sign_chain_expr ::=
     // integrate signs into literals
     if (e.isLiteral() && e.getType().isNumericType()) {
       ((LiteralExpr)e).swapSign();
+      if (((LiteralExpr)e).getParam() != null) {
+        ((LiteralExpr)e).getParam().swapSign();
+      }
       RESULT = e;
     } else {
       RESULT = new ArithmeticExpr(ArithmeticExpr.Operator.MULTIPLY, new IntLiteral((long)-1), e);
@@ -3094,15 +3111,15 @@ timestamp_arithmetic_expr ::=
 
 literal ::=
   INTEGER_LITERAL:l
-  {: RESULT = new IntLiteral(l); :}
+  {: RESULT = parser.bindLiteralParam(new IntLiteral(l), lleft, lright); :}
   | LARGE_INTEGER_LITERAL:l
-  {: RESULT = new LargeIntLiteral(l); :}
+  {: RESULT = parser.bindLiteralParam(new LargeIntLiteral(l), lleft, lright); :}
   | FLOATINGPOINT_LITERAL:l
-  {: RESULT = new FloatLiteral(l); :}
+  {: RESULT = parser.bindLiteralParam(new FloatLiteral(l), lleft, lright); :}
   | DECIMAL_LITERAL:l
-  {: RESULT = new DecimalLiteral(l); :}
+  {: RESULT = parser.bindLiteralParam(new DecimalLiteral(l), lleft, lright); :}
   | STRING_LITERAL:l
-  {: RESULT = new StringLiteral(l); :}
+  {: RESULT = parser.bindLiteralParam(new StringLiteral(l), lleft, lright); :}
   | KW_TRUE
   {: RESULT = new BoolLiteral(true); :}
   | KW_FALSE
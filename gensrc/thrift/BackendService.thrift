@@ -61,6 +61,10 @@ service BackendService {
     // Returns as soon as all incoming data streams have been set up.
     PaloInternalService.TExecPlanFragmentResult exec_plan_fragment(1:PaloInternalService.TExecPlanFragmentParams params);
 
+    // Same as exec_plan_fragment, but start several fragment instances in one call.
+    PaloInternalService.TExecPlanFragmentsResult exec_plan_fragments(
+        1:list<PaloInternalService.TExecPlanFragmentParams> params);
+
     // Called by coord to cancel execution of a single plan fragment, which this
     // coordinator initiated with a prior call to ExecPlanFragment.
     // Cancellation is asynchronous.
@@ -66,11 +66,19 @@ struct TReportRequest {
     3: optional map<Types.TTaskType, set<i64>> tasks // string signature
     4: optional map<Types.TTabletId, TTablet> tablets
     5: optional map<string, TDisk> disks // string root_path
+    // If true, 'tablets' only contains tablets changed since the tablet report of
+    // 'base_tablet_report_version', and 'removed_tablets' contains tablets dropped since then.
+    6: optional bool delta_tablets
+    7: optional i64 base_tablet_report_version
+    8: optional set<Types.TTabletId> removed_tablets
 }
 
 struct TMasterResult {
     // required in V1
     1: required Status.TStatus status
+    // Set if the tablet report is applied. Backend can send a delta report based on it next time,
+    // otherwise it should send a full report.
+    2: optional i64 accepted_tablet_report_version
 }
 
 // Now we only support CPU share.
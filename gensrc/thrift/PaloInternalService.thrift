@@ -201,6 +201,14 @@ struct TExecPlanFragmentResult {
   1: optional Status.TStatus status
 }
 
+// ExecPlanFragments
+struct TExecPlanFragmentsResult {
+  // status of each fragment instance, in the same order as params.
+  // Instances are executed in order and the list ends at the first failed one,
+  // instances after it are not executed.
+  1: optional list<Status.TStatus> status_list
+}
+
 // CancelPlanFragment
 struct TCancelPlanFragmentParams {
   1: required PaloInternalServiceVersion protocol_version
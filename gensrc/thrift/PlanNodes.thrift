@@ -493,6 +493,34 @@ struct TKuduScanNode {
   1: required Types.TTupleId tuple_id
 }
 
+enum TRuntimeFilterType {
+  IN,
+  BLOOM,
+  MIN_MAX
+}
+
+// A filter built from the build side of a hash join and applied by scan nodes on its
+// probe side. The same descriptor is sent with the producing join node and with every
+// consuming scan node.
+struct TRuntimeFilterDesc {
+  // unique within a query
+  1: required i32 filter_id
+  // expr on the build side of the join to build the filter from
+  2: required Exprs.TExpr src_expr
+  // index of the eq join conjunct src_expr comes from
+  3: required i32 expr_order
+  // scan node id -> expr to apply the filter to in that scan node
+  4: required map<Types.TPlanNodeId, Exprs.TExpr> plan_id_to_target_expr
+  5: required bool is_broadcast_join
+  // true if some target is in the same fragment as the join
+  6: required bool has_local_targets
+  // true if some target is in another fragment
+  7: required bool has_remote_targets
+  8: required TRuntimeFilterType type
+  // only set for BLOOM
+  9: optional i64 bloom_filter_size_bytes
+}
+
 // This is essentially a union of all messages corresponding to subclasses
 // of PlanNode.
 struct TPlanNode {
@@ -528,6 +556,9 @@ struct TPlanNode {
   26: optional TOlapRewriteNode olap_rewrite_node
   27: optional TKuduScanNode kudu_scan_node
   28: optional TUnionNode union_node
+
+  // runtime filters produced (hash join) or consumed (scan) by this node
+  29: optional list<TRuntimeFilterDesc> runtime_filters
 }
 
 // A flattened representation of a tree of PlanNodes, obtained by depth-first